@@ -0,0 +1,70 @@
+package com.redelles.xmlextractor.benchmark;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bytes allocated per XML event, run with {@code -prof com.redelles.xmlextractor.benchmark.AllocationPerEventProfiler}.
+ * <p>
+ * The allocations are those of the live platform threads between the start and the end of every iteration, the
+ * events those counted by {@link ThroughputCounters}. The virtual threads are not seen by the thread bean, so the
+ * bytes allocated by them (the read ahead of the compressed input for instance) are left out.
+ */
+public class AllocationPerEventProfiler implements InternalProfiler {
+
+    private static final LongAdder EVENTS = new LongAdder();
+
+    private long allocatedBefore;
+    private long eventsBefore;
+
+    static void countEvents(final long events) {
+        EVENTS.add(events);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Bytes allocated per XML event of the extracted documents";
+    }
+
+    @Override
+    public void beforeIteration(
+        final BenchmarkParams benchmarkParams,
+        final IterationParams iterationParams
+    ) {
+        this.allocatedBefore = allocatedBytes();
+        this.eventsBefore = EVENTS.sum();
+    }
+
+    @Override
+    public Collection<? extends Result<?>> afterIteration(
+        final BenchmarkParams benchmarkParams,
+        final IterationParams iterationParams,
+        final IterationResult result
+    ) {
+        final long allocated = allocatedBytes() - this.allocatedBefore;
+        final long events = EVENTS.sum() - this.eventsBefore;
+        if (events == 0) {
+            return List.of();
+        }
+        return List.of(new ScalarResult("alloc.per.event", (double) allocated / events, "B/event", AggregationPolicy.AVG));
+    }
+
+    private static long allocatedBytes() {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (final long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, allocated);
+        }
+        return total;
+    }
+}
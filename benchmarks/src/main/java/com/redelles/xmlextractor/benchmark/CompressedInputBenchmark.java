@@ -0,0 +1,132 @@
+package com.redelles.xmlextractor.benchmark;
+
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.compressed.CompressedTagExtractor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The same document read plain, as a gzip file with a single member and as a gzip file with one member per megabyte.
+ * The megabytes reported are those of the uncompressed document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CompressedInputBenchmark {
+
+    private static final int MEMBER_SIZE = 1 << 20;
+
+    public enum Format {
+        PLAIN,
+        GZIP,
+        GZIP_MEMBERS
+    }
+
+    @Param({"PLAIN", "GZIP", "GZIP_MEMBERS"})
+    public Format format;
+
+    @Param({"256"})
+    public long megabytes;
+
+    private Path file;
+    private Iso20022Generator.Statistics document;
+    private CompressedTagExtractor extractor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Iso20022Generator generator = new Iso20022Generator(Iso20022Generator.MessageType.PAIN_001)
+            .withSize(this.megabytes << 20);
+        final Path plain = Files.createTempFile("compressed", ".xml");
+        this.document = generator.write(plain);
+        this.file = switch (this.format) {
+            case PLAIN -> plain;
+            case GZIP -> compress(plain, Long.MAX_VALUE);
+            case GZIP_MEMBERS -> compress(plain, MEMBER_SIZE);
+        };
+        if (this.file != plain) {
+            Files.delete(plain);
+        }
+        this.extractor = new CompressedTagExtractor(new XmlTagCursorExtractor(generator.selectedPaths(), List.of(), List.of()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(this.file);
+    }
+
+    @Benchmark
+    public void extract(
+        final ThroughputCounters counters,
+        final Blackhole blackhole
+    ) {
+        this.extractor.extract(this.file, document -> (key, value) -> blackhole.consume(value));
+        counters.extracted(this.document);
+    }
+
+    private static Path compress(
+        final Path plain,
+        final long memberSize
+    ) throws IOException {
+        final Path compressed = Files.createTempFile("compressed", ".xml.gz");
+        final byte[] block = new byte[MEMBER_SIZE];
+        try (InputStream input = Files.newInputStream(plain);
+             OutputStream output = Files.newOutputStream(compressed)) {
+            OutputStream member = null;
+            long written = 0;
+            int read = input.readNBytes(block, 0, block.length);
+            while (read > 0) {
+                if (member == null || written >= memberSize) {
+                    if (member != null) {
+                        member.close();
+                    }
+                    member = new GZIPOutputStream(new NotClosing(output), 1 << 16);
+                    written = 0;
+                }
+                member.write(block, 0, read);
+                written += read;
+                read = input.readNBytes(block, 0, block.length);
+            }
+            if (member != null) {
+                member.close();
+            }
+        }
+        return compressed;
+    }
+
+    /**
+     * Lets every gzip member be finished without closing the file.
+     */
+    private static final class NotClosing extends FilterOutputStream {
+
+        private NotClosing(final OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(
+            final byte[] bytes,
+            final int offset,
+            final int length
+        ) throws IOException {
+            this.out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.redelles.xmlextractor.benchmark;
+
+import com.redelles.xmlextractor.tag.TagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extractions that end before the end of the document: a stop tag after the group header, a stop tag at the end of
+ * the first payment (100 transactions) and paths whose times run out after a tenth of the transactions. The megabytes
+ * reported are those of the whole document, so they grow with the part that is not read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EarlyExitBenchmark {
+
+    public enum Exit {
+        HEADER_STOP_TAG,
+        PAYMENT_STOP_TAG,
+        TIMES
+    }
+
+    @Param({"EVENT", "CURSOR", "MAPPED"})
+    public Engine engine;
+
+    @Param({"HEADER_STOP_TAG", "PAYMENT_STOP_TAG", "TIMES"})
+    public Exit exit;
+
+    @Param({"100000"})
+    public int records;
+
+    private Path file;
+    private Iso20022Generator.Statistics document;
+    private TagExtractor extractor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Iso20022Generator generator = new Iso20022Generator(Iso20022Generator.MessageType.PAIN_001)
+            .withRecords(this.records)
+            .withSelectivity(0.2);
+        this.file = Files.createTempFile("exit", ".xml");
+        this.document = generator.write(this.file);
+        this.extractor = switch (this.exit) {
+            case HEADER_STOP_TAG -> this.engine.create(
+                List.of(new XmlTagPath(List.of("GrpHdr", "MsgId"), "MsgId", 1)),
+                List.of("GrpHdr"),
+                List.of()
+            );
+            case PAYMENT_STOP_TAG -> this.engine.create(generator.selectedPaths(), List.of("PmtInf"), List.of());
+            case TIMES -> this.engine.create(
+                generator.selectedPaths()
+                    .stream()
+                    .map(path -> new XmlTagPath(path.tags, path.outKey, this.records / 10))
+                    .toList(),
+                List.of(),
+                List.of()
+            );
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(this.file);
+    }
+
+    @Benchmark
+    public void extract(
+        final ThroughputCounters counters,
+        final Blackhole blackhole
+    ) {
+        this.engine.extract(this.extractor, this.file, (key, value) -> blackhole.consume(value));
+        counters.extracted(this.document);
+    }
+}
@@ -0,0 +1,57 @@
+package com.redelles.xmlextractor.benchmark;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.ExtractionPlan;
+import com.redelles.xmlextractor.tag.TagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor;
+import com.redelles.xmlextractor.tag.mapped.MappedTagExtractor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The extractors measured by the benchmarks, as a parameter.
+ */
+public enum Engine {
+    EVENT,
+    CURSOR,
+    MAPPED;
+
+    public TagExtractor create(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags,
+        final Collection<AlternateTagExtractor> specialExtractors
+    ) {
+        return switch (this) {
+            case EVENT -> new XmlTagExtractor(new ExtractionPlan(tagPaths, stopTags, specialExtractors));
+            case CURSOR -> new XmlTagCursorExtractor(new ExtractionPlan(tagPaths, stopTags, specialExtractors));
+            case MAPPED -> new MappedTagExtractor(tagPaths, stopTags, specialExtractors);
+        };
+    }
+
+    /**
+     * Extracts the file with an extractor made by this engine, the mapped one maps the file instead of reading it.
+     */
+    public void extract(
+        final TagExtractor extractor,
+        final Path file,
+        final ValueProcessor processor
+    ) {
+        if (this == MAPPED) {
+            ((MappedTagExtractor) extractor).extract(file, processor);
+            return;
+        }
+        try {
+            extractor.extract(file.toString(), Files.newInputStream(file), processor);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
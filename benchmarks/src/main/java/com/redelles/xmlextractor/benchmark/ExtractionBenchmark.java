@@ -0,0 +1,74 @@
+package com.redelles.xmlextractor.benchmark;
+
+import com.redelles.xmlextractor.tag.TagExtractor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole file extraction with paths of unlimited times, by engine, number of paths and shape of the document.
+ * <p>
+ * With 2 paths only the end to end id and the amount are extracted, with more every leaf of the transactions is and
+ * the rest of the paths are never found. A low selectivity makes most of the document remittance information no path
+ * looks at. The document is written once per trial, {@code -p megabytes=4096} for a multi-GB one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExtractionBenchmark {
+
+    @Param({"EVENT", "CURSOR", "MAPPED"})
+    public Engine engine;
+
+    @Param({"PAIN_001"})
+    public Iso20022Generator.MessageType messageType;
+
+    @Param({"64"})
+    public long megabytes;
+
+    @Param({"1", "10", "100", "300", "1000"})
+    public int paths;
+
+    @Param({"1", "0.05"})
+    public double selectivity;
+
+    @Param({"0"})
+    public int depth;
+
+    private Path file;
+    private Iso20022Generator.Statistics document;
+    private TagExtractor extractor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Iso20022Generator generator = new Iso20022Generator(this.messageType)
+            .withSize(this.megabytes << 20)
+            .withSelectivity(this.selectivity)
+            .withDepth(this.depth);
+        this.file = Files.createTempFile("extraction", ".xml");
+        this.document = generator.write(this.file);
+        this.extractor = this.engine.create(generator.paths(this.paths), List.of(), List.of());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(this.file);
+    }
+
+    @Benchmark
+    public void extract(
+        final ThroughputCounters counters,
+        final Blackhole blackhole
+    ) {
+        this.engine.extract(this.extractor, this.file, (key, value) -> blackhole.consume(value));
+        counters.extracted(this.document);
+    }
+}
@@ -0,0 +1,451 @@
+package com.redelles.xmlextractor.benchmark;
+
+import com.redelles.xmlextractor.tag.XmlTagPath;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Deterministic generator of ISO 20022 credit transfers, customer initiations (pain.001) or interbank transfers
+ * (pacs.008), written as a stream so the documents can be far bigger than the memory. The same settings always give
+ * the same bytes.
+ * <ul>
+ * <li>size and records: the document ends when any of them is reached;</li>
+ * <li>depth: levels of supplementary data nested in every transaction;</li>
+ * <li>selectivity: share of the bytes of a transaction inside the elements of {@link #selectedPaths()}, the rest is
+ * structured remittance information no path looks at;</li>
+ * <li>malformed every: one transaction out of that many has a mismatched end tag, none when 0.</li>
+ * </ul>
+ * The document uses ASCII only, so its length in bytes is its length in characters.
+ */
+public final class Iso20022Generator {
+
+    public static final String RECORD_ELEMENT = "CdtTrfTxInf";
+    private static final int TRANSACTIONS_PER_PAYMENT = 100;
+    private static final String[] NAMES = {"Acme", "Globex", "Initech", "Umbrella", "Hooli", "Stark", "Wayne", "Tyrell"};
+    private static final String[] KINDS = {"Industries", "Logistics", "Retail", "Energy", "Foods", "Textiles"};
+    private static final String[] TOWNS = {"Madrid", "Lisboa", "Paris", "Berlin", "Milano", "Wien", "Dublin"};
+    private static final String[] COUNTRIES = {"ES", "PT", "FR", "DE", "IT", "AT", "IE"};
+    private static final String[] BICS = {"BANKESMMXXX", "CAIXPTPLXXX", "BNPAFRPPXXX", "DEUTDEFFXXX", "UNCRITMMXXX"};
+
+    public enum MessageType {
+        PAIN_001("urn:iso:std:iso:20022:tech:xsd:pain.001.001.09", "CstmrCdtTrfInitn", "InstdAmt"),
+        PACS_008("urn:iso:std:iso:20022:tech:xsd:pacs.008.001.08", "FIToFICstmrCdtTrf", "IntrBkSttlmAmt");
+
+        private final String namespace;
+        private final String message;
+        private final String amount;
+
+        MessageType(
+            final String namespace,
+            final String message,
+            final String amount
+        ) {
+            this.namespace = namespace;
+            this.message = message;
+            this.amount = amount;
+        }
+    }
+
+    /**
+     * What was written: bytes, transactions and XML events (as counted by a coalescing StAX parser).
+     */
+    public record Statistics(long length, long records, long events) {
+
+    }
+
+    private final MessageType type;
+    private final long size;
+    private final int records;
+    private final int depth;
+    private final double selectivity;
+    private final int malformedEvery;
+    private final long seed;
+
+    public Iso20022Generator(final MessageType type) {
+        this(type, Long.MAX_VALUE, Integer.MAX_VALUE, 0, 1, 0, 20022);
+    }
+
+    private Iso20022Generator(
+        final MessageType type,
+        final long size,
+        final int records,
+        final int depth,
+        final double selectivity,
+        final int malformedEvery,
+        final long seed
+    ) {
+        if (selectivity <= 0 || selectivity > 1) {
+            throw new IllegalArgumentException("The selectivity must be in (0, 1]: " + selectivity);
+        }
+        this.type = type;
+        this.size = size;
+        this.records = records;
+        this.depth = depth;
+        this.selectivity = selectivity;
+        this.malformedEvery = malformedEvery;
+        this.seed = seed;
+    }
+
+    public Iso20022Generator withSize(final long size) {
+        return new Iso20022Generator(this.type, size, this.records, this.depth, this.selectivity, this.malformedEvery, this.seed);
+    }
+
+    public Iso20022Generator withRecords(final int records) {
+        return new Iso20022Generator(this.type, this.size, records, this.depth, this.selectivity, this.malformedEvery, this.seed);
+    }
+
+    public Iso20022Generator withDepth(final int depth) {
+        return new Iso20022Generator(this.type, this.size, this.records, depth, this.selectivity, this.malformedEvery, this.seed);
+    }
+
+    public Iso20022Generator withSelectivity(final double selectivity) {
+        return new Iso20022Generator(this.type, this.size, this.records, this.depth, selectivity, this.malformedEvery, this.seed);
+    }
+
+    public Iso20022Generator withMalformedEvery(final int malformedEvery) {
+        return new Iso20022Generator(this.type, this.size, this.records, this.depth, this.selectivity, malformedEvery, this.seed);
+    }
+
+    public Iso20022Generator withSeed(final long seed) {
+        return new Iso20022Generator(this.type, this.size, this.records, this.depth, this.selectivity, this.malformedEvery, seed);
+    }
+
+    /**
+     * The end to end id and the amount of every transaction.
+     */
+    public List<XmlTagPath> selectedPaths() {
+        return List.of(
+            new XmlTagPath(List.of(RECORD_ELEMENT, "EndToEndId"), "endToEndId", -1),
+            new XmlTagPath(List.of(RECORD_ELEMENT, this.type.amount), "amount", -1)
+        );
+    }
+
+    /**
+     * {@code count} paths: the selected ones first, then the other leaves of the transactions and, when more are
+     * needed, paths to elements that are never found.
+     */
+    public List<XmlTagPath> paths(final int count) {
+        final List<XmlTagPath> paths = new ArrayList<>(selectedPaths());
+        final List<List<String>> leaves = List.of(
+            List.of(RECORD_ELEMENT, "InstrId"),
+            List.of(RECORD_ELEMENT, "UETR"),
+            List.of(RECORD_ELEMENT, "CdtrAgt", "BICFI"),
+            List.of(RECORD_ELEMENT, "Cdtr", "Nm"),
+            List.of(RECORD_ELEMENT, "Cdtr", "TwnNm"),
+            List.of(RECORD_ELEMENT, "Cdtr", "Ctry"),
+            List.of(RECORD_ELEMENT, "CdtrAcct", "IBAN"),
+            List.of(RECORD_ELEMENT, "Purp", "Cd"),
+            List.of(RECORD_ELEMENT, "Ustrd"),
+            List.of(RECORD_ELEMENT, "Dbtr", "Nm"),
+            List.of(RECORD_ELEMENT, "DbtrAcct", "IBAN"),
+            List.of("GrpHdr", "MsgId"),
+            List.of("GrpHdr", "CreDtTm"),
+            List.of("PmtInf", "PmtInfId"),
+            List.of("PmtInf", "Dbtr", "Nm")
+        );
+        for (int leaf = 0; leaf < leaves.size() && paths.size() < count; leaf++) {
+            paths.add(new XmlTagPath(leaves.get(leaf), "leaf" + leaf, -1));
+        }
+        for (int missing = 0; paths.size() < count; missing++) {
+            paths.add(new XmlTagPath(List.of(RECORD_ELEMENT, "SplmtryData", "Prtry" + missing), "missing" + missing, -1));
+        }
+        return paths.subList(0, count);
+    }
+
+    public Statistics write(final Path file) throws IOException {
+        try (OutputStream output = Files.newOutputStream(file)) {
+            return write(output);
+        }
+    }
+
+    public Statistics write(final OutputStream output) throws IOException {
+        final SplittableRandom random = new SplittableRandom(this.seed);
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.US_ASCII), 1 << 16);
+        final Xml xml = new Xml();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Document xmlns=\"")
+            .append(this.type.namespace)
+            .append("\">");
+        // start and end of the document, the line break of the prolog and the start of the root
+        xml.events += 4;
+        xml.open(this.type.message);
+        header(xml);
+        long length = xml.flush(writer);
+
+        long record = 0;
+        while (record < this.records && length < this.size) {
+            if (this.type == MessageType.PAIN_001 && record % TRANSACTIONS_PER_PAYMENT == 0) {
+                if (record > 0) {
+                    xml.close("PmtInf");
+                }
+                payment(xml, record / TRANSACTIONS_PER_PAYMENT, random);
+            }
+            transaction(xml, record, random);
+            length += xml.flush(writer);
+            record++;
+        }
+        if (this.type == MessageType.PAIN_001 && record > 0) {
+            xml.close("PmtInf");
+        }
+        xml.close(this.type.message);
+        xml.close("Document");
+        xml.newLine();
+        length += xml.flush(writer);
+        writer.flush();
+        return new Statistics(length, record, xml.events);
+    }
+
+    private void header(final Xml xml) {
+        xml.open("GrpHdr");
+        xml.leaf("MsgId", "MSG-" + this.seed);
+        xml.leaf("CreDtTm", "2024-01-15T10:00:00");
+        if (this.records != Integer.MAX_VALUE) {
+            xml.leaf("NbOfTxs", String.valueOf(this.records));
+        }
+        if (this.type == MessageType.PACS_008) {
+            xml.open("SttlmInf");
+            xml.leaf("SttlmMtd", "CLRG");
+            xml.close("SttlmInf");
+        } else {
+            xml.open("InitgPty");
+            xml.leaf("Nm", "Initiating Party");
+            xml.close("InitgPty");
+        }
+        xml.close("GrpHdr");
+        xml.newLine();
+    }
+
+    private static void payment(
+        final Xml xml,
+        final long payment,
+        final SplittableRandom random
+    ) {
+        xml.open("PmtInf");
+        xml.leaf("PmtInfId", "PMT-" + payment);
+        xml.leaf("PmtMtd", "TRF");
+        xml.open("ReqdExctnDt");
+        xml.leaf("Dt", "2024-01-16");
+        xml.close("ReqdExctnDt");
+        party(xml, "Dbtr", random);
+        account(xml, "DbtrAcct", random);
+        agent(xml, "DbtrAgt", random);
+        xml.newLine();
+    }
+
+    private void transaction(
+        final Xml xml,
+        final long record,
+        final SplittableRandom random
+    ) {
+        final int start = xml.builder.length();
+        xml.open(RECORD_ELEMENT);
+        xml.open("PmtId");
+        xml.leaf("InstrId", "INSTR-" + record);
+        int selected = xml.leaf("EndToEndId", "E2E-" + record);
+        if (this.type == MessageType.PACS_008) {
+            xml.leaf("UETR", new UUID(random.nextLong(), random.nextLong()).toString());
+        }
+        xml.close("PmtId");
+        final String amount = random.nextInt(1, 100_000) + "." + random.nextInt(10, 100);
+        if (this.type == MessageType.PACS_008) {
+            selected += xml.leaf(this.type.amount, "Ccy", "EUR", amount);
+            xml.leaf("IntrBkSttlmDt", "2024-01-16");
+            xml.leaf("ChrgBr", "SLEV");
+            party(xml, "Dbtr", random);
+            account(xml, "DbtrAcct", random);
+            agent(xml, "DbtrAgt", random);
+        } else {
+            xml.open("Amt");
+            selected += xml.leaf(this.type.amount, "Ccy", "EUR", amount);
+            xml.close("Amt");
+        }
+        agent(xml, "CdtrAgt", random);
+        xml.open("Cdtr");
+        if (this.malformedEvery > 0 && record % this.malformedEvery == this.malformedEvery - 1) {
+            xml.append("<Nm>")
+                .append(name(random))
+                .append("</Nme>");
+            xml.events += 3;
+        } else {
+            xml.leaf("Nm", name(random));
+        }
+        xml.open("PstlAdr");
+        final int town = random.nextInt(TOWNS.length);
+        xml.leaf("TwnNm", TOWNS[town]);
+        xml.leaf("Ctry", COUNTRIES[town]);
+        xml.close("PstlAdr");
+        xml.close("Cdtr");
+        account(xml, "CdtrAcct", random);
+        xml.open("Purp");
+        xml.leaf("Cd", "SUPP");
+        xml.close("Purp");
+
+        xml.open("RmtInf");
+        xml.leaf("Ustrd", "Invoice " + record);
+        final double target = selected / this.selectivity;
+        for (int line = 0; xml.builder.length() - start < target; line++) {
+            remittance(xml, record, line, random);
+        }
+        xml.close("RmtInf");
+        if (this.depth > 0) {
+            xml.open("SplmtryData");
+            xml.open("Envlp");
+            for (int level = 0; level < this.depth; level++) {
+                xml.open("Lvl");
+            }
+            xml.leaf("Ref", "REF-" + record);
+            for (int level = 0; level < this.depth; level++) {
+                xml.close("Lvl");
+            }
+            xml.close("Envlp");
+            xml.close("SplmtryData");
+        }
+        xml.close(RECORD_ELEMENT);
+        xml.newLine();
+    }
+
+    private static void remittance(
+        final Xml xml,
+        final long record,
+        final int line,
+        final SplittableRandom random
+    ) {
+        xml.open("Strd");
+        xml.open("RfrdDocInf");
+        xml.open("Tp");
+        xml.open("CdOrPrtry");
+        xml.leaf("Cd", "CINV");
+        xml.close("CdOrPrtry");
+        xml.close("Tp");
+        xml.leaf("Nb", "INV-" + record + "-" + line);
+        xml.leaf("RltdDt", "2024-01-" + (10 + random.nextInt(20)));
+        xml.close("RfrdDocInf");
+        xml.open("RfrdDocAmt");
+        xml.leaf("DuePyblAmt", "Ccy", "EUR", random.nextInt(1, 10_000) + ".00");
+        xml.close("RfrdDocAmt");
+        xml.leaf("AddtlRmtInf", "Payment of invoice " + line + " for the services of the period");
+        xml.close("Strd");
+    }
+
+    private static void party(
+        final Xml xml,
+        final String element,
+        final SplittableRandom random
+    ) {
+        xml.open(element);
+        xml.leaf("Nm", name(random));
+        xml.close(element);
+    }
+
+    private static void account(
+        final Xml xml,
+        final String element,
+        final SplittableRandom random
+    ) {
+        final StringBuilder iban = new StringBuilder(COUNTRIES[random.nextInt(COUNTRIES.length)]);
+        for (int digit = 0; digit < 22; digit++) {
+            iban.append((char) ('0' + random.nextInt(10)));
+        }
+        xml.open(element);
+        xml.open("Id");
+        xml.leaf("IBAN", iban.toString());
+        xml.close("Id");
+        xml.close(element);
+    }
+
+    private static void agent(
+        final Xml xml,
+        final String element,
+        final SplittableRandom random
+    ) {
+        xml.open(element);
+        xml.open("FinInstnId");
+        xml.leaf("BICFI", BICS[random.nextInt(BICS.length)]);
+        xml.close("FinInstnId");
+        xml.close(element);
+    }
+
+    private static String name(final SplittableRandom random) {
+        return NAMES[random.nextInt(NAMES.length)] + " " + KINDS[random.nextInt(KINDS.length)] + " " + random.nextInt(1000);
+    }
+
+    /**
+     * Markup of the next piece of the document, with the count of the events a parser sees in it.
+     */
+    private static final class Xml {
+
+        private final StringBuilder builder = new StringBuilder(1 << 12);
+        private long events;
+
+        private StringBuilder append(final String text) {
+            return this.builder.append(text);
+        }
+
+        private void open(final String name) {
+            this.builder.append('<')
+                .append(name)
+                .append('>');
+            this.events++;
+        }
+
+        private void close(final String name) {
+            this.builder.append("</")
+                .append(name)
+                .append('>');
+            this.events++;
+        }
+
+        private void newLine() {
+            this.builder.append('\n');
+            this.events++;
+        }
+
+        /**
+         * @return the length of the element.
+         */
+        private int leaf(
+            final String name,
+            final String text
+        ) {
+            final int start = this.builder.length();
+            open(name);
+            this.builder.append(text);
+            this.events++;
+            close(name);
+            return this.builder.length() - start;
+        }
+
+        private int leaf(
+            final String name,
+            final String attribute,
+            final String value,
+            final String text
+        ) {
+            final int start = this.builder.length();
+            this.builder.append('<')
+                .append(name)
+                .append(' ')
+                .append(attribute)
+                .append("=\"")
+                .append(value)
+                .append("\">")
+                .append(text);
+            this.events += 2;
+            close(name);
+            return this.builder.length() - start;
+        }
+
+        private int flush(final Writer writer) throws IOException {
+            final int length = this.builder.length();
+            writer.append(this.builder);
+            this.builder.setLength(0);
+            return length;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.redelles.xmlextractor.benchmark;
+
+import com.redelles.xmlextractor.tag.TagExtractor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of documents where one transaction out of {@code malformedEvery} has a mismatched end tag, against the
+ * same document well formed (0). The engines recover or give up on their own terms, this measures what that costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MalformedInputBenchmark {
+
+    @Param({"EVENT", "CURSOR"})
+    public Engine engine;
+
+    @Param({"0", "1000", "10"})
+    public int malformedEvery;
+
+    @Param({"16"})
+    public long megabytes;
+
+    private Path file;
+    private Iso20022Generator.Statistics document;
+    private TagExtractor extractor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Iso20022Generator generator = new Iso20022Generator(Iso20022Generator.MessageType.PAIN_001)
+            .withSize(this.megabytes << 20)
+            .withMalformedEvery(this.malformedEvery);
+        this.file = Files.createTempFile("malformed", ".xml");
+        this.document = generator.write(this.file);
+        this.extractor = this.engine.create(generator.paths(8), List.of(), List.of());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(this.file);
+    }
+
+    @Benchmark
+    public void extract(
+        final ThroughputCounters counters,
+        final Blackhole blackhole
+    ) {
+        this.engine.extract(this.extractor, this.file, (key, value) -> blackhole.consume(value));
+        counters.extracted(this.document);
+    }
+}
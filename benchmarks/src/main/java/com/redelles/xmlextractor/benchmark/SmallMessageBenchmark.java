@@ -0,0 +1,63 @@
+package com.redelles.xmlextractor.benchmark;
+
+import com.redelles.xmlextractor.tag.TagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages per second extracting many small messages with the same extractor, where the setup of every extraction
+ * weighs as much as the parse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SmallMessageBenchmark {
+
+    @Param({"EVENT", "CURSOR"})
+    public Engine engine;
+
+    @Param({"PAIN_001", "PACS_008"})
+    public Iso20022Generator.MessageType messageType;
+
+    @Param({"1"})
+    public int records;
+
+    private byte[] message;
+    private Iso20022Generator.Statistics document;
+    private TagExtractor extractor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Iso20022Generator generator = new Iso20022Generator(this.messageType)
+            .withRecords(this.records);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        this.document = generator.write(output);
+        this.message = output.toByteArray();
+        final List<XmlTagPath> tagPaths = List.of(
+            new XmlTagPath(List.of("GrpHdr", "MsgId"), "MsgId", 1),
+            new XmlTagPath(List.of("GrpHdr", "NbOfTxs"), "NbOfTxs", 1),
+            generator.selectedPaths()
+                .get(1)
+        );
+        this.extractor = this.engine.create(tagPaths, List.of(), List.of());
+    }
+
+    @Benchmark
+    public void extract(
+        final ThroughputCounters counters,
+        final Blackhole blackhole
+    ) {
+        this.extractor.extract("message", new ByteArrayInputStream(this.message), (key, value) -> blackhole.consume(value));
+        counters.extracted(this.document);
+    }
+}
@@ -0,0 +1,121 @@
+package com.redelles.xmlextractor.benchmark;
+
+import com.redelles.xmlextractor.tag.TagExtractor;
+import com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.XMLEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Cost of the special extractors, which see every event of the document: {@code specials} extractors take the
+ * currency of every amount next to the two selected paths. The mapped engine falls back to the parser with them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SpecialExtractorBenchmark {
+
+    @Param({"EVENT", "CURSOR", "MAPPED"})
+    public Engine engine;
+
+    @Param({"0", "1", "4"})
+    public int specials;
+
+    @Param({"16"})
+    public long megabytes;
+
+    private Path file;
+    private Iso20022Generator.Statistics document;
+    private TagExtractor extractor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Iso20022Generator generator = new Iso20022Generator(Iso20022Generator.MessageType.PAIN_001)
+            .withSize(this.megabytes << 20);
+        this.file = Files.createTempFile("special", ".xml");
+        this.document = generator.write(this.file);
+        final List<AlternateTagExtractor> specialExtractors = IntStream.range(0, this.specials)
+            .<AlternateTagExtractor>mapToObj(special -> new CurrencyExtractor("currency" + special))
+            .toList();
+        this.extractor = this.engine.create(generator.selectedPaths(), List.of(), specialExtractors);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(this.file);
+    }
+
+    @Benchmark
+    public void extract(
+        final ThroughputCounters counters,
+        final Blackhole blackhole
+    ) {
+        this.engine.extract(this.extractor, this.file, (key, value) -> blackhole.consume(value));
+        counters.extracted(this.document);
+    }
+
+    /**
+     * Takes the currency attribute of every amount, with no limit.
+     */
+    private static final class CurrencyExtractor implements AlternateTagExtractor {
+
+        private static final QName CURRENCY = new QName("Ccy");
+
+        private final String key;
+
+        private CurrencyExtractor(final String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String key() {
+            return this.key;
+        }
+
+        @Override
+        public boolean isCompatible(final XMLEvent event) {
+            return event.isStartElement() && event.asStartElement()
+                .getName()
+                .getLocalPart()
+                .equals("InstdAmt");
+        }
+
+        @Override
+        public String extract(
+            final XMLEvent event,
+            final XMLEventReader reader
+        ) {
+            final Attribute currency = event.asStartElement()
+                .getAttributeByName(CURRENCY);
+            return currency == null ? null : currency.getValue();
+        }
+
+        @Override
+        public void decreaseTagCount() {
+            // unlimited
+        }
+
+        @Override
+        public boolean canContinueProcessing() {
+            return true;
+        }
+
+        @Override
+        public AlternateTagExtractor rebuild() {
+            return new CurrencyExtractor(this.key);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.redelles.xmlextractor.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary results of the throughput benchmarks: megabytes and XML events of the documents extracted, reported per
+ * second next to the operations. The events are also given to {@link AllocationPerEventProfiler}.
+ */
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class ThroughputCounters {
+
+    private static final double MEGABYTE = 1 << 20;
+
+    public double megabytes;
+    public long events;
+
+    public void extracted(final Iso20022Generator.Statistics document) {
+        this.megabytes += document.length() / MEGABYTE;
+        this.events += document.events();
+        AllocationPerEventProfiler.countEvents(document.events());
+    }
+}
@@ -0,0 +1,41 @@
+package com.redelles.xmlextractor;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Receives every extracted value as soon as it is complete, with the out key of the path (or special extractor) that
+ * found it. Nothing is kept by the extractor, so the memory used does not depend on the size of the document.
+ */
+@FunctionalInterface
+public interface ValueProcessor {
+
+    void processValue(
+        String outKey,
+        String value
+    );
+
+    /**
+     * Same as {@link #processValue(String, String)} but with a view of the value that is only valid during the call,
+     * keep {@code value.toString()} to use it later. Override it to read the values without creating a {@link String}
+     * for every one of them.
+     */
+    default void processText(
+        final String outKey,
+        final CharSequence value
+    ) {
+        processValue(outKey, value.toString());
+    }
+
+    /**
+     * Sends the values of every out key to its own consumer, the values of the keys without consumer are ignored.
+     */
+    static ValueProcessor byKey(final Map<String, ? extends Consumer<String>> consumers) {
+        return (outKey, value) -> {
+            final Consumer<String> consumer = consumers.get(outKey);
+            if (consumer != null) {
+                consumer.accept(value);
+            }
+        };
+    }
+}
@@ -0,0 +1,112 @@
+package com.redelles.xmlextractor.tag;
+
+import com.ctc.wstx.evt.DefaultEventAllocator;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.util.XMLEventAllocator;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link XMLEventReader} view of the {@link XMLStreamReader} used by {@link XmlTagCursorExtractor}, so the
+ * {@link com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor} can keep working with events. The events are
+ * only allocated when they are asked for.
+ */
+class CursorEventReader implements XMLEventReader {
+
+    private final XMLStreamReader reader;
+    private final XMLEventAllocator allocator;
+    private boolean peeked;
+
+    CursorEventReader(final XMLStreamReader reader) {
+        this.reader = reader;
+        this.allocator = DefaultEventAllocator.getDefaultInstance();
+    }
+
+    /**
+     * Moves the cursor to the next event, or keeps it where it is if that event was already peeked.
+     */
+    int advance() throws XMLStreamException {
+        if (this.peeked) {
+            this.peeked = false;
+            return this.reader.getEventType();
+        }
+        return this.reader.next();
+    }
+
+    XMLEvent current() throws XMLStreamException {
+        return this.allocator.allocate(this.reader);
+    }
+
+    @Override
+    public XMLEvent nextEvent() throws XMLStreamException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        advance();
+        return current();
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return this.peeked || this.reader.hasNext();
+        } catch (final XMLStreamException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public XMLEvent peek() throws XMLStreamException {
+        if (!this.peeked) {
+            if (!this.reader.hasNext()) {
+                return null;
+            }
+            this.reader.next();
+            this.peeked = true;
+        }
+        return current();
+    }
+
+    @Override
+    public String getElementText() throws XMLStreamException {
+        if (this.peeked) {
+            throw new XMLStreamException("Can not read the element text after a peek");
+        }
+        return this.reader.getElementText();
+    }
+
+    @Override
+    public XMLEvent nextTag() throws XMLStreamException {
+        if (this.peeked) {
+            this.peeked = false;
+            if (this.reader.isWhiteSpace()) {
+                this.reader.nextTag();
+            }
+            return current();
+        }
+        this.reader.nextTag();
+        return current();
+    }
+
+    @Override
+    public Object getProperty(final String name) {
+        return this.reader.getProperty(name);
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        this.reader.close();
+    }
+
+    @Override
+    public Object next() {
+        try {
+            return nextEvent();
+        } catch (final XMLStreamException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.redelles.xmlextractor.tag;
+
+import com.ctc.wstx.api.WstxInputProperties;
+import com.ctc.wstx.stax.WstxInputFactory;
+import com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor;
+import com.redelles.xmlextractor.tag.automaton.XmlTagPathAutomaton;
+import com.redelles.xmlextractor.tag.automaton.XmlTagPathMatcher;
+import com.redelles.xmlextractor.tag.metrics.ExtractionListener;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Everything an extraction needs that does not depend on the document, built once and shared by all the extractions
+ * and threads: the compiled paths, the stop tags, the special extractors and a configured {@link XMLInputFactory}.
+ * <p>
+ * The factory is created directly instead of with {@link XMLInputFactory#newInstance()}, which looks for the
+ * implementation every time. A Woodstox factory can be used from several threads once configured. Its lazy parsing is
+ * turned off: a malformed text or comment would only be found when the text is read, with an unchecked exception
+ * that no engine recovers from. Every token is parsed when the reader moves to it instead, so the error is the
+ * {@link XMLStreamException} of that move, as when the event reader parsed the stream itself.
+ * <p>
+ * The matcher of an extraction is kept by the thread when it ends, so the next extraction on the same thread only
+ * resets it.
+ * <p>
+ * The {@link ExtractionListener}, when there is one, receives the measures of every extraction done with the plan.
+ */
+public final class ExtractionPlan {
+
+    private final List<XmlTagPath> tagPaths;
+    private final Set<String> stopTags;
+    private final List<AlternateTagExtractor> specialExtractors;
+    private final SpecialProcessors.Triggers triggers;
+    private final List<String> keys;
+    private final XmlTagPathAutomaton automaton;
+    private final XMLInputFactory inputFactory;
+    private final ExtractionListener listener;
+    private final ThreadLocal<XmlTagPathMatcher> idleMatchers = new ThreadLocal<>();
+
+    public ExtractionPlan(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags,
+        final Collection<AlternateTagExtractor> specialExtractors
+    ) {
+        this(tagPaths, stopTags, specialExtractors, ExtractionListener.NONE);
+    }
+
+    public ExtractionPlan(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags,
+        final Collection<AlternateTagExtractor> specialExtractors,
+        final ExtractionListener listener
+    ) {
+        this.tagPaths = List.copyOf(tagPaths);
+        this.stopTags = Set.copyOf(stopTags);
+        this.specialExtractors = List.copyOf(specialExtractors);
+        this.triggers = this.specialExtractors.isEmpty()
+            ? SpecialProcessors.Triggers.none()
+            : new SpecialProcessors.Triggers(this.specialExtractors);
+        final Set<String> keys = new LinkedHashSet<>();
+        this.tagPaths.forEach(tagPath -> keys.add(tagPath.outKey));
+        this.specialExtractors.forEach(specialExtractor -> keys.add(specialExtractor.key()));
+        this.keys = List.copyOf(keys);
+        this.automaton = new XmlTagPathAutomaton(this.tagPaths);
+        this.inputFactory = new WstxInputFactory();
+        this.inputFactory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        this.inputFactory.setProperty(WstxInputProperties.P_LAZY_PARSING, Boolean.FALSE);
+        this.listener = listener;
+    }
+
+    public List<XmlTagPath> tagPaths() {
+        return this.tagPaths;
+    }
+
+    public List<AlternateTagExtractor> specialExtractors() {
+        return this.specialExtractors;
+    }
+
+    public boolean hasSpecialExtractors() {
+        return !this.specialExtractors.isEmpty();
+    }
+
+    public boolean isStopTag(final String elementName) {
+        return !this.stopTags.isEmpty() && this.stopTags.contains(elementName);
+    }
+
+    public ExtractionListener listener() {
+        return this.listener;
+    }
+
+    public XmlTagPathAutomaton automaton() {
+        return this.automaton;
+    }
+
+    /**
+     * Out keys of all the paths and special extractors, without repetitions.
+     */
+    public List<String> keys() {
+        return this.keys;
+    }
+
+    /**
+     * Empty result with a list for every key, sized so it never needs to grow.
+     */
+    public Map<String, Collection<String>> newResult() {
+        final Map<String, Collection<String>> result = HashMap.newHashMap(this.keys.size());
+        for (final String key : this.keys) {
+            result.put(key, new ArrayList<>());
+        }
+        return result;
+    }
+
+    /**
+     * Recorder of one extraction of the document, measuring it for the listener when there is one.
+     */
+    public ExtractionRecorder recorder(final String filename) {
+        return this.listener == ExtractionListener.NONE
+            ? ExtractionRecorder.NONE
+            : ExtractionRecorder.measuring(filename, this.listener);
+    }
+
+    XMLEventReader createEventReader(final XMLStreamReader reader) throws XMLStreamException {
+        return this.inputFactory.createXMLEventReader(reader);
+    }
+
+    XMLStreamReader createStreamReader(final InputStream inputStream) throws XMLStreamException {
+        return this.inputFactory.createXMLStreamReader(inputStream);
+    }
+
+    /**
+     * Moves the reader over the events that can not change the extraction, and stops on the first one that can: a
+     * start or end element moving some path, the end of a stop tag or the end of the document. Only valid when no path
+     * is writing, so the text can be ignored, and without special extractors, which can be interested in any event.
+     * <p>
+     * The paths match the tags by name at any depth, so the elements below an uninteresting one are still read, but
+     * only their name is looked at: no event, no text and no work for the matcher.
+     */
+    int skipIrrelevantEvents(
+        final XMLStreamReader reader,
+        final XmlTagPathMatcher matcher,
+        final ExtractionRecorder recorder
+    ) throws XMLStreamException {
+        while (true) {
+            final int eventType = reader.next();
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                if (matcher.isRelevant(reader.getLocalName())) {
+                    return eventType;
+                }
+            } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                final String elementName = reader.getLocalName();
+                if (matcher.isRelevant(elementName) || isStopTag(elementName)) {
+                    return eventType;
+                }
+            } else if (eventType == XMLStreamConstants.END_DOCUMENT) {
+                return eventType;
+            }
+            recorder.skipped();
+        }
+    }
+
+    /**
+     * Fresh copies of the special extractors, they keep counters so every extraction needs its own. The table of their
+     * triggers is built once and shared.
+     */
+    SpecialProcessors specialProcessors() {
+        final List<AlternateTagExtractor> specialProcessors = new ArrayList<>(this.specialExtractors.size());
+        this.specialExtractors.forEach(specialExtractor -> specialProcessors.add(specialExtractor.rebuild()));
+        return new SpecialProcessors(specialProcessors, this.triggers);
+    }
+
+    /**
+     * Matcher at its initial state, the one kept by this thread when there is one. Give it back with
+     * {@link #release(XmlTagPathMatcher)}; a nested extraction on the same thread gets a new one.
+     */
+    public XmlTagPathMatcher acquireMatcher() {
+        final XmlTagPathMatcher matcher = this.idleMatchers.get();
+        if (matcher == null) {
+            return this.automaton.matcher();
+        }
+        this.idleMatchers.set(null);
+        matcher.reset();
+        return matcher;
+    }
+
+    /**
+     * Gives back a matcher no longer used, it is kept for the next extraction on the thread releasing it.
+     */
+    public void release(final XmlTagPathMatcher matcher) {
+        this.idleMatchers.set(matcher);
+    }
+}
@@ -0,0 +1,257 @@
+package com.redelles.xmlextractor.tag;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.metrics.ExtractionListener;
+import com.redelles.xmlextractor.tag.metrics.ExtractionMetrics;
+import com.redelles.xmlextractor.tag.metrics.StopReason;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Measures an extraction for the {@link ExtractionListener} of the plan, got from
+ * {@link ExtractionPlan#recorder(String)}. Without listener the engines get {@link #NONE}, whose methods do nothing and
+ * are removed by the compiler, so there is nothing to pay.
+ * <p>
+ * The time is taken in laps: every call to {@link #parsed()}, {@link #matched()} or {@link #specialsCalled()} adds
+ * the time since the previous one to its phase.
+ */
+public class ExtractionRecorder {
+
+    static final ExtractionRecorder NONE = new ExtractionRecorder();
+
+    ExtractionRecorder() {
+    }
+
+    public InputStream input(final InputStream inputStream) {
+        return inputStream;
+    }
+
+    /**
+     * Bytes of the document were read.
+     */
+    public void read(final long bytes) {
+        // not measuring
+    }
+
+    public ValueProcessor processor(final ValueProcessor processor) {
+        return processor;
+    }
+
+    /**
+     * An event was read, the time since the last lap was spent parsing.
+     */
+    public void parsed() {
+        // not measuring
+    }
+
+    /**
+     * The reader moved over an event without giving it to the paths.
+     */
+    public void skipped() {
+        // not measuring
+    }
+
+    /**
+     * The event was given to the paths, the time since the last lap was spent matching.
+     */
+    public void matched() {
+        // not measuring
+    }
+
+    /**
+     * The event was given to the special extractors.
+     */
+    public void specialsCalled() {
+        // not measuring
+    }
+
+    public void recoveredError() {
+        // not measuring
+    }
+
+    /**
+     * Records why the extraction ended, only the first reason counts.
+     */
+    public void stopped(final StopReason reason) {
+        // not measuring
+    }
+
+    /**
+     * Sends the measures to the listener, an extraction that did not say why it ended failed.
+     */
+    public void finish() {
+        // not measuring
+    }
+
+    /**
+     * Stream giving the number of bytes of every read to the consumer, so one stream can be measured by several
+     * recorders.
+     */
+    static InputStream counting(
+        final InputStream inputStream,
+        final LongConsumer bytes
+    ) {
+        return new FilterInputStream(inputStream) {
+
+            @Override
+            public int read() throws IOException {
+                final int read = super.read();
+                if (read >= 0) {
+                    bytes.accept(1);
+                }
+                return read;
+            }
+
+            @Override
+            public int read(
+                final byte[] buffer,
+                final int offset,
+                final int length
+            ) throws IOException {
+                final int count = super.read(buffer, offset, length);
+                if (count > 0) {
+                    bytes.accept(count);
+                }
+                return count;
+            }
+
+            @Override
+            public long skip(final long count) throws IOException {
+                final long skipped = super.skip(count);
+                bytes.accept(skipped);
+                return skipped;
+            }
+        };
+    }
+
+    static ExtractionRecorder measuring(
+        final String filename,
+        final ExtractionListener listener
+    ) {
+        return new Measuring(filename, listener);
+    }
+
+    private static final class Measuring extends ExtractionRecorder {
+
+        private final String filename;
+        private final ExtractionListener listener;
+        private final long start = System.nanoTime();
+        private final Map<String, long[]> values = new HashMap<>();
+        private long lap = this.start;
+        private long bytes;
+        private long events;
+        private long parseNanos;
+        private long matchNanos;
+        private long specialNanos;
+        private long recoveredErrors;
+        private StopReason stopReason;
+
+        private Measuring(
+            final String filename,
+            final ExtractionListener listener
+        ) {
+            this.filename = filename;
+            this.listener = listener;
+        }
+
+        @Override
+        public InputStream input(final InputStream inputStream) {
+            return counting(inputStream, this::read);
+        }
+
+        @Override
+        public void read(final long bytes) {
+            this.bytes += bytes;
+        }
+
+        @Override
+        public ValueProcessor processor(final ValueProcessor processor) {
+            return new ValueProcessor() {
+
+                @Override
+                public void processValue(
+                    final String outKey,
+                    final String value
+                ) {
+                    count(outKey);
+                    processor.processValue(outKey, value);
+                }
+
+                @Override
+                public void processText(
+                    final String outKey,
+                    final CharSequence value
+                ) {
+                    count(outKey);
+                    processor.processText(outKey, value);
+                }
+            };
+        }
+
+        private void count(final String outKey) {
+            this.values.computeIfAbsent(outKey, key -> new long[1])[0]++;
+        }
+
+        @Override
+        public void parsed() {
+            this.events++;
+            final long now = System.nanoTime();
+            this.parseNanos += now - this.lap;
+            this.lap = now;
+        }
+
+        @Override
+        public void skipped() {
+            this.events++;
+        }
+
+        @Override
+        public void matched() {
+            final long now = System.nanoTime();
+            this.matchNanos += now - this.lap;
+            this.lap = now;
+        }
+
+        @Override
+        public void specialsCalled() {
+            final long now = System.nanoTime();
+            this.specialNanos += now - this.lap;
+            this.lap = now;
+        }
+
+        @Override
+        public void recoveredError() {
+            this.recoveredErrors++;
+        }
+
+        @Override
+        public void stopped(final StopReason reason) {
+            if (this.stopReason == null) {
+                this.stopReason = reason;
+            }
+        }
+
+        @Override
+        public void finish() {
+            final Map<String, Long> values = HashMap.newHashMap(this.values.size());
+            this.values.forEach((key, count) -> values.put(key, count[0]));
+            this.listener.extractionFinished(new ExtractionMetrics(
+                this.filename,
+                this.bytes,
+                this.events,
+                values,
+                this.parseNanos,
+                this.matchNanos,
+                this.specialNanos,
+                System.nanoTime() - this.start,
+                this.recoveredErrors,
+                this.stopReason == null ? StopReason.FAILED : this.stopReason
+            ));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.redelles.xmlextractor.tag;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Events read ahead of the parse by the special extractors of {@link MultiplexTagExtractor}. The extractors of every
+ * configuration read through their own {@link #view()}, from the event after the current one, and the events read are
+ * kept until the parse gets to them with {@link #poll()}, so reading ahead does not take them from the other
+ * configurations.
+ */
+final class LookaheadEvents {
+
+    private final CursorEventReader reader;
+    private final List<XMLEvent> events = new ArrayList<>();
+    private int next;
+
+    LookaheadEvents(final CursorEventReader reader) {
+        this.reader = reader;
+    }
+
+    boolean hasNext() {
+        return this.next < this.events.size() || this.reader.hasNext();
+    }
+
+    /**
+     * The next event read ahead, or null when there is none and the parse goes on with the reader.
+     */
+    XMLEvent poll() {
+        if (this.next < this.events.size()) {
+            return this.events.get(this.next++);
+        }
+        if (this.next > 0) {
+            this.events.clear();
+            this.next = 0;
+        }
+        return null;
+    }
+
+    /**
+     * Reader of the events after the current one, for the extractors of one configuration and one event.
+     */
+    View view() {
+        return new View();
+    }
+
+    private boolean hasEvent(final int index) {
+        return this.next + index < this.events.size() || this.reader.hasNext();
+    }
+
+    private XMLEvent event(final int index) throws XMLStreamException {
+        while (this.next + index >= this.events.size()) {
+            this.events.add(this.reader.nextEvent());
+        }
+        return this.events.get(this.next + index);
+    }
+
+    final class View implements XMLEventReader {
+
+        private int position;
+
+        /**
+         * Number of events read through the view.
+         */
+        int count() {
+            return this.position;
+        }
+
+        @Override
+        public XMLEvent nextEvent() throws XMLStreamException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return event(this.position++);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasEvent(this.position);
+        }
+
+        @Override
+        public XMLEvent peek() throws XMLStreamException {
+            return hasNext() ? event(this.position) : null;
+        }
+
+        @Override
+        public String getElementText() throws XMLStreamException {
+            final StringBuilder text = new StringBuilder();
+            while (true) {
+                final XMLEvent event = nextEvent();
+                if (event.isCharacters()) {
+                    text.append(event.asCharacters()
+                        .getData());
+                } else if (event.isEndElement()) {
+                    return text.toString();
+                } else if (event.isStartElement()) {
+                    throw new XMLStreamException("Element text with a child element", event.getLocation());
+                }
+            }
+        }
+
+        @Override
+        public XMLEvent nextTag() throws XMLStreamException {
+            while (true) {
+                final XMLEvent event = nextEvent();
+                if (event.isStartElement() || event.isEndElement()) {
+                    return event;
+                }
+                final boolean ignorable = event.isCharacters()
+                    ? event.asCharacters()
+                    .isWhiteSpace()
+                    : event.getEventType() == XMLStreamConstants.COMMENT
+                    || event.getEventType() == XMLStreamConstants.PROCESSING_INSTRUCTION;
+                if (!ignorable) {
+                    throw new XMLStreamException("Expected a start or end element", event.getLocation());
+                }
+            }
+        }
+
+        @Override
+        public Object getProperty(final String name) {
+            return LookaheadEvents.this.reader.getProperty(name);
+        }
+
+        /**
+         * Does nothing, the parse is shared.
+         */
+        @Override
+        public void close() {
+            // the parse goes on
+        }
+
+        @Override
+        public Object next() {
+            try {
+                return nextEvent();
+            } catch (final XMLStreamException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
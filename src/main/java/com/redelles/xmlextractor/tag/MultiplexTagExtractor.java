@@ -0,0 +1,311 @@
+package com.redelles.xmlextractor.tag;
+
+import com.ctc.wstx.exc.WstxEOFException;
+import com.ctc.wstx.exc.WstxParsingException;
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.automaton.XmlTagPathMatcher;
+import com.redelles.xmlextractor.tag.metrics.StopReason;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Runs several independent configurations, every one an {@link ExtractionPlan} with a name, over a single parse of the
+ * document, so it is read and tokenized once whatever the number of configurations. Every configuration has its own
+ * matcher, text and special extractors, and ends on its own stop tags or when its paths are exhausted, like with
+ * {@link XmlTagCursorExtractor}; the parse ends when all of them have ended.
+ * <p>
+ * The events are given to the configurations in the order they were named, and then to their special extractors, the
+ * stop tag of a configuration included. The parser is shared, so the special extractors of every configuration read
+ * ahead through their own view of the events ({@link LookaheadEvents}): the events they read are left out of their
+ * configuration, as with {@link XmlTagCursorExtractor}, and kept for the other configurations.
+ * <p>
+ * The bytes of the document are counted once and given to the listeners of the configurations still running.
+ */
+@Slf4j
+public class MultiplexTagExtractor {
+
+    private final Map<String, ExtractionPlan> configurations;
+
+    /**
+     * @throws IllegalArgumentException when there is no configuration
+     */
+    public MultiplexTagExtractor(final Map<String, ExtractionPlan> configurations) {
+        if (configurations.isEmpty()) {
+            throw new IllegalArgumentException("At least one configuration is needed");
+        }
+        this.configurations = Collections.unmodifiableMap(new LinkedHashMap<>(configurations));
+    }
+
+    public Set<String> names() {
+        return this.configurations.keySet();
+    }
+
+    /**
+     * Collects the values of every configuration by its name.
+     */
+    public Map<String, Map<String, Collection<String>>> extract(
+        final String filename,
+        final InputStream inputStream
+    ) {
+        final Map<String, Map<String, Collection<String>>> results = new LinkedHashMap<>();
+        final Map<String, ValueProcessor> processors = new HashMap<>();
+        this.configurations.forEach((name, plan) -> {
+            final Map<String, Collection<String>> result = plan.newResult();
+            results.put(name, result);
+            processors.put(name, (key, value) -> result.get(key)
+                .add(value));
+        });
+        extract(filename, inputStream, processors);
+        return results;
+    }
+
+    /**
+     * Sends the values of every configuration to the processor with its name.
+     *
+     * @throws IllegalArgumentException when a configuration has no processor
+     */
+    public void extract(
+        final String filename,
+        final InputStream inputStream,
+        final Map<String, ? extends ValueProcessor> processors
+    ) {
+        final List<Configuration> configurations = new ArrayList<>(this.configurations.size());
+        this.configurations.forEach((name, plan) -> {
+            final ValueProcessor processor = processors.get(name);
+            if (processor == null) {
+                throw new IllegalArgumentException("No processor for the configuration %s".formatted(name));
+            }
+            configurations.add(new Configuration(plan, filename, processor));
+        });
+        final InputStream counted = ExtractionRecorder.counting(
+            inputStream,
+            bytes -> configurations.forEach(configuration -> configuration.read(bytes))
+        );
+        try (InputStream input = counted) {
+            final XMLStreamReader reader = this.configurations.values()
+                .iterator()
+                .next()
+                .createStreamReader(input);
+            final CursorEventReader eventReader = new CursorEventReader(reader);
+            final LookaheadEvents lookahead = new LookaheadEvents(eventReader);
+            int active = configurations.size();
+            int exceptionsCount = 0;
+            while (active > 0 && lookahead.hasNext()) {
+                try {
+                    final XMLEvent readAhead = lookahead.poll();
+                    final int eventType = readAhead == null ? eventReader.advance() : readAhead.getEventType();
+                    for (final Configuration configuration : configurations) {
+                        configuration.stoppedOnEvent = false;
+                        configuration.readBySpecials = configuration.skipped > 0;
+                        if (configuration.readBySpecials) {
+                            configuration.skipped--;
+                        } else if (!configuration.isDone() && readAhead == null) {
+                            configuration.match(reader, eventType);
+                        } else if (!configuration.isDone()) {
+                            configuration.match(readAhead);
+                        }
+                    }
+                    final String localName = !isElement(eventType) ? null
+                        : readAhead == null ? reader.getLocalName() : localName(readAhead);
+                    XMLEvent event = readAhead;
+                    for (final Configuration configuration : configurations) {
+                        if ((!configuration.isDone() || configuration.stoppedOnEvent)
+                            && !configuration.readBySpecials && configuration.specials.isActive()) {
+                            final int[] candidates = configuration.specials.candidates(eventType, localName);
+                            if (candidates.length > 0) {
+                                event = event == null ? eventReader.current() : event;
+                                final LookaheadEvents.View view = lookahead.view();
+                                configuration.specials.process(candidates, configuration.processor, view, event);
+                                configuration.skipped = view.count();
+                            }
+                            configuration.recorder.specialsCalled();
+                        }
+                    }
+                    active = 0;
+                    for (final Configuration configuration : configurations) {
+                        if (!configuration.isDone()) {
+                            configuration.stopIfExhausted();
+                        }
+                        active += configuration.isDone() ? 0 : 1;
+                    }
+                    exceptionsCount = 0;
+                } catch (final WstxEOFException e) {
+                    log.warn(e.getMessage());
+                    configurations.forEach(configuration -> configuration.stop(StopReason.UNEXPECTED_END_OF_INPUT));
+                    active = 0;
+                } catch (final WstxParsingException e) {
+                    log.warn(e.getMessage());
+                    exceptionsCount++;
+                    for (final Configuration configuration : configurations) {
+                        if (!configuration.isDone()) {
+                            configuration.recoverError(exceptionsCount);
+                        }
+                    }
+                    if (exceptionsCount >= XmlTagExtractor.ERROR_LIMIT) {
+                        throw new XMLStreamException("Surpassed the limit of %s errors".formatted(XmlTagExtractor.ERROR_LIMIT));
+                    }
+                }
+            }
+            configurations.forEach(configuration -> configuration.stop(StopReason.END_OF_DOCUMENT));
+            reader.close();
+        } catch (final XMLStreamException | IOException e) {
+            log.warn("Error extracting values from the document {} with error: {}", filename, e.getMessage());
+            configurations.forEach(configuration -> configuration.stop(StopReason.FAILED));
+        } finally {
+            configurations.forEach(Configuration::finish);
+        }
+    }
+
+    private static boolean isElement(final int eventType) {
+        return eventType == XMLStreamConstants.START_ELEMENT || eventType == XMLStreamConstants.END_ELEMENT;
+    }
+
+    private static boolean isCharacters(final int eventType) {
+        return eventType == XMLStreamConstants.CHARACTERS || eventType == XMLStreamConstants.CDATA
+            || eventType == XMLStreamConstants.SPACE;
+    }
+
+    private static String localName(final XMLEvent event) {
+        final QName name = event.isStartElement()
+            ? event.asStartElement()
+            .getName()
+            : event.asEndElement()
+            .getName();
+        return name.getLocalPart();
+    }
+
+    /**
+     * One configuration during the extraction of a document.
+     */
+    private static final class Configuration {
+
+        private final ExtractionPlan plan;
+        private final ExtractionRecorder recorder;
+        private final ValueProcessor processor;
+        private final XmlTagPathMatcher matcher;
+        private final SpecialProcessors specials;
+        private final TextBuffer text = new TextBuffer();
+        private StopReason reason;
+        /**
+         * The configuration found its stop tag in the current event, which its special extractors still get.
+         */
+        private boolean stoppedOnEvent;
+        /**
+         * Events after the current one already read by the special extractors.
+         */
+        private int skipped;
+        /**
+         * The current event was read by the special extractors, so it is not matched.
+         */
+        private boolean readBySpecials;
+
+        private Configuration(
+            final ExtractionPlan plan,
+            final String filename,
+            final ValueProcessor processor
+        ) {
+            this.plan = plan;
+            this.recorder = plan.recorder(filename);
+            this.processor = this.recorder.processor(processor);
+            this.matcher = plan.acquireMatcher();
+            this.specials = plan.specialProcessors();
+        }
+
+        private boolean isDone() {
+            return this.reason != null;
+        }
+
+        private void match(
+            final XMLStreamReader reader,
+            final int eventType
+        ) {
+            this.recorder.parsed();
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                this.text.flush(this.processor, this.matcher);
+                this.matcher.start(reader.getLocalName());
+                TargetValues.write(this.matcher, this.processor, reader);
+            } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                this.text.flush(this.processor, this.matcher);
+                final String elementName = reader.getLocalName();
+                this.matcher.end(elementName);
+                stopOn(elementName);
+            } else if (isCharacters(eventType) && this.matcher.isWriting()) {
+                this.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+            this.recorder.matched();
+        }
+
+        /**
+         * Same as {@link #match(XMLStreamReader, int)} for an event read ahead by a special extractor.
+         */
+        private void match(final XMLEvent event) {
+            this.recorder.parsed();
+            if (event.isStartElement()) {
+                this.text.flush(this.processor, this.matcher);
+                this.matcher.start(localName(event));
+                TargetValues.write(this.matcher, this.processor, event.asStartElement());
+            } else if (event.isEndElement()) {
+                this.text.flush(this.processor, this.matcher);
+                final String elementName = localName(event);
+                this.matcher.end(elementName);
+                stopOn(elementName);
+            } else if (isCharacters(event.getEventType()) && this.matcher.isWriting()) {
+                this.text.append(event.asCharacters()
+                    .getData());
+            }
+            this.recorder.matched();
+        }
+
+        private void stopOn(final String elementName) {
+            if (this.plan.isStopTag(elementName)) {
+                this.reason = StopReason.STOP_TAG;
+                this.stoppedOnEvent = true;
+            }
+        }
+
+        private void read(final long bytes) {
+            if (!isDone()) {
+                this.recorder.read(bytes);
+            }
+        }
+
+        private void stopIfExhausted() {
+            if (this.matcher.isExhausted() && !this.plan.hasSpecialExtractors()) {
+                this.reason = StopReason.PATHS_EXHAUSTED;
+            }
+        }
+
+        private void recoverError(final int exceptionsCount) {
+            this.matcher.decreaseReadyTagCounts();
+            if (exceptionsCount >= XmlTagExtractor.ERROR_LIMIT) {
+                this.reason = StopReason.ERROR_LIMIT;
+            } else {
+                this.recorder.recoveredError();
+            }
+        }
+
+        /**
+         * Ends the configuration, if it did not end before, writing the text still pending.
+         */
+        private void stop(final StopReason reason) {
+            if (this.reason == null) {
+                this.text.flush(this.processor, this.matcher);
+                this.reason = reason;
+            }
+        }
+
+        private void finish() {
+            this.recorder.stopped(this.reason);
+            this.recorder.finish();
+            this.plan.release(this.matcher);
+        }
+    }
+}
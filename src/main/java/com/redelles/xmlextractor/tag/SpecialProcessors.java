@@ -0,0 +1,187 @@
+package com.redelles.xmlextractor.tag;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.events.XMLEvent;
+import java.util.*;
+
+/**
+ * The special extractors of one extraction, with their own counters, and the table saying which of them can be
+ * interested in an event. Only those are asked with {@link AlternateTagExtractor#isCompatible(XMLEvent)}, in the order
+ * they were configured; the extractors without triggers are asked about every event, as always.
+ * <p>
+ * All the candidates are asked before any of them extracts, because an extractor can move the reader. An extractor is
+ * left out once it can not continue.
+ */
+final class SpecialProcessors {
+
+    private static final int EVENT_TYPES = XMLStreamConstants.ENTITY_DECLARATION + 1;
+
+    private final List<AlternateTagExtractor> processors;
+    private final Triggers triggers;
+    private final boolean[] finished;
+    private final int[] compatible;
+    private int active;
+
+    SpecialProcessors(
+        final List<AlternateTagExtractor> processors,
+        final Triggers triggers
+    ) {
+        this.processors = processors;
+        this.triggers = triggers;
+        this.finished = new boolean[processors.size()];
+        this.compatible = new int[processors.size()];
+        this.active = processors.size();
+    }
+
+    boolean isActive() {
+        return this.active > 0;
+    }
+
+    /**
+     * Extractors that can be interested in an event of this type, {@code localName} is only looked at for the start
+     * and end elements.
+     */
+    int[] candidates(
+        final int eventType,
+        final String localName
+    ) {
+        return this.triggers.candidates(eventType, localName);
+    }
+
+    int[] candidates(final XMLEvent event) {
+        final int eventType = event.getEventType();
+        if (eventType == XMLStreamConstants.START_ELEMENT) {
+            return candidates(eventType, event.asStartElement()
+                .getName()
+                .getLocalPart());
+        }
+        if (eventType == XMLStreamConstants.END_ELEMENT) {
+            return candidates(eventType, event.asEndElement()
+                .getName()
+                .getLocalPart());
+        }
+        return candidates(eventType, null);
+    }
+
+    void process(
+        final int[] candidates,
+        final ValueProcessor processor,
+        final XMLEventReader eventReader,
+        final XMLEvent event
+    ) {
+        int count = 0;
+        for (final int candidate : candidates) {
+            if (!this.finished[candidate] && this.processors.get(candidate)
+                .isCompatible(event)) {
+                this.compatible[count++] = candidate;
+            }
+        }
+        for (int index = 0; index < count; index++) {
+            final AlternateTagExtractor extractor = this.processors.get(this.compatible[index]);
+            final String extract = extractor.extract(event, eventReader);
+            if (StringUtils.isNotBlank(extract)) {
+                processor.processValue(extractor.key(), extract);
+                extractor.decreaseTagCount();
+                if (!extractor.canContinueProcessing()) {
+                    this.finished[this.compatible[index]] = true;
+                    this.active--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Numbers of the extractors to ask for every event type, and for every element name of the start and end
+     * elements, built once from the configured extractors.
+     */
+    static final class Triggers {
+
+        private static final Triggers NONE = new Triggers(List.of());
+
+        private final int[][] byType = new int[EVENT_TYPES][];
+        private final List<Map<String, int[]>> byName = new ArrayList<>(EVENT_TYPES);
+
+        Triggers(final List<AlternateTagExtractor> extractors) {
+            final List<Set<String>> names = new ArrayList<>();
+            for (final AlternateTagExtractor extractor : extractors) {
+                names.add(extractor.triggerElementNames());
+            }
+            for (int eventType = 0; eventType < EVENT_TYPES; eventType++) {
+                final boolean element = isElement(eventType);
+                final List<Integer> unnamed = new ArrayList<>();
+                final Set<String> allNames = new HashSet<>();
+                for (int extractor = 0; extractor < extractors.size(); extractor++) {
+                    if (!isTriggered(extractors.get(extractor), eventType)) {
+                        continue;
+                    }
+                    if (element && !names.get(extractor)
+                        .isEmpty()) {
+                        allNames.addAll(names.get(extractor));
+                    } else {
+                        unnamed.add(extractor);
+                    }
+                }
+                this.byType[eventType] = toArray(unnamed);
+                final Map<String, int[]> byName = new HashMap<>();
+                for (final String name : allNames) {
+                    final List<Integer> candidates = new ArrayList<>();
+                    for (int extractor = 0; extractor < extractors.size(); extractor++) {
+                        if (isTriggered(extractors.get(extractor), eventType) && (names.get(extractor)
+                            .isEmpty() || names.get(extractor)
+                            .contains(name))) {
+                            candidates.add(extractor);
+                        }
+                    }
+                    byName.put(name, toArray(candidates));
+                }
+                this.byName.add(byName);
+            }
+        }
+
+        static Triggers none() {
+            return NONE;
+        }
+
+        int[] candidates(
+            final int eventType,
+            final String localName
+        ) {
+            if (eventType < 0 || eventType >= EVENT_TYPES) {
+                return this.byType[0];
+            }
+            if (localName != null && isElement(eventType)) {
+                final int[] named = this.byName.get(eventType)
+                    .get(localName);
+                if (named != null) {
+                    return named;
+                }
+            }
+            return this.byType[eventType];
+        }
+
+        private static boolean isTriggered(
+            final AlternateTagExtractor extractor,
+            final int eventType
+        ) {
+            final Set<Integer> eventTypes = extractor.triggerEventTypes();
+            return eventTypes.isEmpty() || eventTypes.contains(eventType);
+        }
+
+        private static boolean isElement(final int eventType) {
+            return eventType == XMLStreamConstants.START_ELEMENT || eventType == XMLStreamConstants.END_ELEMENT;
+        }
+
+        private static int[] toArray(final List<Integer> extractors) {
+            final int[] array = new int[extractors.size()];
+            for (int index = 0; index < array.length; index++) {
+                array[index] = extractors.get(index);
+            }
+            return array;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.redelles.xmlextractor.tag;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.store.CompactStorage;
+import com.redelles.xmlextractor.tag.store.CompactValues;
+
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Extracts the values of the configured {@link XmlTagPath} from a XML document. The input stream is always closed.
+ */
+public interface TagExtractor {
+
+    /**
+     * Out keys of all the configured paths and special extractors.
+     */
+    Collection<String> keys();
+
+    /**
+     * Sends every value to the processor as soon as the parser finds it, in document order.
+     */
+    void extract(
+        String filename,
+        InputStream inputStream,
+        ValueProcessor processor
+    );
+
+    /**
+     * Collects all the values of the document, every key is present even when no value was found.
+     */
+    default Map<String, Collection<String>> extract(
+        final String filename,
+        final InputStream inputStream
+    ) {
+        final Map<String, Collection<String>> result = new HashMap<>();
+        keys().forEach(key -> result.put(key, new ArrayList<>()));
+        extract(filename, inputStream, (key, value) -> result.get(key)
+            .add(value));
+        return result;
+    }
+
+    /**
+     * Collects all the values of the document outside the heap, in {@link CompactValues} of the storage, for results
+     * too big for the heap. The values are only valid until the storage is closed.
+     */
+    default Map<String, Collection<String>> extract(
+        final String filename,
+        final InputStream inputStream,
+        final CompactStorage storage
+    ) {
+        final Map<String, CompactValues> values = new HashMap<>();
+        keys().forEach(key -> values.put(key, storage.newValues()));
+        extract(filename, inputStream, new ValueProcessor() {
+
+            @Override
+            public void processValue(
+                final String outKey,
+                final String value
+            ) {
+                values.get(outKey)
+                    .add(value);
+            }
+
+            @Override
+            public void processText(
+                final String outKey,
+                final CharSequence value
+            ) {
+                values.get(outKey)
+                    .add(value);
+            }
+        });
+        return new HashMap<>(values);
+    }
+
+}
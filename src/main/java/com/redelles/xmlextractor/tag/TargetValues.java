@@ -0,0 +1,106 @@
+package com.redelles.xmlextractor.tag;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.automaton.XmlTagPathMatcher;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import java.util.Iterator;
+
+/**
+ * Writes the attributes and namespaces taken by the paths completed by a start element, right when the element starts.
+ * Only the paths with a target look at the element, the others cost nothing. The attribute names are compared by local
+ * name and ignoring case, like the element names; a missing attribute or an element without namespace or prefix
+ * writes nothing.
+ */
+final class TargetValues {
+
+    private TargetValues() {
+    }
+
+    static void write(
+        final XmlTagPathMatcher matcher,
+        final ValueProcessor processor,
+        final XMLStreamReader reader
+    ) {
+        for (final int path : matcher.startedTargets()) {
+            if (!matcher.canWrite(path)) {
+                continue;
+            }
+            final XmlTagPath tagPath = matcher.tagPath(path);
+            final String value = switch (tagPath.target) {
+                case ATTRIBUTE -> attribute(reader, tagPath.attribute);
+                case NAMESPACE -> nullIfEmpty(reader.getNamespaceURI());
+                case PREFIX -> nullIfEmpty(reader.getPrefix());
+                case TEXT -> null;
+            };
+            write(matcher, processor, path, value);
+        }
+    }
+
+    static void write(
+        final XmlTagPathMatcher matcher,
+        final ValueProcessor processor,
+        final StartElement element
+    ) {
+        for (final int path : matcher.startedTargets()) {
+            if (!matcher.canWrite(path)) {
+                continue;
+            }
+            final XmlTagPath tagPath = matcher.tagPath(path);
+            final QName name = element.getName();
+            final String value = switch (tagPath.target) {
+                case ATTRIBUTE -> attribute(element, tagPath.attribute);
+                case NAMESPACE -> nullIfEmpty(name.getNamespaceURI());
+                case PREFIX -> nullIfEmpty(name.getPrefix());
+                case TEXT -> null;
+            };
+            write(matcher, processor, path, value);
+        }
+    }
+
+    private static void write(
+        final XmlTagPathMatcher matcher,
+        final ValueProcessor processor,
+        final int path,
+        final String value
+    ) {
+        if (value != null) {
+            processor.processValue(matcher.tagPath(path).outKey, value);
+            matcher.written(path);
+        }
+    }
+
+    private static String nullIfEmpty(final String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static String attribute(
+        final XMLStreamReader reader,
+        final String name
+    ) {
+        for (int attribute = 0; attribute < reader.getAttributeCount(); attribute++) {
+            if (name.equalsIgnoreCase(reader.getAttributeLocalName(attribute))) {
+                return reader.getAttributeValue(attribute);
+            }
+        }
+        return null;
+    }
+
+    private static String attribute(
+        final StartElement element,
+        final String name
+    ) {
+        final Iterator<?> attributes = element.getAttributes();
+        while (attributes.hasNext()) {
+            final Attribute attribute = (Attribute) attributes.next();
+            if (name.equalsIgnoreCase(attribute.getName()
+                .getLocalPart())) {
+                return attribute.getValue();
+            }
+        }
+        return null;
+    }
+}
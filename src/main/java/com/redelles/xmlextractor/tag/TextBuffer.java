@@ -0,0 +1,109 @@
+package com.redelles.xmlextractor.tag;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.automaton.XmlTagPathMatcher;
+
+import java.util.Arrays;
+
+/**
+ * Text found since the last start or end element. The parser can give a single text in several pieces (at the end of
+ * its buffer, around entities or comments); they are joined here and written as one value when the next element
+ * starts or ends. The paths ready to write can only change on those events, so one buffer serves all of them.
+ * <p>
+ * The buffer is handed to the processors as a {@link CharSequence} view, trimmed in place. The {@link String} is only
+ * built when someone asks for it, and then shared by all the paths writing the same text.
+ */
+public final class TextBuffer implements CharSequence {
+
+    private char[] characters = new char[64];
+    private int start;
+    private int end;
+    private boolean found;
+    private String text;
+
+    public void append(
+        final char[] source,
+        final int offset,
+        final int length
+    ) {
+        ensureCapacity(length);
+        System.arraycopy(source, offset, this.characters, this.end, length);
+        this.end += length;
+        this.found = true;
+    }
+
+    public void append(final String source) {
+        ensureCapacity(source.length());
+        source.getChars(0, source.length(), this.characters, this.end);
+        this.end += source.length();
+        this.found = true;
+    }
+
+    private void ensureCapacity(final int length) {
+        if (this.end + length > this.characters.length) {
+            this.characters = Arrays.copyOf(this.characters, Math.max(this.end + length, this.characters.length * 2));
+        }
+    }
+
+    /**
+     * Writes the text found, trimmed, to every path ready to write it and empties the buffer. Nothing is written when
+     * no text was found, not even an empty value.
+     */
+    public void flush(
+        final ValueProcessor processor,
+        final XmlTagPathMatcher matcher
+    ) {
+        if (!this.found) {
+            return;
+        }
+        trim();
+        for (final int path : matcher.readyPaths()) {
+            if (matcher.canWrite(path)) {
+                processor.processText(matcher.tagPath(path).outKey, this);
+                matcher.written(path);
+            }
+        }
+        this.start = 0;
+        this.end = 0;
+        this.found = false;
+        this.text = null;
+    }
+
+    private void trim() {
+        while (this.start < this.end && this.characters[this.start] <= ' ') {
+            this.start++;
+        }
+        while (this.end > this.start && this.characters[this.end - 1] <= ' ') {
+            this.end--;
+        }
+    }
+
+    @Override
+    public int length() {
+        return this.end - this.start;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return this.characters[this.start + index];
+    }
+
+    @Override
+    public CharSequence subSequence(
+        final int from,
+        final int to
+    ) {
+        return toString().substring(from, to);
+    }
+
+    @Override
+    public String toString() {
+        if (this.text == null) {
+            this.text = new String(this.characters, this.start, length());
+        }
+        return this.text;
+    }
+}
@@ -0,0 +1,248 @@
+package com.redelles.xmlextractor.tag;
+
+import com.ctc.wstx.exc.WstxEOFException;
+import com.ctc.wstx.exc.WstxParsingException;
+import lombok.extern.slf4j.Slf4j;
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor;
+import com.redelles.xmlextractor.tag.automaton.XmlTagPathMatcher;
+import com.redelles.xmlextractor.tag.metrics.StopReason;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Same extraction than {@link XmlTagExtractor} but reading the document with the cursor API ({@link XMLStreamReader}),
+ * so no event object is created for every start tag, end tag or text.
+ * <p>
+ * The element names given by the parser are the ones kept in its symbol table, and the text is copied from the parser
+ * buffer to a {@link TextBuffer} only when some path is ready to write it. The events are only allocated when some
+ * {@link AlternateTagExtractor} can be interested in them, because they work with
+ * {@link javax.xml.stream.events.XMLEvent}.
+ */
+@Slf4j
+public class XmlTagCursorExtractor implements TagExtractor {
+
+    private final ExtractionPlan plan;
+
+    public XmlTagCursorExtractor(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags,
+        final Collection<AlternateTagExtractor> specialExtractors
+    ) {
+        this(new ExtractionPlan(tagPaths, stopTags, specialExtractors));
+    }
+
+    public XmlTagCursorExtractor(final ExtractionPlan plan) {
+        this.plan = plan;
+    }
+
+    @Override
+    public Collection<String> keys() {
+        return this.plan.keys();
+    }
+
+    @Override
+    public Map<String, Collection<String>> extract(
+        final String filename,
+        final InputStream inputStream
+    ) {
+        final Map<String, Collection<String>> result = this.plan.newResult();
+        extract(filename, inputStream, (key, value) -> result.get(key)
+            .add(value));
+        return result;
+    }
+
+    @Override
+    public void extract(
+        final String filename,
+        final InputStream inputStream,
+        final ValueProcessor processor
+    ) {
+        extractFragment(filename, inputStream, 0, processor);
+    }
+
+    /**
+     * Extracts a fragment of a bigger document. The fragment starts with the start tags of its {@code contextElements}
+     * ancestors: they move the paths as usual, but they are not given to the special extractors because they were
+     * already seen by whoever extracted the part of the document where they really are.
+     *
+     * @return true when the extraction ended because a stop tag was found.
+     */
+    public boolean extractFragment(
+        final String filename,
+        final InputStream inputStream,
+        final int contextElements,
+        final ValueProcessor valueProcessor
+    ) {
+        final XmlTagPathMatcher matcher = this.plan.acquireMatcher();
+        try {
+            return extract(filename, inputStream, contextElements, false, matcher, valueProcessor, null)
+                == StopReason.STOP_TAG;
+        } finally {
+            this.plan.release(matcher);
+        }
+    }
+
+    /**
+     * Extracts a segment of a document with a matcher that is already where the segment starts, as left by the
+     * extraction of the previous segment or restored from a checkpoint. The segment starts with the start tags of its
+     * {@code contextElements} ancestors, which do not move the matcher, and it can end with elements still open: the
+     * end of the input is the end of the segment, not an error.
+     *
+     * @return why the extraction of the segment ended, {@link StopReason#END_OF_DOCUMENT} when all of it was read.
+     */
+    public StopReason extractSegment(
+        final String filename,
+        final InputStream inputStream,
+        final int contextElements,
+        final XmlTagPathMatcher matcher,
+        final ValueProcessor valueProcessor
+    ) {
+        return extract(filename, inputStream, contextElements, true, matcher, valueProcessor, null);
+    }
+
+    /**
+     * Same as {@link #extractSegment(String, InputStream, int, XmlTagPathMatcher, ValueProcessor)} but the first parse
+     * error is not recovered event by event: it is given to {@code malformed} and the extraction of the segment ends
+     * with {@link StopReason#MALFORMED_INPUT}, leaving the matcher where the error was.
+     */
+    public StopReason extractSegment(
+        final String filename,
+        final InputStream inputStream,
+        final int contextElements,
+        final XmlTagPathMatcher matcher,
+        final ValueProcessor valueProcessor,
+        final Consumer<XMLStreamException> malformed
+    ) {
+        return extract(filename, inputStream, contextElements, true, matcher, valueProcessor, malformed);
+    }
+
+    private StopReason extract(
+        final String filename,
+        final InputStream inputStream,
+        final int contextElements,
+        final boolean segment,
+        final XmlTagPathMatcher matcher,
+        final ValueProcessor valueProcessor,
+        final Consumer<XMLStreamException> malformed
+    ) {
+        final ExtractionRecorder recorder = this.plan.recorder(filename);
+        final ValueProcessor processor = recorder.processor(valueProcessor);
+        final SpecialProcessors specialProcessors = this.plan.specialProcessors();
+        final TextBuffer text = new TextBuffer();
+
+        StopReason reason = null;
+        try (InputStream input = recorder.input(inputStream)) {
+            final XMLStreamReader reader = this.plan.createStreamReader(input);
+            recorder.parsed();
+            final CursorEventReader eventReader = new CursorEventReader(reader);
+            boolean shouldStop = false;
+            int exceptionsCount = 0;
+            int pendingContext = contextElements;
+            final boolean skipping = !this.plan.hasSpecialExtractors();
+            while (eventReader.hasNext() && !shouldStop) {
+                try {
+                    final int eventType = skipping && pendingContext == 0 && !matcher.isWriting()
+                        ? this.plan.skipIrrelevantEvents(reader, matcher, recorder)
+                        : eventReader.advance();
+                    recorder.parsed();
+
+                    if (eventType == XMLStreamConstants.START_ELEMENT) {
+                        text.flush(processor, matcher);
+                        if (pendingContext > 0) {
+                            if (!segment) {
+                                matcher.start(reader.getLocalName());
+                            }
+                            pendingContext--;
+                            recorder.matched();
+                            continue;
+                        }
+                        matcher.start(reader.getLocalName());
+                        TargetValues.write(matcher, processor, reader);
+                    } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                        text.flush(processor, matcher);
+                        final String elementName = reader.getLocalName();
+                        matcher.end(elementName);
+                        if (this.plan.isStopTag(elementName)) {
+                            reason = StopReason.STOP_TAG;
+                            shouldStop = true;
+                        }
+                    } else if (isCharacters(eventType) && matcher.isWriting()) {
+                        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    recorder.matched();
+
+                    if (specialProcessors.isActive()) {
+                        final int[] candidates = specialProcessors.candidates(
+                            eventType,
+                            isElement(eventType) ? reader.getLocalName() : null
+                        );
+                        if (candidates.length > 0) {
+                            specialProcessors.process(candidates, processor, eventReader, eventReader.current());
+                        }
+                        recorder.specialsCalled();
+                    }
+
+                    shouldStop = shouldStop || (matcher.isExhausted() && !this.plan.hasSpecialExtractors());
+                    exceptionsCount = 0;
+                } catch (final WstxEOFException e) {
+                    if (!segment) {
+                        log.warn(e.getMessage());
+                        reason = StopReason.UNEXPECTED_END_OF_INPUT;
+                    }
+                    shouldStop = true;
+                } catch (final WstxParsingException e) {
+                    if (malformed != null) {
+                        malformed.accept(e);
+                        reason = StopReason.MALFORMED_INPUT;
+                        shouldStop = true;
+                        continue;
+                    }
+                    log.warn(e.getMessage());
+                    exceptionsCount++;
+                    matcher.decreaseReadyTagCounts();
+                    if (exceptionsCount >= XmlTagExtractor.ERROR_LIMIT) {
+                        reason = StopReason.ERROR_LIMIT;
+                        throw new XMLStreamException("Surpassed the limit of %s errors".formatted(XmlTagExtractor.ERROR_LIMIT));
+                    }
+                    recorder.recoveredError();
+                }
+            }
+
+            text.flush(processor, matcher);
+            if (reason == null) {
+                reason = matcher.isExhausted() && !this.plan.hasSpecialExtractors()
+                    ? StopReason.PATHS_EXHAUSTED
+                    : StopReason.END_OF_DOCUMENT;
+            }
+            reader.close();
+        } catch (final XMLStreamException | IOException e) {
+            log.warn("Error extracting values from the document {} with error: {}", filename, e.getMessage());
+            if (reason == null) {
+                reason = StopReason.FAILED;
+            }
+            text.flush(processor, matcher);
+        } finally {
+            recorder.stopped(reason);
+            recorder.finish();
+        }
+        return reason;
+    }
+
+    private static boolean isCharacters(final int eventType) {
+        return eventType == XMLStreamConstants.CHARACTERS
+            || eventType == XMLStreamConstants.CDATA
+            || eventType == XMLStreamConstants.SPACE;
+    }
+
+    private static boolean isElement(final int eventType) {
+        return eventType == XMLStreamConstants.START_ELEMENT || eventType == XMLStreamConstants.END_ELEMENT;
+    }
+
+}
@@ -1,39 +1,213 @@
 package com.redelles.xmlextractor.tag;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Element names to follow and what to take from the last one. The last tag can be a target instead of an element:
+ * {@code "@name"} takes the attribute with that name, {@code "#namespace"} the namespace URI of the element and
+ * {@code "#prefix"} its prefix. Without target the text of the element is taken.
+ * <p>
+ * The element names are followed at any depth, one inside the other. A path with {@code "*"} (any element) or
+ * {@code "//"} (any depth) is a {@link #pattern} instead: every element must be a child of the previous one unless
+ * there is a {@code "//"} between them, and {@code "*"} stands for exactly one element. The first element of any path
+ * can be at any depth.
+ * <p>
+ * The {@link #type} tells what the values are, so they can be parsed into primitive columns by
+ * {@link com.redelles.xmlextractor.tag.typed.TypedColumns} instead of being kept as strings. It does not change the
+ * extraction. The {@link #aggregations} are computed while extracting by
+ * {@link com.redelles.xmlextractor.tag.aggregate.Aggregates}, so only the totals are kept instead of every value.
+ */
 public class XmlTagPath {
 
+    public static final String NAMESPACE_TARGET = "#namespace";
+    public static final String PREFIX_TARGET = "#prefix";
+    public static final String ANY_ELEMENT = "*";
+    public static final String ANY_DEPTH = "//";
+
+    public enum Target {
+        TEXT,
+        ATTRIBUTE,
+        NAMESPACE,
+        PREFIX
+    }
+
+    public enum Type {
+        TEXT,
+        /**
+         * Integer number, with optional sign, that fits in a {@code long}.
+         */
+        LONG,
+        /**
+         * Decimal number without exponent, like {@code "-1234.50"}, kept exactly.
+         */
+        DECIMAL,
+        /**
+         * ISO date, {@code "2024-01-31"}, with an optional time zone that is ignored.
+         */
+        DATE,
+        /**
+         * ISO date and time, {@code "2024-01-31T10:15:30.5+01:00"}, in UTC when it has no time zone.
+         */
+        DATE_TIME,
+        /**
+         * One of a small set of codes, like a currency or a status.
+         */
+        CODE
+    }
+
+    public enum Aggregation {
+        /**
+         * Number of values.
+         */
+        COUNT,
+        /**
+         * Exact sum, only for {@link Type#LONG} and {@link Type#DECIMAL}.
+         */
+        SUM,
+        MIN,
+        MAX,
+        /**
+         * Approximate number of different values, with a few kilobytes of memory.
+         */
+        DISTINCT
+    }
+
     public final List<String> tags;
     public final String outKey;
     /**
      * How many times can appear in the document. If less than 0, there not limit.
      */
     public final int times;
+    /**
+     * The tags that are element names, all of them but the target. In a pattern they can be {@link #ANY_ELEMENT} and
+     * {@link #ANY_DEPTH}, never the first or last one nor two {@link #ANY_DEPTH} together.
+     */
+    public final List<String> elements;
+    /**
+     * True when the elements have {@link #ANY_ELEMENT} or {@link #ANY_DEPTH}, so they are matched by depth.
+     */
+    public final boolean pattern;
+    public final Target target;
+    public final Type type;
+    public final Set<Aggregation> aggregations;
+    /**
+     * Name of the attribute taken, only for {@link Target#ATTRIBUTE}.
+     */
+    public final String attribute;
 
     public XmlTagPath(final String tag) {
-        this.tags = List.of(tag);
-        this.outKey = tag;
-        this.times = 1;
+        this(List.of(tag), tag, 1);
     }
 
     public XmlTagPath(
         final List<String> startTags,
         final String outKey
     ) {
-        this.tags = new ArrayList<>(startTags);
-        this.outKey = outKey;
-        this.times = 1;
+        this(startTags, outKey, 1);
     }
 
     public XmlTagPath(
         final List<String> startTags,
         final String outKey,
         final int times
+    ) {
+        this(startTags, outKey, times, Type.TEXT);
+    }
+
+    public XmlTagPath(
+        final List<String> startTags,
+        final String outKey,
+        final int times,
+        final Type type
+    ) {
+        this(startTags, outKey, times, type, Set.of());
+    }
+
+    public XmlTagPath(
+        final List<String> startTags,
+        final String outKey,
+        final int times,
+        final Type type,
+        final Set<Aggregation> aggregations
     ) {
         this.tags = new ArrayList<>(startTags);
         this.outKey = outKey;
         this.times = times;
+        this.type = type;
+        this.aggregations = Set.copyOf(aggregations);
+        final String last = this.tags.isEmpty() ? "" : this.tags.getLast();
+        if (last.startsWith("@")) {
+            this.target = Target.ATTRIBUTE;
+            this.attribute = last.substring(1);
+        } else if (NAMESPACE_TARGET.equals(last)) {
+            this.target = Target.NAMESPACE;
+            this.attribute = null;
+        } else if (PREFIX_TARGET.equals(last)) {
+            this.target = Target.PREFIX;
+            this.attribute = null;
+        } else {
+            this.target = Target.TEXT;
+            this.attribute = null;
+        }
+        final List<String> elements = this.target == Target.TEXT ? this.tags : this.tags.subList(0, this.tags.size() - 1);
+        this.pattern = elements.contains(ANY_ELEMENT) || elements.contains(ANY_DEPTH);
+        this.elements = this.pattern ? patternElements(elements) : List.copyOf(elements);
+        if (this.target != Target.TEXT && (this.elements.isEmpty() || (this.attribute != null && this.attribute.isEmpty()))) {
+            throw new IllegalArgumentException("The target %s needs an element before it".formatted(last));
+        }
+        for (final String element : this.elements) {
+            if (element.startsWith("@") || element.startsWith("#")) {
+                throw new IllegalArgumentException("The target %s must be the last tag".formatted(element));
+            }
+        }
+        if (this.pattern && (this.elements.isEmpty() || ANY_DEPTH.equals(this.elements.getLast()))) {
+            throw new IllegalArgumentException("The path %s must end in an element".formatted(this.tags));
+        }
+    }
+
+    /**
+     * The first element can already be at any depth, so a leading {@link #ANY_DEPTH} is left out, and the repeated
+     * ones count as one.
+     */
+    private static List<String> patternElements(final List<String> elements) {
+        final List<String> pattern = new ArrayList<>(elements.size());
+        for (final String element : elements) {
+            if (!ANY_DEPTH.equals(element) || (!pattern.isEmpty() && !ANY_DEPTH.equals(pattern.getLast()))) {
+                pattern.add(element);
+            }
+        }
+        return List.copyOf(pattern);
+    }
+
+    /**
+     * Path written with the tags separated by slashes, like {@code "Amt/InstdAmt/@Ccy"} or {@code "PmtInf//Cdtr/*"}.
+     */
+    public static XmlTagPath parse(
+        final String path,
+        final String outKey,
+        final int times
+    ) {
+        return parse(path, outKey, times, Type.TEXT);
+    }
+
+    public static XmlTagPath parse(
+        final String path,
+        final String outKey,
+        final int times,
+        final Type type,
+        final Aggregation... aggregations
+    ) {
+        final List<String> tags = new ArrayList<>();
+        for (final String tag : path.split("/", -1)) {
+            if (!tag.isEmpty()) {
+                tags.add(tag);
+            } else if (tags.isEmpty() || !ANY_DEPTH.equals(tags.getLast())) {
+                tags.add(ANY_DEPTH);
+            }
+        }
+        return new XmlTagPath(tags, outKey, times, type, Set.copyOf(Arrays.asList(aggregations)));
     }
 }
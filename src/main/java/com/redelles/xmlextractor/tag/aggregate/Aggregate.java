@@ -0,0 +1,290 @@
+package com.redelles.xmlextractor.tag.aggregate;
+
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.XmlTagPath.Aggregation;
+import com.redelles.xmlextractor.tag.typed.DecimalParser;
+import com.redelles.xmlextractor.tag.typed.TextValues;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Aggregations of the values of one out key, updated with every value found. The values are parsed as the
+ * {@link XmlTagPath.Type} of the paths only when {@link Aggregation#SUM}, {@link Aggregation#MIN} or
+ * {@link Aggregation#MAX} need it; those that can not be parsed are counted in {@link #invalidCount()} and left out.
+ * <p>
+ * The sum is exact: it is kept in a {@code long} at the largest scale found and only goes to a {@link BigDecimal} when
+ * it would overflow.
+ */
+public final class Aggregate {
+
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+        10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+        1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    public final String outKey;
+    public final XmlTagPath.Type type;
+    public final Set<Aggregation> aggregations;
+    private final boolean parsed;
+    private final DecimalParser parser = new DecimalParser();
+    private final HyperLogLog distinct;
+    private long count;
+    private long invalidCount;
+    private long sumUnscaled;
+    private int sumScale;
+    private BigDecimal sumOverflow = BigDecimal.ZERO;
+    private boolean bounded;
+    private long minLong;
+    private long maxLong;
+    private String minText;
+    private String maxText;
+    private final DecimalBound minDecimal = new DecimalBound();
+    private final DecimalBound maxDecimal = new DecimalBound();
+
+    /**
+     * @throws IllegalArgumentException when the sum is asked for a type that is not a number
+     */
+    Aggregate(
+        final String outKey,
+        final XmlTagPath.Type type,
+        final Set<Aggregation> aggregations
+    ) {
+        if (aggregations.contains(Aggregation.SUM) && type != XmlTagPath.Type.LONG
+            && type != XmlTagPath.Type.DECIMAL) {
+            throw new IllegalArgumentException("Can not sum %s, its type is %s".formatted(outKey, type));
+        }
+        this.outKey = outKey;
+        this.type = type;
+        this.aggregations = Set.copyOf(aggregations);
+        this.parsed = aggregations.contains(Aggregation.SUM) || aggregations.contains(Aggregation.MIN)
+            || aggregations.contains(Aggregation.MAX);
+        this.distinct = aggregations.contains(Aggregation.DISTINCT) ? new HyperLogLog() : null;
+    }
+
+    void add(final CharSequence value) {
+        this.count++;
+        if (this.distinct != null) {
+            this.distinct.add(value);
+        }
+        if (!this.parsed) {
+            return;
+        }
+        try {
+            switch (this.type) {
+                case LONG -> {
+                    final long number = TextValues.parseLong(value);
+                    addToSum(number, 0);
+                    bound(number);
+                }
+                case DATE -> bound(TextValues.parseEpochDay(value));
+                case DATE_TIME -> bound(TextValues.parseEpochMillis(value));
+                case DECIMAL -> addDecimal(value);
+                case TEXT, CODE -> bound(value);
+            }
+        } catch (final IllegalArgumentException e) {
+            this.invalidCount++;
+        }
+    }
+
+    public long count() {
+        require(Aggregation.COUNT);
+        return this.count;
+    }
+
+    /**
+     * Values that could not be parsed as the type of the paths, they are counted but not in the other aggregations.
+     */
+    public long invalidCount() {
+        return this.invalidCount;
+    }
+
+    public BigDecimal sum() {
+        require(Aggregation.SUM);
+        return this.sumOverflow.add(BigDecimal.valueOf(this.sumUnscaled, this.sumScale));
+    }
+
+    /**
+     * The smallest value as a {@link Long}, {@link BigDecimal}, {@link LocalDate}, {@link Instant} or {@link String}
+     * as the type of the paths, null when there was none.
+     */
+    public Comparable<?> min() {
+        require(Aggregation.MIN);
+        return bound(this.minLong, this.minDecimal, this.minText);
+    }
+
+    /**
+     * The greatest value, like {@link #min()}.
+     */
+    public Comparable<?> max() {
+        require(Aggregation.MAX);
+        return bound(this.maxLong, this.maxDecimal, this.maxText);
+    }
+
+    /**
+     * Estimated number of different values, compared by their text.
+     */
+    public long distinct() {
+        require(Aggregation.DISTINCT);
+        return this.distinct.estimate();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder text = new StringBuilder(this.outKey);
+        for (final Aggregation aggregation : Aggregation.values()) {
+            if (this.aggregations.contains(aggregation)) {
+                text.append(' ')
+                    .append(aggregation.name()
+                        .toLowerCase())
+                    .append('=')
+                    .append(switch (aggregation) {
+                        case COUNT -> count();
+                        case SUM -> sum();
+                        case MIN -> min();
+                        case MAX -> max();
+                        case DISTINCT -> distinct();
+                    });
+            }
+        }
+        return text.toString();
+    }
+
+    private void require(final Aggregation aggregation) {
+        if (!this.aggregations.contains(aggregation)) {
+            throw new IllegalStateException("The aggregation %s is not declared for %s"
+                .formatted(aggregation, this.outKey));
+        }
+    }
+
+    private void addDecimal(final CharSequence value) {
+        this.parser.parse(value);
+        if (this.parser.isBig()) {
+            this.sumOverflow = this.sumOverflow.add(this.parser.big());
+        } else {
+            addToSum(this.parser.unscaled(), this.parser.scale());
+        }
+        this.minDecimal.offer(this.parser, 1);
+        this.maxDecimal.offer(this.parser, -1);
+    }
+
+    private void addToSum(
+        final long unscaled,
+        final int scale
+    ) {
+        try {
+            long addend = unscaled;
+            if (scale < this.sumScale) {
+                addend = rescale(unscaled, this.sumScale - scale);
+            } else if (scale > this.sumScale) {
+                this.sumUnscaled = rescale(this.sumUnscaled, scale - this.sumScale);
+                this.sumScale = scale;
+            }
+            this.sumUnscaled = Math.addExact(this.sumUnscaled, addend);
+        } catch (final ArithmeticException e) {
+            this.sumOverflow = this.sumOverflow.add(BigDecimal.valueOf(unscaled, scale));
+        }
+    }
+
+    private void bound(final long value) {
+        if (!this.bounded || value < this.minLong) {
+            this.minLong = value;
+        }
+        if (!this.bounded || value > this.maxLong) {
+            this.maxLong = value;
+        }
+        this.bounded = true;
+    }
+
+    private void bound(final CharSequence value) {
+        if (this.minText == null || CharSequence.compare(value, this.minText) < 0) {
+            this.minText = value.toString();
+        }
+        if (this.maxText == null || CharSequence.compare(value, this.maxText) > 0) {
+            this.maxText = value.toString();
+        }
+    }
+
+    private Comparable<?> bound(
+        final long value,
+        final DecimalBound decimal,
+        final String text
+    ) {
+        return switch (this.type) {
+            case LONG -> this.bounded ? value : null;
+            case DATE -> this.bounded ? LocalDate.ofEpochDay(value) : null;
+            case DATE_TIME -> this.bounded ? Instant.ofEpochMilli(value) : null;
+            case DECIMAL -> decimal.value();
+            case TEXT, CODE -> text;
+        };
+    }
+
+    /**
+     * @throws ArithmeticException when the result does not fit in a {@code long}
+     */
+    private static long rescale(
+        final long unscaled,
+        final int digits
+    ) {
+        if (digits >= POWERS_OF_TEN.length) {
+            if (unscaled == 0) {
+                return 0;
+            }
+            throw new ArithmeticException("Too many digits");
+        }
+        return Math.multiplyExact(unscaled, POWERS_OF_TEN[digits]);
+    }
+
+    /**
+     * Smallest or greatest decimal found, compared without {@link BigDecimal} while the numbers fit in a {@code long}.
+     */
+    private static final class DecimalBound {
+
+        private boolean found;
+        private long unscaled;
+        private int scale;
+        private BigDecimal big;
+
+        /**
+         * Takes the last number of the parser when it is before the bound in the order of the sign, 1 for the
+         * smallest and -1 for the greatest.
+         */
+        void offer(
+            final DecimalParser parser,
+            final int sign
+        ) {
+            if (this.found && sign * compare(parser) >= 0) {
+                return;
+            }
+            this.found = true;
+            this.unscaled = parser.unscaled();
+            this.scale = parser.scale();
+            this.big = parser.big();
+        }
+
+        BigDecimal value() {
+            if (!this.found) {
+                return null;
+            }
+            return this.big != null ? this.big : BigDecimal.valueOf(this.unscaled, this.scale);
+        }
+
+        private int compare(final DecimalParser parser) {
+            if (!parser.isBig() && this.big == null) {
+                try {
+                    if (parser.scale() <= this.scale) {
+                        return Long.compare(rescale(parser.unscaled(), this.scale - parser.scale()), this.unscaled);
+                    }
+                    return Long.compare(parser.unscaled(), rescale(this.unscaled, parser.scale() - this.scale));
+                } catch (final ArithmeticException e) {
+                    // compared below
+                }
+            }
+            return parser.value()
+                .compareTo(value());
+        }
+    }
+}
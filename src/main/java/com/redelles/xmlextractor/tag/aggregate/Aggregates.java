@@ -0,0 +1,67 @@
+package com.redelles.xmlextractor.tag.aggregate;
+
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.XmlTagPath.Aggregation;
+import com.redelles.xmlextractor.tag.typed.TypedValueProcessor;
+
+import java.util.*;
+
+/**
+ * Processor that computes the {@link XmlTagPath#aggregations} of every out key while the document is read, so only the
+ * totals are kept however big the document is: a few numbers per key and the 4 KB of a {@link HyperLogLog} for the
+ * distinct count. The values of keys without aggregations are ignored.
+ * <p>
+ * Give it to any {@link com.redelles.xmlextractor.tag.TagExtractor} extracting the same paths.
+ */
+public class Aggregates extends TypedValueProcessor {
+
+    private final Map<String, Aggregate> aggregates = new LinkedHashMap<>();
+
+    /**
+     * @throws IllegalArgumentException when paths with the same out key have different types or the sum is asked for
+     *                                  a type that is not a number
+     */
+    public Aggregates(final Collection<XmlTagPath> tagPaths) {
+        final List<XmlTagPath> aggregated = tagPaths.stream()
+            .filter(tagPath -> !tagPath.aggregations.isEmpty())
+            .toList();
+        final Map<String, Set<Aggregation>> aggregations = new HashMap<>();
+        for (final XmlTagPath tagPath : aggregated) {
+            aggregations.computeIfAbsent(tagPath.outKey, key -> EnumSet.noneOf(Aggregation.class))
+                .addAll(tagPath.aggregations);
+        }
+        types(aggregated).forEach((outKey, type) -> this.aggregates.put(
+            outKey,
+            new Aggregate(outKey, type, aggregations.get(outKey))
+        ));
+    }
+
+    /**
+     * @throws IllegalArgumentException when there are no aggregations for the key
+     */
+    public Aggregate get(final String outKey) {
+        final Aggregate aggregate = this.aggregates.get(outKey);
+        if (aggregate == null) {
+            throw new IllegalArgumentException("No aggregations for " + outKey);
+        }
+        return aggregate;
+    }
+
+    /**
+     * The aggregations of every key, in the order of the paths.
+     */
+    public Collection<Aggregate> all() {
+        return Collections.unmodifiableCollection(this.aggregates.values());
+    }
+
+    @Override
+    public void processText(
+        final String outKey,
+        final CharSequence value
+    ) {
+        final Aggregate aggregate = this.aggregates.get(outKey);
+        if (aggregate != null) {
+            aggregate.add(value);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.redelles.xmlextractor.tag.alternate;
 
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.events.XMLEvent;
+import java.util.Set;
 
 public interface AlternateTagExtractor {
 
@@ -20,4 +21,21 @@ public interface AlternateTagExtractor {
 
     AlternateTagExtractor rebuild();
 
+    /**
+     * Types of the events ({@link javax.xml.stream.XMLStreamConstants}) for which {@link #isCompatible(XMLEvent)} can
+     * be true, the extractor is not asked about the others. Empty, the default, means every event.
+     */
+    default Set<Integer> triggerEventTypes() {
+        return Set.of();
+    }
+
+    /**
+     * Local names, exactly as in the document, of the start and end elements for which {@link #isCompatible(XMLEvent)}
+     * can be true. Empty, the default, means any name. The other event types of {@link #triggerEventTypes()} are not
+     * filtered by name.
+     */
+    default Set<String> triggerElementNames() {
+        return Set.of();
+    }
+
 }
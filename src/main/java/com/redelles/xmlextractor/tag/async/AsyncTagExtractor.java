@@ -0,0 +1,188 @@
+package com.redelles.xmlextractor.tag.async;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.ExtractionPlan;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.metrics.StopReason;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Extraction without blocking any thread on the input: the document is given in {@link ByteBuffer} chunks as they
+ * arrive, to a {@link FeedSession}, or read from an asynchronous channel, a socket or a file, whose completion
+ * handlers feed it. While a chunk is on its way nothing waits for it, so a few threads can extract thousands of
+ * documents at the same time.
+ * <p>
+ * The chunks are read by a {@link FeedTokenizer} instead of a XML parser, which can only pull from a stream. It only
+ * understands UTF-8 documents without entities of their own, and a malformed document ends the extraction with
+ * {@link StopReason#FAILED} instead of being recovered event by event. The values are the same as those of
+ * {@link com.redelles.xmlextractor.tag.XmlTagCursorExtractor}. The special extractors work with the events of a
+ * parser, so they are not supported.
+ */
+public class AsyncTagExtractor {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 << 10;
+
+    private final ExtractionPlan plan;
+    private final boolean namespaces;
+    private final int bufferSize;
+
+    public AsyncTagExtractor(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags
+    ) {
+        this(new ExtractionPlan(tagPaths, stopTags, List.of()), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize bytes read from a channel at a time, for every document being extracted.
+     * @throws IllegalArgumentException when the plan has special extractors
+     */
+    public AsyncTagExtractor(
+        final ExtractionPlan plan,
+        final int bufferSize
+    ) {
+        if (plan.hasSpecialExtractors()) {
+            throw new IllegalArgumentException("The special extractors need a XML parser");
+        }
+        this.plan = plan;
+        this.namespaces = plan.tagPaths()
+            .stream()
+            .anyMatch(tagPath -> tagPath.target == XmlTagPath.Target.NAMESPACE);
+        this.bufferSize = Math.max(bufferSize, 1);
+    }
+
+    public Collection<String> keys() {
+        return this.plan.keys();
+    }
+
+    /**
+     * Starts the extraction of a document whose chunks will be given to the session.
+     */
+    public FeedSession newSession(
+        final String filename,
+        final ValueProcessor processor
+    ) {
+        return new FeedSession(this.plan, filename, processor, this.namespaces);
+    }
+
+    /**
+     * Reads the document from the channel until its end, or until the extraction ends, giving the values to the
+     * processor from the threads completing the reads. The channel is not closed.
+     *
+     * @return completed with why the extraction ended, or exceptionally with the exception thrown by the processor.
+     */
+    public CompletableFuture<StopReason> extract(
+        final String filename,
+        final AsynchronousByteChannel channel,
+        final ValueProcessor processor
+    ) {
+        return new ChannelFeed(
+            newSession(filename, processor),
+            ByteBuffer.allocateDirect(this.bufferSize),
+            (buffer, position, handler) -> channel.read(buffer, null, handler)
+        ).start();
+    }
+
+    /**
+     * Same as {@link #extract(String, AsynchronousByteChannel, ValueProcessor)} with a file, read from the beginning.
+     */
+    public CompletableFuture<StopReason> extract(
+        final String filename,
+        final AsynchronousFileChannel channel,
+        final ValueProcessor processor
+    ) {
+        return new ChannelFeed(
+            newSession(filename, processor),
+            ByteBuffer.allocateDirect(this.bufferSize),
+            (buffer, position, handler) -> channel.read(buffer, position, null, handler)
+        ).start();
+    }
+
+    @FunctionalInterface
+    private interface Read {
+
+        void read(
+            ByteBuffer buffer,
+            long position,
+            CompletionHandler<Integer, Object> handler
+        );
+    }
+
+    /**
+     * Asks the channel for the next chunk every time the previous one was fed, until the end of the input.
+     */
+    private static final class ChannelFeed implements CompletionHandler<Integer, Object> {
+
+        private final FeedSession session;
+        private final ByteBuffer buffer;
+        private final Read read;
+        private final CompletableFuture<StopReason> result = new CompletableFuture<>();
+        private long position;
+
+        private ChannelFeed(
+            final FeedSession session,
+            final ByteBuffer buffer,
+            final Read read
+        ) {
+            this.session = session;
+            this.buffer = buffer;
+            this.read = read;
+        }
+
+        private CompletableFuture<StopReason> start() {
+            next();
+            return this.result;
+        }
+
+        private void next() {
+            this.buffer.clear();
+            try {
+                this.read.read(this.buffer, this.position, this);
+            } catch (final RuntimeException e) {
+                failed(e, null);
+            }
+        }
+
+        @Override
+        public void completed(
+            final Integer count,
+            final Object attachment
+        ) {
+            try {
+                if (count < 0) {
+                    this.result.complete(this.session.finish());
+                    return;
+                }
+                this.position += count;
+                this.buffer.flip();
+                if (this.session.feed(this.buffer)) {
+                    next();
+                } else {
+                    this.result.complete(this.session.stopReason());
+                }
+            } catch (final RuntimeException e) {
+                this.result.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void failed(
+            final Throwable exception,
+            final Object attachment
+        ) {
+            try {
+                this.session.fail(exception.toString());
+                this.result.complete(this.session.stopReason());
+            } catch (final RuntimeException e) {
+                this.result.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.redelles.xmlextractor.tag.async;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.ExtractionPlan;
+import com.redelles.xmlextractor.tag.ExtractionRecorder;
+import com.redelles.xmlextractor.tag.TextBuffer;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.automaton.XmlTagPathMatcher;
+import com.redelles.xmlextractor.tag.metrics.StopReason;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.ByteBuffer;
+
+/**
+ * Extraction of one document fed in chunks, created by {@link AsyncTagExtractor#newSession(String, ValueProcessor)}.
+ * Every chunk is read right away and the values it completes are given to the processor before
+ * {@link #feed(ByteBuffer)} returns; the matching state stays in the session between chunks, so the thread feeding it
+ * can go on with other sessions while the next chunk arrives.
+ * <p>
+ * The matcher of the session is taken from the plan and given back when the extraction ends, so sessions of the same
+ * plan opened one after the other on a thread reuse it.
+ * <p>
+ * A session is not thread safe: its chunks must be fed one after the other, in order, but not always from the same
+ * thread.
+ */
+@Slf4j
+public final class FeedSession {
+
+    private final ExtractionPlan plan;
+    private final String filename;
+    private final ExtractionRecorder recorder;
+    private final ValueProcessor processor;
+    private final XmlTagPathMatcher matcher;
+    private final FeedTokenizer tokenizer;
+    private final TextBuffer text = new TextBuffer();
+    private StopReason stopReason;
+
+    FeedSession(
+        final ExtractionPlan plan,
+        final String filename,
+        final ValueProcessor processor,
+        final boolean namespaces
+    ) {
+        this.plan = plan;
+        this.filename = filename;
+        this.recorder = plan.recorder(filename);
+        this.processor = this.recorder.processor(processor);
+        this.matcher = plan.acquireMatcher();
+        this.tokenizer = new FeedTokenizer(new Matching(), namespaces);
+    }
+
+    /**
+     * Reads the chunk, all of it is taken. Once the extraction ended the chunks are ignored.
+     *
+     * @return false when the extraction ended, so no more chunks are needed.
+     */
+    public boolean feed(final ByteBuffer chunk) {
+        if (this.stopReason != null) {
+            chunk.position(chunk.limit());
+            return false;
+        }
+        this.recorder.read(chunk.remaining());
+        try {
+            this.tokenizer.feed(chunk);
+        } catch (final XMLStreamException e) {
+            fail(e.getMessage());
+        }
+        return this.stopReason == null;
+    }
+
+    /**
+     * The input ended: the text still pending is written and the extraction ends.
+     *
+     * @return why the extraction ended.
+     */
+    public StopReason finish() {
+        if (this.stopReason != null) {
+            return this.stopReason;
+        }
+        this.text.flush(this.processor, this.matcher);
+        if (!this.tokenizer.isComplete()) {
+            log.warn("The document {} ended after {} bytes, before the end of its root element", this.filename,
+                this.tokenizer.position());
+            end(StopReason.UNEXPECTED_END_OF_INPUT);
+        } else {
+            end(this.matcher.isExhausted() ? StopReason.PATHS_EXHAUSTED : StopReason.END_OF_DOCUMENT);
+        }
+        return this.stopReason;
+    }
+
+    public boolean isDone() {
+        return this.stopReason != null;
+    }
+
+    /**
+     * Why the extraction ended, null while it goes on.
+     */
+    public StopReason stopReason() {
+        return this.stopReason;
+    }
+
+    /**
+     * Bytes fed until now.
+     */
+    public long position() {
+        return this.tokenizer.position();
+    }
+
+    /**
+     * The input could not be read or the document is malformed.
+     */
+    void fail(final String message) {
+        if (this.stopReason == null) {
+            log.warn("Error extracting values from the document {} with error: {}", this.filename, message);
+            this.text.flush(this.processor, this.matcher);
+            end(StopReason.FAILED);
+        }
+    }
+
+    /**
+     * Ends the extraction once, for any reason: the metrics are recorded and the matcher goes back to the plan.
+     */
+    private void end(final StopReason reason) {
+        this.stopReason = reason;
+        this.tokenizer.stop();
+        this.recorder.stopped(reason);
+        this.recorder.finish();
+        this.plan.release(this.matcher);
+    }
+
+    private void writeTargets() throws XMLStreamException {
+        for (final int path : this.matcher.startedTargets()) {
+            if (!this.matcher.canWrite(path)) {
+                continue;
+            }
+            final XmlTagPath tagPath = this.matcher.tagPath(path);
+            final String value = switch (tagPath.target) {
+                case ATTRIBUTE -> this.tokenizer.attribute(tagPath.attribute);
+                case NAMESPACE -> nullIfEmpty(this.tokenizer.namespaceUri());
+                case PREFIX -> nullIfEmpty(this.tokenizer.prefix());
+                case TEXT -> null;
+            };
+            if (value != null) {
+                this.processor.processValue(tagPath.outKey, value);
+                this.matcher.written(path);
+            }
+        }
+    }
+
+    private static String nullIfEmpty(final String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * The tokens moving the paths, as {@link com.redelles.xmlextractor.tag.XmlTagCursorExtractor} does with the
+     * events of the parser.
+     */
+    private final class Matching implements FeedTokenizer.Handler {
+
+        @Override
+        public void startElement(final String localName) {
+            FeedSession.this.recorder.parsed();
+            FeedSession.this.text.flush(FeedSession.this.processor, FeedSession.this.matcher);
+            FeedSession.this.matcher.start(localName);
+            FeedSession.this.recorder.matched();
+            if (FeedSession.this.matcher.startedTargets().length > 0) {
+                try {
+                    writeTargets();
+                } catch (final XMLStreamException e) {
+                    fail(e.getMessage());
+                }
+            }
+            checkExhausted();
+        }
+
+        @Override
+        public void endElement(final String localName) {
+            FeedSession.this.recorder.parsed();
+            FeedSession.this.text.flush(FeedSession.this.processor, FeedSession.this.matcher);
+            FeedSession.this.matcher.end(localName);
+            FeedSession.this.recorder.matched();
+            if (FeedSession.this.plan.isStopTag(localName)) {
+                end(StopReason.STOP_TAG);
+            }
+            checkExhausted();
+        }
+
+        @Override
+        public boolean wantsText() {
+            return FeedSession.this.matcher.isWriting();
+        }
+
+        @Override
+        public void text(
+            final char[] characters,
+            final int offset,
+            final int length
+        ) {
+            FeedSession.this.recorder.parsed();
+            FeedSession.this.text.append(characters, offset, length);
+            FeedSession.this.recorder.matched();
+        }
+
+        private void checkExhausted() {
+            if (FeedSession.this.stopReason == null && FeedSession.this.matcher.isExhausted()) {
+                end(StopReason.PATHS_EXHAUSTED);
+            }
+        }
+    }
+}
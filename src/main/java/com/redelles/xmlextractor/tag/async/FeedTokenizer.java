@@ -0,0 +1,741 @@
+package com.redelles.xmlextractor.tag.async;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reads the tokens of a document given in chunks of bytes as they arrive, never waiting for more: what can not be
+ * read yet is kept until the next chunk. Text and CDATA sections are decoded as they come, keeping only an incomplete
+ * character or entity at the end of a chunk, so a long text does not have to arrive whole; a tag, a processing
+ * instruction or a DOCTYPE is read once it is complete.
+ * <p>
+ * The document must be UTF-8 (or ASCII). Entities are the predefined ones and the character references, the line
+ * breaks of the text are normalized to {@code \n} and those of the attributes to a blank. A malformed document throws
+ * {@link XMLStreamException}: there is no recovery.
+ * <p>
+ * Like a cursor, the name, prefix, namespace and attributes of an element can only be read from
+ * {@link Handler#startElement(String)}, the bytes of its start tag are only kept during the call.
+ */
+final class FeedTokenizer {
+
+    private static final Set<String> SUPPORTED_ENCODINGS = Set.of("utf-8", "utf8", "us-ascii", "ascii");
+    private static final int TEXT = 0;
+    private static final int CDATA = 1;
+    private static final int COMMENT = 2;
+    private static final int NAME_CAPACITY = 1 << 12;
+
+    /**
+     * Receives the tokens, in document order.
+     */
+    interface Handler {
+
+        void startElement(String localName);
+
+        void endElement(String localName);
+
+        /**
+         * True when the text found now would be used, otherwise it is not decoded.
+         */
+        boolean wantsText();
+
+        void text(
+            char[] characters,
+            int offset,
+            int length
+        );
+    }
+
+    private final Handler handler;
+    private final boolean namespaces;
+    private final Name[] names = new Name[NAME_CAPACITY];
+    private int nameCount;
+    private byte[] data = new byte[8192];
+    private int start;
+    private int limit;
+    private long consumed;
+    private int mode = TEXT;
+    private boolean begun;
+    private boolean stopped;
+    private boolean afterCarriageReturn;
+    private int tagScanned;
+    private byte tagQuote;
+    private char[] characters = new char[256];
+    private int characterCount;
+    private Name[] open = new Name[32];
+    private int depth;
+    private boolean rootFound;
+    private String[] namespacePrefixes = new String[8];
+    private String[] namespaceUris = new String[8];
+    private int namespaceCount;
+    private int[] namespacesAtDepth = new int[32];
+    private Name element;
+    private int elementNameEnd;
+    private int elementEnd;
+    private int attributeNameStart;
+    private int attributeNameEnd;
+    private int attributeValueStart;
+    private int attributeValueEnd;
+
+    /**
+     * @param namespaces keep the namespace declarations, only needed to read {@link #namespaceUri()}.
+     */
+    FeedTokenizer(
+        final Handler handler,
+        final boolean namespaces
+    ) {
+        this.handler = handler;
+        this.namespaces = namespaces;
+    }
+
+    /**
+     * Reads the tokens completed by the chunk, all of it is taken.
+     */
+    void feed(final ByteBuffer chunk) throws XMLStreamException {
+        if (this.stopped) {
+            chunk.position(chunk.limit());
+            return;
+        }
+        append(chunk);
+        while (!this.stopped && this.start < this.limit) {
+            final boolean read;
+            if (!this.begun) {
+                read = begin();
+            } else if (this.mode == CDATA) {
+                read = cdata();
+            } else if (this.mode == COMMENT) {
+                read = comment();
+            } else if (this.data[this.start] == '<') {
+                read = markup();
+            } else {
+                read = text();
+            }
+            if (!read) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * No more tokens are read, the next chunks are ignored.
+     */
+    void stop() {
+        this.stopped = true;
+    }
+
+    /**
+     * True when the root element was closed and only blanks came after it.
+     */
+    boolean isComplete() {
+        if (!this.rootFound || this.depth > 0 || this.mode != TEXT) {
+            return false;
+        }
+        for (int index = this.start; index < this.limit; index++) {
+            if (!isWhitespace(this.data[index])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bytes of the document taken until now.
+     */
+    long position() {
+        return this.consumed + this.limit;
+    }
+
+    String prefix() {
+        return this.element.prefix;
+    }
+
+    /**
+     * Namespace of the element being started, null when it has none or the namespaces are not kept.
+     */
+    String namespaceUri() {
+        final String prefix = this.element.prefix == null ? "" : this.element.prefix;
+        for (int namespace = this.namespaceCount - 1; namespace >= 0; namespace--) {
+            if (this.namespacePrefixes[namespace].equals(prefix)) {
+                return this.namespaceUris[namespace];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Value of the attribute of the element being started with this local name, ignoring case, or null. The namespace
+     * declarations are not attributes.
+     */
+    String attribute(final String localName) throws XMLStreamException {
+        for (int index = nextAttribute(this.elementNameEnd); index >= 0; index = nextAttribute(index)) {
+            if (!isNamespaceDeclaration() && localName.equalsIgnoreCase(attributeLocalName())) {
+                return decodeValue();
+            }
+        }
+        return null;
+    }
+
+    private void append(final ByteBuffer chunk) {
+        final int length = chunk.remaining();
+        if (this.limit + length > this.data.length) {
+            final int kept = this.limit - this.start;
+            if (kept + length > this.data.length) {
+                final byte[] data = new byte[Math.max(kept + length, this.data.length * 2)];
+                System.arraycopy(this.data, this.start, data, 0, kept);
+                this.data = data;
+            } else {
+                System.arraycopy(this.data, this.start, this.data, 0, kept);
+            }
+            this.consumed += this.start;
+            this.limit = kept;
+            this.start = 0;
+        }
+        chunk.get(this.data, this.limit, length);
+        this.limit += length;
+    }
+
+    /**
+     * Skips the UTF-8 byte order mark, once the first bytes are there.
+     */
+    private boolean begin() throws XMLStreamException {
+        if (this.limit - this.start < 3) {
+            return false;
+        }
+        final int first = this.data[this.start] & 0xFF;
+        if (first == 0xFE || first == 0xFF) {
+            throw error("UTF-16 document", this.start);
+        }
+        if (first == 0xEF && (this.data[this.start + 1] & 0xFF) == 0xBB && (this.data[this.start + 2] & 0xFF) == 0xBF) {
+            this.start += 3;
+        }
+        this.begun = true;
+        return true;
+    }
+
+    private boolean text() throws XMLStreamException {
+        final int lessThan = indexOf((byte) '<', this.start, this.limit);
+        final int end = lessThan < 0 ? this.limit : lessThan;
+        if (this.depth == 0) {
+            for (int index = this.start; index < end; index++) {
+                if (!isWhitespace(this.data[index])) {
+                    throw error("Text outside the root element", index);
+                }
+            }
+            this.start = end;
+        } else if (this.handler.wantsText()) {
+            this.start = decode(this.start, end, lessThan < 0, true, false);
+            emitText();
+        } else {
+            this.start = end;
+        }
+        return lessThan >= 0;
+    }
+
+    private boolean cdata() throws XMLStreamException {
+        int end = -1;
+        for (int index = indexOf((byte) ']', this.start, this.limit); index >= 0 && index + 2 < this.limit;
+             index = indexOf((byte) ']', index + 1, this.limit)) {
+            if (this.data[index + 1] == ']' && this.data[index + 2] == '>') {
+                end = index;
+                break;
+            }
+        }
+        final int available = end < 0 ? Math.max(this.start, this.limit - 2) : end;
+        if (this.handler.wantsText()) {
+            this.start = decode(this.start, available, end < 0, false, false);
+            emitText();
+        } else {
+            this.start = available;
+        }
+        if (end < 0) {
+            return false;
+        }
+        this.start = end + 3;
+        this.mode = TEXT;
+        return true;
+    }
+
+    private boolean comment() {
+        for (int index = indexOf((byte) '-', this.start, this.limit); index >= 0 && index + 2 < this.limit;
+             index = indexOf((byte) '-', index + 1, this.limit)) {
+            if (this.data[index + 1] == '-' && this.data[index + 2] == '>') {
+                this.start = index + 3;
+                this.mode = TEXT;
+                return true;
+            }
+        }
+        this.start = Math.max(this.start, this.limit - 2);
+        return false;
+    }
+
+    private boolean markup() throws XMLStreamException {
+        if (this.limit - this.start < 2) {
+            return false;
+        }
+        final byte next = this.data[this.start + 1];
+        if (next == '/') {
+            return endTag();
+        } else if (next == '?') {
+            return processingInstruction();
+        } else if (next != '!') {
+            return startTag();
+        }
+        final int comment = startsWith("<!--");
+        final int cdata = startsWith("<![CDATA[");
+        final int doctype = startsWith("<!DOCTYPE");
+        if (comment > 0) {
+            this.start += 4;
+            this.mode = COMMENT;
+            return true;
+        } else if (cdata > 0) {
+            if (this.depth == 0) {
+                throw error("CDATA outside the root element", this.start);
+            }
+            this.start += 9;
+            this.mode = CDATA;
+            return true;
+        } else if (doctype > 0) {
+            return doctype();
+        } else if (comment < 0 || cdata < 0 || doctype < 0) {
+            return false;
+        }
+        throw error("Unexpected markup", this.start);
+    }
+
+    private boolean startTag() throws XMLStreamException {
+        int index = this.start + 1 + this.tagScanned;
+        byte quote = this.tagQuote;
+        while (index < this.limit) {
+            final byte value = this.data[index];
+            if (quote != 0) {
+                if (value == quote) {
+                    quote = 0;
+                }
+            } else if (value == '"' || value == '\'') {
+                quote = value;
+            } else if (value == '>') {
+                break;
+            } else if (value == '<') {
+                throw error("Unexpected '<' in a start tag", index);
+            }
+            index++;
+        }
+        if (index >= this.limit) {
+            this.tagScanned = index - this.start - 1;
+            this.tagQuote = quote;
+            return false;
+        }
+        this.tagScanned = 0;
+        this.tagQuote = 0;
+        final int end = index;
+        final boolean empty = this.data[end - 1] == '/';
+        int nameEnd = this.start + 1;
+        while (nameEnd < end && !isWhitespace(this.data[nameEnd]) && this.data[nameEnd] != '/') {
+            nameEnd++;
+        }
+        if (nameEnd == this.start + 1) {
+            throw error("Element without name", this.start);
+        }
+        if (this.depth == 0 && this.rootFound) {
+            throw error("More than one root element", this.start);
+        }
+        final Name name = name(this.start + 1, nameEnd);
+        this.element = name;
+        this.elementNameEnd = nameEnd;
+        this.elementEnd = empty ? end - 1 : end;
+        push(name);
+        this.start = end + 1;
+        this.handler.startElement(name.localName);
+        if (empty) {
+            pop();
+            this.handler.endElement(name.localName);
+        }
+        return true;
+    }
+
+    private boolean endTag() throws XMLStreamException {
+        final int end = indexOf((byte) '>', this.start + 2, this.limit);
+        if (end < 0) {
+            return false;
+        }
+        int nameEnd = this.start + 2;
+        while (nameEnd < end && !isWhitespace(this.data[nameEnd])) {
+            nameEnd++;
+        }
+        for (int index = nameEnd; index < end; index++) {
+            if (!isWhitespace(this.data[index])) {
+                throw error("Malformed end tag", index);
+            }
+        }
+        final Name name = name(this.start + 2, nameEnd);
+        if (this.depth == 0 || this.open[this.depth - 1] != name
+            && !this.open[this.depth - 1].qualifiedName.equals(name.qualifiedName)) {
+            throw error("Unexpected end tag " + name.qualifiedName, this.start);
+        }
+        pop();
+        this.start = end + 1;
+        this.handler.endElement(name.localName);
+        return true;
+    }
+
+    private boolean processingInstruction() throws XMLStreamException {
+        int end = indexOf((byte) '?', this.start + 2, this.limit);
+        while (end >= 0 && end + 1 < this.limit && this.data[end + 1] != '>') {
+            end = indexOf((byte) '?', end + 1, this.limit);
+        }
+        if (end < 0 || end + 1 >= this.limit) {
+            return false;
+        }
+        final String instruction = new String(this.data, this.start + 2, end - this.start - 2, StandardCharsets.UTF_8);
+        if (instruction.startsWith("xml ") || instruction.startsWith("xml\t") || instruction.startsWith("xml\n")) {
+            checkEncoding(instruction);
+        }
+        this.start = end + 2;
+        return true;
+    }
+
+    private boolean doctype() {
+        int subset = 0;
+        byte quote = 0;
+        for (int index = this.start + 9; index < this.limit; index++) {
+            final byte value = this.data[index];
+            if (quote != 0) {
+                if (value == quote) {
+                    quote = 0;
+                }
+            } else if (value == '"' || value == '\'') {
+                quote = value;
+            } else if (value == '[') {
+                subset++;
+            } else if (value == ']') {
+                subset--;
+            } else if (value == '>' && subset <= 0) {
+                this.start = index + 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkEncoding(final String declaration) throws XMLStreamException {
+        final int encoding = declaration.indexOf("encoding");
+        if (encoding < 0) {
+            return;
+        }
+        final int quote = Math.max(declaration.indexOf('"', encoding), declaration.indexOf('\'', encoding));
+        final int closing = quote < 0 ? -1 : declaration.indexOf(declaration.charAt(quote), quote + 1);
+        if (closing < 0 || !SUPPORTED_ENCODINGS.contains(declaration.substring(quote + 1, closing)
+            .toLowerCase(Locale.ROOT))) {
+            throw error("Unsupported encoding in " + declaration, this.start);
+        }
+    }
+
+    private void push(final Name name) throws XMLStreamException {
+        if (this.depth == this.open.length) {
+            this.open = Arrays.copyOf(this.open, this.depth * 2);
+            this.namespacesAtDepth = Arrays.copyOf(this.namespacesAtDepth, this.depth * 2);
+        }
+        this.namespacesAtDepth[this.depth] = this.namespaceCount;
+        this.open[this.depth++] = name;
+        this.rootFound = true;
+        if (this.namespaces) {
+            for (int index = nextAttribute(this.elementNameEnd); index >= 0; index = nextAttribute(index)) {
+                if (isNamespaceDeclaration()) {
+                    final int length = this.attributeNameEnd - this.attributeNameStart;
+                    final String prefix = length == 5
+                        ? ""
+                        : new String(this.data, this.attributeNameStart + 6, length - 6, StandardCharsets.UTF_8);
+                    declareNamespace(prefix, decodeValue());
+                }
+            }
+        }
+    }
+
+    private void pop() {
+        this.depth--;
+        this.namespaceCount = this.namespacesAtDepth[this.depth];
+    }
+
+    private void declareNamespace(
+        final String prefix,
+        final String uri
+    ) {
+        if (this.namespaceCount == this.namespacePrefixes.length) {
+            this.namespacePrefixes = Arrays.copyOf(this.namespacePrefixes, this.namespaceCount * 2);
+            this.namespaceUris = Arrays.copyOf(this.namespaceUris, this.namespaceCount * 2);
+        }
+        this.namespacePrefixes[this.namespaceCount] = prefix;
+        this.namespaceUris[this.namespaceCount++] = uri.isEmpty() ? null : uri;
+    }
+
+    /**
+     * Finds the attribute of the start tag after the index, leaving its name and value in the attribute fields.
+     *
+     * @return the index after the attribute, or -1 when there are no more.
+     */
+    private int nextAttribute(final int from) throws XMLStreamException {
+        int index = from;
+        while (index < this.elementEnd && isWhitespace(this.data[index])) {
+            index++;
+        }
+        if (index >= this.elementEnd) {
+            return -1;
+        }
+        this.attributeNameStart = index;
+        while (index < this.elementEnd && this.data[index] != '=' && !isWhitespace(this.data[index])) {
+            index++;
+        }
+        this.attributeNameEnd = index;
+        while (index < this.elementEnd && isWhitespace(this.data[index])) {
+            index++;
+        }
+        if (index >= this.elementEnd || this.data[index] != '=') {
+            throw error("Attribute without value", this.attributeNameStart);
+        }
+        index++;
+        while (index < this.elementEnd && isWhitespace(this.data[index])) {
+            index++;
+        }
+        if (index >= this.elementEnd || (this.data[index] != '"' && this.data[index] != '\'')) {
+            throw error("Attribute value without quotes", this.attributeNameStart);
+        }
+        this.attributeValueStart = index + 1;
+        this.attributeValueEnd = indexOf(this.data[index], index + 1, this.elementEnd);
+        if (this.attributeValueEnd < 0) {
+            throw error("Attribute value without closing quote", this.attributeNameStart);
+        }
+        return this.attributeValueEnd + 1;
+    }
+
+    private boolean isNamespaceDeclaration() {
+        final int length = this.attributeNameEnd - this.attributeNameStart;
+        return length >= 5
+            && this.data[this.attributeNameStart] == 'x'
+            && this.data[this.attributeNameStart + 1] == 'm'
+            && this.data[this.attributeNameStart + 2] == 'l'
+            && this.data[this.attributeNameStart + 3] == 'n'
+            && this.data[this.attributeNameStart + 4] == 's'
+            && (length == 5 || this.data[this.attributeNameStart + 5] == ':');
+    }
+
+    private String attributeLocalName() {
+        int start = this.attributeNameStart;
+        for (int index = start; index < this.attributeNameEnd; index++) {
+            if (this.data[index] == ':') {
+                start = index + 1;
+            }
+        }
+        return new String(this.data, start, this.attributeNameEnd - start, StandardCharsets.UTF_8);
+    }
+
+    private String decodeValue() throws XMLStreamException {
+        final boolean afterCarriageReturn = this.afterCarriageReturn;
+        this.afterCarriageReturn = false;
+        decode(this.attributeValueStart, this.attributeValueEnd, false, true, true);
+        final String value = new String(this.characters, 0, this.characterCount);
+        this.characterCount = 0;
+        this.afterCarriageReturn = afterCarriageReturn;
+        return value;
+    }
+
+    private void emitText() {
+        if (this.characterCount > 0) {
+            this.handler.text(this.characters, 0, this.characterCount);
+            this.characterCount = 0;
+        }
+    }
+
+    /**
+     * Decodes the bytes into {@link #characters}. When the input is {@code partial} a character or entity cut by the
+     * end is left for later.
+     *
+     * @return the index after the last byte decoded.
+     */
+    private int decode(
+        final int from,
+        final int to,
+        final boolean partial,
+        final boolean entities,
+        final boolean attribute
+    ) throws XMLStreamException {
+        if (this.characterCount + to - from + 2 > this.characters.length) {
+            this.characters = Arrays.copyOf(this.characters, Math.max(this.characterCount + to - from + 2,
+                this.characters.length * 2));
+        }
+        int index = from;
+        while (index < to) {
+            final int value = this.data[index] & 0xFF;
+            if (value == '\n' && this.afterCarriageReturn) {
+                this.afterCarriageReturn = false;
+                index++;
+                continue;
+            }
+            this.afterCarriageReturn = value == '\r';
+            if (value == '&' && entities) {
+                final int semicolon = indexOf((byte) ';', index + 1, Math.min(to, index + 12));
+                if (semicolon < 0) {
+                    if (partial && to - index < 12) {
+                        break;
+                    }
+                    throw error("Malformed entity", index);
+                }
+                appendCodePoint(entity(index + 1, semicolon));
+                index = semicolon + 1;
+            } else if (value < 0x80) {
+                if (value == '<' && attribute) {
+                    throw error("Unexpected '<' in an attribute value", index);
+                }
+                final boolean lineBreak = value == '\r' || value == '\n' || (value == '\t' && attribute);
+                this.characters[this.characterCount++] = lineBreak ? (attribute ? ' ' : '\n') : (char) value;
+                index++;
+            } else {
+                final int length = value >= 0xF0 ? 4 : value >= 0xE0 ? 3 : value >= 0xC0 ? 2 : 0;
+                if (length == 0) {
+                    throw error("Invalid UTF-8 byte", index);
+                }
+                if (index + length > to) {
+                    if (partial) {
+                        break;
+                    }
+                    throw error("Incomplete UTF-8 character", index);
+                }
+                int codePoint = value & (0xFF >>> (length + 1));
+                for (int next = 1; next < length; next++) {
+                    final int continuation = this.data[index + next] & 0xFF;
+                    if ((continuation & 0xC0) != 0x80) {
+                        throw error("Invalid UTF-8 byte", index + next);
+                    }
+                    codePoint = (codePoint << 6) | (continuation & 0x3F);
+                }
+                appendCodePoint(codePoint);
+                index += length;
+            }
+        }
+        return index;
+    }
+
+    private int entity(
+        final int from,
+        final int to
+    ) throws XMLStreamException {
+        final String name = new String(this.data, from, to - from, StandardCharsets.US_ASCII);
+        try {
+            return switch (name) {
+                case "lt" -> '<';
+                case "gt" -> '>';
+                case "amp" -> '&';
+                case "quot" -> '"';
+                case "apos" -> '\'';
+                default -> {
+                    if (name.startsWith("#x")) {
+                        yield Integer.parseInt(name.substring(2), 16);
+                    } else if (name.startsWith("#")) {
+                        yield Integer.parseInt(name.substring(1));
+                    }
+                    throw error("Undeclared entity &" + name + ";", from - 1);
+                }
+            };
+        } catch (final NumberFormatException e) {
+            throw error("Malformed character reference &" + name + ";", from - 1);
+        }
+    }
+
+    private void appendCodePoint(final int codePoint) throws XMLStreamException {
+        if (!Character.isValidCodePoint(codePoint)) {
+            throw error("Invalid character " + codePoint, this.start);
+        }
+        this.characterCount += Character.toChars(codePoint, this.characters, this.characterCount);
+    }
+
+    /**
+     * The name of the bytes, decoded once and then the same instance every time it appears. Once the table is half
+     * full the new names are decoded every time.
+     */
+    private Name name(
+        final int from,
+        final int to
+    ) {
+        int hash = 0x811c9dc5;
+        for (int index = from; index < to; index++) {
+            hash = (hash ^ this.data[index]) * 0x01000193;
+        }
+        int slot = hash & (NAME_CAPACITY - 1);
+        while (this.names[slot] != null) {
+            final Name name = this.names[slot];
+            if (name.hash == hash && Arrays.equals(name.bytes, 0, name.bytes.length, this.data, from, to)) {
+                return name;
+            }
+            slot = (slot + 1) & (NAME_CAPACITY - 1);
+        }
+        final Name name = new Name(Arrays.copyOfRange(this.data, from, to), hash);
+        if (this.nameCount < NAME_CAPACITY / 2) {
+            this.names[slot] = name;
+            this.nameCount++;
+        }
+        return name;
+    }
+
+    /**
+     * 1 when the bytes at the start begin with the markup, 0 when they do not and -1 when there are not enough bytes
+     * to tell.
+     */
+    private int startsWith(final String markup) {
+        for (int index = 0; index < markup.length(); index++) {
+            if (this.start + index >= this.limit) {
+                return -1;
+            }
+            if (this.data[this.start + index] != markup.charAt(index)) {
+                return 0;
+            }
+        }
+        return 1;
+    }
+
+    private int indexOf(
+        final byte value,
+        final int from,
+        final int to
+    ) {
+        for (int index = from; index < to; index++) {
+            if (this.data[index] == value) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private XMLStreamException error(
+        final String message,
+        final int index
+    ) {
+        return new XMLStreamException("%s at byte %s".formatted(message, this.consumed + index));
+    }
+
+    private static boolean isWhitespace(final byte value) {
+        return value == ' ' || value == '\n' || value == '\t' || value == '\r';
+    }
+
+    private static final class Name {
+
+        private final byte[] bytes;
+        private final int hash;
+        private final String qualifiedName;
+        private final String prefix;
+        private final String localName;
+
+        private Name(
+            final byte[] bytes,
+            final int hash
+        ) {
+            this.bytes = bytes;
+            this.hash = hash;
+            this.qualifiedName = new String(bytes, StandardCharsets.UTF_8);
+            final int colon = this.qualifiedName.indexOf(':');
+            this.prefix = colon < 0 ? null : this.qualifiedName.substring(0, colon);
+            this.localName = this.qualifiedName.substring(colon + 1);
+        }
+    }
+}
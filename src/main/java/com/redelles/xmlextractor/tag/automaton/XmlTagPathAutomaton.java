@@ -0,0 +1,543 @@
+package com.redelles.xmlextractor.tag.automaton;
+
+import com.redelles.xmlextractor.tag.XmlTagPath;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * All the configured {@link XmlTagPath} compiled in a single automaton.
+ * <p>
+ * Each state keeps the index of every path, following the same rules as {@link com.redelles.xmlextractor.XmlTagProcessor}:
+ * a start element equal to the current tag of a path moves it forward and an end element equal to its previous tag
+ * moves it back. The states and their transitions are built lazily and shared, so every XML event costs one lookup
+ * of the element name plus one array access, no matter how many paths are configured.
+ * <p>
+ * The paths with an attribute or namespace target ({@link XmlTagPath#target}) are never ready to write text: every
+ * start transition keeps the ones it completes, so the engines only look at the attributes of the elements that
+ * complete one.
+ * <p>
+ * The {@link XmlTagPath#pattern} paths depend on the depth, so they are left out of those states and matched apart:
+ * their {@link PatternState} is the set of steps reached by every path in the element just opened, and the matcher
+ * keeps one for every open element, going back to the one of the parent when an element ends. A step after a
+ * {@code "//"} stays in the set for all the descendants; {@code "*"} moves with any element. The sets are built lazily
+ * too, each one at most all the steps of the patterns, so the cost of an event does not depend on how much the
+ * patterns overlap. With patterns every element is relevant, because the matcher needs to know the depth.
+ * <p>
+ * The automaton is immutable from the outside and can be shared between threads. The mutable part of an extraction
+ * (current state and remaining times of every path) lives in {@link XmlTagPathMatcher}.
+ */
+public final class XmlTagPathAutomaton {
+
+    /**
+     * Element names cached in {@link #symbols}. Beyond this limit the names are resolved without caching, so a document
+     * with unbounded different names can not make the automaton grow forever.
+     */
+    private static final int SYMBOL_CACHE_LIMIT = 1 << 16;
+    private static final int NO_SYMBOL = -1;
+    private static final int[] NO_PATHS = new int[0];
+    private static final int ANY_SYMBOL = -2;
+    /**
+     * Pattern states kept in {@link #patternStates}. Beyond this limit the new sets are built every time they are
+     * reached, without caching them nor the transitions from or to them, so overlapping patterns can not make the
+     * automaton grow forever.
+     */
+    private static final int PATTERN_STATE_LIMIT = 1 << 14;
+    /**
+     * States kept in {@link #states}, each one with three arrays as long as the symbol table. Beyond this limit the new
+     * states are built every time they are reached, like the pattern states, so paths combined in many ways can not
+     * make the automaton grow forever.
+     */
+    private static final int STATE_LIMIT = 1 << 14;
+
+    private final List<XmlTagPath> tagPaths;
+    private final int[][] tagSymbols;
+    private final boolean[] textPaths;
+    private final boolean[] patterns;
+    private final int[][] patternSteps;
+    private final boolean[][] anyDepthSteps;
+    private final int[] firstStep;
+    private final int[] stepPaths;
+    private final int stepCount;
+    private final boolean hasPatterns;
+    private final Map<String, Integer> symbolsIgnoringCase;
+    private final Map<String, Integer> symbols = new ConcurrentHashMap<>();
+    private final Map<Indexes, State> states = new ConcurrentHashMap<>();
+    private final Map<Indexes, PatternState> patternStates = new ConcurrentHashMap<>();
+    private final State initial;
+    private final PatternState initialPattern;
+
+    public XmlTagPathAutomaton(final Collection<XmlTagPath> tagPaths) {
+        this.tagPaths = List.copyOf(tagPaths);
+        this.symbolsIgnoringCase = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        this.tagSymbols = new int[this.tagPaths.size()][];
+        this.textPaths = new boolean[this.tagPaths.size()];
+        this.patterns = new boolean[this.tagPaths.size()];
+        this.patternSteps = new int[this.tagPaths.size()][];
+        this.anyDepthSteps = new boolean[this.tagPaths.size()][];
+        this.firstStep = new int[this.tagPaths.size()];
+        int steps = 0;
+        for (int path = 0; path < this.tagPaths.size(); path++) {
+            final XmlTagPath tagPath = this.tagPaths.get(path);
+            this.textPaths[path] = tagPath.target == XmlTagPath.Target.TEXT;
+            this.patterns[path] = tagPath.pattern;
+            if (tagPath.pattern) {
+                this.tagSymbols[path] = NO_PATHS;
+                compilePattern(path, tagPath.elements);
+                this.firstStep[path] = steps;
+                steps += this.patternSteps[path].length + 1;
+                continue;
+            }
+            final List<String> tags = tagPath.elements;
+            this.tagSymbols[path] = new int[tags.size()];
+            for (int index = 0; index < tags.size(); index++) {
+                this.tagSymbols[path][index] = symbolOf(tags.get(index));
+            }
+        }
+        this.stepCount = steps;
+        this.hasPatterns = steps > 0;
+        this.stepPaths = new int[steps];
+        for (int path = 0; path < this.tagPaths.size(); path++) {
+            if (this.patterns[path]) {
+                final int end = this.firstStep[path] + this.patternSteps[path].length + 1;
+                Arrays.fill(this.stepPaths, this.firstStep[path], end, path);
+            }
+        }
+        this.initial = state(new int[this.tagPaths.size()]);
+        this.initialPattern = patternState(initialSteps());
+    }
+
+    private int symbolOf(final String tag) {
+        return this.symbolsIgnoringCase.computeIfAbsent(tag, newTag -> this.symbolsIgnoringCase.size());
+    }
+
+    /**
+     * Steps of a pattern: the symbol every element must have, or {@link #ANY_SYMBOL}, and whether it can be at any
+     * depth below the previous one. The first step can always be at any depth.
+     */
+    private void compilePattern(
+        final int path,
+        final List<String> elements
+    ) {
+        final List<Integer> symbols = new ArrayList<>();
+        final List<Boolean> anyDepth = new ArrayList<>();
+        boolean descendant = true;
+        for (final String element : elements) {
+            if (XmlTagPath.ANY_DEPTH.equals(element)) {
+                descendant = true;
+                continue;
+            }
+            symbols.add(XmlTagPath.ANY_ELEMENT.equals(element) ? ANY_SYMBOL : symbolOf(element));
+            anyDepth.add(descendant);
+            descendant = false;
+        }
+        this.patternSteps[path] = new int[symbols.size()];
+        this.anyDepthSteps[path] = new boolean[symbols.size()];
+        for (int step = 0; step < symbols.size(); step++) {
+            this.patternSteps[path][step] = symbols.get(step);
+            this.anyDepthSteps[path][step] = anyDepth.get(step);
+        }
+    }
+
+    private int[] initialSteps() {
+        final int[] steps = new int[this.tagPaths.size()];
+        int count = 0;
+        for (int path = 0; path < this.tagPaths.size(); path++) {
+            if (this.patterns[path]) {
+                steps[count++] = this.firstStep[path];
+            }
+        }
+        return Arrays.copyOf(steps, count);
+    }
+
+    public List<XmlTagPath> tagPaths() {
+        return this.tagPaths;
+    }
+
+    public State initial() {
+        return this.initial;
+    }
+
+    public PatternState initialPattern() {
+        return this.initialPattern;
+    }
+
+    public boolean hasPatterns() {
+        return this.hasPatterns;
+    }
+
+    public XmlTagPathMatcher matcher() {
+        return new XmlTagPathMatcher(this);
+    }
+
+    /**
+     * Number of states kept until now, mostly useful to check how the automaton grows.
+     */
+    public int stateCount() {
+        return this.states.size();
+    }
+
+    /**
+     * Number of pattern states kept until now.
+     */
+    public int patternStateCount() {
+        return this.patternStates.size();
+    }
+
+    /**
+     * Number of transitions cached between the pattern states kept until now.
+     */
+    public int patternTransitionCount() {
+        int count = 0;
+        for (final PatternState state : this.patternStates.values()) {
+            for (final PatternTransition transition : state.onStart) {
+                if (transition != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    State onStart(
+        final State state,
+        final String elementName
+    ) {
+        return onStart(state, symbol(elementName));
+    }
+
+    State onStart(
+        final State state,
+        final int symbol
+    ) {
+        if (symbol == NO_SYMBOL) {
+            return state;
+        }
+        final State cached = state.onStart[symbol];
+        if (cached != null) {
+            return cached;
+        }
+        final int[] indexes = state.indexes.clone();
+        for (int path = 0; path < indexes.length; path++) {
+            if (indexes[path] < this.tagSymbols[path].length && this.tagSymbols[path][indexes[path]] == symbol) {
+                indexes[path]++;
+            }
+        }
+        final State next = state(indexes);
+        if (state.kept && next.kept) {
+            state.targetsOnStart[symbol] = completedTargets(state, symbol);
+            state.onStart[symbol] = next;
+        }
+        return next;
+    }
+
+    /**
+     * Paths with a target completed by the start transition from the state.
+     */
+    int[] targetsOnStart(
+        final State state,
+        final int symbol
+    ) {
+        if (symbol == NO_SYMBOL) {
+            return NO_PATHS;
+        }
+        final int[] cached = state.targetsOnStart[symbol];
+        return cached != null ? cached : completedTargets(state, symbol);
+    }
+
+    private int[] completedTargets(
+        final State state,
+        final int symbol
+    ) {
+        final int[] targets = new int[state.indexes.length];
+        int count = 0;
+        for (int path = 0; path < targets.length; path++) {
+            if (!this.textPaths[path] && state.indexes[path] == this.tagSymbols[path].length - 1
+                && this.tagSymbols[path][state.indexes[path]] == symbol) {
+                targets[count++] = path;
+            }
+        }
+        return count == 0 ? NO_PATHS : Arrays.copyOf(targets, count);
+    }
+
+    State onEnd(
+        final State state,
+        final String elementName
+    ) {
+        return onEnd(state, symbol(elementName));
+    }
+
+    State onEnd(
+        final State state,
+        final int symbol
+    ) {
+        if (symbol == NO_SYMBOL) {
+            return state;
+        }
+        final State cached = state.onEnd[symbol];
+        if (cached != null) {
+            return cached;
+        }
+        final int[] indexes = state.indexes.clone();
+        for (int path = 0; path < indexes.length; path++) {
+            if (indexes[path] > 0 && this.tagSymbols[path][indexes[path] - 1] == symbol) {
+                indexes[path]--;
+            }
+        }
+        final State next = state(indexes);
+        if (state.kept && next.kept) {
+            state.onEnd[symbol] = next;
+        }
+        return next;
+    }
+
+    /**
+     * Pattern state of an element opened with this symbol inside an element with the given state, with the paths
+     * having a target that the element completes.
+     */
+    PatternTransition onStart(
+        final PatternState state,
+        final int symbol
+    ) {
+        final int column = symbol == NO_SYMBOL ? state.onStart.length - 1 : symbol;
+        final PatternTransition cached = state.onStart[column];
+        if (cached != null) {
+            return cached;
+        }
+        final int[] steps = new int[this.stepCount];
+        final int[] targets = new int[this.tagPaths.size()];
+        int count = 0;
+        int targetCount = 0;
+        for (final int step : state.steps) {
+            final int path = this.stepPaths[step];
+            final int index = step - this.firstStep[path];
+            final int[] symbols = this.patternSteps[path];
+            if (index == symbols.length || this.anyDepthSteps[path][index]) {
+                count = add(steps, count, step);
+            }
+            if (index < symbols.length && (symbols[index] == ANY_SYMBOL
+                || (symbol != NO_SYMBOL && symbols[index] == symbol))) {
+                count = add(steps, count, step + 1);
+                if (index + 1 == symbols.length && !this.textPaths[path]) {
+                    targets[targetCount++] = path;
+                }
+            }
+        }
+        final PatternTransition transition = new PatternTransition(
+            patternState(Arrays.copyOf(steps, count)),
+            targetCount == 0 ? NO_PATHS : Arrays.copyOf(targets, targetCount)
+        );
+        if (state.kept && transition.next.kept) {
+            state.onStart[column] = transition;
+        }
+        return transition;
+    }
+
+    /**
+     * Adds the step keeping the steps sorted and without repetitions; they come in order, so it can only repeat the
+     * last one.
+     */
+    private static int add(
+        final int[] steps,
+        final int count,
+        final int step
+    ) {
+        if (count > 0 && steps[count - 1] == step) {
+            return count;
+        }
+        steps[count] = step;
+        return count + 1;
+    }
+
+    private PatternState patternState(final int[] steps) {
+        final Indexes key = new Indexes(steps);
+        final PatternState cached = this.patternStates.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (this.patternStates.size() >= PATTERN_STATE_LIMIT) {
+            return new PatternState(steps, patternReadyPaths(steps), false);
+        }
+        final PatternState state = new PatternState(steps, patternReadyPaths(steps), true);
+        final PatternState previous = this.patternStates.putIfAbsent(key, state);
+        return previous != null ? previous : state;
+    }
+
+    private int[] patternReadyPaths(final int[] steps) {
+        final int[] ready = new int[steps.length];
+        int count = 0;
+        for (final int step : steps) {
+            final int path = this.stepPaths[step];
+            if (this.textPaths[path] && step == this.firstStep[path] + this.patternSteps[path].length) {
+                ready[count++] = path;
+            }
+        }
+        return Arrays.copyOf(ready, count);
+    }
+
+    /**
+     * Id of the element name inside the automaton, or a negative value when no path uses it. Engines reading the names
+     * from their own tables can keep the id next to the name and move the matcher with it.
+     */
+    public int symbol(final String elementName) {
+        final Integer cached = this.symbols.get(elementName);
+        if (cached != null) {
+            return cached;
+        }
+        final int symbol = this.symbolsIgnoringCase.getOrDefault(elementName, NO_SYMBOL);
+        if (this.symbols.size() < SYMBOL_CACHE_LIMIT) {
+            this.symbols.put(elementName, symbol);
+        }
+        return symbol;
+    }
+
+    /**
+     * True when a start or end element with this name moves some path in the given state.
+     */
+    boolean isRelevant(
+        final State state,
+        final int symbol
+    ) {
+        return this.hasPatterns || (symbol != NO_SYMBOL && state.relevantSymbols[symbol]);
+    }
+
+    /**
+     * State with these indexes, the same object for the same indexes while it is kept in {@link #states}.
+     */
+    State state(final int[] indexes) {
+        final Indexes key = new Indexes(indexes);
+        final State cached = this.states.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (this.states.size() >= STATE_LIMIT) {
+            return new State(indexes, readyPaths(indexes), relevantSymbols(indexes), false);
+        }
+        final State state = new State(indexes, readyPaths(indexes), relevantSymbols(indexes), true);
+        final State previous = this.states.putIfAbsent(key, state);
+        return previous != null ? previous : state;
+    }
+
+    private boolean[] relevantSymbols(final int[] indexes) {
+        final boolean[] relevant = new boolean[this.symbolsIgnoringCase.size()];
+        for (int path = 0; path < indexes.length; path++) {
+            if (indexes[path] < this.tagSymbols[path].length) {
+                relevant[this.tagSymbols[path][indexes[path]]] = true;
+            }
+            if (indexes[path] > 0) {
+                relevant[this.tagSymbols[path][indexes[path] - 1]] = true;
+            }
+        }
+        return relevant;
+    }
+
+    private int[] readyPaths(final int[] indexes) {
+        int count = 0;
+        final int[] ready = new int[indexes.length];
+        for (int path = 0; path < indexes.length; path++) {
+            if (this.textPaths[path] && !this.patterns[path] && indexes[path] > this.tagSymbols[path].length - 1) {
+                ready[count++] = path;
+            }
+        }
+        return Arrays.copyOf(ready, count);
+    }
+
+    /**
+     * One combination of the indexes of all the paths. The transitions are filled the first time they are used, only
+     * between states kept in {@link #states}; two threads computing the same transition get the same canonical state,
+     * so the race is harmless.
+     */
+    public final class State {
+
+        private final int[] indexes;
+        private final int[] readyPaths;
+        private final boolean[] relevantSymbols;
+        private final boolean kept;
+        private final State[] onStart;
+        private final int[][] targetsOnStart;
+        private final State[] onEnd;
+
+        private State(
+            final int[] indexes,
+            final int[] readyPaths,
+            final boolean[] relevantSymbols,
+            final boolean kept
+        ) {
+            this.indexes = indexes;
+            this.readyPaths = readyPaths;
+            this.relevantSymbols = relevantSymbols;
+            this.kept = kept;
+            this.onStart = new State[XmlTagPathAutomaton.this.symbolsIgnoringCase.size()];
+            this.targetsOnStart = new int[XmlTagPathAutomaton.this.symbolsIgnoringCase.size()][];
+            this.onEnd = new State[XmlTagPathAutomaton.this.symbolsIgnoringCase.size()];
+        }
+
+        public int index(final int path) {
+            return this.indexes[path];
+        }
+
+        /**
+         * Paths taking the text which have all their tags opened, so the text found now belongs to them.
+         */
+        public int[] readyPaths() {
+            return this.readyPaths;
+        }
+    }
+
+    /**
+     * Steps reached by the patterns in one element, as numbers sorted by path. The transitions are filled like the
+     * ones of {@link State}, only between states kept in {@link #patternStates}.
+     */
+    public final class PatternState {
+
+        private final int[] steps;
+        private final int[] readyPaths;
+        private final boolean kept;
+        private final PatternTransition[] onStart;
+
+        private PatternState(
+            final int[] steps,
+            final int[] readyPaths,
+            final boolean kept
+        ) {
+            this.steps = steps;
+            this.readyPaths = readyPaths;
+            this.kept = kept;
+            this.onStart = new PatternTransition[XmlTagPathAutomaton.this.symbolsIgnoringCase.size() + 1];
+        }
+
+        /**
+         * Pattern paths taking the text which matched the element or one of its ancestors.
+         */
+        public int[] readyPaths() {
+            return this.readyPaths;
+        }
+    }
+
+    /**
+     * Transition of a pattern state, in a single object so a thread seeing it cached sees both parts.
+     */
+    record PatternTransition(PatternState next, int[] targets) {
+    }
+
+    private static final class Indexes {
+
+        private final int[] values;
+        private final int hash;
+
+        private Indexes(final int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof Indexes indexes && Arrays.equals(this.values, indexes.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
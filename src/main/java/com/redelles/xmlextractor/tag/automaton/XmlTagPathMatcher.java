@@ -0,0 +1,274 @@
+package com.redelles.xmlextractor.tag.automaton;
+
+import com.redelles.xmlextractor.tag.XmlTagPath;
+
+import java.util.Arrays;
+
+/**
+ * Mutable side of a {@link XmlTagPathAutomaton} for a single extraction: the current state and how many times every
+ * path can still be written. With pattern paths it also keeps the pattern state of every open element.
+ */
+public class XmlTagPathMatcher {
+
+    private static final int[] NO_TARGETS = new int[0];
+
+    private final XmlTagPathAutomaton automaton;
+    private final int[] times;
+    private final boolean[] finished;
+    private XmlTagPathAutomaton.State state;
+    private XmlTagPathAutomaton.State startedFrom;
+    private XmlTagPathAutomaton.PatternState pattern;
+    private XmlTagPathAutomaton.PatternState[] parents = new XmlTagPathAutomaton.PatternState[16];
+    private int depth;
+    private int[] startedTargets;
+    private int pending;
+    private XmlTagPathAutomaton.State readyState;
+    private XmlTagPathAutomaton.PatternState readyPattern;
+    private int[] readyPaths;
+
+    XmlTagPathMatcher(final XmlTagPathAutomaton automaton) {
+        this.automaton = automaton;
+        this.times = new int[automaton.tagPaths().size()];
+        this.finished = new boolean[this.times.length];
+        reset();
+    }
+
+    public void reset() {
+        for (int path = 0; path < this.times.length; path++) {
+            this.times[path] = this.automaton.tagPaths().get(path).times;
+            this.finished[path] = false;
+        }
+        this.state = this.automaton.initial();
+        resetPattern();
+        this.pending = this.times.length;
+    }
+
+    private void resetPattern() {
+        this.pattern = this.automaton.initialPattern();
+        this.depth = 0;
+        this.startedTargets = NO_TARGETS;
+    }
+
+    /**
+     * Puts the matcher where another one was, from what {@link #indexes()}, {@link #remainingTimes()} and
+     * {@link #finished()} returned, so an extraction can go on from there. The pattern paths start again from the
+     * document root: give the elements open there to {@link #enter(String)}.
+     *
+     * @throws IllegalArgumentException when the values do not fit the paths of the automaton
+     */
+    public void restore(
+        final int[] indexes,
+        final int[] remainingTimes,
+        final boolean[] finished
+    ) {
+        if (indexes.length != this.times.length || remainingTimes.length != this.times.length
+            || finished.length != this.times.length) {
+            throw new IllegalArgumentException("Expected the values of %s paths".formatted(this.times.length));
+        }
+        for (int path = 0; path < indexes.length; path++) {
+            if (indexes[path] < 0 || indexes[path] > this.automaton.tagPaths().get(path).elements.size()) {
+                throw new IllegalArgumentException("Index %s out of the path %s".formatted(indexes[path], path));
+            }
+        }
+        System.arraycopy(remainingTimes, 0, this.times, 0, this.times.length);
+        System.arraycopy(finished, 0, this.finished, 0, this.finished.length);
+        this.state = this.automaton.state(indexes.clone());
+        resetPattern();
+        this.pending = 0;
+        for (final boolean pathFinished : finished) {
+            if (!pathFinished) {
+                this.pending++;
+            }
+        }
+    }
+
+    public void start(final String elementName) {
+        start(this.automaton.symbol(elementName));
+    }
+
+    public void end(final String elementName) {
+        end(this.automaton.symbol(elementName));
+    }
+
+    /**
+     * Same as {@link #start(String)} with the id given by {@link XmlTagPathAutomaton#symbol(String)}.
+     */
+    public void start(final int symbol) {
+        final XmlTagPathAutomaton.State previous = this.state;
+        this.startedFrom = previous;
+        this.state = this.automaton.onStart(previous, symbol);
+        this.startedTargets = this.automaton.targetsOnStart(previous, symbol);
+        if (this.automaton.hasPatterns()) {
+            final int[] patternTargets = startPattern(symbol);
+            if (patternTargets.length > 0) {
+                this.startedTargets = concat(this.startedTargets, patternTargets);
+            }
+        }
+    }
+
+    /**
+     * Takes back the last {@link #start(int)}, when the element could not be read after all. Nothing can have been
+     * written nor ended since then.
+     */
+    public void undoStart() {
+        this.state = this.startedFrom;
+        if (this.automaton.hasPatterns() && this.depth > 0) {
+            this.pattern = this.parents[--this.depth];
+        }
+        this.startedTargets = NO_TARGETS;
+    }
+
+    /**
+     * An element already open when the extraction goes on from {@link #restore(int[], int[], boolean[])}: it only
+     * moves the pattern paths, its effect on the others is in the restored indexes, and nothing is taken from it.
+     */
+    public void enter(final String elementName) {
+        if (this.automaton.hasPatterns()) {
+            startPattern(this.automaton.symbol(elementName));
+            this.startedTargets = NO_TARGETS;
+        }
+    }
+
+    private int[] startPattern(final int symbol) {
+        if (this.depth == this.parents.length) {
+            this.parents = Arrays.copyOf(this.parents, this.depth * 2);
+        }
+        this.parents[this.depth++] = this.pattern;
+        final XmlTagPathAutomaton.PatternTransition transition = this.automaton.onStart(this.pattern, symbol);
+        this.pattern = transition.next();
+        return transition.targets();
+    }
+
+    private static int[] concat(
+        final int[] first,
+        final int[] second
+    ) {
+        if (first.length == 0) {
+            return second;
+        }
+        final int[] paths = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, paths, first.length, second.length);
+        return paths;
+    }
+
+    /**
+     * Paths with an attribute or namespace target completed by the last start element, to be taken from it. They can
+     * be already finished, check {@link #canWrite(int)}.
+     */
+    public int[] startedTargets() {
+        return this.startedTargets;
+    }
+
+    public void end(final int symbol) {
+        this.state = this.automaton.onEnd(this.state, symbol);
+        if (this.depth > 0) {
+            this.pattern = this.parents[--this.depth];
+        }
+    }
+
+    public XmlTagPathAutomaton.State state() {
+        return this.state;
+    }
+
+    /**
+     * How many tags of every path are matched in the current state.
+     */
+    public int[] indexes() {
+        final int[] indexes = new int[this.times.length];
+        for (int path = 0; path < indexes.length; path++) {
+            indexes[path] = this.state.index(path);
+        }
+        return indexes;
+    }
+
+    /**
+     * Times every path can still write, negative when unlimited.
+     */
+    public int[] remainingTimes() {
+        return this.times.clone();
+    }
+
+    public boolean[] finished() {
+        return this.finished.clone();
+    }
+
+    public XmlTagPath tagPath(final int path) {
+        return this.automaton.tagPaths().get(path);
+    }
+
+    /**
+     * Paths ready to write in the current state, they can be already finished, check {@link #canWrite(int)}.
+     */
+    public int[] readyPaths() {
+        final int[] patternPaths = this.pattern.readyPaths();
+        if (patternPaths.length == 0) {
+            return this.state.readyPaths();
+        }
+        if (this.state != this.readyState || this.pattern != this.readyPattern) {
+            this.readyState = this.state;
+            this.readyPattern = this.pattern;
+            this.readyPaths = concat(this.state.readyPaths(), patternPaths);
+        }
+        return this.readyPaths;
+    }
+
+    public boolean canWrite(final int path) {
+        return !this.finished[path];
+    }
+
+    /**
+     * True when some path would write the text found now.
+     */
+    public boolean isWriting() {
+        for (final int path : readyPaths()) {
+            if (!this.finished[path]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True when a start or end element with this name would move some path from the current state. The other elements
+     * can be passed over without telling the matcher.
+     */
+    public boolean isRelevant(final String elementName) {
+        return this.automaton.isRelevant(this.state, this.automaton.symbol(elementName));
+    }
+
+    /**
+     * Count one more value written by the path, finishing it when it reaches its times.
+     */
+    public void written(final int path) {
+        decreaseTagCount(path);
+        if (this.times[path] == 0) {
+            this.finished[path] = true;
+            this.pending--;
+        }
+    }
+
+    /**
+     * Count one value lost for every path ready to write, as done when the document can not be parsed. The paths are
+     * not finished here, like a {@link com.redelles.xmlextractor.XmlTagProcessor} is not removed until it writes.
+     */
+    public void decreaseReadyTagCounts() {
+        for (final int path : readyPaths()) {
+            if (!this.finished[path]) {
+                decreaseTagCount(path);
+            }
+        }
+    }
+
+    /**
+     * True when all the paths have written all the times they are configured for.
+     */
+    public boolean isExhausted() {
+        return this.pending == 0;
+    }
+
+    private void decreaseTagCount(final int path) {
+        if (this.times[path] != 0) {
+            this.times[path]--;
+        }
+    }
+}
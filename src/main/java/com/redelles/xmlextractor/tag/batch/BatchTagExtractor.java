@@ -0,0 +1,147 @@
+package com.redelles.xmlextractor.tag.batch;
+
+import com.redelles.xmlextractor.tag.TagExtractor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Extracts many files at once, every one on its own virtual thread.
+ * <p>
+ * Two limits are applied: how many files can be open at the same time, and how many documents can be parsed at the
+ * same time, usually one per core. The files up to {@code inMemoryLimit} bytes are read whole while holding only an
+ * open file permit and then parsed from memory, so the many small files keep the disks busy while the cores parse.
+ * Bigger files are parsed while they are read, holding both permits.
+ * <p>
+ * The limits are shared by all the batches running on the same instance.
+ */
+@Slf4j
+public class BatchTagExtractor {
+
+    public static final int DEFAULT_OPEN_FILES = 256;
+    public static final long DEFAULT_IN_MEMORY_LIMIT = 8L << 20;
+
+    private final TagExtractor extractor;
+    private final Semaphore openFiles;
+    private final Semaphore parsing;
+    private final long inMemoryLimit;
+
+    public BatchTagExtractor(final TagExtractor extractor) {
+        this(extractor, DEFAULT_OPEN_FILES, Runtime.getRuntime()
+            .availableProcessors(), DEFAULT_IN_MEMORY_LIMIT);
+    }
+
+    public BatchTagExtractor(
+        final TagExtractor extractor,
+        final int maxOpenFiles,
+        final int maxParsing,
+        final long inMemoryLimit
+    ) {
+        this.extractor = extractor;
+        this.openFiles = new Semaphore(maxOpenFiles);
+        this.parsing = new Semaphore(maxParsing);
+        this.inMemoryLimit = inMemoryLimit;
+    }
+
+    /**
+     * Extracts all the files, giving every result to {@code results} on the calling thread as soon as its file is
+     * done, so in completion order. A file that fails is reported with its error and does not stop the others.
+     *
+     * @throws InterruptedException when the calling thread is interrupted, the pending files are cancelled.
+     */
+    public void extract(
+        final Collection<Path> files,
+        final Consumer<FileExtraction> results
+    ) throws InterruptedException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final CompletionService<FileExtraction> completion = new ExecutorCompletionService<>(executor);
+            final Map<Future<FileExtraction>, Path> pending = new HashMap<>();
+            for (final Path file : files) {
+                pending.put(completion.submit(() -> extractFile(file)), file);
+            }
+            try {
+                while (!pending.isEmpty()) {
+                    final Future<FileExtraction> done = completion.take();
+                    final Path file = pending.remove(done);
+                    results.accept(result(file, done));
+                }
+            } finally {
+                if (!pending.isEmpty()) {
+                    executor.shutdownNow();
+                }
+            }
+        }
+    }
+
+    private static FileExtraction result(
+        final Path file,
+        final Future<FileExtraction> done
+    ) throws InterruptedException {
+        try {
+            return done.get();
+        } catch (final ExecutionException e) {
+            return new FileExtraction(file, null, e.getCause() instanceof Exception cause ? cause : e);
+        }
+    }
+
+    private FileExtraction extractFile(final Path file) {
+        try {
+            return new FileExtraction(file, read(file), null);
+        } catch (final InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+            return new FileExtraction(file, null, e);
+        } catch (final IOException | RuntimeException e) {
+            log.warn("Error extracting values from the document {} with error: {}", file, e.getMessage());
+            return new FileExtraction(file, null, e);
+        }
+    }
+
+    private Map<String, Collection<String>> read(final Path file) throws IOException, InterruptedException {
+        final byte[] content;
+        this.openFiles.acquire();
+        try {
+            if (Files.size(file) > this.inMemoryLimit) {
+                return parse(file, Files.newInputStream(file));
+            }
+            content = Files.readAllBytes(file);
+        } finally {
+            this.openFiles.release();
+        }
+        return parse(file, new ByteArrayInputStream(content));
+    }
+
+    private Map<String, Collection<String>> parse(
+        final Path file,
+        final InputStream inputStream
+    ) throws InterruptedException {
+        try {
+            this.parsing.acquire();
+        } catch (final InterruptedException e) {
+            closeQuietly(inputStream);
+            throw e;
+        }
+        try {
+            return this.extractor.extract(file.toString(), inputStream);
+        } finally {
+            this.parsing.release();
+        }
+    }
+
+    private static void closeQuietly(final InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (final IOException e) {
+            log.debug("Error closing an input stream: {}", e.getMessage());
+        }
+    }
+}
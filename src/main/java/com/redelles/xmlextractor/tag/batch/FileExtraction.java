@@ -0,0 +1,32 @@
+package com.redelles.xmlextractor.tag.batch;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Outcome of the extraction of one file of a batch: the values by out key, or the error that stopped it.
+ */
+public class FileExtraction {
+
+    public final Path file;
+    public final Map<String, Collection<String>> values;
+    /**
+     * Why the file could not be extracted, null when it was.
+     */
+    public final Exception error;
+
+    FileExtraction(
+        final Path file,
+        final Map<String, Collection<String>> values,
+        final Exception error
+    ) {
+        this.file = file;
+        this.values = values;
+        this.error = error;
+    }
+
+    public boolean isFailed() {
+        return this.error != null;
+    }
+}
@@ -0,0 +1,108 @@
+package com.redelles.xmlextractor.tag.checkpoint;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Point of a file where an extraction can go on: the offset of the first record not extracted yet, the start tags of
+ * the elements open there and where every path was, with the times it could still write.
+ * <p>
+ * The size of the file is kept so a checkpoint is not used with a file that changed. A finished checkpoint has nothing
+ * left to extract, because the end of the file, a stop tag or the times of all the paths were reached.
+ */
+public final class Checkpoint {
+
+    private static final int MAGIC = 0x58434B50;
+    private static final int VERSION = 1;
+
+    public final long fileSize;
+    public final long offset;
+    /**
+     * Raw start tags of the elements open at the offset, outermost first.
+     */
+    public final List<byte[]> openElements;
+    public final int[] indexes;
+    public final int[] remainingTimes;
+    public final boolean[] finishedPaths;
+    public final boolean finished;
+
+    public Checkpoint(
+        final long fileSize,
+        final long offset,
+        final List<byte[]> openElements,
+        final int[] indexes,
+        final int[] remainingTimes,
+        final boolean[] finishedPaths,
+        final boolean finished
+    ) {
+        this.fileSize = fileSize;
+        this.offset = offset;
+        this.openElements = List.copyOf(openElements);
+        this.indexes = indexes;
+        this.remainingTimes = remainingTimes;
+        this.finishedPaths = finishedPaths;
+        this.finished = finished;
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file next to {@code file} and moves it over, so a crash leaves either the
+     * previous checkpoint or this one, never half of it.
+     */
+    public void write(final Path file) throws IOException {
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(this.fileSize);
+            output.writeLong(this.offset);
+            output.writeBoolean(this.finished);
+            output.writeInt(this.openElements.size());
+            for (final byte[] startTag : this.openElements) {
+                output.writeInt(startTag.length);
+                output.write(startTag);
+            }
+            output.writeInt(this.indexes.length);
+            for (int path = 0; path < this.indexes.length; path++) {
+                output.writeInt(this.indexes[path]);
+                output.writeInt(this.remainingTimes[path]);
+                output.writeBoolean(this.finishedPaths[path]);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @throws IOException when the file is not a checkpoint written by {@link #write(Path)}
+     */
+    public static Checkpoint read(final Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("%s is not a checkpoint".formatted(file));
+            }
+            final long fileSize = input.readLong();
+            final long offset = input.readLong();
+            final boolean finished = input.readBoolean();
+            final int openCount = input.readInt();
+            final List<byte[]> openElements = new ArrayList<>(openCount);
+            for (int element = 0; element < openCount; element++) {
+                final byte[] startTag = new byte[input.readInt()];
+                input.readFully(startTag);
+                openElements.add(startTag);
+            }
+            final int pathCount = input.readInt();
+            final int[] indexes = new int[pathCount];
+            final int[] remainingTimes = new int[pathCount];
+            final boolean[] finishedPaths = new boolean[pathCount];
+            for (int path = 0; path < pathCount; path++) {
+                indexes[path] = input.readInt();
+                remainingTimes[path] = input.readInt();
+                finishedPaths[path] = input.readBoolean();
+            }
+            return new Checkpoint(fileSize, offset, openElements, indexes, remainingTimes, finishedPaths, finished);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.redelles.xmlextractor.tag.checkpoint;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.ExtractionPlan;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.automaton.XmlTagPathMatcher;
+import com.redelles.xmlextractor.tag.metrics.StopReason;
+import com.redelles.xmlextractor.tag.parallel.BufferInputStream;
+import com.redelles.xmlextractor.tag.parallel.ChunkScanner;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Extracts a big file in segments that end on a start tag of the record element, taking a {@link Checkpoint} after
+ * every segment, so an extraction that is interrupted can go on from the last checkpoint instead of parsing the file
+ * again from the beginning.
+ * <p>
+ * A segment ends after {@code checkpointBytes} bytes or {@code checkpointRecords} records, whatever comes first. It is
+ * parsed after the start tags of the elements open where it begins, which do not move the paths: the paths go on from
+ * where the previous segment, or the checkpoint, left them. The values are the same as those of a single extraction of
+ * the whole file. The values of a segment are given to the processor before its checkpoint is taken, so the values
+ * of the segment that was being extracted when the extraction was interrupted are given again when it resumes.
+ * <p>
+ * The special extractors keep counters that can not be saved, so they are not supported. Like with
+ * {@link com.redelles.xmlextractor.tag.parallel.ParallelTagExtractor}, the record element is searched in the raw
+ * bytes: the document must use an encoding compatible with ASCII and the record start tag should not appear inside
+ * comments or CDATA.
+ * <p>
+ * Resynchronizing on malformed input, with a consumer of {@link SkippedRange}, only works here, on a file extracted
+ * with checkpoints: it seeks back into the file, which none of the other extractors can do, so they recover from a
+ * parse error event by event. A file that does not need to be resumed can still be resynchronized by giving no
+ * checkpoint and ignoring the ones taken.
+ */
+@Slf4j
+public class CheckpointedTagExtractor {
+
+    public static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+    private final ExtractionPlan plan;
+    private final XmlTagCursorExtractor extractor;
+    private final String recordElement;
+    private final long checkpointBytes;
+    private final int checkpointRecords;
+
+    public CheckpointedTagExtractor(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags,
+        final String recordElement
+    ) {
+        this(new ExtractionPlan(tagPaths, stopTags, List.of()), recordElement, DEFAULT_CHECKPOINT_BYTES, 0);
+    }
+
+    /**
+     * @param checkpointRecords records of a segment, or 0 to cut the segments only by size.
+     * @throws IllegalArgumentException when the plan has special extractors
+     */
+    public CheckpointedTagExtractor(
+        final ExtractionPlan plan,
+        final String recordElement,
+        final long checkpointBytes,
+        final int checkpointRecords
+    ) {
+        if (plan.hasSpecialExtractors()) {
+            throw new IllegalArgumentException("The special extractors can not be checkpointed");
+        }
+        this.plan = plan;
+        this.extractor = new XmlTagCursorExtractor(plan);
+        this.recordElement = recordElement;
+        this.checkpointBytes = Math.min(Math.max(checkpointBytes, 1), Integer.MAX_VALUE / 2);
+        this.checkpointRecords = Math.max(checkpointRecords, 0);
+    }
+
+    public Collection<String> keys() {
+        return this.plan.keys();
+    }
+
+    /**
+     * Extracts the file from the checkpoint saved in {@code checkpointFile}, or from the beginning when there is none,
+     * saving there a new checkpoint after every segment.
+     *
+     * @return the last checkpoint, finished unless the extraction failed.
+     */
+    public Checkpoint extract(
+        final Path file,
+        final Path checkpointFile,
+        final ValueProcessor processor
+    ) throws IOException {
+        final Optional<Checkpoint> from = Files.exists(checkpointFile)
+            ? Optional.of(Checkpoint.read(checkpointFile))
+            : Optional.empty();
+        try {
+            return extract(file, from, processor, checkpoint -> {
+                try {
+                    checkpoint.write(checkpointFile);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Extracts the file from the checkpoint, or from the beginning when it is empty, giving a new checkpoint to
+     * {@code checkpoints} after the values of every segment.
+     *
+     * @return the last checkpoint, finished unless the extraction failed.
+     * @throws IllegalArgumentException when the checkpoint is not for this file or these paths
+     */
+    public Checkpoint extract(
+        final Path file,
+        final Optional<Checkpoint> from,
+        final ValueProcessor processor,
+        final Consumer<Checkpoint> checkpoints
+    ) throws IOException {
+        return extract(file, from, processor, checkpoints, null);
+    }
+
+    /**
+     * Same as {@link #extract(Path, Optional, ValueProcessor, Consumer)} but resynchronizing on malformed input
+     * instead of retrying event by event: at the first parse error of a segment the raw bytes are scanned to the next
+     * start tag of the record element, the range in between is given to {@code skipped} and a fresh parser goes on
+     * from there, after the start tags of the ancestors of the last record the parser started before the error. The
+     * malformed bytes are not looked at for elements, so the next record is taken as a sibling of the malformed one.
+     * The values taken from the malformed record before the error are kept.
+     * <p>
+     * The resynchronization needs to seek in the file, so only this extractor does it: the extractors reading a stream
+     * recover event by event.
+     *
+     * @param skipped receives every range left out, or null to recover event by event.
+     */
+    public Checkpoint extract(
+        final Path file,
+        final Optional<Checkpoint> from,
+        final ValueProcessor processor,
+        final Consumer<Checkpoint> checkpoints,
+        final Consumer<SkippedRange> skipped
+    ) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final XmlTagPathMatcher matcher = this.plan.automaton()
+                .matcher();
+            Checkpoint checkpoint = from.orElseGet(() -> new Checkpoint(
+                size,
+                0,
+                List.of(),
+                matcher.indexes(),
+                matcher.remainingTimes(),
+                matcher.finished(),
+                size == 0
+            ));
+            if (checkpoint.fileSize != size) {
+                throw new IllegalArgumentException("The checkpoint is for a file of %s bytes, %s has %s"
+                    .formatted(checkpoint.fileSize, file, size));
+            }
+            if (checkpoint.finished) {
+                return checkpoint;
+            }
+            matcher.restore(checkpoint.indexes, checkpoint.remainingTimes, checkpoint.finishedPaths);
+            checkpoint.openElements.forEach(element -> matcher.enter(ChunkScanner.localName(element)));
+
+            final byte[] declaration = ChunkScanner.declaration(channel);
+            final Deque<byte[]> open = new ArrayDeque<>(checkpoint.openElements);
+            long start = checkpoint.offset;
+            while (start < size) {
+                final long end = segmentEnd(channel, start, size);
+                final ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                final byte[] prefix = prefix(start, declaration, open);
+                final XMLStreamException[] error = new XMLStreamException[1];
+                final StopReason reason = this.extractor.extractSegment(
+                    file + "@" + start,
+                    new SequenceInputStream(new ByteArrayInputStream(prefix), new BufferInputStream(bytes.duplicate())),
+                    start > 0 ? open.size() : 0,
+                    matcher,
+                    processor,
+                    skipped == null ? null : exception -> error[0] = exception
+                );
+                if (reason == StopReason.MALFORMED_INPUT) {
+                    start = resynchronize(channel, start, prefix, bytes, error[0], open, matcher, skipped);
+                } else if (reason != StopReason.END_OF_DOCUMENT && reason != StopReason.STOP_TAG
+                    && reason != StopReason.PATHS_EXHAUSTED) {
+                    log.warn("Extraction of {} stopped at the segment starting at {}: {}", file, start, reason);
+                    return checkpoint;
+                } else {
+                    ChunkScanner.elementChanges(bytes)
+                        .applyTo(open);
+                    start = end;
+                }
+                checkpoint = new Checkpoint(
+                    size,
+                    start,
+                    new ArrayList<>(open),
+                    matcher.indexes(),
+                    matcher.remainingTimes(),
+                    matcher.finished(),
+                    start >= size || (reason != StopReason.END_OF_DOCUMENT && reason != StopReason.MALFORMED_INPUT)
+                );
+                checkpoints.accept(checkpoint);
+                if (checkpoint.finished) {
+                    break;
+                }
+            }
+            if (!open.isEmpty() && start >= size) {
+                log.warn("The document {} ends with {} elements still open", file, open.size());
+            }
+            return checkpoint;
+        }
+    }
+
+    private static byte[] prefix(
+        final long start,
+        final byte[] declaration,
+        final Collection<byte[]> open
+    ) {
+        final ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+        if (start > 0) {
+            prefix.writeBytes(declaration);
+            open.forEach(prefix::writeBytes);
+        }
+        return prefix.toByteArray();
+    }
+
+    /**
+     * Skips from the parse error of the segment to the next start tag of the record element, or to the end of the
+     * file, and leaves the open elements and the matcher as a fresh parser would find them there: the paths keep their
+     * times but start again from the root, and move through the elements open at the new start. Those are the elements
+     * open at the last record start before the error, found with the bytes the parser accepted, never with the malformed
+     * ones, which could close real ancestors.
+     *
+     * @return the offset where the extraction goes on.
+     */
+    private long resynchronize(
+        final FileChannel channel,
+        final long start,
+        final byte[] prefix,
+        final ByteBuffer bytes,
+        final XMLStreamException error,
+        final Deque<byte[]> open,
+        final XmlTagPathMatcher matcher,
+        final Consumer<SkippedRange> skipped
+    ) throws IOException {
+        final long size = channel.size();
+        final long errorAt = start + byteOffset(prefix, bytes, error.getLocation() == null
+            ? 0
+            : error.getLocation()
+                .getCharacterOffset());
+        final long record = ChunkScanner.nextRecordStart(channel, Math.max(errorAt, start + 1), this.recordElement);
+        final long next = record < 0 ? size : record;
+        if (next - start > Integer.MAX_VALUE) {
+            throw new IOException("No start tag of %s in the %s bytes after %s"
+                .formatted(this.recordElement, next - start, start));
+        }
+        if (next > errorAt) {
+            skipped.accept(new SkippedRange(errorAt, next, error.getMessage()));
+        }
+
+        final ByteBuffer accepted = bytes.duplicate()
+            .limit((int) (errorAt - start));
+        final byte[] pattern = ChunkScanner.recordPattern(this.recordElement);
+        int lastRecord = 0;
+        int found = ChunkScanner.nextRecordElement(accepted, 1, pattern);
+        while (found >= 0) {
+            lastRecord = found;
+            found = ChunkScanner.nextRecordElement(accepted, found + 1, pattern);
+        }
+        ChunkScanner.elementChanges(accepted.limit(lastRecord))
+            .applyTo(open);
+        final String recordName = this.recordElement.substring(this.recordElement.indexOf(':') + 1);
+        final List<byte[]> elements = new ArrayList<>(open);
+        for (int element = 0; element < elements.size(); element++) {
+            if (recordName.equals(ChunkScanner.localName(elements.get(element)))) {
+                elements.subList(element, elements.size())
+                    .clear();
+            }
+        }
+        open.clear();
+        open.addAll(elements);
+        matcher.restore(new int[matcher.indexes().length], matcher.remainingTimes(), matcher.finished());
+        open.forEach(element -> matcher.start(ChunkScanner.localName(element)));
+        return next;
+    }
+
+    /**
+     * Bytes of the segment before the character where the parser was, counting the characters of its UTF-8 bytes
+     * after those of the prefix. A character out of the basic plane counts twice, as the parser does.
+     */
+    private static long byteOffset(
+        final byte[] prefix,
+        final ByteBuffer bytes,
+        final long characters
+    ) {
+        long remaining = characters;
+        for (int index = 0; index < prefix.length && remaining > 0; index++) {
+            remaining -= characterCount(prefix[index]);
+        }
+        int index = 0;
+        while (index < bytes.limit() && remaining > 0) {
+            remaining -= characterCount(bytes.get(index));
+            index++;
+        }
+        while (index < bytes.limit() && (bytes.get(index) & 0xC0) == 0x80) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Characters that start with the byte: none for a continuation byte, two for the start of a four byte sequence.
+     */
+    private static int characterCount(final byte value) {
+        if ((value & 0xC0) == 0x80) {
+            return 0;
+        }
+        return (value & 0xF8) == 0xF0 ? 2 : 1;
+    }
+
+    /**
+     * Start of the record that begins the next segment, or the end of the file.
+     */
+    private long segmentEnd(
+        final FileChannel channel,
+        final long start,
+        final long size
+    ) throws IOException {
+        long end = ChunkScanner.nextRecordStart(channel, start + this.checkpointBytes, this.recordElement);
+        if (this.checkpointRecords > 0) {
+            final long record = ChunkScanner.recordStart(channel, start + 1, this.recordElement, this.checkpointRecords);
+            if (record >= 0 && (end < 0 || record < end)) {
+                end = record;
+            }
+        }
+        if (end < 0) {
+            end = size;
+        }
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("No start tag of %s in the %s bytes after %s"
+                .formatted(this.recordElement, end - start, start));
+        }
+        return end;
+    }
+}
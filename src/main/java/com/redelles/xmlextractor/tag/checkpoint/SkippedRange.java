@@ -0,0 +1,34 @@
+package com.redelles.xmlextractor.tag.checkpoint;
+
+/**
+ * Bytes of a file left out of an extraction because they were malformed: from the parse error to the start tag of the
+ * next record, where the extraction went on.
+ */
+public final class SkippedRange {
+
+    public final long from;
+    public final long to;
+    /**
+     * Message of the parse error.
+     */
+    public final String reason;
+
+    public SkippedRange(
+        final long from,
+        final long to,
+        final String reason
+    ) {
+        this.from = from;
+        this.to = to;
+        this.reason = reason;
+    }
+
+    public long length() {
+        return this.to - this.from;
+    }
+
+    @Override
+    public String toString() {
+        return "[%s, %s): %s".formatted(this.from, this.to, this.reason);
+    }
+}
@@ -0,0 +1,173 @@
+package com.redelles.xmlextractor.tag.compressed;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Input stream filled by a producer running on its own virtual thread, so the decompression goes ahead of the parser
+ * reading this stream. The producer can only be a few blocks ahead.
+ * <p>
+ * Closing the stream stops the producer and waits for it, so the source it reads from can be used again once the
+ * stream is closed (the next entry of a zip stream, for instance).
+ */
+final class BlockInputStream extends InputStream {
+
+    static final int BLOCK_SIZE = 1 << 16;
+    private static final int BLOCKS_AHEAD = 32;
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> blocks = new ArrayBlockingQueue<>(BLOCKS_AHEAD);
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private byte[] current = new byte[0];
+    private int position;
+    private boolean ended;
+
+    /**
+     * Produces the blocks of a stream, in order.
+     */
+    @FunctionalInterface
+    interface Producer {
+
+        void produce(Sink sink) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Sink {
+
+        /**
+         * Gives the next block to the reader, waiting while it is too far behind.
+         *
+         * @throws InterruptedIOException when the stream was closed, the producer must stop.
+         */
+        void put(byte[] block) throws InterruptedIOException;
+    }
+
+    BlockInputStream(final Producer producer) {
+        this.thread = Thread.ofVirtual()
+            .name("xml-extractor-decompression")
+            .start(() -> produce(producer));
+    }
+
+    /**
+     * Reads the whole source in the background, for the formats that can only be decompressed in order.
+     */
+    static BlockInputStream readingAhead(final InputStream source) {
+        return new BlockInputStream(sink -> {
+            try (source) {
+                byte[] block = source.readNBytes(BLOCK_SIZE);
+                while (block.length > 0) {
+                    sink.put(block);
+                    block = source.readNBytes(BLOCK_SIZE);
+                }
+            }
+        });
+    }
+
+    private void produce(final Producer producer) {
+        try {
+            producer.produce(this::put);
+        } catch (final IOException e) {
+            if (this.closed) {
+                return;
+            }
+            this.failure = e;
+        } catch (final RuntimeException e) {
+            this.failure = new IOException(e);
+        }
+        try {
+            Thread.interrupted();
+            put(END);
+        } catch (final InterruptedIOException e) {
+            // closed, nobody is waiting for the end
+        }
+    }
+
+    private void put(final byte[] block) throws InterruptedIOException {
+        if (this.closed) {
+            throw new InterruptedIOException("Stream closed");
+        }
+        try {
+            this.blocks.put(block);
+        } catch (final InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+            throw new InterruptedIOException("Decompression interrupted");
+        }
+        if (this.closed) {
+            throw new InterruptedIOException("Stream closed");
+        }
+    }
+
+    private boolean nextBlock() throws IOException {
+        while (this.position == this.current.length) {
+            if (this.ended || this.closed) {
+                return false;
+            }
+            try {
+                this.current = this.blocks.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread()
+                    .interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the decompression");
+            }
+            this.position = 0;
+            if (this.current == END) {
+                this.ended = true;
+                if (this.failure != null) {
+                    throw this.failure;
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return nextBlock() ? this.current[this.position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(
+        final byte[] bytes,
+        final int offset,
+        final int length
+    ) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextBlock()) {
+            return -1;
+        }
+        final int count = Math.min(length, this.current.length - this.position);
+        System.arraycopy(this.current, this.position, bytes, offset, count);
+        this.position += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        boolean interrupted = false;
+        while (this.thread.isAlive()) {
+            this.blocks.clear();
+            try {
+                this.thread.join(10);
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread()
+                .interrupt();
+        }
+    }
+}
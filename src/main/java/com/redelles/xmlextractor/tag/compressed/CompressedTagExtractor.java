@@ -0,0 +1,197 @@
+package com.redelles.xmlextractor.tag.compressed;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.TagExtractor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extracts plain, gzip and zip documents with any {@link TagExtractor}, telling them apart by their first bytes.
+ * <p>
+ * The decompression always runs on another thread, ahead of the parser. The gzip files made of several members are
+ * inflated in parallel (see {@link ParallelGzipInflater}); a gzip stream, or a file with a single member, is inflated
+ * by one background thread. Every entry of a zip is a document on its own, with its own values.
+ * <p>
+ * The documents are named after the file, or after the entry for the zip archives.
+ */
+@Slf4j
+public class CompressedTagExtractor {
+
+    public static final long DEFAULT_GZIP_RANGE_SIZE = 4L << 20;
+
+    private final TagExtractor extractor;
+    private final ExecutorService decompressors;
+    private final int parallelism;
+    private final long gzipRangeSize;
+
+    public CompressedTagExtractor(final TagExtractor extractor) {
+        this(extractor, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism(), DEFAULT_GZIP_RANGE_SIZE);
+    }
+
+    /**
+     * @param decompressors runs the parallel inflation of the gzip members, {@code parallelism} ranges of
+     *                      {@code gzipRangeSize} compressed bytes at a time.
+     */
+    public CompressedTagExtractor(
+        final TagExtractor extractor,
+        final ExecutorService decompressors,
+        final int parallelism,
+        final long gzipRangeSize
+    ) {
+        this.extractor = extractor;
+        this.decompressors = decompressors;
+        this.parallelism = Math.max(1, parallelism);
+        this.gzipRangeSize = gzipRangeSize;
+    }
+
+    /**
+     * Values of every document of the file by document name, in the order of the file.
+     */
+    public Map<String, Map<String, Collection<String>>> extract(final Path file) {
+        final Map<String, Map<String, Collection<String>>> documents = new LinkedHashMap<>();
+        extract(file, document -> {
+            final Map<String, Collection<String>> values = new HashMap<>();
+            this.extractor.keys()
+                .forEach(key -> values.put(key, new ArrayList<>()));
+            documents.put(document, values);
+            return (key, value) -> values.get(key)
+                .add(value);
+        });
+        return documents;
+    }
+
+    /**
+     * Extracts every document of the file, asking {@code processors} for the processor of each one before it starts.
+     */
+    public void extract(
+        final Path file,
+        final Function<String, ValueProcessor> processors
+    ) {
+        final String filename = file.toString();
+        try {
+            switch (format(file)) {
+                case GZIP -> extractGzip(file, processors.apply(filename));
+                case ZIP -> extractZip(file, processors);
+                case NONE -> this.extractor.extract(filename, Files.newInputStream(file), processors.apply(filename));
+            }
+        } catch (final IOException e) {
+            log.warn("Error extracting values from the document {} with error: {}", filename, e.getMessage());
+        }
+    }
+
+    /**
+     * Same as {@link #extract(Path, Function)} for a stream, the gzip members are inflated in order in this case.
+     */
+    public void extract(
+        final String filename,
+        final InputStream inputStream,
+        final Function<String, ValueProcessor> processors
+    ) {
+        try (InputStream input = new BufferedInputStream(inputStream, BlockInputStream.BLOCK_SIZE)) {
+            input.mark(CompressionFormat.MAGIC_LENGTH);
+            final byte[] magic = new byte[CompressionFormat.MAGIC_LENGTH];
+            final int length = input.readNBytes(magic, 0, magic.length);
+            input.reset();
+            switch (CompressionFormat.of(magic, length)) {
+                case GZIP -> this.extractor.extract(
+                    filename,
+                    BlockInputStream.readingAhead(new GZIPInputStream(new NotClosing(input), BlockInputStream.BLOCK_SIZE)),
+                    processors.apply(filename)
+                );
+                case ZIP -> extractZip(new ZipInputStream(input), processors);
+                case NONE -> this.extractor.extract(filename, new NotClosing(input), processors.apply(filename));
+            }
+        } catch (final IOException e) {
+            log.warn("Error extracting values from the document {} with error: {}", filename, e.getMessage());
+        }
+    }
+
+    private static CompressionFormat format(final Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            final byte[] magic = new byte[CompressionFormat.MAGIC_LENGTH];
+            return CompressionFormat.of(magic, input.readNBytes(magic, 0, magic.length));
+        }
+    }
+
+    private void extractGzip(
+        final Path file,
+        final ValueProcessor processor
+    ) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ParallelGzipInflater inflater = new ParallelGzipInflater(
+                channel,
+                this.decompressors,
+                this.parallelism,
+                this.gzipRangeSize
+            );
+            this.extractor.extract(file.toString(), new BlockInputStream(inflater), processor);
+        }
+    }
+
+    private void extractZip(
+        final Path file,
+        final Function<String, ValueProcessor> processors
+    ) throws IOException {
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory()) {
+                    this.extractor.extract(
+                        entry.getName(),
+                        BlockInputStream.readingAhead(zip.getInputStream(entry)),
+                        processors.apply(entry.getName())
+                    );
+                }
+            }
+        }
+    }
+
+    private void extractZip(
+        final ZipInputStream zip,
+        final Function<String, ValueProcessor> processors
+    ) throws IOException {
+        ZipEntry entry = zip.getNextEntry();
+        while (entry != null) {
+            if (!entry.isDirectory()) {
+                this.extractor.extract(
+                    entry.getName(),
+                    BlockInputStream.readingAhead(new NotClosing(zip)),
+                    processors.apply(entry.getName())
+                );
+            }
+            entry = zip.getNextEntry();
+        }
+    }
+
+    /**
+     * Keeps the source open when the extractor closes the stream of a single document.
+     */
+    private static final class NotClosing extends FilterInputStream {
+
+        private NotClosing(final InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public void close() {
+            // the source is closed by its owner
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.redelles.xmlextractor.tag.compressed;
+
+/**
+ * Formats recognized by the first bytes of the input, whatever the name of the file.
+ */
+enum CompressionFormat {
+
+    GZIP,
+    ZIP,
+    NONE;
+
+    static final int MAGIC_LENGTH = 4;
+
+    static CompressionFormat of(
+        final byte[] magic,
+        final int length
+    ) {
+        if (length >= 3 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B && magic[2] == 8) {
+            return GZIP;
+        }
+        if (length >= 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4) {
+            return ZIP;
+        }
+        return NONE;
+    }
+}
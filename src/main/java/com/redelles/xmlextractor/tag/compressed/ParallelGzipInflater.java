@@ -0,0 +1,323 @@
+package com.redelles.xmlextractor.tag.compressed;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Inflates a gzip file made of several members (as written by pigz, bgzip or by appending gzip files) on several
+ * threads.
+ * <p>
+ * The file is cut in ranges. Every range but the first is given to a task, which looks for the first gzip header in
+ * it and inflates the members from there until one starts after the range. A header found inside compressed data
+ * fails to inflate or to match its CRC, then the next one is tried. The ranges are joined in order: the result of a
+ * range is only used when it starts exactly where the previous range ended, otherwise the range is inflated again
+ * from there, so a wrong guess costs time but never changes the output. The first range, and any range whose task
+ * produced too much to keep in memory, is inflated by the producer thread itself, block by block.
+ * <p>
+ * A file with a single member is inflated by the producer thread, ahead of the parser, and the tasks give up fast.
+ */
+final class ParallelGzipInflater implements BlockInputStream.Producer {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long TASK_OUTPUT_LIMIT = 64L << 20;
+    private static final int FLAG_HEADER_CRC = 2;
+    private static final int FLAG_EXTRA = 4;
+    private static final int FLAG_NAME = 8;
+    private static final int FLAG_COMMENT = 16;
+    private static final int RESERVED_FLAGS = 0xE0;
+
+    private final FileChannel channel;
+    private final long size;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final long rangeSize;
+
+    ParallelGzipInflater(
+        final FileChannel channel,
+        final ExecutorService executor,
+        final int parallelism,
+        final long rangeSize
+    ) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.rangeSize = rangeSize;
+    }
+
+    @Override
+    public void produce(final BlockInputStream.Sink sink) throws IOException {
+        final int ranges = (int) ((this.size + this.rangeSize - 1) / this.rangeSize);
+        final Deque<Future<RangeResult>> tasks = new ArrayDeque<>();
+        int submitted = 1;
+        try {
+            long expected = 0;
+            for (int range = 0; range < ranges; range++) {
+                while (submitted < ranges && tasks.size() < this.parallelism) {
+                    final long start = submitted * this.rangeSize;
+                    tasks.add(this.executor.submit(() -> inflateRange(start, Math.min(this.size, start + this.rangeSize))));
+                    submitted++;
+                }
+                final long end = Math.min(this.size, (range + 1) * this.rangeSize);
+                final RangeResult result = range == 0 ? null : join(tasks.poll());
+                if (expected >= end) {
+                    continue;
+                }
+                if (result != null && result.start == expected) {
+                    for (final byte[] block : result.blocks) {
+                        sink.put(block);
+                    }
+                    expected = result.end;
+                } else {
+                    expected = inflateMembers(expected, end, sink::put);
+                }
+            }
+        } finally {
+            tasks.forEach(task -> task.cancel(true));
+        }
+    }
+
+    private static RangeResult join(final Future<RangeResult> task) throws IOException {
+        try {
+            return task.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the decompression");
+        } catch (final ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Members starting in the range, from the first header that can really be inflated; null when there is none or
+     * they do not fit in memory.
+     */
+    private RangeResult inflateRange(
+        final long start,
+        final long end
+    ) throws IOException {
+        long candidate = nextHeader(start, end);
+        while (candidate >= 0) {
+            final List<byte[]> blocks = new ArrayList<>();
+            final long[] output = {0};
+            try {
+                final long membersEnd = inflateMembers(candidate, end, block -> {
+                    output[0] += block.length;
+                    if (output[0] > TASK_OUTPUT_LIMIT) {
+                        throw new InterruptedIOException("Range too big to keep in memory");
+                    }
+                    blocks.add(block);
+                });
+                return new RangeResult(candidate, membersEnd, blocks);
+            } catch (final InterruptedIOException e) {
+                return null;
+            } catch (final IOException e) {
+                candidate = nextHeader(candidate + 1, end);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Inflates the members from {@code start} until one starts at or after {@code end}.
+     *
+     * @return where the next member starts, or the size of the file when the rest is not gzip (ignored, like
+     * {@link java.util.zip.GZIPInputStream} does).
+     */
+    private long inflateMembers(
+        final long start,
+        final long end,
+        final BlockInputStream.Sink sink
+    ) throws IOException {
+        long position = start;
+        while (position < end) {
+            if (!isHeader(position)) {
+                return this.size;
+            }
+            position = inflateMember(position, sink);
+        }
+        return position;
+    }
+
+    private long inflateMember(
+        final long start,
+        final BlockInputStream.Sink sink
+    ) throws IOException {
+        final Source source = new Source(this.channel, start);
+        source.skip(3);
+        final int flags = source.next();
+        source.skip(6);
+        if ((flags & FLAG_EXTRA) != 0) {
+            source.skip(source.next() | source.next() << 8);
+        }
+        if ((flags & FLAG_NAME) != 0) {
+            source.skipString();
+        }
+        if ((flags & FLAG_COMMENT) != 0) {
+            source.skipString();
+        }
+        if ((flags & FLAG_HEADER_CRC) != 0) {
+            source.skip(2);
+        }
+
+        final Inflater inflater = new Inflater(true);
+        final CRC32 crc = new CRC32();
+        long length = 0;
+        try {
+            byte[] block = new byte[BlockInputStream.BLOCK_SIZE];
+            int filled = 0;
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    inflater.setInput(source.fill());
+                }
+                final int count = inflater.inflate(block, filled, block.length - filled);
+                if (count == 0 && (inflater.needsDictionary() || (!inflater.finished() && !inflater.needsInput()))) {
+                    throw new ZipException("Corrupt gzip member at " + start);
+                }
+                crc.update(block, filled, count);
+                filled += count;
+                length += count;
+                if (filled == block.length) {
+                    sink.put(block);
+                    block = new byte[BlockInputStream.BLOCK_SIZE];
+                    filled = 0;
+                }
+            }
+            if (filled > 0) {
+                sink.put(Arrays.copyOf(block, filled));
+            }
+        } catch (final DataFormatException e) {
+            throw new ZipException("Corrupt gzip member at %s: %s".formatted(start, e.getMessage()));
+        } finally {
+            inflater.end();
+        }
+
+        final long expectedCrc = source.nextInt();
+        final long expectedLength = source.nextInt();
+        if (expectedCrc != crc.getValue() || expectedLength != (length & 0xFFFFFFFFL)) {
+            throw new ZipException("Corrupt gzip member at " + start);
+        }
+        return source.position();
+    }
+
+    private boolean isHeader(final long position) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(4);
+        while (header.hasRemaining() && this.channel.read(header, position + header.position()) > 0) {
+            // read the whole header
+        }
+        return !header.hasRemaining() && isHeader(header, 0);
+    }
+
+    private static boolean isHeader(
+        final ByteBuffer buffer,
+        final int index
+    ) {
+        return (buffer.get(index) & 0xFF) == 0x1F
+            && (buffer.get(index + 1) & 0xFF) == 0x8B
+            && buffer.get(index + 2) == 8
+            && (buffer.get(index + 3) & RESERVED_FLAGS) == 0;
+    }
+
+    /**
+     * First position in {@code [from, end)} that looks like a gzip header, or -1.
+     */
+    private long nextHeader(
+        final long from,
+        final long end
+    ) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long offset = from;
+        while (offset < end) {
+            buffer.clear();
+            final int read = this.channel.read(buffer, offset);
+            if (read < 4) {
+                return -1;
+            }
+            for (int index = 0; index + 3 < read; index++) {
+                if (offset + index >= end) {
+                    return -1;
+                }
+                if (isHeader(buffer, index)) {
+                    return offset + index;
+                }
+            }
+            offset += read - 3;
+        }
+        return -1;
+    }
+
+    private record RangeResult(long start, long end, List<byte[]> blocks) {
+
+    }
+
+    /**
+     * Sequential reader of the compressed bytes of a member, with positional reads so the tasks share the channel.
+     */
+    private static final class Source {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE)
+            .flip();
+        private long offset;
+
+        private Source(
+            final FileChannel channel,
+            final long start
+        ) {
+            this.channel = channel;
+            this.offset = start;
+        }
+
+        private long position() {
+            return this.offset + this.buffer.position();
+        }
+
+        /**
+         * Buffer with some bytes left to read, its position moves as they are consumed.
+         */
+        private ByteBuffer fill() throws IOException {
+            if (!this.buffer.hasRemaining()) {
+                this.offset += this.buffer.limit();
+                this.buffer.clear();
+                final int read = this.channel.read(this.buffer, this.offset);
+                this.buffer.flip();
+                if (read <= 0) {
+                    throw new EOFException("Unexpected end of gzip member");
+                }
+            }
+            return this.buffer;
+        }
+
+        private int next() throws IOException {
+            return fill().get() & 0xFF;
+        }
+
+        private long nextInt() throws IOException {
+            return next() | (long) next() << 8 | (long) next() << 16 | (long) next() << 24;
+        }
+
+        private void skip(final int count) throws IOException {
+            for (int index = 0; index < count; index++) {
+                next();
+            }
+        }
+
+        private void skipString() throws IOException {
+            while (next() != 0) {
+                // zero terminated
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.redelles.xmlextractor.tag.index;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.ExtractionPlan;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extracts only some records of a file, reading them at the offsets of its {@link RecordIndex} instead of parsing the
+ * whole file. Every record is parsed on its own, after the start tags of its ancestors, so the paths from the root
+ * match as in the whole document; the times of the paths and the stop tags apply within every record.
+ */
+public class IndexedTagExtractor {
+
+    private final ExtractionPlan plan;
+    private final XmlTagCursorExtractor extractor;
+
+    public IndexedTagExtractor(
+        final List<XmlTagPath> tagPaths,
+        final Collection<AlternateTagExtractor> specialExtractors
+    ) {
+        this(new ExtractionPlan(tagPaths, List.of(), specialExtractors));
+    }
+
+    public IndexedTagExtractor(final ExtractionPlan plan) {
+        this.plan = plan;
+        this.extractor = new XmlTagCursorExtractor(plan);
+    }
+
+    public Collection<String> keys() {
+        return this.plan.keys();
+    }
+
+    /**
+     * Values of the records where the key path of the index found the value.
+     */
+    public Map<String, Collection<String>> lookup(
+        final Path file,
+        final RecordIndex index,
+        final String key,
+        final String value
+    ) throws IOException {
+        final Map<String, Collection<String>> result = this.plan.newResult();
+        extract(file, index, index.records(key, value), (outKey, extracted) -> result.get(outKey)
+            .add(extracted));
+        return result;
+    }
+
+    /**
+     * Extracts the records with these numbers, in the order given.
+     *
+     * @throws IllegalArgumentException when the file changed after it was indexed
+     */
+    public void extract(
+        final Path file,
+        final RecordIndex index,
+        final int[] records,
+        final ValueProcessor processor
+    ) throws IOException {
+        if (!index.isCurrent(file)) {
+            throw new IllegalArgumentException("The index of %s is out of date".formatted(file));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (final int record : records) {
+                final RecordIndex.Document document = index.document(channel, record);
+                this.extractor.extractFragment(
+                    file + "@" + index.offset(record),
+                    document.input(),
+                    document.contextElements,
+                    processor
+                );
+            }
+        }
+    }
+}
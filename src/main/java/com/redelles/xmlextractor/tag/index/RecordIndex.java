@@ -0,0 +1,330 @@
+package com.redelles.xmlextractor.tag.index;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Where every record of a file is: its byte offset and length, the start tags of the elements open around it, and the
+ * records having every value of the key paths. It is built by a {@link RecordIndexer} and kept in a sidecar file next
+ * to the document, see {@link #sidecar(Path)}.
+ * <p>
+ * The records are numbered in document order. The offsets are written as the difference from the previous record and
+ * all the numbers as variable length integers, so the index of small records takes a few bytes per record.
+ */
+public final class RecordIndex {
+
+    private static final int MAGIC = 0x58494458;
+    private static final int VERSION = 1;
+
+    private final long fileSize;
+    private final long lastModified;
+    private final String recordElement;
+    private final byte[] declaration;
+    private final List<Context> contexts;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] recordContexts;
+    private final Map<String, Map<String, int[]>> keys;
+
+    RecordIndex(
+        final long fileSize,
+        final long lastModified,
+        final String recordElement,
+        final byte[] declaration,
+        final List<Context> contexts,
+        final long[] offsets,
+        final int[] lengths,
+        final int[] recordContexts,
+        final Map<String, Map<String, int[]>> keys
+    ) {
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.recordElement = recordElement;
+        this.declaration = declaration;
+        this.contexts = contexts;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.recordContexts = recordContexts;
+        this.keys = keys;
+    }
+
+    /**
+     * Sidecar index file of a document: the same name with {@code .idx} added.
+     */
+    public static Path sidecar(final Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    public String recordElement() {
+        return this.recordElement;
+    }
+
+    public int recordCount() {
+        return this.offsets.length;
+    }
+
+    public long offset(final int record) {
+        return this.offsets[record];
+    }
+
+    public int length(final int record) {
+        return this.lengths[record];
+    }
+
+    /**
+     * Out keys of the key paths, in the order they were given to the indexer.
+     */
+    public Set<String> keys() {
+        return this.keys.keySet();
+    }
+
+    /**
+     * Numbers of the records where the key path found the value, in document order.
+     *
+     * @throws IllegalArgumentException when the key was not indexed
+     */
+    public int[] records(
+        final String key,
+        final String value
+    ) {
+        final Map<String, int[]> values = this.keys.get(key);
+        if (values == null) {
+            throw new IllegalArgumentException("The key %s is not in the index".formatted(key));
+        }
+        return values.getOrDefault(value, new int[0])
+            .clone();
+    }
+
+    /**
+     * True when the file has the size and modification time it had when it was indexed.
+     */
+    public boolean isCurrent(final Path file) throws IOException {
+        return Files.size(file) == this.fileSize && Files.getLastModifiedTime(file)
+            .toMillis() == this.lastModified;
+    }
+
+    /**
+     * The record as a document on its own: the XML declaration of the file, the start tags of the elements around the
+     * record, the record and the end tags of those elements.
+     */
+    Document document(
+        final FileChannel channel,
+        final int record
+    ) throws IOException {
+        final Context context = this.contexts.get(this.recordContexts[record]);
+        final int length = this.lengths[record];
+        final ByteBuffer buffer = ByteBuffer.allocate(
+            this.declaration.length + context.prefix.length + length + context.suffix.length
+        );
+        buffer.put(this.declaration)
+            .put(context.prefix);
+        final int end = buffer.position() + length;
+        long position = this.offsets[record];
+        buffer.limit(end);
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("The record %s ends after the end of the file".formatted(record));
+            }
+            position += read;
+        }
+        buffer.limit(buffer.capacity());
+        buffer.put(context.suffix);
+        return new Document(buffer.array(), context.elements);
+    }
+
+    /**
+     * Writes the index to a temporary file next to {@code file} and moves it over, so the index is never seen half
+     * written.
+     */
+    public void write(final Path file) throws IOException {
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(this.fileSize);
+            output.writeLong(this.lastModified);
+            output.writeUTF(this.recordElement);
+            writeBytes(output, this.declaration);
+            writeNumber(output, this.contexts.size());
+            for (final Context context : this.contexts) {
+                writeNumber(output, context.elements);
+                writeBytes(output, context.prefix);
+                writeBytes(output, context.suffix);
+            }
+            writeNumber(output, this.offsets.length);
+            long previous = 0;
+            for (int record = 0; record < this.offsets.length; record++) {
+                writeNumber(output, this.offsets[record] - previous);
+                writeNumber(output, this.lengths[record]);
+                writeNumber(output, this.recordContexts[record]);
+                previous = this.offsets[record];
+            }
+            writeNumber(output, this.keys.size());
+            for (final Map.Entry<String, Map<String, int[]>> key : this.keys.entrySet()) {
+                output.writeUTF(key.getKey());
+                writeNumber(output, key.getValue()
+                    .size());
+                for (final Map.Entry<String, int[]> value : key.getValue()
+                    .entrySet()) {
+                    output.writeUTF(value.getKey());
+                    writeNumber(output, value.getValue().length);
+                    int previousRecord = 0;
+                    for (final int record : value.getValue()) {
+                        writeNumber(output, record - previousRecord);
+                        previousRecord = record;
+                    }
+                }
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @throws IOException when the file is not an index written by {@link #write(Path)}
+     */
+    public static RecordIndex read(final Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("%s is not a record index".formatted(file));
+            }
+            final long fileSize = input.readLong();
+            final long lastModified = input.readLong();
+            final String recordElement = input.readUTF();
+            final byte[] declaration = readBytes(input);
+            final int contextCount = (int) readNumber(input);
+            final List<Context> contexts = new ArrayList<>(contextCount);
+            for (int context = 0; context < contextCount; context++) {
+                final int elements = (int) readNumber(input);
+                contexts.add(new Context(readBytes(input), readBytes(input), elements));
+            }
+            final int recordCount = (int) readNumber(input);
+            final long[] offsets = new long[recordCount];
+            final int[] lengths = new int[recordCount];
+            final int[] recordContexts = new int[recordCount];
+            long previous = 0;
+            for (int record = 0; record < recordCount; record++) {
+                offsets[record] = previous + readNumber(input);
+                lengths[record] = (int) readNumber(input);
+                recordContexts[record] = (int) readNumber(input);
+                previous = offsets[record];
+            }
+            final int keyCount = (int) readNumber(input);
+            final Map<String, Map<String, int[]>> keys = new LinkedHashMap<>();
+            for (int key = 0; key < keyCount; key++) {
+                final String name = input.readUTF();
+                final int valueCount = (int) readNumber(input);
+                final Map<String, int[]> values = HashMap.newHashMap(valueCount);
+                for (int value = 0; value < valueCount; value++) {
+                    final String text = input.readUTF();
+                    final int[] records = new int[(int) readNumber(input)];
+                    int previousRecord = 0;
+                    for (int record = 0; record < records.length; record++) {
+                        records[record] = previousRecord + (int) readNumber(input);
+                        previousRecord = records[record];
+                    }
+                    values.put(text, records);
+                }
+                keys.put(name, values);
+            }
+            return new RecordIndex(
+                fileSize,
+                lastModified,
+                recordElement,
+                declaration,
+                contexts,
+                offsets,
+                lengths,
+                recordContexts,
+                keys
+            );
+        }
+    }
+
+    private static void writeBytes(
+        final DataOutputStream output,
+        final byte[] bytes
+    ) throws IOException {
+        writeNumber(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static byte[] readBytes(final DataInputStream input) throws IOException {
+        final byte[] bytes = new byte[(int) readNumber(input)];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Seven bits per byte, the lowest first, with the high bit set on all the bytes but the last.
+     */
+    private static void writeNumber(
+        final DataOutputStream output,
+        final long number
+    ) throws IOException {
+        long rest = number;
+        while ((rest & ~0x7FL) != 0) {
+            output.writeByte((int) (rest & 0x7F) | 0x80);
+            rest >>>= 7;
+        }
+        output.writeByte((int) rest);
+    }
+
+    private static long readNumber(final DataInputStream input) throws IOException {
+        long number = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            final int value = input.readUnsignedByte();
+            number |= (long) (value & 0x7F) << shift;
+            if ((value & 0x80) == 0) {
+                return number;
+            }
+        }
+        throw new IOException("Number too long in the index");
+    }
+
+    /**
+     * Start tags of the elements open around some records, and the end tags that close them.
+     */
+    static final class Context {
+
+        final byte[] prefix;
+        final byte[] suffix;
+        final int elements;
+
+        Context(
+            final byte[] prefix,
+            final byte[] suffix,
+            final int elements
+        ) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.elements = elements;
+        }
+    }
+
+    /**
+     * A record ready to be parsed, after the start tags of its {@code contextElements} ancestors.
+     */
+    static final class Document {
+
+        final byte[] bytes;
+        final int contextElements;
+
+        Document(
+            final byte[] bytes,
+            final int contextElements
+        ) {
+            this.bytes = bytes;
+            this.contextElements = contextElements;
+        }
+
+        InputStream input() {
+            return new ByteArrayInputStream(this.bytes);
+        }
+    }
+}
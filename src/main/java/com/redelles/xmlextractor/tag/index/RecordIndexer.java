@@ -0,0 +1,263 @@
+package com.redelles.xmlextractor.tag.index;
+
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.parallel.ChunkScanner;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Builds the {@link RecordIndex} of a file in a single pass. The records are found in the raw bytes, mapping the file
+ * in windows: the start tag of the record element and the end tag at the same depth give its offset and length, and
+ * the markup between the records tells which elements are open around it.
+ * <p>
+ * When there are key paths every record is parsed on its own, after the start tags of its ancestors, to find the
+ * values of the keys; the times of the key paths count within every record. The markup is followed, so the comments
+ * and CDATA sections are passed over, but only its bytes are looked at: the document must use an encoding compatible
+ * with ASCII.
+ */
+@Slf4j
+public class RecordIndexer {
+
+    private static final int WINDOW_SIZE = 64 << 20;
+
+    private final String recordElement;
+    private final XmlTagCursorExtractor keyExtractor;
+    private final int windowSize;
+
+    public RecordIndexer(
+        final String recordElement,
+        final List<XmlTagPath> keyPaths
+    ) {
+        this(recordElement, keyPaths, WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize bytes of the file mapped at a time, it grows when a record does not fit.
+     */
+    public RecordIndexer(
+        final String recordElement,
+        final List<XmlTagPath> keyPaths,
+        final int windowSize
+    ) {
+        this.recordElement = recordElement;
+        this.keyExtractor = new XmlTagCursorExtractor(keyPaths, List.of(), List.of());
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Indexes the file and writes the index to its {@link RecordIndex#sidecar(Path)}.
+     */
+    public RecordIndex indexToSidecar(final Path file) throws IOException {
+        final RecordIndex index = index(file);
+        index.write(RecordIndex.sidecar(file));
+        return index;
+    }
+
+    public RecordIndex index(final Path file) throws IOException {
+        final long lastModified = Files.getLastModifiedTime(file)
+            .toMillis();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final Builder builder = new Builder(file, ChunkScanner.declaration(channel));
+            final byte[] pattern = ChunkScanner.recordPattern(this.recordElement);
+            final Deque<byte[]> open = new ArrayDeque<>();
+            long position = 0;
+            int windowSize = this.windowSize;
+            while (position < size) {
+                final int length = (int) Math.min(windowSize, size - position);
+                final boolean last = position + length >= size;
+                final ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int index = 0;
+                int start = ChunkScanner.nextRecordElement(window, 0, pattern);
+                while (start >= 0) {
+                    ChunkScanner.elementChanges(window.slice(index, start - index))
+                        .applyTo(open);
+                    index = start;
+                    final int end = ChunkScanner.elementEnd(window, start);
+                    if (end < 0) {
+                        break;
+                    }
+                    builder.add(position + start, window.slice(start, end - start), open);
+                    index = end;
+                    start = ChunkScanner.nextRecordElement(window, end, pattern);
+                }
+                if (last) {
+                    if (start >= 0) {
+                        log.warn("The record of {} at {} does not end before the end of the file", file, position + start);
+                    }
+                    break;
+                }
+                if (start < 0) {
+                    final int markup = ChunkScanner.cutMarkup(window, index);
+                    ChunkScanner.elementChanges(window.slice(index, markup - index))
+                        .applyTo(open);
+                    index = markup;
+                }
+                if (index == 0) {
+                    if (windowSize == Integer.MAX_VALUE) {
+                        throw new IOException("The record of %s at %s is too long".formatted(file, position));
+                    }
+                    windowSize = (int) Math.min(2L * windowSize, Integer.MAX_VALUE);
+                } else {
+                    windowSize = this.windowSize;
+                }
+                position += index;
+            }
+            return builder.build(size, lastModified);
+        }
+    }
+
+    private final class Builder {
+
+        private final Path file;
+        private final byte[] declaration;
+        private final List<RecordIndex.Context> contexts = new ArrayList<>();
+        private final Map<String, Integer> contextIds = new HashMap<>();
+        private final Map<String, Map<String, Records>> keys = new LinkedHashMap<>();
+        private long[] offsets = new long[1024];
+        private int[] lengths = new int[1024];
+        private int[] recordContexts = new int[1024];
+        private int count;
+
+        private Builder(
+            final Path file,
+            final byte[] declaration
+        ) {
+            this.file = file;
+            this.declaration = declaration;
+            RecordIndexer.this.keyExtractor.keys()
+                .forEach(key -> this.keys.put(key, new HashMap<>()));
+        }
+
+        private void add(
+            final long offset,
+            final ByteBuffer record,
+            final Collection<byte[]> open
+        ) {
+            if (this.count == this.offsets.length) {
+                this.offsets = Arrays.copyOf(this.offsets, this.count * 2);
+                this.lengths = Arrays.copyOf(this.lengths, this.count * 2);
+                this.recordContexts = Arrays.copyOf(this.recordContexts, this.count * 2);
+            }
+            final int context = context(open);
+            this.offsets[this.count] = offset;
+            this.lengths[this.count] = record.remaining();
+            this.recordContexts[this.count] = context;
+            if (!this.keys.isEmpty()) {
+                addKeys(record, this.contexts.get(context));
+            }
+            this.count++;
+        }
+
+        private void addKeys(
+            final ByteBuffer record,
+            final RecordIndex.Context context
+        ) {
+            final ByteArrayOutputStream document = new ByteArrayOutputStream(
+                this.declaration.length + context.prefix.length + record.remaining() + context.suffix.length
+            );
+            document.writeBytes(this.declaration);
+            document.writeBytes(context.prefix);
+            final byte[] bytes = new byte[record.remaining()];
+            record.get(bytes);
+            document.writeBytes(bytes);
+            document.writeBytes(context.suffix);
+            final int recordNumber = this.count;
+            RecordIndexer.this.keyExtractor.extractFragment(
+                this.file + "@" + this.offsets[recordNumber],
+                new ByteArrayInputStream(document.toByteArray()),
+                context.elements,
+                (key, value) -> this.keys.get(key)
+                    .computeIfAbsent(value, newValue -> new Records())
+                    .add(recordNumber)
+            );
+        }
+
+        private int context(final Collection<byte[]> open) {
+            final ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+            open.forEach(prefix::writeBytes);
+            final String key = prefix.toString(StandardCharsets.ISO_8859_1);
+            final Integer id = this.contextIds.get(key);
+            if (id != null) {
+                return id;
+            }
+            final ByteArrayOutputStream suffix = new ByteArrayOutputStream();
+            final List<byte[]> startTags = new ArrayList<>(open);
+            for (int element = startTags.size() - 1; element >= 0; element--) {
+                suffix.writeBytes(endTag(startTags.get(element)));
+            }
+            this.contexts.add(new RecordIndex.Context(prefix.toByteArray(), suffix.toByteArray(), startTags.size()));
+            this.contextIds.put(key, this.contexts.size() - 1);
+            return this.contexts.size() - 1;
+        }
+
+        private RecordIndex build(
+            final long size,
+            final long lastModified
+        ) {
+            final Map<String, Map<String, int[]>> keys = new LinkedHashMap<>();
+            this.keys.forEach((key, values) -> {
+                final Map<String, int[]> records = HashMap.newHashMap(values.size());
+                values.forEach((value, numbers) -> records.put(value, Arrays.copyOf(numbers.numbers, numbers.count)));
+                keys.put(key, records);
+            });
+            return new RecordIndex(
+                size,
+                lastModified,
+                RecordIndexer.this.recordElement,
+                this.declaration,
+                List.copyOf(this.contexts),
+                Arrays.copyOf(this.offsets, this.count),
+                Arrays.copyOf(this.lengths, this.count),
+                Arrays.copyOf(this.recordContexts, this.count),
+                keys
+            );
+        }
+    }
+
+    /**
+     * Numbers of the records with a value of a key, every record once.
+     */
+    private static final class Records {
+
+        private int[] numbers = new int[4];
+        private int count;
+
+        private void add(final int record) {
+            if (this.count > 0 && this.numbers[this.count - 1] == record) {
+                return;
+            }
+            if (this.count == this.numbers.length) {
+                this.numbers = Arrays.copyOf(this.numbers, this.count * 2);
+            }
+            this.numbers[this.count++] = record;
+        }
+    }
+
+    /**
+     * End tag for a raw start tag: its name, up to the first blank, slash or closing bracket.
+     */
+    private static byte[] endTag(final byte[] startTag) {
+        int end = 1;
+        while (end < startTag.length && startTag[end] != '>' && startTag[end] != '/' && startTag[end] > ' ') {
+            end++;
+        }
+        final byte[] endTag = new byte[end + 2];
+        endTag[0] = '<';
+        endTag[1] = '/';
+        System.arraycopy(startTag, 1, endTag, 2, end - 1);
+        endTag[end + 1] = '>';
+        return endTag;
+    }
+}
@@ -0,0 +1,662 @@
+package com.redelles.xmlextractor.tag.mapped;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.automaton.XmlTagPathMatcher;
+import com.redelles.xmlextractor.tag.metrics.StopReason;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Reads the tags of a document straight from its mapped bytes, looking for the next {@code <} eight bytes at a time.
+ * <p>
+ * Only the plain documents are understood: elements, attributes (only read for the paths taking them), comments,
+ * processing instructions and text without entities, in UTF-8. Anything else (CDATA, DOCTYPE, prefixed names, entities
+ * inside a value, namespace targets, malformed documents...) throws {@link UnsupportedInputException} so the document
+ * can be read by a real parser from the {@link #safePoint()}.
+ * <p>
+ * The file is mapped in windows. The position only moves once a token has been read completely, so a token crossing
+ * the end of a window is parsed again from a new window starting on it.
+ */
+class ByteTagScanner {
+
+    private static final long WINDOW = 1L << 30;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final Set<String> SUPPORTED_ENCODINGS = Set.of("utf-8", "utf8", "us-ascii", "ascii");
+    private static final byte[] XMLNS = "xmlns".getBytes(StandardCharsets.US_ASCII);
+    private static final EndOfWindow END_OF_WINDOW = new EndOfWindow();
+
+    private final FileChannel channel;
+    private final long size;
+    private final XmlTagPathMatcher matcher;
+    private final Predicate<String> isStopTag;
+    private final ValueProcessor processor;
+    private final NameTable names;
+    private MappedByteBuffer buffer;
+    private long base;
+    private int limit;
+    private int position;
+    private String[] elements = new String[32];
+    private long[] tagStarts = new long[32];
+    private long[] tagEnds = new long[32];
+    private int depth;
+    private boolean rootClosed;
+    private boolean stopped;
+    private boolean stopTagClosed;
+    private long safePoint;
+    private byte[] text = new byte[256];
+    private int textLength;
+    private boolean textFound;
+
+    ByteTagScanner(
+        final FileChannel channel,
+        final XmlTagPathMatcher matcher,
+        final Predicate<String> isStopTag,
+        final ValueProcessor processor,
+        final ToIntFunction<String> symbolOf
+    ) throws IOException {
+        this.names = new NameTable(symbolOf);
+        this.channel = channel;
+        this.size = channel.size();
+        this.matcher = matcher;
+        this.isStopTag = isStopTag;
+        this.processor = processor;
+    }
+
+    /**
+     * Position in the file where a parser can go on after an {@link UnsupportedInputException}: all the values before
+     * it were given to the processor and none after it, and the matcher is where it leaves it. It is right after the
+     * last tag read, or before the tag that could not be read; 0 when nothing was read yet.
+     */
+    long safePoint() {
+        return this.safePoint;
+    }
+
+    /**
+     * The start tags of the elements open at the {@link #safePoint()}, as they are in the file, to put before the rest
+     * of the document so the parser knows its context (see {@link #openElements()}).
+     */
+    byte[] openStartTags() throws IOException {
+        int length = 0;
+        for (int element = 0; element < this.depth; element++) {
+            length += (int) (this.tagEnds[element] - this.tagStarts[element]);
+        }
+        final ByteBuffer tags = ByteBuffer.allocate(length);
+        for (int element = 0; element < this.depth; element++) {
+            long position = this.tagStarts[element];
+            tags.limit(tags.position() + (int) (this.tagEnds[element] - position));
+            while (tags.hasRemaining()) {
+                position += this.channel.read(tags, position);
+            }
+        }
+        return tags.array();
+    }
+
+    int openElements() {
+        return this.depth;
+    }
+
+    /**
+     * Position in the file up to which the bytes were read.
+     */
+    long position() {
+        return absolute(this.position);
+    }
+
+    /**
+     * Why the scan ended when it did not throw.
+     */
+    StopReason stopReason() {
+        if (this.stopTagClosed) {
+            return StopReason.STOP_TAG;
+        }
+        if (this.stopped) {
+            return StopReason.PATHS_EXHAUSTED;
+        }
+        return this.rootClosed ? StopReason.END_OF_DOCUMENT : StopReason.UNEXPECTED_END_OF_INPUT;
+    }
+
+    void scan() throws IOException {
+        map(0);
+        skipByteOrderMark();
+        while (!this.stopped) {
+            try {
+                if (this.position < this.limit && this.buffer.get(this.position) == '<') {
+                    markup();
+                } else {
+                    text();
+                }
+            } catch (final EndOfWindow e) {
+                if (this.base + this.limit >= this.size) {
+                    flushText();
+                    return;
+                }
+                if (this.position == 0) {
+                    throw new UnsupportedInputException("Token bigger than the mapped window at " + this.base);
+                }
+                map(this.base + this.position);
+            }
+        }
+    }
+
+    private void text() {
+        final boolean capturing = this.depth > 0 && isAnyPathWriting();
+        final int end = indexOf('<', this.position);
+        if (end < 0) {
+            if (!capturing) {
+                skipWhitespaceOutsideRoot(this.position, this.limit);
+                this.position = this.limit;
+            } else if (this.base + this.limit >= this.size) {
+                appendText(this.position, this.limit);
+                this.position = this.limit;
+            }
+            throw END_OF_WINDOW;
+        }
+        if (capturing) {
+            appendText(this.position, end);
+        } else {
+            skipWhitespaceOutsideRoot(this.position, end);
+        }
+        this.position = end;
+    }
+
+    private void markup() {
+        final byte next = at(this.position + 1);
+        if (next == '/') {
+            endTag();
+        } else if (next == '!') {
+            comment();
+        } else if (next == '?') {
+            processingInstruction();
+        } else {
+            startTag();
+        }
+    }
+
+    private void startTag() {
+        int index = this.position + 1;
+        final int nameStart = index;
+        int hash = NameTable.initialHash();
+        byte value = at(index);
+        while (!isNameEnd(value)) {
+            if (value == ':') {
+                throw new UnsupportedInputException("Prefixed element name at " + absolute(index));
+            }
+            checkNameCharacter(value, index, nameStart);
+            hash = NameTable.hash(hash, value);
+            value = at(++index);
+        }
+        final int nameEnd = index;
+        if (nameEnd == nameStart) {
+            throw new UnsupportedInputException("Element without name at " + absolute(index));
+        }
+        boolean empty = false;
+        while (true) {
+            value = at(index);
+            if (value == '>') {
+                break;
+            } else if (value == '/') {
+                if (at(index + 1) != '>') {
+                    throw new UnsupportedInputException("Malformed empty element at " + absolute(index));
+                }
+                empty = true;
+                index++;
+                break;
+            } else if (value == '"' || value == '\'') {
+                index = attributeValueEnd(value, index + 1);
+            } else if (value == '<' || value == '&') {
+                throw new UnsupportedInputException("Unexpected character in start tag at " + absolute(index));
+            }
+            index++;
+        }
+        if (this.rootClosed) {
+            throw new UnsupportedInputException("More than one root element at " + absolute(nameStart));
+        }
+
+        final String name = this.names.name(this.buffer, nameStart, nameEnd, hash);
+        final int symbol = this.names.symbol();
+        final int start = this.position;
+        this.position = index + 1;
+        flushText();
+        this.safePoint = absolute(start);
+        push(name, absolute(start), absolute(this.position));
+        this.matcher.start(symbol);
+        if (this.matcher.startedTargets().length > 0) {
+            try {
+                writeTargets(nameEnd, index);
+            } catch (final UnsupportedInputException e) {
+                this.matcher.undoStart();
+                this.depth--;
+                throw e;
+            }
+        }
+        if (empty) {
+            closeElement(name, symbol);
+        }
+        this.safePoint = absolute(this.position);
+    }
+
+    /**
+     * Position of the quote closing the attribute value that starts at the given index, the parser rejects a
+     * {@code <} inside the value.
+     */
+    private int attributeValueEnd(
+        final byte quote,
+        final int from
+    ) {
+        int index = from;
+        byte value = at(index);
+        while (value != quote) {
+            if (value == '<') {
+                throw new UnsupportedInputException("Unexpected character in an attribute value at " + absolute(index));
+            }
+            value = at(++index);
+        }
+        return index;
+    }
+
+    /**
+     * Rejects the ASCII bytes that can not be part of a tag name, or not start it, so that the name is the one the
+     * parser reads. The bytes of multibyte characters are left to the parser.
+     */
+    private void checkNameCharacter(
+        final byte value,
+        final int index,
+        final int nameStart
+    ) {
+        final boolean valid = value < 0
+            || value >= 'a' && value <= 'z'
+            || value >= 'A' && value <= 'Z'
+            || value == '_'
+            || value == ':'
+            || index > nameStart && (value >= '0' && value <= '9' || value == '-' || value == '.');
+        if (!valid) {
+            throw new UnsupportedInputException("Unexpected character in tag name at " + absolute(index));
+        }
+    }
+
+    /**
+     * Writes the attributes taken by the paths completed by the start tag, found between the end of its name and its
+     * end. The namespaces need the declarations of the ancestors, they are left to the parser. All the values are read
+     * before writing any, so nothing is written when one of them can not be read.
+     */
+    private void writeTargets(
+        final int from,
+        final int to
+    ) {
+        final int[] paths = this.matcher.startedTargets();
+        final String[] values = new String[paths.length];
+        for (int target = 0; target < paths.length; target++) {
+            if (!this.matcher.canWrite(paths[target])) {
+                continue;
+            }
+            final XmlTagPath tagPath = this.matcher.tagPath(paths[target]);
+            if (tagPath.target != XmlTagPath.Target.ATTRIBUTE) {
+                throw new UnsupportedInputException("Namespace target at " + absolute(from));
+            }
+            values[target] = attribute(from, to, tagPath.attribute);
+        }
+        for (int target = 0; target < paths.length; target++) {
+            if (values[target] != null && this.matcher.canWrite(paths[target])) {
+                this.processor.processValue(this.matcher.tagPath(paths[target]).outKey, values[target]);
+                this.matcher.written(paths[target]);
+            }
+        }
+        this.stopped = this.stopped || this.matcher.isExhausted();
+    }
+
+    private String attribute(
+        final int from,
+        final int to,
+        final String name
+    ) {
+        int index = from;
+        while (index < to) {
+            if (isWhitespace(this.buffer.get(index))) {
+                index++;
+                continue;
+            }
+            final int nameStart = index;
+            while (index < to && this.buffer.get(index) != '=' && !isWhitespace(this.buffer.get(index))) {
+                index++;
+            }
+            final int nameEnd = index;
+            while (index < to && this.buffer.get(index) != '"' && this.buffer.get(index) != '\'') {
+                index++;
+            }
+            if (index >= to) {
+                return null;
+            }
+            final int valueStart = index + 1;
+            final int valueEnd = indexOf(this.buffer.get(index), valueStart);
+            if (!isNamespaceDeclaration(nameStart, nameEnd) && localName(nameStart, nameEnd).equalsIgnoreCase(name)) {
+                final byte[] bytes = new byte[valueEnd - valueStart];
+                this.buffer.get(valueStart, bytes);
+                for (final byte value : bytes) {
+                    if (value == '&' || value == '\t' || value == '\n' || value == '\r') {
+                        throw new UnsupportedInputException("Entity or line break in an attribute at " + absolute(valueStart));
+                    }
+                }
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            index = valueEnd + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Whether the attribute is {@code xmlns} or {@code xmlns:*}, which the parser gives as namespaces and not as
+     * attributes.
+     */
+    private boolean isNamespaceDeclaration(
+        final int start,
+        final int end
+    ) {
+        final int length = end - start;
+        if (length < XMLNS.length || length > XMLNS.length && this.buffer.get(start + XMLNS.length) != ':') {
+            return false;
+        }
+        for (int index = 0; index < XMLNS.length; index++) {
+            if (this.buffer.get(start + index) != XMLNS[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String localName(
+        final int start,
+        final int end
+    ) {
+        final byte[] bytes = new byte[end - start];
+        this.buffer.get(start, bytes);
+        final String name = new String(bytes, StandardCharsets.UTF_8);
+        return name.substring(name.indexOf(':') + 1);
+    }
+
+    private void endTag() {
+        int index = this.position + 2;
+        final int nameStart = index;
+        int hash = NameTable.initialHash();
+        byte value = at(index);
+        while (!isNameEnd(value)) {
+            checkNameCharacter(value, index, nameStart);
+            hash = NameTable.hash(hash, value);
+            value = at(++index);
+        }
+        final int nameEnd = index;
+        while (isWhitespace(value)) {
+            value = at(++index);
+        }
+        if (value != '>') {
+            throw new UnsupportedInputException("Malformed end tag at " + absolute(index));
+        }
+        final String name = this.names.name(this.buffer, nameStart, nameEnd, hash);
+        if (this.depth == 0 || this.elements[this.depth - 1] != name && !this.elements[this.depth - 1].equals(name)) {
+            throw new UnsupportedInputException("Unexpected end tag %s at %s".formatted(name, absolute(nameStart)));
+        }
+        this.position = index + 1;
+        flushText();
+        closeElement(name, this.names.symbol());
+        this.safePoint = absolute(this.position);
+    }
+
+    private void closeElement(
+        final String name,
+        final int symbol
+    ) {
+        this.depth--;
+        this.rootClosed = this.depth == 0;
+        this.matcher.end(symbol);
+        this.stopTagClosed = this.isStopTag.test(name);
+        this.stopped = this.stopTagClosed || this.matcher.isExhausted();
+    }
+
+    private void comment() {
+        if (at(this.position + 2) != '-' || at(this.position + 3) != '-') {
+            throw new UnsupportedInputException("CDATA or DOCTYPE at " + absolute(this.position));
+        }
+        int index = this.position + 4;
+        while (true) {
+            index = indexOfOrEnd((byte) '-', index);
+            if (at(index + 1) == '-' && at(index + 2) == '>') {
+                this.position = index + 3;
+                return;
+            }
+            index++;
+        }
+    }
+
+    private void processingInstruction() {
+        final int start = this.position + 2;
+        int index = start;
+        while (true) {
+            index = indexOfOrEnd((byte) '?', index);
+            if (at(index + 1) == '>') {
+                break;
+            }
+            index++;
+        }
+        if (this.base + this.position <= 3 && index - start >= 3 && isXmlDeclaration(start)) {
+            checkEncoding(start, index);
+        }
+        this.position = index + 2;
+    }
+
+    private boolean isXmlDeclaration(final int start) {
+        return this.buffer.get(start) == 'x'
+            && this.buffer.get(start + 1) == 'm'
+            && this.buffer.get(start + 2) == 'l';
+    }
+
+    private void checkEncoding(
+        final int start,
+        final int end
+    ) {
+        final byte[] bytes = new byte[end - start];
+        this.buffer.get(start, bytes);
+        final String declaration = new String(bytes, StandardCharsets.US_ASCII);
+        final int encoding = declaration.indexOf("encoding");
+        if (encoding < 0) {
+            return;
+        }
+        final int quote = Math.max(declaration.indexOf('"', encoding), declaration.indexOf('\'', encoding));
+        final int closing = quote < 0 ? -1 : declaration.indexOf(declaration.charAt(quote), quote + 1);
+        if (closing < 0 || !SUPPORTED_ENCODINGS.contains(declaration.substring(quote + 1, closing)
+            .toLowerCase(Locale.ROOT))) {
+            throw new UnsupportedInputException("Unsupported encoding in " + declaration);
+        }
+    }
+
+    private boolean isAnyPathWriting() {
+        for (final int path : this.matcher.readyPaths()) {
+            if (this.matcher.canWrite(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Keeps the text until the next element starts or ends, the same text can be cut by comments or by the end of a
+     * window.
+     */
+    private void appendText(
+        final int start,
+        final int end
+    ) {
+        final int length = end - start;
+        if (this.textLength + length > this.text.length) {
+            this.text = Arrays.copyOf(this.text, Math.max(this.textLength + length, this.text.length * 2));
+        }
+        this.buffer.get(start, this.text, this.textLength, length);
+        for (int index = this.textLength; index < this.textLength + length; index++) {
+            if (this.text[index] == '&') {
+                throw new UnsupportedInputException("Entity in a value at " + absolute(start));
+            }
+        }
+        this.textLength += length;
+        this.textFound = true;
+    }
+
+    private void flushText() {
+        if (!this.textFound) {
+            return;
+        }
+        int from = 0;
+        int to = this.textLength;
+        while (from < to && (this.text[from] & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (this.text[to - 1] & 0xFF) <= ' ') {
+            to--;
+        }
+        boolean carriageReturn = false;
+        for (int index = from; index < to && !carriageReturn; index++) {
+            carriageReturn = this.text[index] == '\r';
+        }
+        String value = new String(this.text, from, to - from, StandardCharsets.UTF_8);
+        if (carriageReturn) {
+            value = value.replace("\r\n", "\n")
+                .replace('\r', '\n');
+        }
+        this.textLength = 0;
+        this.textFound = false;
+
+        for (final int path : this.matcher.readyPaths()) {
+            if (this.matcher.canWrite(path)) {
+                this.processor.processText(this.matcher.tagPath(path).outKey, value);
+                this.matcher.written(path);
+            }
+        }
+        this.stopped = this.stopped || this.matcher.isExhausted();
+    }
+
+    private void skipWhitespaceOutsideRoot(
+        final int start,
+        final int end
+    ) {
+        if (this.depth > 0) {
+            return;
+        }
+        for (int index = start; index < end; index++) {
+            if (!isWhitespace(this.buffer.get(index))) {
+                throw new UnsupportedInputException("Text outside the root element at " + absolute(index));
+            }
+        }
+    }
+
+    private void skipByteOrderMark() {
+        if (this.limit >= 2 && ((this.buffer.get(0) & 0xFF) == 0xFE || (this.buffer.get(0) & 0xFF) == 0xFF)) {
+            throw new UnsupportedInputException("UTF-16 document");
+        }
+        if (this.limit >= 3
+            && (this.buffer.get(0) & 0xFF) == 0xEF
+            && (this.buffer.get(1) & 0xFF) == 0xBB
+            && (this.buffer.get(2) & 0xFF) == 0xBF) {
+            this.position = 3;
+        }
+    }
+
+    private void push(
+        final String name,
+        final long tagStart,
+        final long tagEnd
+    ) {
+        if (this.depth == this.elements.length) {
+            this.elements = Arrays.copyOf(this.elements, this.depth * 2);
+            this.tagStarts = Arrays.copyOf(this.tagStarts, this.depth * 2);
+            this.tagEnds = Arrays.copyOf(this.tagEnds, this.depth * 2);
+        }
+        this.tagStarts[this.depth] = tagStart;
+        this.tagEnds[this.depth] = tagEnd;
+        this.elements[this.depth++] = name;
+    }
+
+    /**
+     * First position of the byte from the given index inside the window, comparing eight bytes at a time.
+     */
+    private int indexOf(
+        final int value,
+        final int from
+    ) {
+        final long pattern = (value & 0xFFL) * ONES;
+        int index = from;
+        for (; index + Long.BYTES <= this.limit; index += Long.BYTES) {
+            final long word = this.buffer.getLong(index) ^ pattern;
+            final long found = (word - ONES) & ~word & HIGHS;
+            if (found != 0) {
+                return index + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; index < this.limit; index++) {
+            if (this.buffer.get(index) == value) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOfOrEnd(
+        final byte value,
+        final int from
+    ) {
+        final int index = indexOf(value, from);
+        if (index < 0) {
+            throw END_OF_WINDOW;
+        }
+        return index;
+    }
+
+    private byte at(final int index) {
+        if (index >= this.limit) {
+            throw END_OF_WINDOW;
+        }
+        return this.buffer.get(index);
+    }
+
+    private long absolute(final int index) {
+        return this.base + index;
+    }
+
+    private void map(final long start) throws IOException {
+        final long length = Math.min(WINDOW, this.size - start);
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.base = start;
+        this.limit = (int) length;
+        this.position = 0;
+    }
+
+    private static boolean isNameEnd(final byte value) {
+        return value <= ' ' ? isWhitespace(value) : value == '>' || value == '/';
+    }
+
+    private static boolean isWhitespace(final byte value) {
+        return value == ' ' || value == '\n' || value == '\t' || value == '\r';
+    }
+
+    /**
+     * Thrown when a token needs bytes after the end of the mapped window, without stack trace because it is part of
+     * the normal flow.
+     */
+    private static final class EndOfWindow extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private EndOfWindow() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.redelles.xmlextractor.tag.mapped;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.ExtractionPlan;
+import com.redelles.xmlextractor.tag.ExtractionRecorder;
+import com.redelles.xmlextractor.tag.TagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor;
+import com.redelles.xmlextractor.tag.automaton.XmlTagPathMatcher;
+import com.redelles.xmlextractor.tag.metrics.StopReason;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Extraction over the mapped bytes of a file, without XML parser, for the documents made of plain elements.
+ * <p>
+ * When the document uses something the scanner does not understand (see {@link ByteTagScanner}), the XML parser goes
+ * on from the last tag the scanner read, after the start tags of the elements open there and with the matcher where
+ * the scanner left it, so every value is given once. With {@link AlternateTagExtractor} configured the whole file is
+ * extracted with {@link XmlTagExtractor}. The input streams can not be mapped, so they always go to
+ * {@link XmlTagExtractor}.
+ * <p>
+ * The {@link com.redelles.xmlextractor.tag.metrics.ExtractionListener} of the plan gets the bytes and the values of
+ * the part read by the scanner, which has no events nor phases to time. When the parser goes on after it, the rest of
+ * the file is reported apart, like the segments of a
+ * {@link com.redelles.xmlextractor.tag.checkpoint.CheckpointedTagExtractor}.
+ */
+@Slf4j
+public class MappedTagExtractor implements TagExtractor {
+
+    private final ExtractionPlan plan;
+    private final XmlTagExtractor fallback;
+    private final XmlTagCursorExtractor resumption;
+
+    public MappedTagExtractor(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags,
+        final Collection<AlternateTagExtractor> specialExtractors
+    ) {
+        this(new ExtractionPlan(tagPaths, stopTags, specialExtractors));
+    }
+
+    public MappedTagExtractor(final ExtractionPlan plan) {
+        this.plan = plan;
+        this.fallback = new XmlTagExtractor(this.plan);
+        this.resumption = new XmlTagCursorExtractor(this.plan);
+    }
+
+    @Override
+    public Collection<String> keys() {
+        return this.fallback.keys();
+    }
+
+    @Override
+    public void extract(
+        final String filename,
+        final InputStream inputStream,
+        final ValueProcessor processor
+    ) {
+        this.fallback.extract(filename, inputStream, processor);
+    }
+
+    public Map<String, Collection<String>> extract(final Path file) {
+        final Map<String, Collection<String>> result = this.plan.newResult();
+        extract(file, (key, value) -> result.get(key)
+            .add(value));
+        return result;
+    }
+
+    public void extract(
+        final Path file,
+        final ValueProcessor processor
+    ) {
+        if (this.plan.hasSpecialExtractors()) {
+            extractWithParser(file, processor);
+            return;
+        }
+        final ExtractionRecorder recorder = this.plan.recorder(file.toString());
+        final XmlTagPathMatcher matcher = this.plan.acquireMatcher();
+        boolean scanned = true;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteTagScanner scanner = new ByteTagScanner(
+                channel,
+                matcher,
+                this.plan::isStopTag,
+                recorder.processor(processor),
+                this.plan.automaton()::symbol
+            );
+            try {
+                scanner.scan();
+                recorder.read(scanner.position());
+                recorder.stopped(scanner.stopReason());
+            } catch (final UnsupportedInputException e) {
+                log.debug("Extracting {} with the XML parser from {}: {}", file, scanner.safePoint(), e.getMessage());
+                if (scanner.safePoint() == 0) {
+                    scanned = false;
+                    extractWithParser(file, processor);
+                } else {
+                    recorder.read(scanner.safePoint());
+                    recorder.stopped(StopReason.END_OF_DOCUMENT);
+                    resumeWithParser(file, channel, scanner, matcher, processor);
+                }
+            }
+        } catch (final IOException e) {
+            log.warn("Error extracting values from the document {} with error: {}", file, e.getMessage());
+        } finally {
+            this.plan.release(matcher);
+            if (scanned) {
+                recorder.finish();
+            }
+        }
+    }
+
+    private void extractWithParser(
+        final Path file,
+        final ValueProcessor processor
+    ) {
+        try {
+            this.fallback.extract(file.toString(), Files.newInputStream(file), processor);
+        } catch (final IOException e) {
+            log.warn("Error extracting values from the document {} with error: {}", file, e.getMessage());
+        }
+    }
+
+    private void resumeWithParser(
+        final Path file,
+        final FileChannel channel,
+        final ByteTagScanner scanner,
+        final XmlTagPathMatcher matcher,
+        final ValueProcessor processor
+    ) throws IOException {
+        final InputStream rest = new SequenceInputStream(
+            new ByteArrayInputStream(scanner.openStartTags()),
+            Channels.newInputStream(channel.position(scanner.safePoint()))
+        );
+        this.resumption.extractSegment(file.toString(), rest, scanner.openElements(), matcher, processor);
+    }
+}
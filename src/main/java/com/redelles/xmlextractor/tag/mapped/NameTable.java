@@ -0,0 +1,90 @@
+package com.redelles.xmlextractor.tag.mapped;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.ToIntFunction;
+
+/**
+ * Element names read from the bytes of the document, decoded once and reused with their automaton symbol, so the same
+ * name is always the same {@link String} instance. Once it is full the new names are decoded every time they appear.
+ */
+class NameTable {
+
+    private static final int CAPACITY = 1 << 13;
+    private static final int LIMIT = CAPACITY / 2;
+
+    private final byte[][] keys = new byte[CAPACITY][];
+    private final String[] names = new String[CAPACITY];
+    private final int[] hashes = new int[CAPACITY];
+    private final int[] symbols = new int[CAPACITY];
+    private final ToIntFunction<String> symbolOf;
+    private int size;
+    private int symbol;
+
+    NameTable(final ToIntFunction<String> symbolOf) {
+        this.symbolOf = symbolOf;
+    }
+
+    /**
+     * Symbol of the last name returned by {@link #name(ByteBuffer, int, int, int)}.
+     */
+    int symbol() {
+        return this.symbol;
+    }
+
+    String name(
+        final ByteBuffer buffer,
+        final int start,
+        final int end,
+        final int hash
+    ) {
+        int slot = hash & (CAPACITY - 1);
+        while (this.keys[slot] != null) {
+            if (this.hashes[slot] == hash && sameBytes(this.keys[slot], buffer, start, end)) {
+                this.symbol = this.symbols[slot];
+                return this.names[slot];
+            }
+            slot = (slot + 1) & (CAPACITY - 1);
+        }
+        final byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        final String name = new String(bytes, StandardCharsets.UTF_8);
+        this.symbol = this.symbolOf.applyAsInt(name);
+        if (this.size < LIMIT) {
+            this.keys[slot] = bytes;
+            this.names[slot] = name;
+            this.hashes[slot] = hash;
+            this.symbols[slot] = this.symbol;
+            this.size++;
+        }
+        return name;
+    }
+
+    static int hash(
+        final int hash,
+        final byte value
+    ) {
+        return (hash ^ value) * 0x01000193;
+    }
+
+    static int initialHash() {
+        return 0x811c9dc5;
+    }
+
+    private static boolean sameBytes(
+        final byte[] key,
+        final ByteBuffer buffer,
+        final int start,
+        final int end
+    ) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int index = 0; index < key.length; index++) {
+            if (key[index] != buffer.get(start + index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
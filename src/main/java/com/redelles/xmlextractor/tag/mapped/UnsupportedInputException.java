@@ -0,0 +1,13 @@
+package com.redelles.xmlextractor.tag.mapped;
+
+/**
+ * The document uses something the {@link ByteTagScanner} does not understand, it has to be read by a XML parser.
+ */
+class UnsupportedInputException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedInputException(final String message) {
+        super(message, null, false, false);
+    }
+}
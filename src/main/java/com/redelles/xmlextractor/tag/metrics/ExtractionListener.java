@@ -0,0 +1,18 @@
+package com.redelles.xmlextractor.tag.metrics;
+
+/**
+ * Receives the measures of every extraction when it ends, on the thread that ran it. Give it to the
+ * {@link com.redelles.xmlextractor.tag.ExtractionPlan} of the extractors.
+ * <p>
+ * Nothing is measured with {@link #NONE}, the default: the engines only count and time the events when there is
+ * someone listening.
+ */
+@FunctionalInterface
+public interface ExtractionListener {
+
+    ExtractionListener NONE = metrics -> {
+    };
+
+    void extractionFinished(ExtractionMetrics metrics);
+
+}
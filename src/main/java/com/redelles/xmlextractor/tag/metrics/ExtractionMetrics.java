@@ -0,0 +1,63 @@
+package com.redelles.xmlextractor.tag.metrics;
+
+import java.util.Map;
+
+/**
+ * Measures of a single extraction.
+ * <p>
+ * The time is split between reading the events ({@link #parseNanos}, which includes moving over the events no path
+ * is interested in), giving them to the paths ({@link #matchNanos}, which includes the calls to the value processor)
+ * and calling the special extractors ({@link #specialNanos}).
+ */
+public final class ExtractionMetrics {
+
+    public final String filename;
+    /**
+     * Bytes read from the input, the parser reads ahead so it can be more than what it parsed when the extraction
+     * stops early.
+     */
+    public final long bytes;
+    public final long events;
+    /**
+     * Values given to the processor by out key, only the keys with some value are present.
+     */
+    public final Map<String, Long> values;
+    public final long parseNanos;
+    public final long matchNanos;
+    public final long specialNanos;
+    public final long totalNanos;
+    public final long recoveredErrors;
+    public final StopReason stopReason;
+
+    public ExtractionMetrics(
+        final String filename,
+        final long bytes,
+        final long events,
+        final Map<String, Long> values,
+        final long parseNanos,
+        final long matchNanos,
+        final long specialNanos,
+        final long totalNanos,
+        final long recoveredErrors,
+        final StopReason stopReason
+    ) {
+        this.filename = filename;
+        this.bytes = bytes;
+        this.events = events;
+        this.values = Map.copyOf(values);
+        this.parseNanos = parseNanos;
+        this.matchNanos = matchNanos;
+        this.specialNanos = specialNanos;
+        this.totalNanos = totalNanos;
+        this.recoveredErrors = recoveredErrors;
+        this.stopReason = stopReason;
+    }
+
+    @Override
+    public String toString() {
+        return ("ExtractionMetrics{filename=%s, bytes=%d, events=%d, values=%s, parseNanos=%d, matchNanos=%d, "
+            + "specialNanos=%d, totalNanos=%d, recoveredErrors=%d, stopReason=%s}")
+            .formatted(this.filename, this.bytes, this.events, this.values, this.parseNanos, this.matchNanos,
+                this.specialNanos, this.totalNanos, this.recoveredErrors, this.stopReason);
+    }
+}
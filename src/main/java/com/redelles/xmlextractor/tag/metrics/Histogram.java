@@ -0,0 +1,74 @@
+package com.redelles.xmlextractor.tag.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count of the values recorded under every upper bound, plus their count and sum, safe to record from several
+ * threads. The buckets are not cumulative: a value only counts in the first bucket whose bound is not below it, or in
+ * the last one, with no bound, when it is above all of them.
+ */
+public final class Histogram {
+
+    private final long[] upperBounds;
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    public Histogram(final long... upperBounds) {
+        this.upperBounds = upperBounds.clone();
+        Arrays.sort(this.upperBounds);
+        this.buckets = new LongAdder[this.upperBounds.length + 1];
+        Arrays.setAll(this.buckets, bucket -> new LongAdder());
+    }
+
+    /**
+     * {@code count} bounds from {@code first}, every one {@code factor} times the previous.
+     */
+    public static Histogram exponential(
+        final long first,
+        final int factor,
+        final int count
+    ) {
+        final long[] upperBounds = new long[count];
+        long bound = first;
+        for (int index = 0; index < count; index++) {
+            upperBounds[index] = bound;
+            bound = bound > Long.MAX_VALUE / factor ? Long.MAX_VALUE : bound * factor;
+        }
+        return new Histogram(upperBounds);
+    }
+
+    public void record(final long value) {
+        int bucket = Arrays.binarySearch(this.upperBounds, value);
+        if (bucket < 0) {
+            bucket = -bucket - 1;
+        }
+        this.buckets[bucket].increment();
+        this.count.increment();
+        this.sum.add(value);
+    }
+
+    public long[] upperBounds() {
+        return this.upperBounds.clone();
+    }
+
+    /**
+     * Count of every bucket, one more than the bounds: the last one is for the values above all of them.
+     */
+    public long[] bucketCounts() {
+        final long[] counts = new long[this.buckets.length];
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            counts[bucket] = this.buckets[bucket].sum();
+        }
+        return counts;
+    }
+
+    public long count() {
+        return this.count.sum();
+    }
+
+    public long sum() {
+        return this.sum.sum();
+    }
+}
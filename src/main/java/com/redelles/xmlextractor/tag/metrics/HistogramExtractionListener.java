@@ -0,0 +1,187 @@
+package com.redelles.xmlextractor.tag.metrics;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adds up the measures of all the extractions in memory: histograms of the duration, bytes and events of every
+ * extraction, and totals of the time of every phase, the values by out key, the recovered errors and the stop
+ * reasons. It can be shared by any number of extractors and threads.
+ * <p>
+ * {@link #scrape()} writes everything in the Prometheus text format, for a metrics endpoint to return as it is.
+ */
+public final class HistogramExtractionListener implements ExtractionListener {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final Histogram duration = Histogram.exponential(1_000_000, 2, 20);
+    private final Histogram bytes = Histogram.exponential(1 << 10, 4, 16);
+    private final Histogram events = Histogram.exponential(100, 4, 16);
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder matchNanos = new LongAdder();
+    private final LongAdder specialNanos = new LongAdder();
+    private final LongAdder recoveredErrors = new LongAdder();
+    private final Map<StopReason, LongAdder> stopReasons = new EnumMap<>(StopReason.class);
+    private final Map<String, LongAdder> values = new ConcurrentHashMap<>();
+
+    public HistogramExtractionListener() {
+        for (final StopReason reason : StopReason.values()) {
+            this.stopReasons.put(reason, new LongAdder());
+        }
+    }
+
+    @Override
+    public void extractionFinished(final ExtractionMetrics metrics) {
+        this.duration.record(metrics.totalNanos);
+        this.bytes.record(metrics.bytes);
+        this.events.record(metrics.events);
+        this.parseNanos.add(metrics.parseNanos);
+        this.matchNanos.add(metrics.matchNanos);
+        this.specialNanos.add(metrics.specialNanos);
+        this.recoveredErrors.add(metrics.recoveredErrors);
+        this.stopReasons.get(metrics.stopReason)
+            .increment();
+        metrics.values.forEach((key, count) -> this.values.computeIfAbsent(key, newKey -> new LongAdder())
+            .add(count));
+    }
+
+    /**
+     * Duration of the extractions in nanoseconds.
+     */
+    public Histogram duration() {
+        return this.duration;
+    }
+
+    public Histogram bytes() {
+        return this.bytes;
+    }
+
+    public Histogram events() {
+        return this.events;
+    }
+
+    public long recoveredErrors() {
+        return this.recoveredErrors.sum();
+    }
+
+    public Map<StopReason, Long> stopReasons() {
+        final Map<StopReason, Long> stopReasons = new EnumMap<>(StopReason.class);
+        this.stopReasons.forEach((reason, count) -> stopReasons.put(reason, count.sum()));
+        return stopReasons;
+    }
+
+    /**
+     * Values given to the processors by out key.
+     */
+    public Map<String, Long> values() {
+        final Map<String, Long> values = new TreeMap<>();
+        this.values.forEach((key, count) -> values.put(key, count.sum()));
+        return values;
+    }
+
+    public String scrape() {
+        final StringBuilder text = new StringBuilder();
+        histogram(text, "xml_extraction_duration_seconds", "Duration of the extractions.", this.duration, NANOS_PER_SECOND);
+        histogram(text, "xml_extraction_bytes", "Bytes read by every extraction.", this.bytes, 1);
+        histogram(text, "xml_extraction_events", "XML events read by every extraction.", this.events, 1);
+
+        header(text, "xml_extraction_phase_seconds_total", "Time of the extractions by phase.", "counter");
+        phase(text, "parse", this.parseNanos);
+        phase(text, "match", this.matchNanos);
+        phase(text, "special", this.specialNanos);
+
+        header(text, "xml_extraction_values_total", "Values extracted by out key.", "counter");
+        values().forEach((key, count) -> text.append("xml_extraction_values_total{key=\"")
+            .append(escape(key))
+            .append("\"} ")
+            .append(count)
+            .append('\n'));
+
+        header(text, "xml_extraction_recovered_errors_total", "Parse errors the extractions went past.", "counter");
+        text.append("xml_extraction_recovered_errors_total ")
+            .append(recoveredErrors())
+            .append('\n');
+
+        header(text, "xml_extractions_total", "Extractions by the reason they ended.", "counter");
+        stopReasons().forEach((reason, count) -> text.append("xml_extractions_total{stop_reason=\"")
+            .append(reason.name()
+                .toLowerCase(Locale.ROOT))
+            .append("\"} ")
+            .append(count)
+            .append('\n'));
+        return text.toString();
+    }
+
+    private static void histogram(
+        final StringBuilder text,
+        final String name,
+        final String help,
+        final Histogram histogram,
+        final double unit
+    ) {
+        header(text, name, help, "histogram");
+        final long[] upperBounds = histogram.upperBounds();
+        final long[] counts = histogram.bucketCounts();
+        long cumulative = 0;
+        for (int bucket = 0; bucket < upperBounds.length; bucket++) {
+            cumulative += counts[bucket];
+            text.append(name)
+                .append("_bucket{le=\"")
+                .append(upperBounds[bucket] / unit)
+                .append("\"} ")
+                .append(cumulative)
+                .append('\n');
+        }
+        text.append(name)
+            .append("_bucket{le=\"+Inf\"} ")
+            .append(cumulative + counts[upperBounds.length])
+            .append('\n');
+        text.append(name)
+            .append("_sum ")
+            .append(histogram.sum() / unit)
+            .append('\n');
+        text.append(name)
+            .append("_count ")
+            .append(histogram.count())
+            .append('\n');
+    }
+
+    private static void phase(
+        final StringBuilder text,
+        final String phase,
+        final LongAdder nanos
+    ) {
+        text.append("xml_extraction_phase_seconds_total{phase=\"")
+            .append(phase)
+            .append("\"} ")
+            .append(nanos.sum() / NANOS_PER_SECOND)
+            .append('\n');
+    }
+
+    private static void header(
+        final StringBuilder text,
+        final String name,
+        final String help,
+        final String type
+    ) {
+        text.append("# HELP ")
+            .append(name)
+            .append(' ')
+            .append(help)
+            .append("\n# TYPE ")
+            .append(name)
+            .append(' ')
+            .append(type)
+            .append('\n');
+    }
+
+    private static String escape(final String labelValue) {
+        return labelValue.replace("\\", "\\\\")
+            .replace("\"", "\\\"")
+            .replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,36 @@
+package com.redelles.xmlextractor.tag.metrics;
+
+/**
+ * Why an extraction ended.
+ */
+public enum StopReason {
+    /**
+     * The whole document was read.
+     */
+    END_OF_DOCUMENT,
+    /**
+     * A stop tag was closed.
+     */
+    STOP_TAG,
+    /**
+     * Every path reached its times and there are no special extractors.
+     */
+    PATHS_EXHAUSTED,
+    /**
+     * The input ended before the document.
+     */
+    UNEXPECTED_END_OF_INPUT,
+    /**
+     * Too many parse errors in a row, see {@link com.redelles.xmlextractor.tag.XmlTagExtractor#ERROR_LIMIT}.
+     */
+    ERROR_LIMIT,
+    /**
+     * The document is malformed and the extraction was asked to stop at the first parse error instead of recovering,
+     * so whoever extracts it can resynchronize on the raw bytes.
+     */
+    MALFORMED_INPUT,
+    /**
+     * The document could not be read, or the extraction was interrupted by an exception.
+     */
+    FAILED
+}
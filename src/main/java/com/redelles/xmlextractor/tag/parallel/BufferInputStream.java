@@ -0,0 +1,35 @@
+package com.redelles.xmlextractor.tag.parallel;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the remaining bytes of a buffer, usually a mapped range of a file.
+ */
+public final class BufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    public BufferInputStream(final ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(
+        final byte[] bytes,
+        final int offset,
+        final int length
+    ) {
+        if (!this.buffer.hasRemaining()) {
+            return -1;
+        }
+        final int count = Math.min(length, this.buffer.remaining());
+        this.buffer.get(bytes, offset, count);
+        return count;
+    }
+}
@@ -0,0 +1,407 @@
+package com.redelles.xmlextractor.tag.parallel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Byte level helpers to cut a document in chunks: where the records start and which elements are left open by a
+ * chunk. They only look at the markup, so they work for any encoding compatible with ASCII.
+ */
+public final class ChunkScanner {
+
+    private static final int SEARCH_WINDOW = 1 << 22;
+    private static final String UTF_8_BOM = "\u00EF\u00BB\u00BF";
+
+    private ChunkScanner() {
+    }
+
+    /**
+     * Position of the first start tag of the record element at or after {@code from}, or -1 when there is none.
+     */
+    public static long nextRecordStart(
+        final FileChannel channel,
+        final long from,
+        final String recordElement
+    ) throws IOException {
+        return recordStart(channel, from, recordElement, 1);
+    }
+
+    /**
+     * Position of the {@code count}th start tag of the record element at or after {@code from}, or -1 when there are
+     * not so many.
+     */
+    public static long recordStart(
+        final FileChannel channel,
+        final long from,
+        final String recordElement,
+        final int count
+    ) throws IOException {
+        final byte[] pattern = recordPattern(recordElement);
+        final long size = channel.size();
+        long start = from;
+        int remaining = count;
+        while (start < size) {
+            final int length = (int) Math.min(SEARCH_WINDOW, size - start);
+            final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            int found = indexOfRecord(window, pattern, 0);
+            while (found >= 0) {
+                remaining--;
+                if (remaining <= 0) {
+                    return start + found;
+                }
+                found = indexOfRecord(window, pattern, found + 1);
+            }
+            if (start + length >= size) {
+                return -1;
+            }
+            start += length - pattern.length;
+        }
+        return -1;
+    }
+
+    /**
+     * Bytes searched by {@link #nextRecordElement(ByteBuffer, int, byte[])} for the record element.
+     */
+    public static byte[] recordPattern(final String recordElement) {
+        return ("<" + recordElement).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Index of the first start tag of the record element at or after {@code from} in the window, or -1 when there is
+     * none. The markup is followed from {@code from}, which must not be inside a tag or a comment, so the record start
+     * tags inside comments, CDATA sections or processing instructions are not taken. A start tag cut by the end of the
+     * window is not found.
+     */
+    public static int nextRecordElement(
+        final ByteBuffer window,
+        final int from,
+        final byte[] recordPattern
+    ) {
+        final int limit = window.limit();
+        int index = from;
+        while (index < limit) {
+            if (window.get(index) != '<') {
+                index++;
+                continue;
+            }
+            final byte next = index + 1 < limit ? window.get(index + 1) : 0;
+            if (next == '?') {
+                index = skipPast(window, index, "?>");
+            } else if (next == '!') {
+                index = skipDeclaration(window, index);
+            } else if (isRecordStart(window, index, recordPattern)) {
+                return index;
+            } else {
+                index++;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfRecord(
+        final ByteBuffer window,
+        final byte[] pattern,
+        final int from
+    ) {
+        for (int index = from; index + pattern.length < window.limit(); index++) {
+            if (window.get(index) == '<' && isRecordStart(window, index, pattern)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isRecordStart(
+        final ByteBuffer window,
+        final int index,
+        final byte[] pattern
+    ) {
+        if (index + pattern.length >= window.limit() || !startsWith(window, index, pattern)) {
+            return false;
+        }
+        final byte next = window.get(index + pattern.length);
+        return next == '>' || next == '/' || next == ' ' || next == '\t' || next == '\n' || next == '\r';
+    }
+
+    private static boolean startsWith(
+        final ByteBuffer window,
+        final int index,
+        final byte[] pattern
+    ) {
+        for (int offset = 1; offset < pattern.length; offset++) {
+            if (window.get(index + offset) != pattern[offset]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Elements closed by the chunk that were opened before it, and raw start tags of the elements it leaves open.
+     */
+    public static ElementChanges elementChanges(final ByteBuffer chunk) {
+        final int limit = chunk.limit();
+        int closed = 0;
+        long[] opened = new long[16];
+        int depth = 0;
+        int index = 0;
+        while (index < limit) {
+            if (chunk.get(index) != '<') {
+                index++;
+                continue;
+            }
+            final byte next = index + 1 < limit ? chunk.get(index + 1) : 0;
+            if (next == '/') {
+                if (depth > 0) {
+                    depth--;
+                } else {
+                    closed++;
+                }
+                index = skipPast(chunk, index, ">");
+            } else if (next == '?') {
+                index = skipPast(chunk, index, "?>");
+            } else if (next == '!') {
+                index = skipDeclaration(chunk, index);
+            } else {
+                final int end = endOfStartTag(chunk, index);
+                if (end < 0) {
+                    break;
+                }
+                if (chunk.get(end - 1) != '/') {
+                    if (depth == opened.length) {
+                        opened = Arrays.copyOf(opened, depth * 2);
+                    }
+                    opened[depth++] = ((long) index << 32) | (end + 1 - index);
+                }
+                index = end + 1;
+            }
+        }
+
+        final List<byte[]> startTags = new ArrayList<>(depth);
+        for (int element = 0; element < depth; element++) {
+            final byte[] startTag = new byte[(int) opened[element]];
+            chunk.get((int) (opened[element] >>> 32), startTag);
+            startTags.add(startTag);
+        }
+        return new ElementChanges(closed, startTags);
+    }
+
+    /**
+     * Local name of the element of a raw start tag, without its prefix.
+     */
+    public static String localName(final byte[] startTag) {
+        int end = 1;
+        while (end < startTag.length && startTag[end] != '>' && startTag[end] != '/' && startTag[end] > ' ') {
+            end++;
+        }
+        final String name = new String(startTag, 1, end - 1, StandardCharsets.UTF_8);
+        return name.substring(name.indexOf(':') + 1);
+    }
+
+    /**
+     * Index just after the end of the element whose start tag is at {@code start}, or -1 when it does not end inside
+     * the window.
+     */
+    public static int elementEnd(
+        final ByteBuffer window,
+        final int start
+    ) {
+        final int limit = window.limit();
+        int depth = 0;
+        int index = start;
+        while (index < limit) {
+            if (window.get(index) != '<') {
+                index++;
+                continue;
+            }
+            final byte next = index + 1 < limit ? window.get(index + 1) : 0;
+            if (next == '?') {
+                index = skipPast(window, index, "?>");
+            } else if (next == '!') {
+                index = skipDeclaration(window, index);
+            } else {
+                final int end = endOfStartTag(window, index);
+                if (end < 0) {
+                    return -1;
+                }
+                if (next == '/') {
+                    depth--;
+                } else if (window.get(end - 1) != '/') {
+                    depth++;
+                }
+                if (depth == 0) {
+                    return end + 1;
+                }
+                index = end + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * XML declaration of the document, without the byte order mark, or nothing when it has none. A chunk parsed on its
+     * own needs it to be read with the same encoding.
+     */
+    public static byte[] declaration(final FileChannel channel) throws IOException {
+        final ByteBuffer start = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 1024));
+        final byte[] bytes = new byte[start.limit()];
+        start.get(bytes);
+        final String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        final int begin = text.startsWith(UTF_8_BOM) ? UTF_8_BOM.length() : 0;
+        final int end = text.indexOf("?>");
+        if (!text.startsWith("<?xml", begin) || end < 0) {
+            return new byte[0];
+        }
+        return Arrays.copyOfRange(bytes, begin, end + 2);
+    }
+
+    /**
+     * Index where the markup cut by the end of the window begins, following the markup from {@code from}, or the limit
+     * when the window ends outside of it.
+     */
+    public static int cutMarkup(
+        final ByteBuffer window,
+        final int from
+    ) {
+        int index = from;
+        while (index < window.limit()) {
+            if (window.get(index) != '<') {
+                index++;
+                continue;
+            }
+            final int end = endOfMarkup(window, index);
+            if (end < 0) {
+                return index;
+            }
+            index = end;
+        }
+        return window.limit();
+    }
+
+    private static int endOfMarkup(
+        final ByteBuffer window,
+        final int index
+    ) {
+        final byte next = index + 1 < window.limit() ? window.get(index + 1) : 0;
+        if (next == '?') {
+            return find(window, index, "?>");
+        }
+        if (matches(window, index, "<!--")) {
+            return find(window, index, "-->");
+        }
+        if (matches(window, index, "<![CDATA[")) {
+            return find(window, index, "]]>");
+        }
+        final int end = endOfStartTag(window, index);
+        return end < 0 ? -1 : end + 1;
+    }
+
+    private static int skipDeclaration(
+        final ByteBuffer chunk,
+        final int index
+    ) {
+        if (matches(chunk, index, "<!--")) {
+            return skipPast(chunk, index, "-->");
+        }
+        if (matches(chunk, index, "<![CDATA[")) {
+            return skipPast(chunk, index, "]]>");
+        }
+        return skipPast(chunk, index, ">");
+    }
+
+    private static int endOfStartTag(
+        final ByteBuffer chunk,
+        final int index
+    ) {
+        byte quote = 0;
+        for (int position = index + 1; position < chunk.limit(); position++) {
+            final byte value = chunk.get(position);
+            if (quote != 0) {
+                quote = value == quote ? 0 : quote;
+            } else if (value == '"' || value == '\'') {
+                quote = value;
+            } else if (value == '>') {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipPast(
+        final ByteBuffer chunk,
+        final int index,
+        final String end
+    ) {
+        final int found = find(chunk, index, end);
+        return found < 0 ? chunk.limit() : found;
+    }
+
+    /**
+     * Index just after the first {@code end} after {@code index}, or -1 when it is not in the chunk.
+     */
+    private static int find(
+        final ByteBuffer chunk,
+        final int index,
+        final String end
+    ) {
+        for (int position = index + 1; position < chunk.limit(); position++) {
+            if (matches(chunk, position, end)) {
+                return position + end.length();
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(
+        final ByteBuffer chunk,
+        final int index,
+        final String text
+    ) {
+        if (index + text.length() > chunk.limit()) {
+            return false;
+        }
+        for (int offset = 0; offset < text.length(); offset++) {
+            if (chunk.get(index + offset) != text.charAt(offset)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static final class ElementChanges {
+
+        /**
+         * Elements opened before the chunk and closed inside it.
+         */
+        public final int closed;
+        /**
+         * Raw start tags of the elements opened in the chunk and still open at its end, outermost first.
+         */
+        public final List<byte[]> opened;
+
+        ElementChanges(
+            final int closed,
+            final List<byte[]> opened
+        ) {
+            this.closed = closed;
+            this.opened = opened;
+        }
+
+        /**
+         * Changes the start tags of the elements open before the chunk into those open after it.
+         */
+        public void applyTo(final Deque<byte[]> open) {
+            for (int element = 0; element < this.closed && !open.isEmpty(); element++) {
+                open.removeLast();
+            }
+            this.opened.forEach(open::addLast);
+        }
+    }
+}
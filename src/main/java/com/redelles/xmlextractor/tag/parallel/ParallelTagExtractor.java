@@ -0,0 +1,385 @@
+package com.redelles.xmlextractor.tag.parallel;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.ExtractionPlan;
+import com.redelles.xmlextractor.tag.TagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor;
+import com.redelles.xmlextractor.tag.automaton.XmlTagPathMatcher;
+import com.redelles.xmlextractor.tag.metrics.StopReason;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Extracts a single big file on several cores. The file is cut in byte ranges starting on a start tag of the record
+ * element, and every range is extracted by a fork join worker with its own processors. The values are given to the
+ * processor in document order, on the calling thread. Only about two ranges per worker are extracted ahead of the one
+ * being given, and the values of a range are released once given, so the memory does not grow with the file.
+ * <p>
+ * A range is parsed after the start tags of the elements still open where it begins, found with a quick scan of the
+ * previous ranges, and its matcher starts from them. That is only a guess: the state of the paths can also depend on
+ * elements already closed, like an element closing with the name of an ancestor. So the state where every range
+ * really ends is compared with the one the next range started from, and a range that started from another one is
+ * extracted again on the calling thread from the right state. The values are then those of a sequential extraction,
+ * with only the ranges after such elements extracted twice. The end of a range is not the end of the document, only
+ * a document left open by the last one is reported. The times of every path and the stop tags are applied when the
+ * ranges are merged: the values over the times are dropped and nothing is taken after the range where a stop tag is
+ * found.
+ * <p>
+ * With special extractors the file is extracted sequentially: they can read events past the end of a range, which the
+ * next range would give to the paths again.
+ * <p>
+ * The record element is searched in the raw bytes, so the document must use an encoding compatible with ASCII and the
+ * record start tag should not appear inside comments or CDATA. Input streams can not be cut, so they are extracted on
+ * the calling thread.
+ */
+@Slf4j
+public class ParallelTagExtractor implements TagExtractor {
+
+    public static final long DEFAULT_CHUNK_SIZE = 64L << 20;
+    private static final String CHUNK_KEY_PREFIX = "\u0000path";
+
+    private final List<XmlTagPath> tagPaths;
+    private final String recordElement;
+    private final ForkJoinPool pool;
+    private final long chunkSize;
+    private final boolean hasSpecialExtractors;
+    private final XmlTagCursorExtractor sequential;
+    private final ExtractionPlan chunkPlan;
+
+    public ParallelTagExtractor(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags,
+        final Collection<AlternateTagExtractor> specialExtractors,
+        final String recordElement
+    ) {
+        this(tagPaths, stopTags, specialExtractors, recordElement, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelTagExtractor(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags,
+        final Collection<AlternateTagExtractor> specialExtractors,
+        final String recordElement,
+        final ForkJoinPool pool,
+        final long chunkSize
+    ) {
+        this.tagPaths = List.copyOf(tagPaths);
+        this.recordElement = recordElement;
+        this.pool = pool;
+        this.chunkSize = Math.min(chunkSize, Integer.MAX_VALUE / 2);
+        this.hasSpecialExtractors = !specialExtractors.isEmpty();
+        this.sequential = new XmlTagCursorExtractor(tagPaths, stopTags, specialExtractors);
+        final List<XmlTagPath> chunkPaths = new ArrayList<>();
+        for (int path = 0; path < this.tagPaths.size(); path++) {
+            final XmlTagPath tagPath = this.tagPaths.get(path);
+            chunkPaths.add(new XmlTagPath(
+                tagPath.tags,
+                CHUNK_KEY_PREFIX + path,
+                tagPath.times,
+                tagPath.type,
+                tagPath.aggregations
+            ));
+        }
+        this.chunkPlan = new ExtractionPlan(chunkPaths, stopTags, List.of());
+    }
+
+    @Override
+    public Collection<String> keys() {
+        return this.sequential.keys();
+    }
+
+    @Override
+    public void extract(
+        final String filename,
+        final InputStream inputStream,
+        final ValueProcessor processor
+    ) {
+        this.sequential.extract(filename, inputStream, processor);
+    }
+
+    public Map<String, Collection<String>> extract(final Path file) {
+        final Map<String, Collection<String>> result = new HashMap<>();
+        keys().forEach(key -> result.put(key, new ArrayList<>()));
+        extract(file, (key, value) -> result.get(key)
+            .add(value));
+        return result;
+    }
+
+    public void extract(
+        final Path file,
+        final ValueProcessor processor
+    ) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final List<Chunk> chunks = this.hasSpecialExtractors ? List.of() : split(channel);
+            if (chunks.size() < 2) {
+                this.sequential.extract(file.toString(), Files.newInputStream(file), processor);
+                return;
+            }
+            final boolean complete = findContexts(channel, chunks);
+            if (!extractChunks(file, channel, chunks, processor) && !complete) {
+                log.warn("The document {} ended before the end of its root element", file);
+            }
+        } catch (final IOException e) {
+            log.warn("Error extracting values from the document {} with error: {}", file, e.getMessage());
+        }
+    }
+
+    private List<Chunk> split(final FileChannel channel) throws IOException {
+        final long size = channel.size();
+        final List<Chunk> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            final long from = Math.max(start + 1, start + this.chunkSize);
+            final long next = ChunkScanner.nextRecordStart(channel, from, this.recordElement);
+            final long end = next < 0 ? size : next;
+            if (end - start > Integer.MAX_VALUE - (1 << 20)) {
+                return List.of();
+            }
+            chunks.add(new Chunk(chunks.size(), start, (int) (end - start)));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Start tags of the elements open at the beginning of every chunk, scanning all of them in parallel and adding up
+     * their changes in order.
+     *
+     * @return false when elements are still open at the end of the file.
+     */
+    private boolean findContexts(
+        final FileChannel channel,
+        final List<Chunk> chunks
+    ) throws IOException {
+        final List<ForkJoinTask<ChunkScanner.ElementChanges>> changes = new ArrayList<>();
+        for (final Chunk chunk : chunks) {
+            final ByteBuffer bytes = chunk.map(channel);
+            changes.add(this.pool.submit(() -> ChunkScanner.elementChanges(bytes)));
+        }
+        final byte[] declaration = ChunkScanner.declaration(channel);
+        final Deque<byte[]> open = new ArrayDeque<>();
+        for (int index = 0; index < chunks.size(); index++) {
+            final Chunk chunk = chunks.get(index);
+            if (index > 0) {
+                chunk.context(declaration, open);
+            }
+            changes.get(index)
+                .join()
+                .applyTo(open);
+        }
+        return open.isEmpty();
+    }
+
+    /**
+     * Extracts the chunks in parallel, keeping at most two per worker in flight, and gives their values in order as
+     * soon as every chunk is the next one. A chunk that did not start from the state where the previous one ended is
+     * extracted again from there before its values are given.
+     *
+     * @return true when the extraction stopped before the end of the file.
+     */
+    private boolean extractChunks(
+        final Path file,
+        final FileChannel channel,
+        final List<Chunk> chunks,
+        final ValueProcessor processor
+    ) throws IOException {
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final int window = Math.max(2, 2 * this.pool.getParallelism());
+        final Deque<ForkJoinTask<ChunkValues>> inFlight = new ArrayDeque<>();
+        final OrderedMerge merge = new OrderedMerge(processor);
+        int next = 0;
+        int merged = 0;
+        int[] ended = null;
+        boolean stopped = false;
+        while (merged < chunks.size() && !stopped) {
+            while (next < chunks.size() && inFlight.size() < window) {
+                final Chunk chunk = chunks.get(next++);
+                final ByteBuffer bytes = chunk.map(channel);
+                inFlight.addLast(this.pool.submit(() -> extractChunk(file, chunk, bytes, cancelled, null)));
+            }
+            ChunkValues values = inFlight.removeFirst()
+                .join();
+            if (ended != null && !Arrays.equals(ended, values.startIndexes)) {
+                final Chunk chunk = chunks.get(merged);
+                log.debug("Extracting again the chunk {} of {} from the state where the previous one ended",
+                    chunk.index, file);
+                values = extractChunk(file, chunk, chunk.map(channel), new AtomicBoolean(), ended);
+            }
+            stopped = merge.add(values);
+            ended = values.endIndexes;
+            merged++;
+        }
+        if (merged < chunks.size()) {
+            log.debug("Extraction of {} stopped after {} of {} chunks", file, merged, chunks.size());
+            cancelled.set(true);
+            inFlight.forEach(task -> task.cancel(true));
+        }
+        return stopped;
+    }
+
+    /**
+     * Extracts a chunk as a segment. Its matcher is moved by the elements open where the chunk starts or, when the
+     * indexes where the previous chunk ended are given, restored to them.
+     */
+    private ChunkValues extractChunk(
+        final Path file,
+        final Chunk chunk,
+        final ByteBuffer bytes,
+        final AtomicBoolean cancelled,
+        final int[] from
+    ) {
+        final XmlTagCursorExtractor extractor = new XmlTagCursorExtractor(this.chunkPlan);
+        final ChunkValues values = new ChunkValues(cancelled);
+        final InputStream inputStream = new SequenceInputStream(
+            new ByteArrayInputStream(chunk.prefix),
+            new BufferInputStream(bytes)
+        );
+        final XmlTagPathMatcher matcher = this.chunkPlan.acquireMatcher();
+        try {
+            if (from == null) {
+                chunk.contextNames.forEach(matcher::start);
+            } else {
+                matcher.restore(from, matcher.remainingTimes(), matcher.finished());
+                chunk.contextNames.forEach(matcher::enter);
+            }
+            values.startIndexes = matcher.indexes();
+            values.stopped = extractor.extractSegment(
+                file + "#" + chunk.index,
+                inputStream,
+                chunk.contextElements,
+                matcher,
+                values::add
+            ) == StopReason.STOP_TAG;
+            values.endIndexes = matcher.indexes();
+        } catch (final CancellationException e) {
+            log.debug("Extraction of the chunk {} of {} cancelled", chunk.index, file);
+        } finally {
+            this.chunkPlan.release(matcher);
+        }
+        return values;
+    }
+
+    /**
+     * The times of the paths over the whole file, applied to the values of the chunks given in order.
+     */
+    private final class OrderedMerge {
+
+        private final ValueProcessor processor;
+        private final int[] times = new int[ParallelTagExtractor.this.tagPaths.size()];
+        private final boolean[] finished = new boolean[this.times.length];
+        private int pending = this.times.length;
+
+        private OrderedMerge(final ValueProcessor processor) {
+            this.processor = processor;
+            for (int path = 0; path < this.times.length; path++) {
+                this.times[path] = ParallelTagExtractor.this.tagPaths.get(path).times;
+            }
+        }
+
+        /**
+         * Gives the values of the next chunk.
+         *
+         * @return true when nothing is taken after this chunk.
+         */
+        private boolean add(final ChunkValues values) {
+            for (int value = 0; value < values.keys.size(); value++) {
+                addPathValue(Integer.parseInt(values.keys.get(value)
+                    .substring(CHUNK_KEY_PREFIX.length())), values.values.get(value));
+            }
+            return values.stopped || this.pending == 0;
+        }
+
+        private void addPathValue(
+            final int path,
+            final String value
+        ) {
+            if (this.finished[path]) {
+                return;
+            }
+            this.processor.processValue(ParallelTagExtractor.this.tagPaths.get(path).outKey, value);
+            if (this.times[path] != 0) {
+                this.times[path]--;
+            }
+            if (this.times[path] == 0) {
+                this.finished[path] = true;
+                this.pending--;
+            }
+        }
+    }
+
+    private static final class Chunk {
+
+        private final int index;
+        private final long start;
+        private final int length;
+        private byte[] prefix = new byte[0];
+        private int contextElements;
+        private List<String> contextNames = List.of();
+
+        private Chunk(
+            final int index,
+            final long start,
+            final int length
+        ) {
+            this.index = index;
+            this.start = start;
+            this.length = length;
+        }
+
+        private ByteBuffer map(final FileChannel channel) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_ONLY, this.start, this.length);
+        }
+
+        private void context(
+            final byte[] declaration,
+            final Collection<byte[]> startTags
+        ) {
+            final ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+            prefix.writeBytes(declaration);
+            startTags.forEach(prefix::writeBytes);
+            this.prefix = prefix.toByteArray();
+            this.contextElements = startTags.size();
+            this.contextNames = startTags.stream()
+                .map(ChunkScanner::localName)
+                .toList();
+        }
+    }
+
+    private static final class ChunkValues {
+
+        private final List<String> keys = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+        private final AtomicBoolean cancelled;
+        private boolean stopped;
+        private int[] startIndexes;
+        private int[] endIndexes;
+
+        private ChunkValues(final AtomicBoolean cancelled) {
+            this.cancelled = cancelled;
+        }
+
+        private void add(
+            final String key,
+            final String value
+        ) {
+            if (this.cancelled.get()) {
+                throw new CancellationException();
+            }
+            this.keys.add(key);
+            this.values.add(value);
+        }
+    }
+}
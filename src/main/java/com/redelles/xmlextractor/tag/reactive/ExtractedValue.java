@@ -0,0 +1,30 @@
+package com.redelles.xmlextractor.tag.reactive;
+
+/**
+ * A value published by an {@link ExtractionPublisher}.
+ */
+public final class ExtractedValue {
+
+    public final String outKey;
+    public final String value;
+    /**
+     * Bytes of the document read by the parser when the value was found. The parser reads ahead, so the value is
+     * before this position, usually in the last block read.
+     */
+    public final long position;
+
+    public ExtractedValue(
+        final String outKey,
+        final String value,
+        final long position
+    ) {
+        this.outKey = outKey;
+        this.value = value;
+        this.position = position;
+    }
+
+    @Override
+    public String toString() {
+        return "ExtractedValue{outKey=%s, value=%s, position=%d}".formatted(this.outKey, this.value, this.position);
+    }
+}
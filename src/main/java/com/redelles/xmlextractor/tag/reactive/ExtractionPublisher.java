@@ -0,0 +1,246 @@
+package com.redelles.xmlextractor.tag.reactive;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.TagExtractor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Publishes the values of one document as they are extracted. The document is parsed on a virtual thread started by
+ * {@link #subscribe(Flow.Subscriber)}, which waits without parsing whenever the values requested are all given, so a
+ * slow subscriber only keeps a parked virtual thread and a few values.
+ * <p>
+ * Every signal reaches the subscriber from that thread, in order. Cancelling the subscription stops the parse at the
+ * next block read or value found, and the input stream is closed. The errors of the document are handled as in
+ * {@link TagExtractor#extract(String, InputStream, ValueProcessor)}, so the publisher completes with the values found
+ * until then; only an error thrown by the extractor is given to {@link Flow.Subscriber#onError(Throwable)}.
+ * <p>
+ * An input stream can only be read once, so a publisher accepts a single subscriber.
+ */
+@Slf4j
+public class ExtractionPublisher implements Flow.Publisher<ExtractedValue> {
+
+    private final TagExtractor extractor;
+    private final String filename;
+    private final InputStream inputStream;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    public ExtractionPublisher(
+        final TagExtractor extractor,
+        final String filename,
+        final InputStream inputStream
+    ) {
+        this.extractor = extractor;
+        this.filename = filename;
+        this.inputStream = inputStream;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super ExtractedValue> subscriber) {
+        if (!this.subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+
+                @Override
+                public void request(final long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException(
+                "The document of %s is already published".formatted(this.filename)
+            ));
+            return;
+        }
+        final Publication publication = new Publication(subscriber);
+        Thread.ofVirtual()
+            .name("xml-extractor-publisher")
+            .start(publication::run);
+    }
+
+    /**
+     * The subscription and the extraction feeding it.
+     */
+    private final class Publication implements Flow.Subscription, ValueProcessor {
+
+        private final Flow.Subscriber<? super ExtractedValue> subscriber;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition demanded = this.lock.newCondition();
+        private final CountingInputStream input;
+        private long demand;
+        private volatile boolean cancelled;
+        private Throwable failure;
+
+        private Publication(final Flow.Subscriber<? super ExtractedValue> subscriber) {
+            this.subscriber = subscriber;
+            this.input = new CountingInputStream(ExtractionPublisher.this.inputStream, this);
+        }
+
+        private void run() {
+            try {
+                this.subscriber.onSubscribe(this);
+                if (!this.cancelled) {
+                    ExtractionPublisher.this.extractor.extract(ExtractionPublisher.this.filename, this.input, this);
+                }
+            } catch (final CancellationException e) {
+                // cancelled by the subscriber, or stopped by a wrong request
+            } catch (final RuntimeException e) {
+                signalError(e);
+                return;
+            } finally {
+                closeInput();
+            }
+            final Throwable failure = failure();
+            if (failure != null) {
+                this.subscriber.onError(failure);
+            } else if (!this.cancelled) {
+                this.subscriber.onComplete();
+            }
+        }
+
+        @Override
+        public void request(final long n) {
+            this.lock.lock();
+            try {
+                if (n <= 0) {
+                    this.failure = new IllegalArgumentException("Requested %s values, it must be positive".formatted(n));
+                    this.cancelled = true;
+                } else {
+                    this.demand = this.demand + n < 0 ? Long.MAX_VALUE : this.demand + n;
+                }
+                this.demanded.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            this.lock.lock();
+            try {
+                this.cancelled = true;
+                this.demanded.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        @Override
+        public void processValue(
+            final String outKey,
+            final String value
+        ) {
+            awaitDemand();
+            this.subscriber.onNext(new ExtractedValue(outKey, value, this.input.position));
+        }
+
+        /**
+         * Waits until the subscriber wants one more value and takes it from the demand.
+         *
+         * @throws CancellationException when the subscription is cancelled, to stop the extraction.
+         */
+        private void awaitDemand() {
+            this.lock.lock();
+            try {
+                while (this.demand == 0 && !this.cancelled) {
+                    this.demanded.awaitUninterruptibly();
+                }
+                if (this.cancelled) {
+                    throw new CancellationException();
+                }
+                if (this.demand != Long.MAX_VALUE) {
+                    this.demand--;
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private Throwable failure() {
+            this.lock.lock();
+            try {
+                return this.failure;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private void signalError(final RuntimeException e) {
+            if (!this.cancelled) {
+                this.subscriber.onError(e);
+            }
+        }
+
+        private void closeInput() {
+            try {
+                this.input.close();
+            } catch (final IOException e) {
+                log.warn("Error closing the document {} with error: {}", ExtractionPublisher.this.filename, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read and stops the parser as soon as the subscription is cancelled.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final Publication publication;
+        private long position;
+
+        private CountingInputStream(
+            final InputStream inputStream,
+            final Publication publication
+        ) {
+            super(inputStream);
+            this.publication = publication;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+            final int read = super.read();
+            if (read >= 0) {
+                this.position++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(
+            final byte[] bytes,
+            final int offset,
+            final int length
+        ) throws IOException {
+            checkCancelled();
+            final int read = super.read(bytes, offset, length);
+            if (read > 0) {
+                this.position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            checkCancelled();
+            final long skipped = super.skip(n);
+            this.position += skipped;
+            return skipped;
+        }
+
+        private void checkCancelled() {
+            if (this.publication.cancelled) {
+                throw new CancellationException();
+            }
+        }
+    }
+}
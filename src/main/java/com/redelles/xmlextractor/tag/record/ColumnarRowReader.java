@@ -0,0 +1,79 @@
+package com.redelles.xmlextractor.tag.record;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the rows written by a {@link ColumnarRowSink}, a chunk at a time. The columns not asked for are skipped
+ * without decoding them.
+ */
+public class ColumnarRowReader implements Closeable {
+
+    private final DataInputStream input;
+    private final List<String> columns;
+    private boolean ended;
+
+    /**
+     * @throws IOException when the input was not written by a {@link ColumnarRowSink}
+     */
+    public ColumnarRowReader(final InputStream input) throws IOException {
+        this.input = new DataInputStream(new BufferedInputStream(input));
+        if (this.input.readInt() != ColumnarRowSink.MAGIC || this.input.readInt() != ColumnarRowSink.VERSION) {
+            throw new IOException("The input is not written by a columnar row sink");
+        }
+        final int count = (int) ColumnarRowSink.readNumber(this.input);
+        final List<String> columns = new ArrayList<>(count);
+        for (int column = 0; column < count; column++) {
+            columns.add(this.input.readUTF());
+        }
+        this.columns = List.copyOf(columns);
+    }
+
+    public List<String> columns() {
+        return this.columns;
+    }
+
+    /**
+     * Values of the next chunk by column, {@code null} for the missing values and for all the values of the columns
+     * not wanted; {@code null} after the last chunk.
+     *
+     * @param wanted whether every column is read, in the order of the columns; the columns without a flag are read
+     */
+    public String[][] nextChunk(final boolean... wanted) throws IOException {
+        if (this.ended) {
+            return null;
+        }
+        final int rows = (int) ColumnarRowSink.readNumber(this.input);
+        if (rows == 0) {
+            this.ended = true;
+            return null;
+        }
+        final String[][] chunk = new String[this.columns.size()][rows];
+        for (int column = 0; column < this.columns.size(); column++) {
+            final long size = ColumnarRowSink.readNumber(this.input);
+            if (wanted.length > column && !wanted[column]) {
+                this.input.skipNBytes(size);
+                continue;
+            }
+            final int[] lengths = new int[rows];
+            for (int row = 0; row < rows; row++) {
+                lengths[row] = (int) ColumnarRowSink.readNumber(this.input);
+            }
+            for (int row = 0; row < rows; row++) {
+                if (lengths[row] > 0) {
+                    final byte[] bytes = new byte[lengths[row] - 1];
+                    this.input.readFully(bytes);
+                    chunk[column][row] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+        }
+        return chunk;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.input.close();
+    }
+}
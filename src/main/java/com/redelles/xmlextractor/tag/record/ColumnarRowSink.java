@@ -0,0 +1,127 @@
+package com.redelles.xmlextractor.tag.record;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes the rows in a compact binary format made of chunks of rows, where every column is written apart, so a
+ * column compresses well and can be read without decoding the others. Only the rows of one chunk are kept.
+ * <p>
+ * The file starts with a magic number, the version and the column names. Every chunk has its number of rows and, for
+ * every column, the bytes the column takes, the length of every value plus one (zero for a missing value) and then
+ * the UTF-8 bytes of all the values. A chunk without rows ends the file. The numbers are variable length integers.
+ * {@link ColumnarRowReader} reads it back.
+ */
+public class ColumnarRowSink implements RowSink {
+
+    public static final int DEFAULT_ROWS_PER_CHUNK = 4096;
+    static final int MAGIC = 0x58524F57;
+    static final int VERSION = 1;
+
+    private final DataOutputStream output;
+    private final int rowsPerChunk;
+    private ByteArrayOutputStream[] lengths;
+    private ByteArrayOutputStream[] values;
+    private int rows;
+
+    public ColumnarRowSink(final OutputStream output) {
+        this(output, DEFAULT_ROWS_PER_CHUNK);
+    }
+
+    public ColumnarRowSink(
+        final OutputStream output,
+        final int rowsPerChunk
+    ) {
+        if (rowsPerChunk <= 0) {
+            throw new IllegalArgumentException("A chunk needs at least one row");
+        }
+        this.output = new DataOutputStream(new BufferedOutputStream(output));
+        this.rowsPerChunk = rowsPerChunk;
+    }
+
+    @Override
+    public void columns(final List<String> names) throws IOException {
+        this.output.writeInt(MAGIC);
+        this.output.writeInt(VERSION);
+        writeNumber(this.output, names.size());
+        for (final String name : names) {
+            this.output.writeUTF(name);
+        }
+        this.lengths = new ByteArrayOutputStream[names.size()];
+        this.values = new ByteArrayOutputStream[names.size()];
+        for (int column = 0; column < names.size(); column++) {
+            this.lengths[column] = new ByteArrayOutputStream();
+            this.values[column] = new ByteArrayOutputStream();
+        }
+    }
+
+    @Override
+    public void row(final String[] values) throws IOException {
+        for (int column = 0; column < this.values.length; column++) {
+            if (values[column] == null) {
+                writeNumber(this.lengths[column], 0);
+            } else {
+                final byte[] bytes = values[column].getBytes(StandardCharsets.UTF_8);
+                writeNumber(this.lengths[column], bytes.length + 1L);
+                this.values[column].writeBytes(bytes);
+            }
+        }
+        this.rows++;
+        if (this.rows == this.rowsPerChunk) {
+            writeChunk();
+        }
+    }
+
+    /**
+     * Writes the rows still kept and the end of the file, and closes the output.
+     */
+    @Override
+    public void close() throws IOException {
+        try (DataOutputStream output = this.output) {
+            if (this.rows > 0) {
+                writeChunk();
+            }
+            writeNumber(output, 0);
+        }
+    }
+
+    private void writeChunk() throws IOException {
+        writeNumber(this.output, this.rows);
+        for (int column = 0; column < this.values.length; column++) {
+            writeNumber(this.output, this.lengths[column].size() + (long) this.values[column].size());
+            this.lengths[column].writeTo(this.output);
+            this.values[column].writeTo(this.output);
+            this.lengths[column].reset();
+            this.values[column].reset();
+        }
+        this.rows = 0;
+    }
+
+    static void writeNumber(
+        final OutputStream output,
+        final long number
+    ) throws IOException {
+        long value = number;
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    static long readNumber(final InputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int read = input.read();
+            if (read < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (read & 0x7F) << shift;
+            if ((read & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number");
+    }
+}
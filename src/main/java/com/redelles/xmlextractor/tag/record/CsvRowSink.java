@@ -0,0 +1,60 @@
+package com.redelles.xmlextractor.tag.record;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes the rows as CSV (RFC 4180): a header with the column names, the fields separated by commas, the lines ended
+ * by CRLF and quoted when they have a comma, a quote or a line break. A missing value is an empty field.
+ */
+public class CsvRowSink implements RowSink {
+
+    private final Writer writer;
+
+    public CsvRowSink(final Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void columns(final List<String> names) throws IOException {
+        writeLine(names.toArray(String[]::new));
+    }
+
+    @Override
+    public void row(final String[] values) throws IOException {
+        writeLine(values);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+    }
+
+    private void writeLine(final String[] values) throws IOException {
+        for (int column = 0; column < values.length; column++) {
+            if (column > 0) {
+                this.writer.write(',');
+            }
+            if (values[column] != null) {
+                writeField(values[column]);
+            }
+        }
+        this.writer.write("\r\n");
+    }
+
+    private void writeField(final String value) throws IOException {
+        boolean quoted = false;
+        for (int index = 0; index < value.length() && !quoted; index++) {
+            final char character = value.charAt(index);
+            quoted = character == ',' || character == '"' || character == '\n' || character == '\r';
+        }
+        if (!quoted) {
+            this.writer.write(value);
+            return;
+        }
+        this.writer.write('"');
+        this.writer.write(value.replace("\"", "\"\""));
+        this.writer.write('"');
+    }
+}
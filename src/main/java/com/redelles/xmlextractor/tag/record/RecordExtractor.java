@@ -0,0 +1,196 @@
+package com.redelles.xmlextractor.tag.record;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.ExtractionPlan;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.events.XMLEvent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Extracts one row for every record element, with a column for every path relative to the record, and gives the rows
+ * to a {@link RowSink} while the document is parsed. Only the values of the current record are kept.
+ * <p>
+ * The paths are followed from the record element, {@code "Amt/InstdAmt/@Ccy"} for the currency of its amount, with
+ * the rules of {@link XmlTagPath}. A column takes the first value found in the record, its times are ignored. The end
+ * of a record is found by the exact name of the record element.
+ */
+public class RecordExtractor {
+
+    private static final String RECORD_END_KEY = "\u0000recordEnd";
+
+    private final String recordElement;
+    private final List<String> columns;
+    private final Map<String, Integer> columnKeys;
+    private final XmlTagCursorExtractor extractor;
+
+    public RecordExtractor(
+        final String recordElement,
+        final List<XmlTagPath> columnPaths
+    ) {
+        this.recordElement = recordElement;
+        final List<String> columns = new ArrayList<>(columnPaths.size());
+        final List<XmlTagPath> recordPaths = new ArrayList<>(columnPaths.size());
+        this.columnKeys = HashMap.newHashMap(columnPaths.size());
+        for (int column = 0; column < columnPaths.size(); column++) {
+            final XmlTagPath columnPath = columnPaths.get(column);
+            final List<String> tags = new ArrayList<>(columnPath.tags.size() + 1);
+            tags.add(recordElement);
+            tags.addAll(columnPath.tags);
+            recordPaths.add(new XmlTagPath(tags, String.valueOf(column), -1));
+            this.columnKeys.put(String.valueOf(column), column);
+            columns.add(columnPath.outKey);
+        }
+        this.columns = List.copyOf(columns);
+        this.extractor = new XmlTagCursorExtractor(new ExtractionPlan(
+            recordPaths,
+            List.of(),
+            List.of(new RecordEnd(recordElement))
+        ));
+    }
+
+    public String recordElement() {
+        return this.recordElement;
+    }
+
+    /**
+     * Names of the columns, the out keys of the paths.
+     */
+    public List<String> columns() {
+        return this.columns;
+    }
+
+    /**
+     * Gives the columns and then every record of the document to the sink, which is not closed.
+     *
+     * @return the number of rows given to the sink
+     * @throws IOException when the sink can not write
+     */
+    public long extract(
+        final String filename,
+        final InputStream inputStream,
+        final RowSink sink
+    ) throws IOException {
+        sink.columns(this.columns);
+        final Rows rows = new Rows(sink);
+        try {
+            this.extractor.extract(filename, inputStream, rows);
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows.count;
+    }
+
+    /**
+     * Puts every value in its column of the current record and gives the record to the sink when it ends.
+     */
+    private final class Rows implements ValueProcessor {
+
+        private final RowSink sink;
+        private final String[] values = new String[RecordExtractor.this.columns.size()];
+        private long count;
+
+        private Rows(final RowSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void processValue(
+            final String outKey,
+            final String value
+        ) {
+            if (RECORD_END_KEY.equals(outKey)) {
+                endRecord();
+                return;
+            }
+            final int column = RecordExtractor.this.columnKeys.get(outKey);
+            if (this.values[column] == null) {
+                this.values[column] = value;
+            }
+        }
+
+        @Override
+        public void processText(
+            final String outKey,
+            final CharSequence value
+        ) {
+            final int column = RecordExtractor.this.columnKeys.get(outKey);
+            if (this.values[column] == null) {
+                this.values[column] = value.toString();
+            }
+        }
+
+        private void endRecord() {
+            try {
+                this.sink.row(this.values);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Arrays.fill(this.values, null);
+            this.count++;
+        }
+    }
+
+    /**
+     * Tells the end of every record, only asked about the end tags of the record element.
+     */
+    private static final class RecordEnd implements AlternateTagExtractor {
+
+        private final String recordElement;
+
+        private RecordEnd(final String recordElement) {
+            this.recordElement = recordElement;
+        }
+
+        @Override
+        public String key() {
+            return RECORD_END_KEY;
+        }
+
+        @Override
+        public boolean isCompatible(final XMLEvent event) {
+            return event.isEndElement() && this.recordElement.equals(event.asEndElement()
+                .getName()
+                .getLocalPart());
+        }
+
+        @Override
+        public String extract(
+            final XMLEvent event,
+            final XMLEventReader reader
+        ) {
+            return this.recordElement;
+        }
+
+        @Override
+        public void decreaseTagCount() {
+        }
+
+        @Override
+        public boolean canContinueProcessing() {
+            return true;
+        }
+
+        @Override
+        public AlternateTagExtractor rebuild() {
+            return this;
+        }
+
+        @Override
+        public Set<Integer> triggerEventTypes() {
+            return Set.of(XMLStreamConstants.END_ELEMENT);
+        }
+
+        @Override
+        public Set<String> triggerElementNames() {
+            return Set.of(this.recordElement);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.redelles.xmlextractor.tag.record;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the rows of a {@link RecordExtractor}, one for every record as soon as it ends. Closing the sink writes
+ * what it still keeps and closes its output.
+ */
+public interface RowSink extends Closeable {
+
+    /**
+     * Names of the columns, given once before the first row.
+     */
+    void columns(List<String> names) throws IOException;
+
+    /**
+     * Values of a record in the order of the columns, {@code null} when the record has no value for a column. The array
+     * is reused for the next record, it is only valid during the call.
+     */
+    void row(String[] values) throws IOException;
+}
@@ -0,0 +1,121 @@
+package com.redelles.xmlextractor.tag.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory outside the heap for {@link CompactValues}. The segments are direct buffers until the memory budget is used,
+ * and then regions of a temporary file mapped in memory, so the values that do not fit the budget are left to the
+ * page cache and the disk. Only the references to the segments are kept in the heap.
+ * <p>
+ * Closing the storage deletes the temporary file; the collections of a closed storage can not be used, their
+ * iterators included. The direct buffers and the mapped regions are freed by the garbage collector once the collections
+ * are not referenced; the direct bytes of a cleared collection are given back to the budget at once, the regions of the
+ * temporary file are not reused. It is not thread safe.
+ */
+public final class CompactStorage implements Closeable {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 256L << 20;
+    static final int FIRST_SEGMENT_SIZE = 1 << 12;
+    static final int MAX_SEGMENT_SIZE = 1 << 24;
+
+    private final long memoryBudget;
+    private final Path spillDirectory;
+    private long directBytes;
+    private Path spillFile;
+    private FileChannel spillChannel;
+    private long spillBytes;
+    private boolean closed;
+
+    public CompactStorage() {
+        this(DEFAULT_MEMORY_BUDGET, Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param memoryBudget   bytes of direct buffers, the rest goes to a temporary file
+     * @param spillDirectory where the temporary file is created, only when the budget is used
+     */
+    public CompactStorage(
+        final long memoryBudget,
+        final Path spillDirectory
+    ) {
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+    }
+
+    public CompactValues newValues() {
+        return new CompactValues(this);
+    }
+
+    /**
+     * Bytes in direct buffers.
+     */
+    public long directBytes() {
+        return this.directBytes;
+    }
+
+    /**
+     * Bytes spilled to the temporary file.
+     */
+    public long spilledBytes() {
+        return this.spillBytes;
+    }
+
+    /**
+     * Segment of {@code size} bytes, direct while it fits the budget.
+     */
+    ByteBuffer allocate(final int size) {
+        checkOpen();
+        if (this.directBytes + size <= this.memoryBudget) {
+            this.directBytes += size;
+            return ByteBuffer.allocateDirect(size);
+        }
+        try {
+            if (this.spillChannel == null) {
+                this.spillFile = Files.createTempFile(this.spillDirectory, "xml-extractor-values", ".spill");
+                this.spillChannel = FileChannel.open(
+                    this.spillFile,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE
+                );
+            }
+            final ByteBuffer segment = this.spillChannel.map(FileChannel.MapMode.READ_WRITE, this.spillBytes, size);
+            this.spillBytes += size;
+            return segment;
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Can not spill the values to " + this.spillDirectory, e);
+        }
+    }
+
+    /**
+     * Gives bytes of direct segments back to the budget, the segments must not be used anymore.
+     */
+    void release(final long bytes) {
+        this.directBytes -= bytes;
+    }
+
+    /**
+     * @throws IllegalStateException when the storage is closed
+     */
+    void checkOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("The storage is closed");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        if (this.spillChannel != null) {
+            this.spillChannel.close();
+            Files.deleteIfExists(this.spillFile);
+            this.spillChannel = null;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.redelles.xmlextractor.tag.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Collection of values kept outside the heap, in the segments of a {@link CompactStorage}: every value is its length
+ * in UTF-8 as a variable length integer followed by its UTF-8 bytes, written one after the other. The values are only
+ * decoded to {@link String} while iterating, so the heap holds the list of segments and nothing per value.
+ * <p>
+ * The segments of a collection start small and double up to {@link CompactStorage#MAX_SEGMENT_SIZE}, so the keys with
+ * few values take little memory. The values can only be added; {@link #clear()} drops all of them and gives their
+ * direct bytes back to the budget of the storage. It is not thread safe.
+ */
+public final class CompactValues extends AbstractCollection<String> {
+
+    private final CompactStorage storage;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private ByteBuffer current;
+    private long count;
+    private long directBytes;
+
+    CompactValues(final CompactStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public boolean add(final String value) {
+        return add((CharSequence) value);
+    }
+
+    /**
+     * Adds the text of the value, which is read during the call and not kept.
+     */
+    public boolean add(final CharSequence value) {
+        this.storage.checkOpen();
+        final int length = utf8Length(value);
+        final int size = numberSize(length) + length;
+        if (this.current == null || this.current.remaining() < size) {
+            nextSegment(size);
+        }
+        writeNumber(this.current, length);
+        writeUtf8(this.current, value);
+        this.count++;
+        return true;
+    }
+
+    /**
+     * Number of values, {@link Integer#MAX_VALUE} when there are more; see {@link #count()}.
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(this.count, Integer.MAX_VALUE);
+    }
+
+    public long count() {
+        return this.count;
+    }
+
+    @Override
+    public void clear() {
+        this.storage.release(this.directBytes);
+        this.directBytes = 0;
+        this.segments.clear();
+        this.current = null;
+        this.count = 0;
+    }
+
+    /**
+     * Iterator decoding the values in the order they were added, it throws an {@link IllegalStateException} once the
+     * storage is closed.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+
+            private final Iterator<ByteBuffer> segments = CompactValues.this.segments.iterator();
+            private ByteBuffer segment;
+            private byte[] bytes = new byte[64];
+
+            @Override
+            public boolean hasNext() {
+                CompactValues.this.storage.checkOpen();
+                while (this.segment == null || !this.segment.hasRemaining()) {
+                    if (!this.segments.hasNext()) {
+                        return false;
+                    }
+                    this.segment = this.segments.next()
+                        .duplicate()
+                        .flip();
+                }
+                return true;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final int length = readNumber(this.segment);
+                if (length > this.bytes.length) {
+                    this.bytes = new byte[Math.max(length, this.bytes.length * 2)];
+                }
+                this.segment.get(this.bytes, 0, length);
+                return new String(this.bytes, 0, length, StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    private void nextSegment(final int minimum) {
+        final int previous = this.current == null ? CompactStorage.FIRST_SEGMENT_SIZE / 2 : this.current.capacity();
+        final int size = Math.max(minimum, Math.min(previous * 2, CompactStorage.MAX_SEGMENT_SIZE));
+        final long directBefore = this.storage.directBytes();
+        this.current = this.storage.allocate(size);
+        this.directBytes += this.storage.directBytes() - directBefore;
+        this.segments.add(this.current);
+    }
+
+    private static int utf8Length(final CharSequence value) {
+        int length = 0;
+        for (int index = 0; index < value.length(); index++) {
+            final char character = value.charAt(index);
+            if (character < 0x80) {
+                length++;
+            } else if (character < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(character) && index + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(index + 1))) {
+                length += 4;
+                index++;
+            } else if (Character.isSurrogate(character)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Same bytes as {@link String#getBytes(java.nio.charset.Charset)}, a lone surrogate is written as {@code '?'}.
+     */
+    private static void writeUtf8(
+        final ByteBuffer buffer,
+        final CharSequence value
+    ) {
+        for (int index = 0; index < value.length(); index++) {
+            final char character = value.charAt(index);
+            if (character < 0x80) {
+                buffer.put((byte) character);
+            } else if (character < 0x800) {
+                buffer.put((byte) (0xC0 | character >> 6))
+                    .put((byte) (0x80 | character & 0x3F));
+            } else if (Character.isHighSurrogate(character) && index + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(index + 1))) {
+                final int codePoint = Character.toCodePoint(character, value.charAt(++index));
+                buffer.put((byte) (0xF0 | codePoint >> 18))
+                    .put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                    .put((byte) (0x80 | codePoint >> 6 & 0x3F))
+                    .put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(character)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | character >> 12))
+                    .put((byte) (0x80 | character >> 6 & 0x3F))
+                    .put((byte) (0x80 | character & 0x3F));
+            }
+        }
+    }
+
+    private static int numberSize(final int number) {
+        int size = 1;
+        int value = number;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeNumber(
+        final ByteBuffer buffer,
+        final int number
+    ) {
+        int value = number;
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int readNumber(final ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte read;
+        do {
+            read = buffer.get();
+            value |= (read & 0x7F) << shift;
+            shift += 7;
+        } while ((read & 0x80) != 0);
+        return value;
+    }
+}
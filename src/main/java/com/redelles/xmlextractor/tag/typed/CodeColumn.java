@@ -0,0 +1,131 @@
+package com.redelles.xmlextractor.tag.typed;
+
+import com.redelles.xmlextractor.tag.XmlTagPath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Column of {@link XmlTagPath.Type#CODE} values, every row with the number of its code in {@link #codes()}. The codes
+ * are looked up by their characters, so a code already seen costs no {@link String}. A missing value is -1.
+ */
+public final class CodeColumn extends Column {
+
+    private final List<String> codes = new ArrayList<>();
+    private int[] ids = new int[64];
+    private int[] slots = new int[16];
+    private int[] hashes = new int[16];
+
+    CodeColumn(final String outKey) {
+        super(outKey, XmlTagPath.Type.CODE);
+    }
+
+    public int id(final int row) {
+        checkRow(row);
+        return this.ids[row];
+    }
+
+    /**
+     * The code of the row, null when it is missing.
+     */
+    public String get(final int row) {
+        final int id = id(row);
+        return id < 0 ? null : this.codes.get(id);
+    }
+
+    /**
+     * The codes found, in the order they first appeared.
+     */
+    public List<String> codes() {
+        return List.copyOf(this.codes);
+    }
+
+    public int[] ids() {
+        return Arrays.copyOf(this.ids, this.size);
+    }
+
+    @Override
+    void add(final CharSequence value) {
+        final int start = TextValues.start(value);
+        final int end = TextValues.end(value);
+        if (start == end) {
+            throw new IllegalArgumentException("Empty code");
+        }
+        append(id(value, start, end));
+    }
+
+    @Override
+    void addMissing() {
+        append(-1);
+        markMissing();
+    }
+
+    private int id(
+        final CharSequence value,
+        final int start,
+        final int end
+    ) {
+        int hash = 0;
+        for (int index = start; index < end; index++) {
+            hash = 31 * hash + value.charAt(index);
+        }
+        int slot = hash & (this.slots.length - 1);
+        while (this.slots[slot] != 0) {
+            final int id = this.slots[slot] - 1;
+            if (this.hashes[slot] == hash && sameCharacters(this.codes.get(id), value, start, end)) {
+                return id;
+            }
+            slot = (slot + 1) & (this.slots.length - 1);
+        }
+        this.codes.add(value.subSequence(start, end)
+            .toString());
+        this.slots[slot] = this.codes.size();
+        this.hashes[slot] = hash;
+        if (this.codes.size() * 2 > this.slots.length) {
+            rehash();
+        }
+        return this.codes.size() - 1;
+    }
+
+    private void rehash() {
+        final int[] slots = this.slots;
+        final int[] hashes = this.hashes;
+        this.slots = new int[slots.length * 2];
+        this.hashes = new int[slots.length * 2];
+        for (int old = 0; old < slots.length; old++) {
+            if (slots[old] != 0) {
+                int slot = hashes[old] & (this.slots.length - 1);
+                while (this.slots[slot] != 0) {
+                    slot = (slot + 1) & (this.slots.length - 1);
+                }
+                this.slots[slot] = slots[old];
+                this.hashes[slot] = hashes[old];
+            }
+        }
+    }
+
+    private static boolean sameCharacters(
+        final String code,
+        final CharSequence value,
+        final int start,
+        final int end
+    ) {
+        if (code.length() != end - start) {
+            return false;
+        }
+        for (int index = 0; index < code.length(); index++) {
+            if (code.charAt(index) != value.charAt(start + index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void append(final int id) {
+        if (this.size == this.ids.length) {
+            this.ids = Arrays.copyOf(this.ids, this.size * 2);
+        }
+        this.ids[this.size++] = id;
+    }
+}
@@ -0,0 +1,60 @@
+package com.redelles.xmlextractor.tag.typed;
+
+import com.redelles.xmlextractor.tag.XmlTagPath;
+
+import java.util.BitSet;
+
+/**
+ * Growable column with the values of one out key, in document order, parsed as the {@link XmlTagPath.Type} of its
+ * paths. A value that could not be parsed keeps its row, marked as missing, so the rows are numbered as the values of
+ * the key.
+ */
+public abstract class Column {
+
+    public final String outKey;
+    public final XmlTagPath.Type type;
+    private final BitSet missing = new BitSet();
+    int size;
+
+    Column(
+        final String outKey,
+        final XmlTagPath.Type type
+    ) {
+        this.outKey = outKey;
+        this.type = type;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isMissing(final int row) {
+        return this.missing.get(row);
+    }
+
+    public int missingCount() {
+        return this.missing.cardinality();
+    }
+
+    /**
+     * Adds the value to a new row.
+     *
+     * @throws IllegalArgumentException when the value can not be parsed, then no row is added
+     */
+    abstract void add(CharSequence value);
+
+    /**
+     * Adds a row without value.
+     */
+    abstract void addMissing();
+
+    void markMissing() {
+        this.missing.set(this.size - 1);
+    }
+
+    void checkRow(final int row) {
+        if (row < 0 || row >= this.size) {
+            throw new IndexOutOfBoundsException(row);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.redelles.xmlextractor.tag.typed;
+
+import com.redelles.xmlextractor.tag.XmlTagPath;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column of {@link XmlTagPath.Type#DECIMAL} values kept exactly as pairs of unscaled {@code long} and scale. The few
+ * values that do not fit in a {@code long} are kept aside as {@link BigDecimal}.
+ */
+public final class DecimalColumn extends Column {
+
+    private final DecimalParser parser = new DecimalParser();
+    private final Map<Integer, BigDecimal> bigValues = new HashMap<>();
+    private long[] unscaled = new long[64];
+    private byte[] scales = new byte[64];
+
+    DecimalColumn(final String outKey) {
+        super(outKey, XmlTagPath.Type.DECIMAL);
+    }
+
+    /**
+     * The value of the row, null when it is missing.
+     */
+    public BigDecimal get(final int row) {
+        checkRow(row);
+        if (isMissing(row)) {
+            return null;
+        }
+        final BigDecimal big = this.bigValues.get(row);
+        return big != null ? big : BigDecimal.valueOf(this.unscaled[row], this.scales[row]);
+    }
+
+    /**
+     * True when the value of the row fits in {@link #unscaled(int)} and {@link #scale(int)}.
+     */
+    public boolean fitsInLong(final int row) {
+        checkRow(row);
+        return !this.bigValues.containsKey(row);
+    }
+
+    public long unscaled(final int row) {
+        checkRow(row);
+        return this.unscaled[row];
+    }
+
+    public int scale(final int row) {
+        checkRow(row);
+        return this.scales[row];
+    }
+
+    @Override
+    void add(final CharSequence value) {
+        this.parser.parse(value);
+        if (this.parser.isBig()) {
+            append(0, 0);
+            this.bigValues.put(this.size - 1, this.parser.big());
+        } else if (this.parser.scale() > Byte.MAX_VALUE) {
+            append(0, 0);
+            this.bigValues.put(this.size - 1, this.parser.value());
+        } else {
+            append(this.parser.unscaled(), this.parser.scale());
+        }
+    }
+
+    @Override
+    void addMissing() {
+        append(0, 0);
+        markMissing();
+    }
+
+    private void append(
+        final long unscaled,
+        final int scale
+    ) {
+        if (this.size == this.unscaled.length) {
+            this.unscaled = Arrays.copyOf(this.unscaled, this.size * 2);
+            this.scales = Arrays.copyOf(this.scales, this.size * 2);
+        }
+        this.unscaled[this.size] = unscaled;
+        this.scales[this.size++] = (byte) scale;
+    }
+}
@@ -0,0 +1,86 @@
+package com.redelles.xmlextractor.tag.typed;
+
+import java.math.BigDecimal;
+
+/**
+ * Parses decimal numbers without exponent, like {@code "-1234.50"}, into an unscaled {@code long} and a scale, so
+ * {@code "-1234.50"} is {@code -123450} with scale 2. The numbers with more than 18 significant digits do not fit, they
+ * are kept as a {@link BigDecimal}. A parser is reused for every value and holds the last one parsed.
+ */
+public final class DecimalParser {
+
+    private static final int LONG_DIGITS = 18;
+
+    private long unscaled;
+    private int scale;
+    private BigDecimal big;
+
+    /**
+     * @throws IllegalArgumentException when the text is not a decimal number
+     */
+    public void parse(final CharSequence text) {
+        final int end = TextValues.end(text);
+        int index = TextValues.start(text);
+        final boolean negative = index < end && text.charAt(index) == '-';
+        if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+            index++;
+        }
+        long value = 0;
+        int digits = 0;
+        int significant = 0;
+        int point = -1;
+        for (; index < end; index++) {
+            final char character = text.charAt(index);
+            if (character == '.' && point < 0) {
+                point = digits;
+                continue;
+            }
+            final int digit = TextValues.digit(text, index);
+            digits++;
+            if (significant > 0 || digit > 0) {
+                significant++;
+            }
+            if (significant <= LONG_DIGITS) {
+                value = value * 10 + digit;
+            }
+        }
+        if (digits == 0) {
+            throw new IllegalArgumentException("No digits");
+        }
+        this.scale = point < 0 ? 0 : digits - point;
+        if (significant > LONG_DIGITS) {
+            this.big = new BigDecimal(text.subSequence(TextValues.start(text), end)
+                .toString());
+            this.unscaled = 0;
+        } else {
+            this.big = null;
+            this.unscaled = negative ? -value : value;
+        }
+    }
+
+    /**
+     * True when the last number did not fit in a {@code long} and only {@link #big()} has it.
+     */
+    public boolean isBig() {
+        return this.big != null;
+    }
+
+    public long unscaled() {
+        return this.unscaled;
+    }
+
+    public int scale() {
+        return this.scale;
+    }
+
+    /**
+     * The last number, only when it did not fit in a {@code long}.
+     */
+    public BigDecimal big() {
+        return this.big;
+    }
+
+    public BigDecimal value() {
+        return this.big != null ? this.big : BigDecimal.valueOf(this.unscaled, this.scale);
+    }
+}
@@ -0,0 +1,63 @@
+package com.redelles.xmlextractor.tag.typed;
+
+import com.redelles.xmlextractor.tag.XmlTagPath;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Column of {@link XmlTagPath.Type#LONG} values, or of dates as days since 1970-01-01 ({@link XmlTagPath.Type#DATE})
+ * or instants as milliseconds since 1970-01-01T00:00:00Z ({@link XmlTagPath.Type#DATE_TIME}). A missing value is 0.
+ */
+public final class LongColumn extends Column {
+
+    private long[] values = new long[64];
+
+    LongColumn(
+        final String outKey,
+        final XmlTagPath.Type type
+    ) {
+        super(outKey, type);
+    }
+
+    public long get(final int row) {
+        checkRow(row);
+        return this.values[row];
+    }
+
+    public LocalDate date(final int row) {
+        return LocalDate.ofEpochDay(get(row));
+    }
+
+    public Instant instant(final int row) {
+        return Instant.ofEpochMilli(get(row));
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(this.values, this.size);
+    }
+
+    @Override
+    void add(final CharSequence value) {
+        final long parsed = switch (this.type) {
+            case DATE -> TextValues.parseEpochDay(value);
+            case DATE_TIME -> TextValues.parseEpochMillis(value);
+            default -> TextValues.parseLong(value);
+        };
+        append(parsed);
+    }
+
+    @Override
+    void addMissing() {
+        append(0);
+        markMissing();
+    }
+
+    private void append(final long value) {
+        if (this.size == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.size * 2);
+        }
+        this.values[this.size++] = value;
+    }
+}
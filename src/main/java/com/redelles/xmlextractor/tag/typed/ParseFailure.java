@@ -0,0 +1,29 @@
+package com.redelles.xmlextractor.tag.typed;
+
+/**
+ * A value that could not be parsed as the type of its column: the row left missing, the text found and why.
+ */
+public final class ParseFailure {
+
+    public final String outKey;
+    public final int row;
+    public final String value;
+    public final String reason;
+
+    public ParseFailure(
+        final String outKey,
+        final int row,
+        final String value,
+        final String reason
+    ) {
+        this.outKey = outKey;
+        this.row = row;
+        this.value = value;
+        this.reason = reason;
+    }
+
+    @Override
+    public String toString() {
+        return "%s[%s] '%s': %s".formatted(this.outKey, this.row, this.value, this.reason);
+    }
+}
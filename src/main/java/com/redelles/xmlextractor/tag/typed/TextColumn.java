@@ -0,0 +1,36 @@
+package com.redelles.xmlextractor.tag.typed;
+
+import com.redelles.xmlextractor.tag.XmlTagPath;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Column of the {@link XmlTagPath.Type#TEXT} values, kept as strings.
+ */
+public final class TextColumn extends Column {
+
+    private final List<String> values = new ArrayList<>();
+
+    TextColumn(final String outKey) {
+        super(outKey, XmlTagPath.Type.TEXT);
+    }
+
+    public String get(final int row) {
+        checkRow(row);
+        return this.values.get(row);
+    }
+
+    @Override
+    void add(final CharSequence value) {
+        this.values.add(value.toString());
+        this.size++;
+    }
+
+    @Override
+    void addMissing() {
+        this.values.add(null);
+        this.size++;
+        markMissing();
+    }
+}
@@ -0,0 +1,185 @@
+package com.redelles.xmlextractor.tag.typed;
+
+import java.time.Month;
+import java.time.Year;
+
+/**
+ * Parses the typed values straight from the characters given to
+ * {@link com.redelles.xmlextractor.ValueProcessor#processText(String, CharSequence)}, without building a
+ * {@link String}. The blanks around the value are ignored. A value that can not be parsed throws
+ * {@link IllegalArgumentException} with the reason.
+ */
+public final class TextValues {
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private TextValues() {
+    }
+
+    public static long parseLong(final CharSequence text) {
+        final int end = end(text);
+        int index = start(text);
+        final boolean negative = index < end && text.charAt(index) == '-';
+        if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+            index++;
+        }
+        if (index == end) {
+            throw new IllegalArgumentException("No digits");
+        }
+        long value = 0;
+        for (; index < end; index++) {
+            final int digit = digit(text, index);
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw new IllegalArgumentException("Out of the range of long");
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            throw new IllegalArgumentException("Out of the range of long");
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * Days since 1970-01-01 of an ISO date, {@code yyyy-MM-dd} with an optional time zone that is ignored.
+     */
+    public static long parseEpochDay(final CharSequence text) {
+        final int end = end(text);
+        final int start = start(text);
+        final long day = epochDay(text, start);
+        final int zone = start + 10;
+        if (zone < end) {
+            zoneOffsetMillis(text, zone, end);
+        }
+        return day;
+    }
+
+    /**
+     * Milliseconds since 1970-01-01T00:00:00Z of an ISO date and time, {@code yyyy-MM-ddTHH:mm:ss} with optional
+     * fraction of second and time zone. Without time zone it is taken as UTC; the digits of the fraction after the
+     * milliseconds are ignored.
+     */
+    public static long parseEpochMillis(final CharSequence text) {
+        final int end = end(text);
+        final int start = start(text);
+        final long day = epochDay(text, start);
+        if (start + 19 > end || text.charAt(start + 10) != 'T' || text.charAt(start + 13) != ':'
+            || text.charAt(start + 16) != ':') {
+            throw new IllegalArgumentException("Expected a time like THH:mm:ss after the date");
+        }
+        final int hour = number(text, start + 11, 2);
+        final int minute = number(text, start + 14, 2);
+        final int second = number(text, start + 17, 2);
+        if (hour > 23 || minute > 59 || second > 59) {
+            throw new IllegalArgumentException("Invalid time");
+        }
+        int index = start + 19;
+        int millis = 0;
+        if (index < end && text.charAt(index) == '.') {
+            index++;
+            final int fraction = index;
+            for (; index < end && isDigit(text.charAt(index)); index++) {
+                if (index - fraction < 3) {
+                    millis = millis * 10 + digit(text, index);
+                }
+            }
+            if (index == fraction) {
+                throw new IllegalArgumentException("No digits in the fraction of second");
+            }
+            for (int missing = index - fraction; missing < 3; missing++) {
+                millis *= 10;
+            }
+        }
+        final long offset = index < end ? zoneOffsetMillis(text, index, end) : 0;
+        return day * MILLIS_PER_DAY + ((hour * 60L + minute) * 60L + second) * 1000L + millis - offset;
+    }
+
+    static int start(final CharSequence text) {
+        int start = 0;
+        while (start < text.length() && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    static int end(final CharSequence text) {
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    static boolean isDigit(final char character) {
+        return character >= '0' && character <= '9';
+    }
+
+    static int digit(
+        final CharSequence text,
+        final int index
+    ) {
+        final char character = text.charAt(index);
+        if (!isDigit(character)) {
+            throw new IllegalArgumentException("Unexpected '%s' at %s".formatted(character, index));
+        }
+        return character - '0';
+    }
+
+    private static long epochDay(
+        final CharSequence text,
+        final int start
+    ) {
+        if (start + 10 > end(text) || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-') {
+            throw new IllegalArgumentException("Expected a date like yyyy-MM-dd");
+        }
+        final int year = number(text, start, 4);
+        final int month = number(text, start + 5, 2);
+        final int day = number(text, start + 8, 2);
+        if (month < 1 || month > 12 || day < 1 || day > Month.of(month)
+            .length(Year.isLeap(year))) {
+            throw new IllegalArgumentException("Invalid date");
+        }
+        final long shifted = month <= 2 ? year - 1 : year;
+        final long era = Math.floorDiv(shifted, 400);
+        final long yearOfEra = shifted - era * 400;
+        final long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+
+    /**
+     * Offset of a time zone {@code Z} or {@code ±HH:mm} taking the rest of the value.
+     */
+    private static long zoneOffsetMillis(
+        final CharSequence text,
+        final int start,
+        final int end
+    ) {
+        final char sign = text.charAt(start);
+        if (sign == 'Z' && end == start + 1) {
+            return 0;
+        }
+        if ((sign != '+' && sign != '-') || end != start + 6 || text.charAt(start + 3) != ':') {
+            throw new IllegalArgumentException("Invalid time zone");
+        }
+        final int hours = number(text, start + 1, 2);
+        final int minutes = number(text, start + 4, 2);
+        if (hours > 14 || minutes > 59) {
+            throw new IllegalArgumentException("Invalid time zone");
+        }
+        final long offset = (hours * 60L + minutes) * 60_000L;
+        return sign == '-' ? -offset : offset;
+    }
+
+    private static int number(
+        final CharSequence text,
+        final int start,
+        final int digits
+    ) {
+        int value = 0;
+        for (int index = start; index < start + digits; index++) {
+            value = value * 10 + digit(text, index);
+        }
+        return value;
+    }
+}
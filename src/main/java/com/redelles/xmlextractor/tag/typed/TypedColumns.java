@@ -0,0 +1,97 @@
+package com.redelles.xmlextractor.tag.typed;
+
+import com.redelles.xmlextractor.tag.XmlTagPath;
+
+import java.util.*;
+
+/**
+ * Processor that parses every value into the column of its out key as the {@link XmlTagPath.Type} of its paths, right
+ * from the characters given by the extractor, so the numbers, dates and codes are never kept as strings nor parsed
+ * twice. A value that can not be parsed leaves its row missing and is reported in {@link #failures()}. The values of
+ * keys without column, like those of the special extractors, are ignored.
+ * <p>
+ * Give it to any {@link com.redelles.xmlextractor.tag.TagExtractor} extracting the same paths.
+ */
+public class TypedColumns extends TypedValueProcessor {
+
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+    private final List<ParseFailure> failures = new ArrayList<>();
+
+    /**
+     * @throws IllegalArgumentException when paths with the same out key have different types
+     */
+    public TypedColumns(final Collection<XmlTagPath> tagPaths) {
+        types(tagPaths).forEach((outKey, type) -> this.columns.put(outKey, newColumn(outKey, type)));
+    }
+
+    /**
+     * @throws IllegalArgumentException when there is no column for the key
+     */
+    public Column column(final String outKey) {
+        final Column column = this.columns.get(outKey);
+        if (column == null) {
+            throw new IllegalArgumentException("No column for " + outKey);
+        }
+        return column;
+    }
+
+    public LongColumn longColumn(final String outKey) {
+        return column(outKey, LongColumn.class);
+    }
+
+    public DecimalColumn decimalColumn(final String outKey) {
+        return column(outKey, DecimalColumn.class);
+    }
+
+    public CodeColumn codeColumn(final String outKey) {
+        return column(outKey, CodeColumn.class);
+    }
+
+    public TextColumn textColumn(final String outKey) {
+        return column(outKey, TextColumn.class);
+    }
+
+    public List<ParseFailure> failures() {
+        return Collections.unmodifiableList(this.failures);
+    }
+
+    @Override
+    public void processText(
+        final String outKey,
+        final CharSequence value
+    ) {
+        final Column column = this.columns.get(outKey);
+        if (column == null) {
+            return;
+        }
+        try {
+            column.add(value);
+        } catch (final IllegalArgumentException e) {
+            column.addMissing();
+            this.failures.add(new ParseFailure(outKey, column.size() - 1, value.toString(), e.getMessage()));
+        }
+    }
+
+    private <C extends Column> C column(
+        final String outKey,
+        final Class<C> columnClass
+    ) {
+        final Column column = column(outKey);
+        if (!columnClass.isInstance(column)) {
+            throw new IllegalArgumentException("The column %s is of type %s".formatted(outKey, column.type));
+        }
+        return columnClass.cast(column);
+    }
+
+    private static Column newColumn(
+        final String outKey,
+        final XmlTagPath.Type type
+    ) {
+        return switch (type) {
+            case LONG, DATE, DATE_TIME -> new LongColumn(outKey, type);
+            case DECIMAL -> new DecimalColumn(outKey);
+            case CODE -> new CodeColumn(outKey);
+            case TEXT -> new TextColumn(outKey);
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package com.redelles.xmlextractor.tag.typed;
+
+import com.redelles.xmlextractor.ValueProcessor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Processor reading the values of every out key as the one {@link XmlTagPath.Type} of its paths. The values are
+ * always read as characters: {@link #processValue(String, String)} gives them to {@link #processText(String,
+ * CharSequence)}, so both are handled the same way.
+ */
+public abstract class TypedValueProcessor implements ValueProcessor {
+
+    @Override
+    public final void processValue(
+        final String outKey,
+        final String value
+    ) {
+        processText(outKey, value);
+    }
+
+    @Override
+    public abstract void processText(
+        String outKey,
+        CharSequence value
+    );
+
+    /**
+     * The type of every out key of the paths, in the order of the paths.
+     *
+     * @throws IllegalArgumentException when paths with the same out key have different types
+     */
+    protected static Map<String, XmlTagPath.Type> types(final Collection<XmlTagPath> tagPaths) {
+        final Map<String, XmlTagPath.Type> types = new LinkedHashMap<>();
+        for (final XmlTagPath tagPath : tagPaths) {
+            final XmlTagPath.Type type = types.computeIfAbsent(tagPath.outKey, key -> tagPath.type);
+            if (type != tagPath.type) {
+                throw new IllegalArgumentException("The paths of %s have the types %s and %s"
+                    .formatted(tagPath.outKey, type, tagPath.type));
+            }
+        }
+        return types;
+    }
+}
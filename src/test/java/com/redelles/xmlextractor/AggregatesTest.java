@@ -0,0 +1,107 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.XmlTagPath.Aggregation;
+import com.redelles.xmlextractor.tag.XmlTagPath.Type;
+import com.redelles.xmlextractor.tag.aggregate.Aggregates;
+import com.redelles.xmlextractor.tag.aggregate.HyperLogLog;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+
+class AggregatesTest {
+
+    private static final List<XmlTagPath> TAGS_TO_EXTRACT = List.of(
+        XmlTagPath.parse("CdtTrfTxInf/PmtId/EndToEndId", "transactions", -1, Type.TEXT, Aggregation.COUNT),
+        XmlTagPath.parse("CdtTrfTxInf/Amt/InstdAmt", "amount", -1, Type.DECIMAL, Aggregation.SUM, Aggregation.MIN,
+            Aggregation.MAX),
+        XmlTagPath.parse("PmtInf/ReqdExctnDt", "executionDate", -1, Type.DATE, Aggregation.MIN, Aggregation.MAX),
+        XmlTagPath.parse("PmtInf/Dbtr/Nm", "debtor", -1, Type.TEXT, Aggregation.DISTINCT),
+        XmlTagPath.parse("CdtTrfTxInf/Amt/InstdAmt/@Ccy", "currency", -1)
+    );
+
+    @Test
+    void whenDocumentIsAggregated_TheTotalsAreExact_AndTheDistinctCountIsClose() {
+        final Random random = new Random(25);
+        final StringBuilder document = new StringBuilder("<Document><CstmrCdtTrfInitn>");
+        final Set<Integer> debtors = new HashSet<>();
+        BigDecimal expectedSum = new BigDecimal("98765432109876543210.5");
+        for (int payment = 0; payment < 4000; payment++) {
+            final int debtor = random.nextInt(3000);
+            debtors.add(debtor);
+            document.append("<PmtInf><ReqdExctnDt>")
+                .append(LocalDate.of(2024, 1, 1)
+                    .plusDays(random.nextInt(366)))
+                .append("</ReqdExctnDt><Dbtr><Nm>Debtor ")
+                .append(debtor)
+                .append("</Nm></Dbtr>");
+            for (int transaction = 0; transaction < 5; transaction++) {
+                final BigDecimal amount = BigDecimal.valueOf(random.nextLong(-100_000, 10_000_000), random.nextInt(4));
+                expectedSum = expectedSum.add(amount);
+                document.append("<CdtTrfTxInf><PmtId><EndToEndId>E")
+                    .append(payment * 5 + transaction)
+                    .append("</EndToEndId></PmtId><Amt><InstdAmt Ccy=\"EUR\">")
+                    .append(amount.toPlainString())
+                    .append("</InstdAmt></Amt></CdtTrfTxInf>");
+            }
+            document.append("</PmtInf>");
+        }
+        document.append("<PmtInf><ReqdExctnDt>2023-12-31</ReqdExctnDt><CdtTrfTxInf><Amt>")
+            .append("<InstdAmt>98765432109876543210.5</InstdAmt></Amt></CdtTrfTxInf>")
+            .append("<CdtTrfTxInf><Amt><InstdAmt>12,50</InstdAmt></Amt></CdtTrfTxInf>")
+            .append("<CdtTrfTxInf><Amt><InstdAmt>-9223372036854775.808</InstdAmt></Amt></CdtTrfTxInf></PmtInf>")
+            .append("</CstmrCdtTrfInitn></Document>");
+        expectedSum = expectedSum.add(new BigDecimal("-9223372036854775.808"));
+        final Aggregates subject = new Aggregates(TAGS_TO_EXTRACT);
+        //Act
+        new XmlTagCursorExtractor(TAGS_TO_EXTRACT, List.of(), List.of())
+            .extract("filename", new ByteArrayInputStream(document.toString()
+                .getBytes(StandardCharsets.UTF_8)), subject);
+        //Assert
+        Assertions.assertEquals(20_000, subject.get("transactions")
+            .count());
+        Assertions.assertEquals(0, expectedSum.compareTo(subject.get("amount")
+            .sum()));
+        Assertions.assertEquals(1, subject.get("amount")
+            .invalidCount());
+        Assertions.assertEquals(new BigDecimal("-9223372036854775.808"), subject.get("amount")
+            .min());
+        Assertions.assertEquals(new BigDecimal("98765432109876543210.5"), subject.get("amount")
+            .max());
+        Assertions.assertEquals(LocalDate.of(2023, 12, 31), subject.get("executionDate")
+            .min());
+        Assertions.assertEquals(LocalDate.of(2024, 12, 31), subject.get("executionDate")
+            .max());
+        Assertions.assertEquals(debtors.size(), subject.get("debtor")
+            .distinct(), debtors.size() * 0.05);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> subject.get("currency"));
+        Assertions.assertThrows(IllegalStateException.class, () -> subject.get("debtor")
+            .sum());
+    }
+
+    @Test
+    void whenCountersAreMerged_TheEstimateIsThatOfAllTheValues() {
+        final HyperLogLog first = new HyperLogLog();
+        final HyperLogLog second = new HyperLogLog();
+        //Act
+        for (int value = 0; value < 100_000; value++) {
+            first.add("value-" + value);
+            second.add(" value-" + (value + 50_000) + "\n");
+        }
+        first.merge(second);
+        //Assert
+        Assertions.assertEquals(150_000, first.estimate(), 150_000 * 0.05);
+        Assertions.assertEquals(0, new HyperLogLog().estimate());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> first.merge(new HyperLogLog(14)));
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> new Aggregates(List.of(XmlTagPath.parse("Dbtr/Nm", "debtor", -1, Type.TEXT, Aggregation.SUM)))
+        );
+    }
+}
@@ -0,0 +1,280 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.ExtractionPlan;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.async.AsyncTagExtractor;
+import com.redelles.xmlextractor.tag.async.FeedSession;
+import com.redelles.xmlextractor.tag.metrics.ExtractionMetrics;
+import com.redelles.xmlextractor.tag.metrics.StopReason;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+class AsyncTagExtractorTest {
+
+    private static final List<XmlTagPath> TAGS_TO_EXTRACT = List.of(
+        XmlTagPath.parse("Document/GrpHdr/MsgId", "MsgId", 1),
+        XmlTagPath.parse("Document/#namespace", "namespace", 1),
+        XmlTagPath.parse("Document/#prefix", "prefix", 1),
+        XmlTagPath.parse("PmtInf/PmtInfId", "PmtInfId", -1),
+        XmlTagPath.parse("CdtTrfTxInf/Amt/InstdAmt", "amount", -1),
+        XmlTagPath.parse("CdtTrfTxInf/Amt/InstdAmt/@Ccy", "currency", -1),
+        XmlTagPath.parse("Cdtr/Nm", "creditor", -1),
+        XmlTagPath.parse("RmtInf//Ustrd", "remittance", -1)
+    );
+
+    @Test
+    void whenDocumentArrivesInChunksOfAnySize_TheValuesAreThoseOfTheParser() {
+        final byte[] document = document(12).getBytes(StandardCharsets.UTF_8);
+        final AsyncTagExtractor subject = new AsyncTagExtractor(TAGS_TO_EXTRACT, List.of());
+        final List<String> expected = sequential(List.of(), document);
+        for (final int chunkSize : new int[]{1, 2, 3, 5, 7, 64, 4096}) {
+            final List<String> values = new ArrayList<>();
+            final FeedSession session = subject.newSession("filename", (key, value) -> values.add(key + "=" + value));
+            //Act
+            for (int offset = 0; offset < document.length; offset += chunkSize) {
+                session.feed(ByteBuffer.wrap(document, offset, Math.min(chunkSize, document.length - offset)));
+            }
+            final StopReason reason = session.finish();
+            //Assert
+            Assertions.assertEquals(StopReason.END_OF_DOCUMENT, reason);
+            Assertions.assertEquals(expected, values, "chunks of " + chunkSize);
+        }
+        Assertions.assertTrue(expected.contains("creditor=Müller & Söhne €"));
+        Assertions.assertTrue(expected.contains("remittance=Invoice <7>\n2nd line"));
+    }
+
+    @Test
+    void whenChannelDeliversChunksLater_TheValuesAreGivenAsTheyArrive_UntilTheStopTag() throws Exception {
+        final byte[] document = document(12).getBytes(StandardCharsets.UTF_8);
+        final AsyncTagExtractor subject = new AsyncTagExtractor(TAGS_TO_EXTRACT, List.of("PmtInf"));
+        final List<String> values = Collections.synchronizedList(new ArrayList<>());
+        final MemoryChannel channel = new MemoryChannel(document, 13);
+        //Act
+        final StopReason reason = subject.extract("filename", channel, (key, value) -> values.add(key + "=" + value))
+            .get(10, TimeUnit.SECONDS);
+        //Assert
+        Assertions.assertEquals(StopReason.STOP_TAG, reason);
+        Assertions.assertEquals(sequential(List.of("PmtInf"), document), values);
+        Assertions.assertTrue(channel.read < document.length);
+    }
+
+    @Test
+    void whenDocumentsAreUploadedToALoopbackSocket_AllOfThemAreExtractedByTheChannelGroupThreads() throws Exception {
+        final byte[] document = document(200).getBytes(StandardCharsets.UTF_8);
+        final AsyncTagExtractor subject = new AsyncTagExtractor(TAGS_TO_EXTRACT, List.of());
+        final List<String> expected = sequential(List.of(), document);
+        final int uploads = 20;
+        final AsynchronousChannelGroup group = AsynchronousChannelGroup.withFixedThreadPool(
+            2,
+            Executors.defaultThreadFactory()
+        );
+        try (AsynchronousServerSocketChannel server = AsynchronousServerSocketChannel.open(group)
+            .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            final List<CompletableFuture<List<String>>> results = new ArrayList<>();
+            for (int upload = 0; upload < uploads; upload++) {
+                Thread.ofVirtual()
+                    .start(() -> send(server, document));
+                final AsynchronousSocketChannel connection = server.accept()
+                    .get(10, TimeUnit.SECONDS);
+                final List<String> values = new ArrayList<>();
+                //Act
+                final ValueProcessor processor = (key, value) -> values.add(key + "=" + value);
+                results.add(subject.extract("upload-" + upload, connection, processor)
+                    .thenApply(reason -> {
+                        close(connection);
+                        Assertions.assertEquals(StopReason.END_OF_DOCUMENT, reason);
+                        return values;
+                    }));
+            }
+            //Assert
+            for (final CompletableFuture<List<String>> result : results) {
+                Assertions.assertEquals(expected, result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            group.shutdownNow();
+        }
+    }
+
+    @Test
+    void whenDocumentIsMalformedOrCut_TheExtractionSaysWhy() {
+        final String document = document(3);
+        final AsyncTagExtractor subject = new AsyncTagExtractor(TAGS_TO_EXTRACT, List.of());
+        final List<String> values = new ArrayList<>();
+        final FeedSession malformed = subject.newSession("malformed", (key, value) -> values.add(value));
+        final FeedSession cut = subject.newSession("cut", (key, value) -> {
+        });
+        //Act
+        final boolean goesOn = malformed.feed(ByteBuffer.wrap(document.replace("</PmtInfId>", "</PmtInf>")
+            .getBytes(StandardCharsets.UTF_8)));
+        cut.feed(ByteBuffer.wrap(document.substring(0, document.length() / 2)
+            .getBytes(StandardCharsets.UTF_8)));
+        //Assert
+        Assertions.assertFalse(goesOn);
+        Assertions.assertEquals(StopReason.FAILED, malformed.finish());
+        Assertions.assertEquals(List.of("urn:iso:std:iso:20022", "p", "MSG-1", "P0"), values);
+        Assertions.assertEquals(StopReason.UNEXPECTED_END_OF_INPUT, cut.finish());
+    }
+
+    @Test
+    void whenSessionsEnd_EachOneReportsItsMetricsOnce() {
+        final byte[] document = document(12).getBytes(StandardCharsets.UTF_8);
+        final List<ExtractionMetrics> reported = new ArrayList<>();
+        final AsyncTagExtractor subject = new AsyncTagExtractor(
+            new ExtractionPlan(TAGS_TO_EXTRACT, List.of(), List.of(), reported::add),
+            AsyncTagExtractor.DEFAULT_BUFFER_SIZE
+        );
+        final FeedSession complete = subject.newSession("complete", (key, value) -> {
+        });
+        final FeedSession malformed = subject.newSession("malformed", (key, value) -> {
+        });
+        //Act
+        for (int offset = 0; offset < document.length; offset += 100) {
+            complete.feed(ByteBuffer.wrap(document, offset, Math.min(100, document.length - offset)));
+        }
+        complete.finish();
+        complete.finish();
+        malformed.feed(ByteBuffer.wrap("<Document></Other>".getBytes(StandardCharsets.UTF_8)));
+        malformed.finish();
+        //Assert
+        Assertions.assertEquals(2, reported.size());
+        final ExtractionMetrics metrics = reported.getFirst();
+        Assertions.assertEquals("complete", metrics.filename);
+        Assertions.assertEquals(document.length, metrics.bytes);
+        Assertions.assertEquals(StopReason.END_OF_DOCUMENT, metrics.stopReason);
+        Assertions.assertEquals(12, metrics.values.get("amount"));
+        Assertions.assertEquals(StopReason.FAILED, reported.getLast().stopReason);
+    }
+
+    private static void send(
+        final AsynchronousServerSocketChannel server,
+        final byte[] document
+    ) {
+        try (SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+            for (int offset = 0; offset < document.length; offset += 1000) {
+                client.write(ByteBuffer.wrap(document, offset, Math.min(1000, document.length - offset)));
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void close(final AsynchronousSocketChannel connection) {
+        try {
+            connection.close();
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<String> sequential(
+        final List<String> stopTags,
+        final byte[] document
+    ) {
+        final List<String> values = new ArrayList<>();
+        new XmlTagCursorExtractor(TAGS_TO_EXTRACT, stopTags, List.of())
+            .extract("filename", new ByteArrayInputStream(document), (key, value) -> values.add(key + "=" + value));
+        return values;
+    }
+
+    private static String document(final int records) {
+        final StringBuilder content = new StringBuilder("\uFEFF<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n")
+            .append("<!DOCTYPE Document [ <!ELEMENT Document ANY> ]>\n")
+            .append("<p:Document xmlns:p=\"urn:iso:std:iso:20022\"><p:CstmrCdtTrfInitn>")
+            .append("<GrpHdr><MsgId>MSG-1</MsgId><!-- <MsgId>not this</MsgId> --></GrpHdr>");
+        for (int record = 0; record < records; record++) {
+            if (record % 4 == 0) {
+                content.append(record == 0 ? "" : "</PmtInf>\n")
+                    .append("<PmtInf><PmtInfId>P")
+                    .append(record / 4)
+                    .append("</PmtInfId>\n");
+            }
+            content.append("  <CdtTrfTxInf><Amt><InstdAmt Ccy='EUR' note=\"a&#10;b &quot;c&quot;\">")
+                .append(record)
+                .append(".50</InstdAmt></Amt><Cdtr><Nm>")
+                .append(record % 3 == 0 ? "Müller &amp; Söhne &#x20AC;" : "Creditor " + record)
+                .append("</Nm></Cdtr><RmtInf><Strd><Ustrd><![CDATA[Invoice <")
+                .append(record)
+                .append(">]]>\r\n2nd line</Ustrd></Strd></RmtInf><Empty/></CdtTrfTxInf>\n");
+        }
+        return content.append("</PmtInf></p:CstmrCdtTrfInitn></p:Document>\n")
+            .toString();
+    }
+
+    /**
+     * Channel over the bytes of a document that gives them in small chunks from another thread, like a slow peer.
+     */
+    private static final class MemoryChannel implements AsynchronousByteChannel {
+
+        private final byte[] bytes;
+        private final int chunkSize;
+        private volatile int read;
+
+        private MemoryChannel(
+            final byte[] bytes,
+            final int chunkSize
+        ) {
+            this.bytes = bytes;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public <A> void read(
+            final ByteBuffer destination,
+            final A attachment,
+            final CompletionHandler<Integer, ? super A> handler
+        ) {
+            CompletableFuture.runAsync(() -> {
+                final int count = Math.min(
+                    Math.min(this.chunkSize, destination.remaining()),
+                    this.bytes.length - this.read
+                );
+                if (count <= 0) {
+                    handler.completed(-1, attachment);
+                    return;
+                }
+                destination.put(this.bytes, this.read, count);
+                this.read += count;
+                handler.completed(count, attachment);
+            });
+        }
+
+        @Override
+        public Future<Integer> read(final ByteBuffer destination) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <A> void write(
+            final ByteBuffer source,
+            final A attachment,
+            final CompletionHandler<Integer, ? super A> handler
+        ) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Future<Integer> write(final ByteBuffer source) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
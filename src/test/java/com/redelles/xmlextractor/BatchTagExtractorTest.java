@@ -0,0 +1,95 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.TagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.batch.BatchTagExtractor;
+import com.redelles.xmlextractor.tag.batch.FileExtraction;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class BatchTagExtractorTest {
+
+    private static final List<XmlTagPath> TAGS_TO_EXTRACT = List.of(new XmlTagPath(List.of("MsgId"), "MsgId", -1));
+
+    @Test
+    void whenManyFilesAreGiven_EveryFileIsReportedWithItsValues() throws InterruptedException {
+        final BatchTagExtractor subject = new BatchTagExtractor(new XmlTagCursorExtractor(TAGS_TO_EXTRACT, List.of(), List.of()), 4, 2, 64);
+        final Map<Path, String> files = new HashMap<>();
+        for (int file = 0; file < 50; file++) {
+            final String msgId = "M" + file + (file % 10 == 0 ? "-".repeat(100) : "");
+            files.put(TempFiles.write("<Document><MsgId>" + msgId + "</MsgId></Document>"), msgId);
+        }
+        final Map<Path, FileExtraction> results = new HashMap<>();
+        //Act
+        subject.extract(files.keySet(), result -> results.put(result.file, result));
+        //Assert
+        Assertions.assertEquals(files.keySet(), results.keySet());
+        files.forEach((file, msgId) -> Assertions.assertEquals(
+            Map.of("MsgId", List.of(msgId)),
+            results.get(file).values
+        ));
+    }
+
+    @Test
+    void whenFileCanNotBeRead_ItIsReportedAsFailed_AndTheOthersAreExtracted() throws InterruptedException {
+        final BatchTagExtractor subject = new BatchTagExtractor(new XmlTagCursorExtractor(TAGS_TO_EXTRACT, List.of(), List.of()));
+        final Path missing = Path.of("missing-" + UUID.randomUUID() + ".xml");
+        final Path present = TempFiles.write("<Document><MsgId>one</MsgId></Document>");
+        final List<FileExtraction> results = new ArrayList<>();
+        //Act
+        subject.extract(List.of(missing, present), results::add);
+        //Assert
+        Assertions.assertEquals(2, results.size());
+        for (final FileExtraction result : results) {
+            Assertions.assertEquals(result.file.equals(missing), result.isFailed());
+        }
+    }
+
+    @Test
+    void whenParsingIsLimited_NoMoreDocumentsAreParsedAtTheSameTime() throws InterruptedException {
+        final AtomicInteger parsing = new AtomicInteger();
+        final AtomicInteger maxParsing = new AtomicInteger();
+        final TagExtractor extractor = new XmlTagCursorExtractor(TAGS_TO_EXTRACT, List.of(), List.of());
+        final TagExtractor counting = new TagExtractor() {
+            @Override
+            public Collection<String> keys() {
+                return extractor.keys();
+            }
+
+            @Override
+            public void extract(
+                final String filename,
+                final InputStream inputStream,
+                final ValueProcessor processor
+            ) {
+                maxParsing.accumulateAndGet(parsing.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                    extractor.extract(filename, inputStream, processor);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread()
+                        .interrupt();
+                } finally {
+                    parsing.decrementAndGet();
+                }
+            }
+        };
+        final BatchTagExtractor subject = new BatchTagExtractor(counting, 8, 3, 1 << 20);
+        final List<Path> files = new ArrayList<>();
+        for (int file = 0; file < 30; file++) {
+            files.add(TempFiles.write("<Document><MsgId>" + file + "</MsgId></Document>"));
+        }
+        final AtomicInteger reported = new AtomicInteger();
+        //Act
+        subject.extract(files, result -> reported.incrementAndGet());
+        //Assert
+        Assertions.assertEquals(30, reported.get());
+        Assertions.assertTrue(maxParsing.get() <= 3);
+    }
+}
@@ -0,0 +1,269 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.ExtractionPlan;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.checkpoint.Checkpoint;
+import com.redelles.xmlextractor.tag.checkpoint.CheckpointedTagExtractor;
+import com.redelles.xmlextractor.tag.checkpoint.SkippedRange;
+import com.redelles.xmlextractor.tag.metrics.HistogramExtractionListener;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+class CheckpointedTagExtractorTest {
+
+    private static final List<XmlTagPath> TAGS_TO_EXTRACT = List.of(
+        new XmlTagPath(List.of("Document", "CstmrCdtTrfInitn", "GrpHdr", "MsgId"), "MsgId", 1),
+        new XmlTagPath(List.of("Document", "CstmrCdtTrfInitn", "PmtInf", "PmtInfId"), "PmtInfId", -1),
+        new XmlTagPath(List.of("CdtTrfTxInf", "Amt", "InstdAmt"), "amount", -1),
+        new XmlTagPath(List.of("Cdtr", "Nm"), "creditor", 17)
+    );
+
+    @Test
+    void whenExtractionIsInterrupted_ResumingFromTheCheckpointGivesTheSameValues() throws IOException {
+        final String content = document(40);
+        final Path file = TempFiles.write(content);
+        final Path checkpointFile = Files.createTempFile("checkpoint", ".bin");
+        Files.delete(checkpointFile);
+        final HistogramExtractionListener listener = new HistogramExtractionListener();
+        final CheckpointedTagExtractor subject = new CheckpointedTagExtractor(
+            new ExtractionPlan(TAGS_TO_EXTRACT, List.of(), List.of(), listener),
+            "PmtInf",
+            1 << 20,
+            4
+        );
+        final List<String> values = new ArrayList<>();
+        //Act
+        Assertions.assertThrows(IllegalStateException.class, () -> subject.extract(file, checkpointFile, (key, value) -> {
+            if (values.size() == 50) {
+                throw new IllegalStateException("interrupted");
+            }
+            values.add(key + "=" + value);
+        }));
+        final Checkpoint interrupted = Checkpoint.read(checkpointFile);
+        final long bytesBefore = listener.bytes()
+            .sum();
+        values.subList(valuesBefore(content, interrupted.offset), values.size())
+            .clear();
+        final Checkpoint resumed = subject.extract(file, checkpointFile, (key, value) -> values.add(key + "=" + value));
+        //Assert
+        Assertions.assertFalse(interrupted.finished);
+        Assertions.assertTrue(resumed.finished);
+        Assertions.assertTrue(Checkpoint.read(checkpointFile).finished);
+        Assertions.assertEquals(sequential(TAGS_TO_EXTRACT, List.of(), content), values);
+        Assertions.assertTrue(listener.bytes()
+            .sum() - bytesBefore < content.length() - interrupted.offset + 1024);
+    }
+
+    @Test
+    void whenStopTagIsFound_TheCheckpointIsFinished() throws IOException {
+        final String content = document(40).replace("<PmtInfId>P25</PmtInfId>", "<PmtInfId>P25</PmtInfId><Stop/>");
+        final Path file = TempFiles.write(content);
+        final CheckpointedTagExtractor subject = new CheckpointedTagExtractor(
+            new ExtractionPlan(TAGS_TO_EXTRACT, List.of("Stop"), List.of()),
+            "PmtInf",
+            300,
+            0
+        );
+        final List<String> values = new ArrayList<>();
+        final List<Checkpoint> checkpoints = new ArrayList<>();
+        //Act
+        final Checkpoint last = subject.extract(
+            file,
+            Optional.empty(),
+            (key, value) -> values.add(key + "=" + value),
+            checkpoints::add
+        );
+        final Checkpoint again = subject.extract(file, Optional.of(last), (key, value) -> values.add(value), checkpoints::add);
+        //Assert
+        Assertions.assertTrue(last.finished);
+        Assertions.assertSame(last, again);
+        Assertions.assertTrue(checkpoints.size() > 2);
+        Assertions.assertTrue(last.offset < content.length());
+        Assertions.assertEquals(sequential(TAGS_TO_EXTRACT, List.of("Stop"), content), values);
+    }
+
+    @Test
+    void whenFileChanged_TheCheckpointIsRejected() throws IOException {
+        final Path file = TempFiles.write(document(10));
+        final CheckpointedTagExtractor subject = new CheckpointedTagExtractor(TAGS_TO_EXTRACT, List.of(), "PmtInf");
+        final Checkpoint checkpoint = new Checkpoint(
+            1,
+            0,
+            List.of(),
+            new int[TAGS_TO_EXTRACT.size()],
+            new int[TAGS_TO_EXTRACT.size()],
+            new boolean[TAGS_TO_EXTRACT.size()],
+            false
+        );
+        //Act
+        //Assert
+        Assertions.assertThrows(IllegalArgumentException.class, () -> subject.extract(
+            file,
+            Optional.of(checkpoint),
+            (key, value) -> {
+            },
+            next -> {
+            }
+        ));
+    }
+
+    @Test
+    void whenRecordIsMalformed_TheExtractionSkipsToTheNextRecord() throws IOException {
+        final String content = document(40);
+        final String malformed = content.replace("<InstdAmt Ccy=\"EUR\">17.50", "<InstdAmt Ccy=\"EUR>17.50");
+        final Path file = TempFiles.write(malformed);
+        final CheckpointedTagExtractor subject = new CheckpointedTagExtractor(
+            new ExtractionPlan(TAGS_TO_EXTRACT, List.of(), List.of()),
+            "PmtInf",
+            300,
+            0
+        );
+        final List<String> values = new ArrayList<>();
+        final List<SkippedRange> skipped = new ArrayList<>();
+        //Act
+        final Checkpoint last = subject.extract(
+            file,
+            Optional.empty(),
+            (key, value) -> values.add(key + "=" + value),
+            checkpoint -> {
+            },
+            skipped::add
+        );
+        //Assert
+        final String withoutRecord = content.substring(0, content.indexOf("<CdtTrfTxInf><Amt><InstdAmt Ccy=\"EUR\">17."))
+            + content.substring(content.indexOf("<PmtInf>\n  <PmtInfId>P18<"));
+        Assertions.assertTrue(last.finished);
+        Assertions.assertEquals(1, skipped.size());
+        Assertions.assertEquals(malformed.indexOf("<PmtInf>\n  <PmtInfId>P18<"), skipped.getFirst().to);
+        Assertions.assertTrue(skipped.getFirst().from > malformed.indexOf("<PmtInfId>P17<"));
+        Assertions.assertEquals(sequential(TAGS_TO_EXTRACT, List.of(), withoutRecord), values);
+    }
+
+    @Test
+    void whenMalformedBytesCloseAnAncestor_TheNextRecordKeepsTheAncestorsOfTheLastGoodOne() throws IOException {
+        final String content = document(40);
+        final String malformed = content.replace("</PmtInf>\n<PmtInf>\n  <PmtInfId>P18<",
+            "</PmtInf>\n</PmtInf><PmtInf>\n  <PmtInfId>P18<");
+        final List<SkippedRange> skipped = new ArrayList<>();
+        //Act
+        final List<String> values = resynchronized(malformed, skipped);
+        //Assert
+        Assertions.assertEquals(1, skipped.size());
+        Assertions.assertEquals(malformed.indexOf("<PmtInf>\n  <PmtInfId>P18<"), skipped.getFirst().to);
+        Assertions.assertEquals(sequential(TAGS_TO_EXTRACT, List.of(), content), values);
+    }
+
+    @Test
+    void whenParseErrorIsAtTheStartOfTheNextRecord_NoEmptyRangeIsReported() throws IOException {
+        final String content = document(40);
+        final String malformed = content.replace("</PmtInf>\n<PmtInf>\n  <PmtInfId>P18<",
+            "</PmtInf>\n<?<PmtInf>\n  <PmtInfId>P18<");
+        final List<SkippedRange> skipped = new ArrayList<>();
+        //Act
+        final List<String> values = resynchronized(malformed, skipped);
+        //Assert
+        Assertions.assertEquals(List.of(), skipped);
+        Assertions.assertEquals(sequential(TAGS_TO_EXTRACT, List.of(), content), values);
+    }
+
+    @Test
+    void whenTextOrCommentIsMalformed_TheExtractionSkipsToTheNextRecord() throws IOException {
+        final String content = document(40);
+        final String nextRecord = content.substring(content.indexOf("<PmtInf>\n  <PmtInfId>P18<"));
+        final String recordEnd = "</InstdAmt></Amt></CdtTrfTxInf>\n</PmtInf>\n";
+        final String amount = "\">17.50<";
+        final Map<String, String> expected = Map.of(
+            content.replace(amount, "\">17.&</Zz>amp;50<"),
+            content.substring(0, content.indexOf(amount) + 2) + recordEnd + nextRecord,
+            content.replace(amount, "\">17.<!-- c --</Zz>>50<"),
+            content.substring(0, content.indexOf(amount) + 5) + recordEnd + nextRecord
+        );
+        for (final Map.Entry<String, String> malformed : expected.entrySet()) {
+            final List<SkippedRange> skipped = new ArrayList<>();
+            //Act
+            final List<String> values = resynchronized(malformed.getKey(), skipped);
+            //Assert
+            Assertions.assertEquals(1, skipped.size());
+            Assertions.assertEquals(malformed.getKey()
+                .indexOf("<PmtInf>\n  <PmtInfId>P18<"), skipped.getFirst().to);
+            Assertions.assertEquals(sequential(TAGS_TO_EXTRACT, List.of(), malformed.getValue()), values);
+        }
+    }
+
+    private static List<String> resynchronized(
+        final String content,
+        final List<SkippedRange> skipped
+    ) throws IOException {
+        final CheckpointedTagExtractor subject = new CheckpointedTagExtractor(
+            new ExtractionPlan(TAGS_TO_EXTRACT, List.of(), List.of()),
+            "PmtInf",
+            300,
+            0
+        );
+        final List<String> values = new ArrayList<>();
+        final Checkpoint last = subject.extract(
+            TempFiles.write(content),
+            Optional.empty(),
+            (key, value) -> values.add(key + "=" + value),
+            checkpoint -> {
+            },
+            skipped::add
+        );
+        Assertions.assertTrue(last.finished);
+        return values;
+    }
+
+    /**
+     * Values of the uninterrupted extraction that come before the offset, found from the one of the first record after
+     * it: the records of the document are numbered.
+     */
+    private static int valuesBefore(
+        final String content,
+        final long offset
+    ) {
+        final List<String> all = sequential(TAGS_TO_EXTRACT, List.of(), content);
+        final String record = content.substring((int) offset);
+        final int number = Integer.parseInt(record.substring(record.indexOf("<PmtInfId>P") + 11, record.indexOf("</PmtInfId>")));
+        return all.indexOf("PmtInfId=P" + number);
+    }
+
+    private static List<String> sequential(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags,
+        final String content
+    ) {
+        final List<String> values = new ArrayList<>();
+        new XmlTagCursorExtractor(tagPaths, stopTags, List.of())
+            .extract(
+                "filename",
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                (key, value) -> values.add(key + "=" + value)
+            );
+        return values;
+    }
+
+    private static String document(final int records) {
+        final StringBuilder content = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<p:Document xmlns:p=\"urn:iso:std:iso:20022\"><p:CstmrCdtTrfInitn>")
+            .append("<GrpHdr><MsgId>MSG-1</MsgId></GrpHdr>");
+        for (int record = 0; record < records; record++) {
+            content.append("<PmtInf>\n  <PmtInfId>P")
+                .append(record)
+                .append("</PmtInfId>\n  <CdtTrfTxInf><Amt><InstdAmt Ccy=\"EUR\">")
+                .append(record)
+                .append(".50</InstdAmt></Amt><Cdtr><Nm>Creditor ")
+                .append(record)
+                .append("</Nm></Cdtr></CdtTrfTxInf>\n</PmtInf>\n");
+        }
+        return content.append("</p:CstmrCdtTrfInitn></p:Document>")
+            .toString();
+    }
+}
@@ -0,0 +1,105 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.store.CompactStorage;
+import com.redelles.xmlextractor.tag.store.CompactValues;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+class CompactValuesTest {
+
+    @Test
+    void whenValuesPassTheBudget_TheyAreSpilledToATemporaryFile_AndReadBackInOrder() throws IOException {
+        final Path directory = Files.createTempDirectory("compact");
+        final List<String> expected = new ArrayList<>();
+        for (int value = 0; value < 20_000; value++) {
+            expected.add(value % 1000 == 0 ? "x".repeat(70_000) : "value " + value + " é € 😀 " + (char) 0xD800);
+        }
+        expected.add("");
+        //Act
+        final List<String> result;
+        final long spilled;
+        try (CompactStorage subject = new CompactStorage(64 << 10, directory)) {
+            final CompactValues values = subject.newValues();
+            expected.forEach(values::add);
+            result = new ArrayList<>(values);
+            spilled = subject.spilledBytes();
+            Assertions.assertEquals(1, directory.toFile()
+                .list().length);
+        }
+        //Assert
+        Assertions.assertEquals(expected.size(), result.size());
+        for (int value = 0; value < expected.size(); value++) {
+            Assertions.assertEquals(new String(expected.get(value)
+                .getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), result.get(value));
+        }
+        Assertions.assertTrue(spilled > 0);
+        Assertions.assertEquals(0, directory.toFile()
+            .list().length);
+    }
+
+    @Test
+    void whenDocumentIsExtractedToTheStorage_TheValuesAreTheSameThanOnTheHeap() throws IOException {
+        final XmlTagCursorExtractor extractor = new XmlTagCursorExtractor(
+            List.of(new XmlTagPath(List.of("Id"), "id", -1), new XmlTagPath(List.of("Nm"), "name", 1)),
+            List.of(),
+            List.of()
+        );
+        final StringBuilder content = new StringBuilder("<Document>");
+        for (int value = 0; value < 1000; value++) {
+            content.append("<Tx><Id>")
+                .append(value)
+                .append("</Id><Nm>Name <![CDATA[&]]> ")
+                .append(value)
+                .append("</Nm></Tx>");
+        }
+        final byte[] document = content.append("</Document>")
+            .toString()
+            .getBytes(StandardCharsets.UTF_8);
+        //Act
+        final Map<String, Collection<String>> expected = extractor.extract("filename", new ByteArrayInputStream(document));
+        try (CompactStorage storage = new CompactStorage()) {
+            final Map<String, Collection<String>> result = extractor.extract(
+                "filename",
+                new ByteArrayInputStream(document),
+                storage
+            );
+            //Assert
+            Assertions.assertEquals(expected.keySet(), result.keySet());
+            for (final String key : expected.keySet()) {
+                Assertions.assertEquals(expected.get(key), new ArrayList<>(result.get(key)));
+            }
+            Assertions.assertEquals(0, storage.spilledBytes());
+        }
+    }
+
+    @Test
+    void whenValuesAreCleared_TheirMemoryIsGivenBack_AndTheIteratorsFailOnceTheStorageIsClosed() throws IOException {
+        final CompactStorage subject = new CompactStorage(64 << 10, Files.createTempDirectory("compact"));
+        final CompactValues values = subject.newValues();
+        for (int value = 0; value < 1000; value++) {
+            values.add("value " + value);
+        }
+        //Act
+        final long used = subject.directBytes();
+        values.clear();
+        final long cleared = subject.directBytes();
+        values.add("again");
+        final Iterator<String> iterator = values.iterator();
+        subject.close();
+        //Assert
+        Assertions.assertTrue(used > 0);
+        Assertions.assertEquals(0, cleared);
+        Assertions.assertThrows(IllegalStateException.class, iterator::hasNext);
+        Assertions.assertThrows(IllegalStateException.class, iterator::next);
+        Assertions.assertThrows(IllegalStateException.class, () -> values.add("closed"));
+    }
+}
@@ -0,0 +1,144 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.TagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.compressed.CompressedTagExtractor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+class CompressedTagExtractorTest {
+
+    private static final List<XmlTagPath> TAGS_TO_EXTRACT = List.of(new XmlTagPath(List.of("Rcrd", "Id"), "id", -1));
+    private static final TagExtractor EXTRACTOR = new XmlTagCursorExtractor(TAGS_TO_EXTRACT, List.of(), List.of());
+
+    @Test
+    void whenFileIsGzipWithManyMembers_ValuesAreTheSameThanInThePlainDocument() {
+        final String document = document(0, 3000);
+        final ByteArrayOutputStream members = new ByteArrayOutputStream();
+        final int memberSize = document.length() / 40;
+        for (int start = 0; start < document.length(); start += memberSize) {
+            members.writeBytes(gzip(document.substring(start, Math.min(document.length(), start + memberSize))));
+        }
+        final Path file = TempFiles.write(members.toByteArray());
+        final CompressedTagExtractor subject = new CompressedTagExtractor(EXTRACTOR, ForkJoinPool.commonPool(), 4, 1024);
+        //Act
+        final Map<String, Map<String, Collection<String>>> result = subject.extract(file);
+        //Assert
+        Assertions.assertEquals(Map.of(file.toString(), plain(document)), result);
+    }
+
+    @Test
+    void whenFileIsGzipWithASingleMember_ValuesAreTheSameThanInThePlainDocument() {
+        final String document = document(0, 3000);
+        final Path file = TempFiles.write(gzip(document));
+        final CompressedTagExtractor subject = new CompressedTagExtractor(EXTRACTOR, ForkJoinPool.commonPool(), 4, 1024);
+        //Act
+        final Map<String, Map<String, Collection<String>>> result = subject.extract(file);
+        //Assert
+        Assertions.assertEquals(Map.of(file.toString(), plain(document)), result);
+    }
+
+    @Test
+    void whenFileIsZip_EveryEntryIsADocument() {
+        final Path file = TempFiles.write(zip(Map.of("first.xml", document(0, 3), "second.xml", document(10, 12))));
+        final CompressedTagExtractor subject = new CompressedTagExtractor(EXTRACTOR);
+        //Act
+        final Map<String, Map<String, Collection<String>>> result = subject.extract(file);
+        //Assert
+        Assertions.assertEquals(Map.of(
+            "first.xml", Map.of("id", List.of("0", "1", "2")),
+            "second.xml", Map.of("id", List.of("10", "11"))
+        ), result);
+    }
+
+    @Test
+    void whenStreamIsCompressed_ItIsDetectedByItsFirstBytes() {
+        final CompressedTagExtractor subject = new CompressedTagExtractor(EXTRACTOR);
+        final Map<String, List<String>> values = new TreeMap<>();
+        //Act
+        subject.extract("plain", new ByteArrayInputStream(document(0, 2).getBytes(StandardCharsets.UTF_8)), processor(values));
+        subject.extract("gzip", new ByteArrayInputStream(gzip(document(5, 7))), processor(values));
+        subject.extract("zip", new ByteArrayInputStream(zip(Map.of("a.xml", document(8, 9), "b.xml", document(9, 10)))), processor(values));
+        //Assert
+        Assertions.assertEquals(Map.of(
+            "plain", List.of("0", "1"),
+            "gzip", List.of("5", "6"),
+            "a.xml", List.of("8"),
+            "b.xml", List.of("9")
+        ), values);
+    }
+
+    @Test
+    void whenExtractionStopsEarly_TheDecompressionIsStopped() {
+        final TagExtractor firstOnly = new XmlTagCursorExtractor(List.of(new XmlTagPath(List.of("Rcrd", "Id"), "id", 1)), List.of(), List.of());
+        final CompressedTagExtractor subject = new CompressedTagExtractor(firstOnly, ForkJoinPool.commonPool(), 2, 4096);
+        final Path file = TempFiles.write(gzip(document(0, 200_000)));
+        //Act
+        final Map<String, Map<String, Collection<String>>> result = subject.extract(file);
+        //Assert
+        Assertions.assertEquals(Map.of(file.toString(), Map.of("id", List.of("0"))), result);
+    }
+
+    private static java.util.function.Function<String, ValueProcessor> processor(final Map<String, List<String>> values) {
+        return document -> (key, value) -> values.computeIfAbsent(document, name -> new ArrayList<>())
+            .add(value);
+    }
+
+    private static Map<String, Collection<String>> plain(final String document) {
+        return EXTRACTOR.extract("plain", new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String document(
+        final int from,
+        final int to
+    ) {
+        final StringBuilder builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Document>");
+        for (int record = from; record < to; record++) {
+            builder.append("<Rcrd><Id>")
+                .append(record)
+                .append("</Id><Nm>Name ")
+                .append(record * 31 % 977)
+                .append("</Nm></Rcrd>\n");
+        }
+        return builder.append("</Document>")
+            .toString();
+    }
+
+    private static byte[] gzip(final String content) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream output = new GZIPOutputStream(bytes)) {
+            output.write(content.getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] zip(final Map<String, String> entries) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream output = new ZipOutputStream(bytes)) {
+            output.putNextEntry(new ZipEntry("folder/"));
+            for (final Map.Entry<String, String> entry : new TreeMap<>(entries).entrySet()) {
+                output.putNextEntry(new ZipEntry(entry.getKey()));
+                output.write(entry.getValue()
+                    .getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,110 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.ExtractionPlan;
+import com.redelles.xmlextractor.tag.TagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.metrics.ExtractionMetrics;
+import com.redelles.xmlextractor.tag.metrics.HistogramExtractionListener;
+import com.redelles.xmlextractor.tag.metrics.StopReason;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+class ExtractionListenerTest {
+
+    private static final String DOCUMENT = "<Document><GrpHdr><MsgId>M1</MsgId></GrpHdr>"
+        + "<PmtInf><PmtInfId>P1</PmtInfId><Nm>first</Nm></PmtInf>"
+        + "<PmtInf><PmtInfId>P2</PmtInfId><Nm>second</Nm></PmtInf></Document>";
+    private static final List<Function<ExtractionPlan, TagExtractor>> ENGINES = List.of(
+        XmlTagExtractor::new,
+        XmlTagCursorExtractor::new
+    );
+
+    @Test
+    void whenDocumentIsRead_MetricsHaveTheBytesEventsAndValuesByKey() {
+        for (final Function<ExtractionPlan, TagExtractor> engine : ENGINES) {
+            final List<ExtractionMetrics> reported = new ArrayList<>();
+            final ExtractionPlan plan = new ExtractionPlan(
+                List.of(
+                    new XmlTagPath(List.of("GrpHdr", "MsgId"), "MsgId", -1),
+                    new XmlTagPath(List.of("PmtInf", "PmtInfId"), "PmtInfId", -1)
+                ),
+                List.of(),
+                List.of(),
+                reported::add
+            );
+            //Act
+            engine.apply(plan)
+                .extract("filename", input(DOCUMENT));
+            //Assert
+            Assertions.assertEquals(1, reported.size());
+            final ExtractionMetrics metrics = reported.getFirst();
+            Assertions.assertEquals("filename", metrics.filename);
+            Assertions.assertEquals(DOCUMENT.length(), metrics.bytes);
+            Assertions.assertEquals(25, metrics.events);
+            Assertions.assertEquals(Map.of("MsgId", 1L, "PmtInfId", 2L), metrics.values);
+            Assertions.assertEquals(StopReason.END_OF_DOCUMENT, metrics.stopReason);
+            Assertions.assertEquals(0, metrics.recoveredErrors);
+            Assertions.assertTrue(metrics.totalNanos >= metrics.parseNanos + metrics.matchNanos + metrics.specialNanos);
+        }
+    }
+
+    @Test
+    void whenExtractionEndsEarly_TheStopReasonSaysWhy() {
+        for (final Function<ExtractionPlan, TagExtractor> engine : ENGINES) {
+            final HistogramExtractionListener listener = new HistogramExtractionListener();
+            final List<XmlTagPath> paths = List.of(new XmlTagPath(List.of("PmtInf", "PmtInfId"), "PmtInfId", 1));
+            //Act
+            engine.apply(new ExtractionPlan(paths, List.of("GrpHdr"), List.of(), listener))
+                .extract("stop", input(DOCUMENT));
+            engine.apply(new ExtractionPlan(paths, List.of(), List.of(), listener))
+                .extract("exhausted", input(DOCUMENT));
+            engine.apply(new ExtractionPlan(paths, List.of(), List.of(), listener))
+                .extract("truncated", input("<Document><Other>"));
+            //Assert
+            final Map<StopReason, Long> stopReasons = listener.stopReasons();
+            Assertions.assertEquals(1, stopReasons.get(StopReason.STOP_TAG));
+            Assertions.assertEquals(1, stopReasons.get(StopReason.PATHS_EXHAUSTED));
+            Assertions.assertEquals(1, stopReasons.get(StopReason.UNEXPECTED_END_OF_INPUT));
+            Assertions.assertEquals(Map.of("PmtInfId", 1L), listener.values());
+        }
+    }
+
+    @Test
+    void whenValuesAreRecorded_TheScrapeHasEveryMetric() {
+        final HistogramExtractionListener listener = new HistogramExtractionListener();
+        final XmlTagCursorExtractor subject = new XmlTagCursorExtractor(new ExtractionPlan(
+            List.of(new XmlTagPath(List.of("PmtInf", "Nm"), "na\"me", -1)),
+            List.of(),
+            List.of(),
+            listener
+        ));
+        //Act
+        subject.extract("first", input(DOCUMENT));
+        subject.extract("second", input(DOCUMENT));
+        final String scrape = listener.scrape();
+        //Assert
+        Assertions.assertEquals(2, listener.duration()
+            .count());
+        Assertions.assertEquals(2L * DOCUMENT.length(), listener.bytes()
+            .sum());
+        Assertions.assertTrue(scrape.contains("xml_extraction_bytes_bucket{le=\"1024.0\"} 2\n"));
+        Assertions.assertTrue(scrape.contains("xml_extraction_bytes_count 2\n"));
+        Assertions.assertTrue(scrape.contains("xml_extraction_duration_seconds_bucket{le=\"+Inf\"} 2\n"));
+        Assertions.assertTrue(scrape.contains("xml_extraction_values_total{key=\"na\\\"me\"} 4\n"));
+        Assertions.assertTrue(scrape.contains("xml_extractions_total{stop_reason=\"end_of_document\"} 2\n"));
+        Assertions.assertTrue(scrape.contains("# TYPE xml_extraction_phase_seconds_total counter\n"));
+    }
+
+    private static ByteArrayInputStream input(final String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
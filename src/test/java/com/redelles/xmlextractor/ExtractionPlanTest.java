@@ -0,0 +1,85 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.ExtractionPlan;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class ExtractionPlanTest {
+
+    private static final List<XmlTagPath> TAGS_TO_EXTRACT = List.of(
+        new XmlTagPath(List.of("GrpHdr", "MsgId"), "MsgId", 1),
+        new XmlTagPath(List.of("PmtInf", "PmtInfId"), "PmtInfId", -1)
+    );
+
+    @Test
+    void whenPlanIsSharedByThreads_EveryExtractionHasItsOwnState() throws Exception {
+        final ExtractionPlan plan = new ExtractionPlan(TAGS_TO_EXTRACT, List.of(), List.of());
+        final XmlTagExtractor events = new XmlTagExtractor(plan);
+        final XmlTagCursorExtractor cursor = new XmlTagCursorExtractor(plan);
+        final List<Future<Boolean>> checks = new ArrayList<>();
+        //Act
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int task = 0; task < 8; task++) {
+                final int offset = task;
+                checks.add(executor.submit(() -> {
+                    for (int message = 0; message < 300; message++) {
+                        final String id = offset + "-" + message;
+                        final Map<String, Collection<String>> expected = Map.of("MsgId", List.of(id), "PmtInfId", List.of(id, id));
+                        if (!expected.equals(events.extract("message", message(id)))
+                            || !expected.equals(cursor.extract("message", message(id)))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+        }
+        //Assert
+        for (final Future<Boolean> check : checks) {
+            Assertions.assertTrue(check.get());
+        }
+    }
+
+    @Test
+    void whenExtractionIsNestedInTheProcessor_BothExtractionsAreComplete() {
+        final XmlTagCursorExtractor subject = new XmlTagCursorExtractor(new ExtractionPlan(TAGS_TO_EXTRACT, List.of(), List.of()));
+        final List<Map<String, Collection<String>>> nested = new ArrayList<>();
+        final List<String> values = new ArrayList<>();
+        //Act
+        subject.extract("outer", message("outer"), (key, value) -> {
+            values.add(value);
+            nested.add(subject.extract("inner", message("inner")));
+        });
+        //Assert
+        Assertions.assertEquals(List.of("outer", "outer", "outer"), values);
+        Assertions.assertEquals(Map.of("MsgId", List.of("inner"), "PmtInfId", List.of("inner", "inner")), nested.get(2));
+    }
+
+    @Test
+    void whenResultIsCreated_EveryKeyHasItsOwnEmptyCollection() {
+        final ExtractionPlan plan = new ExtractionPlan(TAGS_TO_EXTRACT, List.of(), List.of());
+        //Act
+        final Map<String, Collection<String>> first = plan.newResult();
+        first.get("MsgId")
+            .add("value");
+        //Assert
+        Assertions.assertEquals(List.of("MsgId", "PmtInfId"), plan.keys());
+        Assertions.assertEquals(Map.of("MsgId", List.of(), "PmtInfId", List.of()), plan.newResult());
+    }
+
+    private static ByteArrayInputStream message(final String id) {
+        final String content = "<Document><GrpHdr><MsgId>" + id + "</MsgId></GrpHdr><PmtInf><PmtInfId>" + id
+            + "</PmtInfId></PmtInf><PmtInf><PmtInfId>" + id + "</PmtInfId></PmtInf></Document>";
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,153 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.TagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.reactive.ExtractedValue;
+import com.redelles.xmlextractor.tag.reactive.ExtractionPublisher;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+class ExtractionPublisherTest {
+
+    private static final TagExtractor EXTRACTOR = new XmlTagCursorExtractor(
+        List.of(new XmlTagPath(List.of("Id"), "id", -1)),
+        List.of(),
+        List.of()
+    );
+
+    @Test
+    void whenSubscriberRequestsValues_NoMoreThanRequestedAreGiven_AndTheRestFollowOnRequest() throws Exception {
+        final ExtractionPublisher subject = new ExtractionPublisher(EXTRACTOR, "filename", input(document(10)));
+        final TestSubscriber subscriber = new TestSubscriber();
+        //Act
+        subject.subscribe(subscriber);
+        subscriber.request(3);
+        final List<String> first = List.of(subscriber.take(), subscriber.take(), subscriber.take());
+        subscriber.request(Long.MAX_VALUE);
+        //Assert
+        Assertions.assertEquals(List.of("0", "1", "2"), first);
+        for (int value = 3; value < 10; value++) {
+            Assertions.assertEquals(String.valueOf(value), subscriber.take());
+        }
+        Assertions.assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, subscriber.unrequested.get());
+    }
+
+    @Test
+    void whenSubscriptionIsCancelled_TheParseStops_AndTheStreamIsClosed() throws Exception {
+        final CountDownLatch closed = new CountDownLatch(1);
+        final var input = new FilterInputStream(input(document(100_000))) {
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                closed.countDown();
+            }
+        };
+        final ExtractionPublisher subject = new ExtractionPublisher(EXTRACTOR, "filename", input);
+        final TestSubscriber subscriber = new TestSubscriber();
+        //Act
+        subject.subscribe(subscriber);
+        subscriber.subscription.get(5, TimeUnit.SECONDS)
+            .request(1);
+        final String first = subscriber.take();
+        subscriber.subscription.get()
+            .cancel();
+        //Assert
+        Assertions.assertEquals("0", first);
+        Assertions.assertTrue(closed.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, subscriber.completed.getCount());
+        Assertions.assertNull(subscriber.error.getNow(null));
+    }
+
+    @Test
+    void whenRequestIsNotPositive_TheSubscriberGetsAnError() throws Exception {
+        final ExtractionPublisher subject = new ExtractionPublisher(EXTRACTOR, "filename", input(document(10)));
+        final TestSubscriber subscriber = new TestSubscriber();
+        //Act
+        subject.subscribe(subscriber);
+        subscriber.subscription.get(5, TimeUnit.SECONDS)
+            .request(0);
+        final TestSubscriber second = new TestSubscriber();
+        subject.subscribe(second);
+        //Assert
+        Assertions.assertInstanceOf(IllegalArgumentException.class, subscriber.error.get(5, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(IllegalStateException.class, second.error.get(5, TimeUnit.SECONDS));
+    }
+
+    private static ByteArrayInputStream input(final String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String document(final int values) {
+        final StringBuilder content = new StringBuilder("<Document>");
+        for (int value = 0; value < values; value++) {
+            content.append("<Tx><Id>")
+                .append(value)
+                .append("</Id></Tx>");
+        }
+        return content.append("</Document>")
+            .toString();
+    }
+
+    private static final class TestSubscriber implements Flow.Subscriber<ExtractedValue> {
+
+        private final CompletableFuture<Flow.Subscription> subscription = new CompletableFuture<>();
+        private final BlockingQueue<String> values = new LinkedBlockingQueue<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final CompletableFuture<Throwable> error = new CompletableFuture<>();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicLong received = new AtomicLong();
+        private final AtomicLong unrequested = new AtomicLong();
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription.complete(subscription);
+        }
+
+        @Override
+        public void onNext(final ExtractedValue item) {
+            if (this.received.incrementAndGet() > this.requested.get()) {
+                this.unrequested.incrementAndGet();
+            }
+            this.values.add(item.value);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            this.error.complete(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed.countDown();
+        }
+
+        /**
+         * Asks for more values, counting them before the publisher can give them.
+         */
+        private void request(final long values) throws Exception {
+            this.requested.accumulateAndGet(
+                values,
+                (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added
+            );
+            this.subscription.get(5, TimeUnit.SECONDS)
+                .request(values);
+        }
+
+        private String take() throws InterruptedException {
+            final String value = this.values.poll(5, TimeUnit.SECONDS);
+            Assertions.assertNotNull(value);
+            return value;
+        }
+    }
+}
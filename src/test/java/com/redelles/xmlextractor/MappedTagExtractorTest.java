@@ -0,0 +1,177 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.ExtractionPlan;
+import com.redelles.xmlextractor.tag.TagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor;
+import com.redelles.xmlextractor.tag.mapped.MappedTagExtractor;
+import com.redelles.xmlextractor.tag.metrics.ExtractionMetrics;
+import com.redelles.xmlextractor.tag.metrics.StopReason;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs all the cases of {@link XmlTagPathExtractorTest} over a file extracted with the mapped engine.
+ */
+class MappedTagExtractorTest extends XmlTagPathExtractorTest {
+
+    @Override
+    protected TagExtractor extractor(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags,
+        final List<AlternateTagExtractor> specialExtractors
+    ) {
+        final MappedTagExtractor mapped = new MappedTagExtractor(tagPaths, stopTags, specialExtractors);
+        return new TagExtractor() {
+            @Override
+            public Collection<String> keys() {
+                return mapped.keys();
+            }
+
+            @Override
+            public void extract(
+                final String filename,
+                final InputStream inputStream,
+                final ValueProcessor processor
+            ) {
+                final Path file = TempFiles.write(inputStream);
+                mapped.extract(file, processor);
+            }
+        };
+    }
+
+    @Test
+    void whenDocumentHasEntitiesAfterSomeValues_TheParserContinues_WithoutRepeatingValues() {
+        final List<XmlTagPath> tagsToExtract = List.of(new XmlTagPath(List.of("MsgId"), "MsgId", -1));
+        final MappedTagExtractor subject = new MappedTagExtractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final Path file = TempFiles.write("<Document><MsgId>one</MsgId><MsgId>two &amp; three</MsgId><MsgId>four</MsgId></Document>");
+        //Act
+        final Map<String, Collection<String>> result = subject.extract(file);
+        //Assert
+        Assertions.assertEquals(Map.of("MsgId", List.of("one", "two & three", "four")), result);
+    }
+
+    @Test
+    void whenDocumentHasDeclarationCommentsAndAttributes_TheyAreSkipped() {
+        final List<XmlTagPath> tagsToExtract = List.of(new XmlTagPath(List.of("Amt", "Value"), "amount", -1));
+        final MappedTagExtractor subject = new MappedTagExtractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final String content = "\uFEFF<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- <Amt> -->"
+            + "<Document xmlns=\"urn:iso\"><Amt Ccy=\"EUR\" note='a > b'><Value>10.5</Value><Value/>"
+            + "<Value>  11 <!-- x -->\n</Value></Amt></Document>";
+        //Act
+        final Map<String, Collection<String>> result = subject.extract(TempFiles.write(content));
+        //Assert
+        final var parsed = new XmlTagExtractor(tagsToExtract, Collections.emptyList(), Collections.emptyList())
+            .extract("filename", new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(Map.of("amount", List.of("10.5", "11")), result);
+        Assertions.assertEquals(parsed, result);
+    }
+
+    @Test
+    void whenScannerGivesUpInATagWithTargets_TheParserGoesOnFromThatTag_WithTheSameMatcher() {
+        final List<XmlTagPath> tagsToExtract = List.of(
+            XmlTagPath.parse("Tx/Amt", "amount", -1),
+            XmlTagPath.parse("Tx/Amt/@Ccy", "currency", -1),
+            XmlTagPath.parse("Document//Tx/*", "any", -1),
+            XmlTagPath.parse("Document/Id", "id", 1)
+        );
+        final MappedTagExtractor subject = new MappedTagExtractor(tagsToExtract, List.of(), List.of());
+        final String content = "<Document xmlns:p=\"urn:p\"><Id>1</Id><Tx><Amt Ccy=\"EUR\">1</Amt></Tx>"
+            + "<Tx><Amt Ccy=\"A&amp;B\">2</Amt></Tx><Id>2</Id><Tx><p:Amt Ccy=\"USD\">3</p:Amt></Tx></Document>";
+        final String cut = "<Document><Tx><Amt Ccy=\"EUR\">1</Amt></Tx><Tx><Amt>  2 ";
+        //Act
+        final Map<String, Collection<String>> result = subject.extract(TempFiles.write(content));
+        final Map<String, Collection<String>> cutResult = subject.extract(TempFiles.write(cut));
+        //Assert
+        final XmlTagCursorExtractor parser = new XmlTagCursorExtractor(tagsToExtract, List.of(), List.of());
+        Assertions.assertEquals(parser.extract("filename", new ByteArrayInputStream(content
+            .getBytes(StandardCharsets.UTF_8))), result);
+        Assertions.assertEquals(List.of("1", "2", "3"), result.get("amount"));
+        Assertions.assertEquals(List.of("EUR", "A&B", "USD"), result.get("currency"));
+        Assertions.assertEquals(List.of("1"), result.get("id"));
+        Assertions.assertEquals(List.of("1", "2"), cutResult.get("amount"));
+    }
+
+    @Test
+    void whenTagDeclaresANamespaceNamedLikeTheAttribute_TheAttributeIsExtracted() {
+        final List<XmlTagPath> tagsToExtract = List.of(XmlTagPath.parse("Amt/InstdAmt/@Ccy", "currency", -1));
+        final MappedTagExtractor subject = new MappedTagExtractor(tagsToExtract, List.of(), List.of());
+        final String content = "<Document><Amt><InstdAmt xmlns:ccy=\"u\" Ccy=\"EUR\">1</InstdAmt></Amt>"
+            + "<Amt><InstdAmt xmlns:ccy=\"u\">2</InstdAmt></Amt></Document>";
+        //Act
+        final Map<String, Collection<String>> result = subject.extract(TempFiles.write(content));
+        //Assert
+        final XmlTagCursorExtractor parser = new XmlTagCursorExtractor(tagsToExtract, List.of(), List.of());
+        Assertions.assertEquals(parser.extract("filename", new ByteArrayInputStream(content
+            .getBytes(StandardCharsets.UTF_8))), result);
+        Assertions.assertEquals(List.of("EUR"), result.get("currency"));
+    }
+
+    @Test
+    void whenTagNameOrAttributeValueIsMalformed_TheValuesAreThoseOfTheParser() {
+        final List<XmlTagPath> tagsToExtract = List.of(
+            XmlTagPath.parse("R/A", "a", -1),
+            XmlTagPath.parse("R/B", "b", -1)
+        );
+        final MappedTagExtractor subject = new MappedTagExtractor(tagsToExtract, List.of(), List.of());
+        final XmlTagCursorExtractor parser = new XmlTagCursorExtractor(tagsToExtract, List.of(), List.of());
+        final List<String> contents = List.of(
+            "<Doc><R><A>a</A><B</><B>x</B></R></Doc>",
+            "<Doc><R><A>a</A><A x=\"a<b\">c</A><B>x</B></R></Doc>",
+            "<Doc><R><A>a</A><A x='a<b'/><B>x</B></R></Doc>",
+            "<Doc><R><A>a</A><1B>y</1B><B>x</B></R></Doc>",
+            "<Doc><R><A>a</A><B>x</B&></R></Doc>"
+        );
+        for (final String content : contents) {
+            //Act
+            final Map<String, Collection<String>> result = subject.extract(TempFiles.write(content));
+            //Assert
+            Assertions.assertEquals(parser.extract("filename", new ByteArrayInputStream(content
+                .getBytes(StandardCharsets.UTF_8))), result, content);
+            Assertions.assertEquals(List.of("a"), result.get("a"), content);
+        }
+    }
+
+    @Test
+    void whenPlanHasAListener_TheScannedBytesAndValuesAreReported() {
+        final List<ExtractionMetrics> reported = new ArrayList<>();
+        final List<XmlTagPath> tagsToExtract = List.of(
+            XmlTagPath.parse("GrpHdr/MsgId", "MsgId", -1),
+            XmlTagPath.parse("PmtInf/PmtInfId", "PmtInfId", -1)
+        );
+        final MappedTagExtractor subject = new MappedTagExtractor(new ExtractionPlan(
+            tagsToExtract,
+            List.of("Stop"),
+            List.of(),
+            reported::add
+        ));
+        final String content = "<Document><GrpHdr><MsgId>M1</MsgId></GrpHdr>"
+            + "<PmtInf><PmtInfId>P1</PmtInfId></PmtInf><PmtInf><PmtInfId>P2</PmtInfId></PmtInf></Document>";
+        final String stopped = "<Document><PmtInf><PmtInfId>P1</PmtInfId></PmtInf><Stop/>"
+            + "<PmtInf><PmtInfId>P2</PmtInfId></PmtInf></Document>";
+        //Act
+        final Map<String, Collection<String>> result = subject.extract(TempFiles.write(content));
+        subject.extract(TempFiles.write(stopped));
+        //Assert
+        Assertions.assertEquals(Map.of("MsgId", List.of("M1"), "PmtInfId", List.of("P1", "P2")), result);
+        Assertions.assertEquals(2, reported.size());
+        Assertions.assertEquals(content.length(), reported.getFirst().bytes);
+        Assertions.assertEquals(Map.of("MsgId", 1L, "PmtInfId", 2L), reported.getFirst().values);
+        Assertions.assertEquals(StopReason.END_OF_DOCUMENT, reported.getFirst().stopReason);
+        Assertions.assertEquals(stopped.indexOf("<Stop/>") + 7, reported.getLast().bytes);
+        Assertions.assertEquals(Map.of("PmtInfId", 1L), reported.getLast().values);
+        Assertions.assertEquals(StopReason.STOP_TAG, reported.getLast().stopReason);
+    }
+}
@@ -0,0 +1,242 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.ExtractionPlan;
+import com.redelles.xmlextractor.tag.MultiplexTagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor;
+import com.redelles.xmlextractor.tag.metrics.ExtractionMetrics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+class MultiplexTagExtractorTest {
+
+    private static final Map<String, ExtractionPlan> CONFIGURATIONS = new LinkedHashMap<>();
+
+    static {
+        CONFIGURATIONS.put("header", new ExtractionPlan(
+            List.of(
+                new XmlTagPath(List.of("GrpHdr", "MsgId"), "MsgId"),
+                XmlTagPath.parse("GrpHdr/@Version", "version", 1)
+            ),
+            List.of(),
+            List.of()
+        ));
+        CONFIGURATIONS.put("payments", new ExtractionPlan(
+            List.of(new XmlTagPath(List.of("Tx", "Id"), "id", -1), new XmlTagPath(List.of("Nm"), "name", -1)),
+            List.of("PmtInf"),
+            List.of()
+        ));
+        CONFIGURATIONS.put("names", new ExtractionPlan(
+            List.of(new XmlTagPath(List.of("Nm"), "name", 3)),
+            List.of(),
+            List.of()
+        ));
+    }
+
+    @Test
+    void whenConfigurationsShareTheParse_EveryOneGetsTheSameValuesThanOnItsOwn() {
+        final MultiplexTagExtractor subject = new MultiplexTagExtractor(CONFIGURATIONS);
+        final byte[] document = document(10, 0);
+        //Act
+        final Map<String, Map<String, Collection<String>>> result = subject.extract(
+            "filename",
+            new ByteArrayInputStream(document)
+        );
+        //Assert
+        Assertions.assertEquals(List.of("header", "payments", "names"), List.copyOf(result.keySet()));
+        for (final Map.Entry<String, ExtractionPlan> configuration : CONFIGURATIONS.entrySet()) {
+            final Map<String, Collection<String>> alone = new XmlTagCursorExtractor(configuration.getValue())
+                .extract("filename", new ByteArrayInputStream(document));
+            Assertions.assertEquals(alone, result.get(configuration.getKey()), configuration.getKey());
+        }
+        Assertions.assertEquals(List.of("0", "1", "2", "3", "4"), result.get("payments")
+            .get("id"));
+        Assertions.assertEquals(List.of("v1"), result.get("header")
+            .get("version"));
+    }
+
+    @Test
+    void whenEveryConfigurationIsDone_TheParseEnds() {
+        final MultiplexTagExtractor subject = new MultiplexTagExtractor(CONFIGURATIONS);
+        final byte[] document = document(10, 1 << 20);
+        final long[] read = new long[1];
+        final InputStream input = new FilterInputStream(new ByteArrayInputStream(document)) {
+
+            @Override
+            public int read(
+                final byte[] bytes,
+                final int offset,
+                final int length
+            ) throws IOException {
+                final int count = super.read(bytes, offset, length);
+                read[0] += Math.max(count, 0);
+                return count;
+            }
+        };
+        //Act
+        final Map<String, Map<String, Collection<String>>> result = subject.extract("filename", input);
+        //Assert
+        Assertions.assertEquals(List.of("MSG-1"), result.get("header")
+            .get("MsgId"));
+        Assertions.assertTrue(read[0] < document.length / 2, "read " + read[0]);
+    }
+
+    @Test
+    void whenSpecialExtractorsReadAhead_EveryConfigurationStillGetsTheEvents_AndTheStopTagIsGivenToTheSpecials() {
+        final List<ExtractionMetrics> metrics = new ArrayList<>();
+        final Map<String, ExtractionPlan> configurations = new LinkedHashMap<>();
+        configurations.put("ids", new ExtractionPlan(
+            List.of(new XmlTagPath(List.of("Tx", "Id"), "id", -1)),
+            List.of("PmtInf"),
+            List.of(
+                new XmlTagPathExtractorTest.NextTextExtractor("Nm", "special", 3, true),
+                new EndTagExtractor("PmtInf")
+            ),
+            metrics::add
+        ));
+        configurations.put("names", new ExtractionPlan(
+            List.of(new XmlTagPath(List.of("Cdtr", "Nm"), "name", -1)),
+            List.of(),
+            List.of(new XmlTagPathExtractorTest.NextTextExtractor("Nm", "special", 2, true)),
+            metrics::add
+        ));
+        final MultiplexTagExtractor subject = new MultiplexTagExtractor(configurations);
+        final byte[] document = document(10, 0);
+        //Act
+        final Map<String, Map<String, Collection<String>>> result = subject.extract(
+            "filename",
+            new ByteArrayInputStream(document)
+        );
+        final List<Long> bytes = metrics.stream()
+            .map(metric -> metric.bytes)
+            .toList();
+        //Assert
+        for (final Map.Entry<String, ExtractionPlan> configuration : configurations.entrySet()) {
+            final Map<String, Collection<String>> alone = new XmlTagCursorExtractor(configuration.getValue())
+                .extract("filename", new ByteArrayInputStream(document));
+            Assertions.assertEquals(alone, result.get(configuration.getKey()), configuration.getKey());
+        }
+        Assertions.assertEquals(List.of("Name 0", "Name 1", "Name 2"), result.get("ids")
+            .get("special"));
+        Assertions.assertEquals(List.of("PmtInf"), result.get("ids")
+            .get("closed"));
+        Assertions.assertEquals(8, result.get("names")
+            .get("name")
+            .size());
+        Assertions.assertEquals(List.of((long) document.length, (long) document.length), bytes);
+    }
+
+    @Test
+    void whenTextOrCommentIsMalformed_EveryConfigurationRecoversLikeOnItsOwn() {
+        final Map<String, ExtractionPlan> configurations = new LinkedHashMap<>();
+        configurations.put("text", new ExtractionPlan(List.of(new XmlTagPath(List.of("A"), "k", -1)), List.of(),
+            List.of()));
+        configurations.put("comment", new ExtractionPlan(List.of(new XmlTagPath(List.of("B"), "k", -1)), List.of(),
+            List.of()));
+        final MultiplexTagExtractor subject = new MultiplexTagExtractor(configurations);
+        final byte[] malformedText = "<Doc><R><A>a &</Zz>amp; b1</A><B>x</B></R></Doc>"
+            .getBytes(StandardCharsets.UTF_8);
+        final byte[] malformedComment = "<Doc><R><B>x<!-- c --</Zz>>y0</B><B>z</B></R></Doc>"
+            .getBytes(StandardCharsets.UTF_8);
+        //Act
+        final Map<String, Map<String, Collection<String>>> fromText = subject.extract(
+            "filename",
+            new ByteArrayInputStream(malformedText)
+        );
+        final Map<String, Map<String, Collection<String>>> fromComment = subject.extract(
+            "filename",
+            new ByteArrayInputStream(malformedComment)
+        );
+        //Assert
+        Assertions.assertEquals(Map.of("k", List.of()), fromText.get("text"));
+        Assertions.assertEquals(Map.of("k", List.of("x")), fromComment.get("comment"));
+        for (final Map.Entry<String, ExtractionPlan> configuration : configurations.entrySet()) {
+            final XmlTagCursorExtractor alone = new XmlTagCursorExtractor(configuration.getValue());
+            Assertions.assertEquals(alone.extract("filename", new ByteArrayInputStream(malformedText)),
+                fromText.get(configuration.getKey()), configuration.getKey());
+            Assertions.assertEquals(alone.extract("filename", new ByteArrayInputStream(malformedComment)),
+                fromComment.get(configuration.getKey()), configuration.getKey());
+        }
+    }
+
+    private static byte[] document(
+        final int records,
+        final int padding
+    ) {
+        final StringBuilder content = new StringBuilder("<Document><GrpHdr Version=\"v1\">")
+            .append("<MsgId>MSG-1</MsgId></GrpHdr><PmtInf>");
+        for (int record = 0; record < records; record++) {
+            if (record == records / 2) {
+                content.append("</PmtInf><PmtInf>");
+            }
+            content.append("<Tx><Id>")
+                .append(record)
+                .append("</Id><Cdtr><Nm>Name ")
+                .append(record)
+                .append("</Nm></Cdtr></Tx>");
+        }
+        content.append("</PmtInf><Padding>")
+            .append("x".repeat(padding))
+            .append("</Padding></Document>");
+        return content.toString()
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gives the name of an element when it ends.
+     */
+    private static final class EndTagExtractor implements AlternateTagExtractor {
+
+        private final String elementName;
+
+        private EndTagExtractor(final String elementName) {
+            this.elementName = elementName;
+        }
+
+        @Override
+        public String key() {
+            return "closed";
+        }
+
+        @Override
+        public boolean isCompatible(final XMLEvent event) {
+            return event.isEndElement() && event.asEndElement()
+                .getName()
+                .getLocalPart()
+                .equals(this.elementName);
+        }
+
+        @Override
+        public String extract(
+            final XMLEvent event,
+            final XMLEventReader reader
+        ) {
+            return this.elementName;
+        }
+
+        @Override
+        public void decreaseTagCount() {
+            // every time
+        }
+
+        @Override
+        public boolean canContinueProcessing() {
+            return true;
+        }
+
+        @Override
+        public AlternateTagExtractor rebuild() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor;
+import com.redelles.xmlextractor.tag.parallel.ParallelTagExtractor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+class ParallelTagExtractorTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+    private static final long CHUNK_SIZE = 200;
+
+    @AfterAll
+    static void shutdown() {
+        POOL.shutdown();
+    }
+
+    @Test
+    void whenFileIsCutInChunks_ValuesAreTheSameAndInTheSameOrder_ThanExtractingSequentially() {
+        final List<XmlTagPath> tagsToExtract = List.of(
+            new XmlTagPath(List.of("GrpHdr", "MsgId"), "MsgId", 1),
+            new XmlTagPath(List.of("PmtInf", "PmtInfId"), "PmtInfId", -1),
+            new XmlTagPath(List.of("CdtTrfTxInf", "Amt", "InstdAmt"), "amount", -1),
+            new XmlTagPath(List.of("Cdtr", "Nm"), "creditor", 7)
+        );
+        final String content = document(40);
+        //Act
+        final Map<String, Collection<String>> result = parallel(tagsToExtract, List.of()).extract(TempFiles.write(content));
+        //Assert
+        Assertions.assertEquals(sequential(tagsToExtract, List.of(), content), result);
+        Assertions.assertEquals(40, result.get("PmtInfId").size());
+        Assertions.assertEquals(7, result.get("creditor").size());
+    }
+
+    @Test
+    void whenSpecialExtractorsAreConfigured_TheFileIsExtractedSequentially() {
+        final List<XmlTagPath> tagsToExtract = List.of(
+            new XmlTagPath(List.of("PmtInf", "PmtInfId"), "first", 1),
+            new XmlTagPath(List.of("Cdtr", "Nm"), "creditor", 2),
+            new XmlTagPath(List.of("PmtInf", "PmtInfId"), "PmtInfId", -1)
+        );
+        final List<AlternateTagExtractor> specialExtractors = List.of(
+            new XmlTagPathExtractorTest.NextTextExtractor("PmtInfId", "special", 1, false),
+            new XmlTagPathExtractorTest.NextTextExtractor("Nm", "name", 3, true)
+        );
+        final String content = document(40);
+        final ParallelTagExtractor subject = new ParallelTagExtractor(
+            tagsToExtract, List.of(), specialExtractors, "PmtInf", POOL, CHUNK_SIZE
+        );
+        //Act
+        final Map<String, Collection<String>> result = subject.extract(TempFiles.write(content));
+        //Assert
+        final Map<String, Collection<String>> sequential = new XmlTagCursorExtractor(tagsToExtract, List.of(),
+            specialExtractors).extract("filename", new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(sequential, result);
+        Assertions.assertEquals(List.of("P0"), result.get("special"));
+        Assertions.assertEquals(List.of("P1"), result.get("first"));
+        Assertions.assertEquals(List.of("Creditor 0", "Creditor 1", "Creditor 2"), result.get("name"));
+        Assertions.assertEquals(List.of("Creditor 3", "Creditor 4"), result.get("creditor"));
+        Assertions.assertEquals(39, result.get("PmtInfId").size());
+    }
+
+    @Test
+    void whenStopTagIsFound_NoValueIsTakenAfterIt() {
+        final List<XmlTagPath> tagsToExtract = List.of(new XmlTagPath(List.of("PmtInf", "PmtInfId"), "PmtInfId", -1));
+        final String content = document(40).replace("<PmtInfId>P25</PmtInfId>", "<PmtInfId>P25</PmtInfId><Stop/>");
+        //Act
+        final Map<String, Collection<String>> result = parallel(tagsToExtract, List.of("Stop")).extract(TempFiles.write(content));
+        //Assert
+        Assertions.assertEquals(sequential(tagsToExtract, List.of("Stop"), content), result);
+        Assertions.assertEquals("P25", new ArrayList<>(result.get("PmtInfId")).get(25));
+        Assertions.assertEquals(26, result.get("PmtInfId").size());
+    }
+
+    @Test
+    void whenAllPathsAreExhausted_TheResultIsTheSame() {
+        final List<XmlTagPath> tagsToExtract = List.of(new XmlTagPath(List.of("PmtInf", "PmtInfId"), "PmtInfId", 3));
+        final String content = document(40);
+        //Act
+        final Map<String, Collection<String>> result = parallel(tagsToExtract, List.of()).extract(TempFiles.write(content));
+        //Assert
+        Assertions.assertEquals(Map.of("PmtInfId", List.of("P0", "P1", "P2")), result);
+    }
+
+    @Test
+    void whenPathsDependOnAncestorsWithNamespaces_ChunksSeeTheSameAncestors() {
+        final List<XmlTagPath> tagsToExtract = List.of(
+            new XmlTagPath(List.of("Document", "CstmrCdtTrfInitn", "PmtInf", "PmtInfId"), "PmtInfId", -1),
+            new XmlTagPath(List.of("Document", "CstmrCdtTrfInitn", "GrpHdr", "MsgId"), "MsgId", -1)
+        );
+        final String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + document(30)
+            .replace("<Document>", "<p:Document xmlns:p=\"urn:iso:std:iso:20022\">")
+            .replace("</Document>", "</p:Document>")
+            .replace("<CstmrCdtTrfInitn>", "<p:CstmrCdtTrfInitn>")
+            .replace("</CstmrCdtTrfInitn>", "</p:CstmrCdtTrfInitn>");
+        //Act
+        final Map<String, Collection<String>> result = parallel(tagsToExtract, List.of()).extract(TempFiles.write(content));
+        //Assert
+        Assertions.assertEquals(sequential(tagsToExtract, List.of(), content), result);
+        Assertions.assertEquals(30, result.get("PmtInfId").size());
+    }
+
+    @Test
+    void whenRecordsNestInsideThemselves_TheValuesAreThoseOfTheSequentialExtraction() {
+        final List<XmlTagPath> tagsToExtract = List.of(
+            new XmlTagPath(List.of("PmtInf", "PmtInfId"), "PmtInfId", -1),
+            new XmlTagPath(List.of("PmtInf", "Grp", "PmtInf", "PmtInfId"), "nested", -1),
+            new XmlTagPath(List.of("Grp", "Nm"), "name", 30)
+        );
+        final StringBuilder content = new StringBuilder("<Document><CstmrCdtTrfInitn>");
+        for (int record = 0; record < 20; record++) {
+            content.append("<PmtInf><PmtInfId>P")
+                .append(record)
+                .append("</PmtInfId>\n<Grp><Grp><PmtInf><PmtInfId>N")
+                .append(record)
+                .append("</PmtInfId></PmtInf></Grp>\n<PmtInf><PmtInfId>M")
+                .append(record)
+                .append("</PmtInfId><Nm>Name ")
+                .append(record)
+                .append("</Nm></PmtInf></Grp></PmtInf>\n");
+        }
+        content.append("</CstmrCdtTrfInitn></Document>");
+        //Act
+        final Map<String, Collection<String>> result = parallel(tagsToExtract, List.of())
+            .extract(TempFiles.write(content.toString()));
+        //Assert
+        final Map<String, Collection<String>> sequential = sequential(tagsToExtract, List.of(), content.toString());
+        Assertions.assertEquals(sequential, result);
+        Assertions.assertEquals(60, result.get("PmtInfId").size());
+        Assertions.assertFalse(result.get("nested").isEmpty());
+        Assertions.assertTrue(result.get("nested").stream().noneMatch(value -> value.startsWith("M")));
+    }
+
+    @Test
+    void whenRecordElementIsNotFound_FileIsExtractedSequentially() {
+        final List<XmlTagPath> tagsToExtract = List.of(new XmlTagPath(List.of("PmtInf", "PmtInfId"), "PmtInfId", -1));
+        final String content = document(5);
+        final ParallelTagExtractor subject = new ParallelTagExtractor(
+            tagsToExtract, List.of(), List.of(), "Missing", POOL, CHUNK_SIZE
+        );
+        //Act
+        final Map<String, Collection<String>> result = subject.extract(TempFiles.write(content));
+        //Assert
+        Assertions.assertEquals(Map.of("PmtInfId", List.of("P0", "P1", "P2", "P3", "P4")), result);
+    }
+
+    private static ParallelTagExtractor parallel(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags
+    ) {
+        return new ParallelTagExtractor(tagPaths, stopTags, List.<AlternateTagExtractor>of(), "PmtInf", POOL, CHUNK_SIZE);
+    }
+
+    private static Map<String, Collection<String>> sequential(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags,
+        final String content
+    ) {
+        return new XmlTagCursorExtractor(tagPaths, stopTags, List.of())
+            .extract("filename", new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String document(final int records) {
+        final StringBuilder content = new StringBuilder("<Document><CstmrCdtTrfInitn>")
+            .append("<GrpHdr><MsgId>MSG-1</MsgId><!-- <PmtInf> --></GrpHdr>");
+        for (int record = 0; record < records; record++) {
+            content.append("<PmtInf>\n  <PmtInfId>P")
+                .append(record)
+                .append("</PmtInfId>\n  <CdtTrfTxInf><Amt><InstdAmt Ccy=\"EUR\">")
+                .append(record)
+                .append(".50</InstdAmt></Amt><Cdtr><Nm>Creditor ")
+                .append(record)
+                .append("</Nm></Cdtr></CdtTrfTxInf>\n</PmtInf>\n");
+        }
+        return content.append("</CstmrCdtTrfInitn></Document>")
+            .toString();
+    }
+}
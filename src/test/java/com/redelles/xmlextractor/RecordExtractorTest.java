@@ -0,0 +1,88 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.record.ColumnarRowReader;
+import com.redelles.xmlextractor.tag.record.ColumnarRowSink;
+import com.redelles.xmlextractor.tag.record.CsvRowSink;
+import com.redelles.xmlextractor.tag.record.RecordExtractor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class RecordExtractorTest {
+
+    private static final List<XmlTagPath> COLUMNS = List.of(
+        XmlTagPath.parse("PmtId/EndToEndId", "EndToEndId", 1),
+        XmlTagPath.parse("InstdAmt", "amount", 1),
+        XmlTagPath.parse("InstdAmt/@Ccy", "currency", 1),
+        XmlTagPath.parse("DbtrAcct/Id/IBAN", "iban", 1)
+    );
+
+    @Test
+    void whenRecordsAreExtracted_EveryRecordIsARowOfTheCsv() throws IOException {
+        final RecordExtractor subject = new RecordExtractor("DrctDbtTxInf", COLUMNS);
+        final String content = "<Document><GrpHdr><InstdAmt Ccy=\"USD\">9</InstdAmt></GrpHdr>"
+            + "<DrctDbtTxInf><PmtId><EndToEndId>E1</EndToEndId></PmtId><InstdAmt Ccy=\"EUR\">1.50</InstdAmt>"
+            + "<DbtrAcct><Id><IBAN>ES91</IBAN></Id></DbtrAcct></DrctDbtTxInf>"
+            + "<DrctDbtTxInf><PmtId><EndToEndId>E2, \"quoted\"</EndToEndId></PmtId></DrctDbtTxInf>"
+            + "<DrctDbtTxInf><InstdAmt Ccy=\"GBP\">3</InstdAmt><InstdAmt Ccy=\"EUR\">4</InstdAmt></DrctDbtTxInf>"
+            + "</Document>";
+        final StringWriter csv = new StringWriter();
+        //Act
+        final long rows;
+        try (CsvRowSink sink = new CsvRowSink(csv)) {
+            rows = subject.extract("filename", new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), sink);
+        }
+        //Assert
+        Assertions.assertEquals(3, rows);
+        Assertions.assertEquals("EndToEndId,amount,currency,iban\r\n"
+            + "E1,1.50,EUR,ES91\r\n"
+            + "\"E2, \"\"quoted\"\"\",,,\r\n"
+            + ",3,GBP,\r\n", csv.toString());
+    }
+
+    @Test
+    void whenRowsAreWrittenInColumns_TheyAreReadBackByChunks() throws IOException {
+        final RecordExtractor subject = new RecordExtractor("DrctDbtTxInf", COLUMNS);
+        final StringBuilder content = new StringBuilder("<Document>");
+        for (int record = 0; record < 10; record++) {
+            content.append("<DrctDbtTxInf><PmtId><EndToEndId>E")
+                .append(record)
+                .append("</EndToEndId></PmtId>")
+                .append(record % 2 == 0 ? "<InstdAmt Ccy=\"EUR\">" + record + "</InstdAmt>" : "")
+                .append("</DrctDbtTxInf>");
+        }
+        content.append("</Document>");
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        //Act
+        try (ColumnarRowSink sink = new ColumnarRowSink(output, 4)) {
+            subject.extract("filename", new ByteArrayInputStream(content.toString()
+                .getBytes(StandardCharsets.UTF_8)), sink);
+        }
+        final List<String> ids = new ArrayList<>();
+        final List<String> amounts = new ArrayList<>();
+        final List<Integer> chunkSizes = new ArrayList<>();
+        try (ColumnarRowReader reader = new ColumnarRowReader(new ByteArrayInputStream(output.toByteArray()))) {
+            Assertions.assertEquals(List.of("EndToEndId", "amount", "currency", "iban"), reader.columns());
+            String[][] chunk;
+            while ((chunk = reader.nextChunk(true, true, false, false)) != null) {
+                chunkSizes.add(chunk[0].length);
+                ids.addAll(List.of(chunk[0]));
+                amounts.addAll(Arrays.asList(chunk[1]));
+                Assertions.assertNull(chunk[2][0]);
+            }
+        }
+        //Assert
+        Assertions.assertEquals(List.of(4, 4, 2), chunkSizes);
+        Assertions.assertEquals(List.of("E0", "E1", "E2", "E3", "E4", "E5", "E6", "E7", "E8", "E9"), ids);
+        Assertions.assertEquals(Arrays.asList("0", null, "2", null, "4", null, "6", null, "8", null), amounts);
+    }
+}
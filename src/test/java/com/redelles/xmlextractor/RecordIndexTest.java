@@ -0,0 +1,105 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.index.IndexedTagExtractor;
+import com.redelles.xmlextractor.tag.index.RecordIndex;
+import com.redelles.xmlextractor.tag.index.RecordIndexer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+class RecordIndexTest {
+
+    private static final List<XmlTagPath> KEY_PATHS = List.of(
+        new XmlTagPath(List.of("CdtTrfTxInf", "PmtId", "EndToEndId"), "EndToEndId", -1),
+        new XmlTagPath(List.of("CdtTrfTxInf", "Amt", "InstdAmt"), "amount", -1)
+    );
+
+    @Test
+    void whenFileIsIndexed_LookupExtractsOnlyTheRecordsWithTheKey() throws IOException {
+        final String content = document(40);
+        final Path file = write(content);
+        final IndexedTagExtractor subject = new IndexedTagExtractor(
+            List.of(
+                new XmlTagPath(List.of("Document", "CstmrCdtTrfInitn", "PmtInf", "CdtTrfTxInf", "Cdtr", "Nm"), "creditor", -1),
+                new XmlTagPath(List.of("CdtTrfTxInf", "PmtId", "EndToEndId"), "EndToEndId", -1)
+            ),
+            List.of()
+        );
+        //Act
+        new RecordIndexer("CdtTrfTxInf", KEY_PATHS).indexToSidecar(file);
+        final RecordIndex index = RecordIndex.read(RecordIndex.sidecar(file));
+        final Map<String, Collection<String>> result = subject.lookup(file, index, "EndToEndId", "E2E-17");
+        final Map<String, Collection<String>> byAmount = subject.lookup(file, index, "amount", "7.50");
+        //Assert
+        Assertions.assertEquals(40, index.recordCount());
+        Assertions.assertEquals(content.indexOf("<CdtTrfTxInf><PmtId><EndToEndId>E2E-17<"), index.offset(17));
+        Assertions.assertEquals(Map.of("creditor", List.of("Creditor 17"), "EndToEndId", List.of("E2E-17")), result);
+        Assertions.assertEquals(List.of("Creditor 7", "Creditor 27"), byAmount.get("creditor"));
+        Assertions.assertEquals(0, index.records("EndToEndId", "missing").length);
+    }
+
+    @Test
+    void whenRecordsCrossTheWindows_TheIndexIsTheSame() throws IOException {
+        final Path file = write(document(40));
+        //Act
+        final RecordIndex expected = new RecordIndexer("CdtTrfTxInf", KEY_PATHS).index(file);
+        final RecordIndex small = new RecordIndexer("CdtTrfTxInf", KEY_PATHS, 64).index(file);
+        //Assert
+        Assertions.assertEquals(expected.recordCount(), small.recordCount());
+        for (int record = 0; record < expected.recordCount(); record++) {
+            Assertions.assertEquals(expected.offset(record), small.offset(record));
+            Assertions.assertEquals(expected.length(record), small.length(record));
+        }
+        Assertions.assertArrayEquals(new int[]{5, 25}, small.records("amount", "5.50"));
+    }
+
+    @Test
+    void whenFileChangesAfterIndexing_TheIndexIsOutOfDate() throws IOException {
+        final Path file = write(document(5));
+        final RecordIndex index = new RecordIndexer("CdtTrfTxInf", KEY_PATHS).index(file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file)
+            .toMillis() + 2000));
+        final IndexedTagExtractor subject = new IndexedTagExtractor(KEY_PATHS, List.of());
+        //Act
+        //Assert
+        Assertions.assertFalse(index.isCurrent(file));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> subject.lookup(file, index, "EndToEndId", "E2E-1"));
+    }
+
+    private static String document(final int records) {
+        final StringBuilder content = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<p:Document xmlns:p=\"urn:iso:std:iso:20022\"><p:CstmrCdtTrfInitn>")
+            .append("<GrpHdr><MsgId>MSG-1</MsgId><!-- <CdtTrfTxInf> --></GrpHdr>");
+        for (int record = 0; record < records; record++) {
+            if (record % 10 == 0) {
+                content.append(record == 0 ? "" : "</PmtInf>\n")
+                    .append("<PmtInf><PmtInfId>P")
+                    .append(record / 10)
+                    .append("</PmtInfId>\n");
+            }
+            content.append("  <CdtTrfTxInf><PmtId><EndToEndId>E2E-")
+                .append(record)
+                .append("</EndToEndId></PmtId><Amt><InstdAmt Ccy=\"EUR\">")
+                .append(record % 20)
+                .append(".50</InstdAmt></Amt><Cdtr><Nm>Creditor ")
+                .append(record)
+                .append("</Nm></Cdtr></CdtTrfTxInf>\n");
+        }
+        return content.append("</PmtInf></p:CstmrCdtTrfInitn></p:Document>")
+            .toString();
+    }
+
+    private static Path write(final String content) {
+        final Path file = TempFiles.write(content);
+        RecordIndex.sidecar(file)
+            .toFile()
+            .deleteOnExit();
+        return file;
+    }
+}
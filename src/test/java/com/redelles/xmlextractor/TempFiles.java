@@ -0,0 +1,41 @@
+package com.redelles.xmlextractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Temporary files with the documents of the tests of the engines reading files, deleted when the tests end.
+ */
+final class TempFiles {
+
+    private TempFiles() {
+    }
+
+    static Path write(final String content) {
+        return write(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Path write(final InputStream inputStream) {
+        try (inputStream) {
+            return write(inputStream.readAllBytes());
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Path write(final byte[] content) {
+        try {
+            final Path file = Files.createTempFile("document", ".xml");
+            file.toFile()
+                .deleteOnExit();
+            Files.write(file, content);
+            return file;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.typed.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+class TypedColumnsTest {
+
+    private static final List<XmlTagPath> TAGS_TO_EXTRACT = List.of(
+        XmlTagPath.parse("GrpHdr/NbOfTxs", "count", 1, XmlTagPath.Type.LONG),
+        XmlTagPath.parse("GrpHdr/CreDtTm", "created", 1, XmlTagPath.Type.DATE_TIME),
+        XmlTagPath.parse("PmtInf/ReqdExctnDt", "executionDate", -1, XmlTagPath.Type.DATE),
+        XmlTagPath.parse("CdtTrfTxInf/Amt/InstdAmt", "amount", -1, XmlTagPath.Type.DECIMAL),
+        XmlTagPath.parse("CdtTrfTxInf/Amt/InstdAmt/@Ccy", "currency", -1, XmlTagPath.Type.CODE),
+        XmlTagPath.parse("CdtTrfTxInf/CdtrAcct/Id/IBAN", "iban", -1)
+    );
+
+    @Test
+    void whenValuesAreTyped_TheyAreParsedIntoColumns_AndTheFailuresAreReportedByRow() {
+        final String document = """
+            <Document><CstmrCdtTrfInitn>
+              <GrpHdr><NbOfTxs> 4 </NbOfTxs><CreDtTm>2024-03-31T23:30:00.25-02:00</CreDtTm></GrpHdr>
+              <PmtInf><ReqdExctnDt>2024-02-29</ReqdExctnDt>
+                <CdtTrfTxInf><Amt><InstdAmt Ccy="EUR">1234.50</InstdAmt></Amt>
+                  <CdtrAcct><Id><IBAN>ES12</IBAN></Id></CdtrAcct></CdtTrfTxInf>
+                <CdtTrfTxInf><Amt><InstdAmt Ccy="USD">12,50</InstdAmt></Amt></CdtTrfTxInf>
+              </PmtInf>
+              <PmtInf><ReqdExctnDt>2024-02-30</ReqdExctnDt>
+                <CdtTrfTxInf><Amt><InstdAmt Ccy="EUR">-0.07</InstdAmt></Amt></CdtTrfTxInf>
+                <CdtTrfTxInf><Amt><InstdAmt Ccy="EUR">123456789012345678901.5</InstdAmt></Amt></CdtTrfTxInf>
+              </PmtInf>
+            </CstmrCdtTrfInitn></Document>""";
+        final TypedColumns subject = new TypedColumns(TAGS_TO_EXTRACT);
+        //Act
+        new XmlTagCursorExtractor(TAGS_TO_EXTRACT, List.of(), List.of())
+            .extract("filename", new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)), subject);
+        //Assert
+        Assertions.assertArrayEquals(new long[]{4}, subject.longColumn("count")
+            .toArray());
+        Assertions.assertEquals(Instant.parse("2024-04-01T01:30:00.250Z"), subject.longColumn("created")
+            .instant(0));
+        final LongColumn dates = subject.longColumn("executionDate");
+        Assertions.assertEquals(LocalDate.of(2024, 2, 29), dates.date(0));
+        Assertions.assertTrue(dates.isMissing(1));
+        final DecimalColumn amounts = subject.decimalColumn("amount");
+        Assertions.assertEquals(4, amounts.size());
+        Assertions.assertEquals(123450, amounts.unscaled(0));
+        Assertions.assertEquals(2, amounts.scale(0));
+        Assertions.assertNull(amounts.get(1));
+        Assertions.assertEquals(new BigDecimal("-0.07"), amounts.get(2));
+        Assertions.assertFalse(amounts.fitsInLong(3));
+        Assertions.assertEquals(new BigDecimal("123456789012345678901.5"), amounts.get(3));
+        final CodeColumn currencies = subject.codeColumn("currency");
+        Assertions.assertEquals(List.of("EUR", "USD"), currencies.codes());
+        Assertions.assertArrayEquals(new int[]{0, 1, 0, 0}, currencies.ids());
+        Assertions.assertEquals("ES12", subject.textColumn("iban")
+            .get(0));
+        Assertions.assertEquals(2, subject.failures()
+            .size());
+        Assertions.assertEquals("amount", subject.failures()
+            .get(0).outKey);
+        Assertions.assertEquals(1, subject.failures()
+            .get(0).row);
+        Assertions.assertEquals("12,50", subject.failures()
+            .get(0).value);
+        Assertions.assertEquals("executionDate", subject.failures()
+            .get(1).outKey);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> subject.longColumn("amount"));
+    }
+
+    @Test
+    void whenTextIsParsed_TheLimitsOfTheTypesAreKept() {
+        //Act
+        //Assert
+        Assertions.assertEquals(Long.MIN_VALUE, TextValues.parseLong("-9223372036854775808"));
+        Assertions.assertEquals(Long.MAX_VALUE, TextValues.parseLong("+9223372036854775807"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TextValues.parseLong("9223372036854775808"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TextValues.parseLong("-"));
+        Assertions.assertEquals(LocalDate.of(1600, 3, 1)
+            .toEpochDay(), TextValues.parseEpochDay("1600-03-01Z"));
+        Assertions.assertEquals(LocalDate.of(1969, 12, 31)
+            .toEpochDay(), TextValues.parseEpochDay("1969-12-31+05:00"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TextValues.parseEpochDay("2023-02-29"));
+        Assertions.assertEquals(Instant.parse("2024-01-31T10:15:30.123Z")
+            .toEpochMilli(), TextValues.parseEpochMillis("2024-01-31T10:15:30.123456"));
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> TextValues.parseEpochMillis("2024-01-31 10:15:30")
+        );
+    }
+}
@@ -0,0 +1,23 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.TagExtractor;
+import com.redelles.xmlextractor.tag.XmlTagCursorExtractor;
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor;
+
+import java.util.List;
+
+/**
+ * Runs all the cases of {@link XmlTagPathExtractorTest} with the cursor engine, both engines must agree.
+ */
+class XmlTagCursorExtractorTest extends XmlTagPathExtractorTest {
+
+    @Override
+    protected TagExtractor extractor(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags,
+        final List<AlternateTagExtractor> specialExtractors
+    ) {
+        return new XmlTagCursorExtractor(tagPaths, stopTags, specialExtractors);
+    }
+}
@@ -0,0 +1,192 @@
+package com.redelles.xmlextractor;
+
+import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.automaton.XmlTagPathAutomaton;
+import com.redelles.xmlextractor.tag.automaton.XmlTagPathMatcher;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+class XmlTagPathAutomatonTest {
+
+    @Test
+    void whenElementsAreOpenedAndClosed_TheMatcherFollowsTheSameIndexesThanTheProcessor() {
+        final var tagPath = new XmlTagPath(List.of("father", "second", "Id"), "");
+        final var processor = new XmlTagProcessor(tagPath);
+        final var matcher = new XmlTagPathAutomaton(List.of(tagPath)).matcher();
+        final List<String> events = List.of("<father", "<first", "</first", "<second", "<Id", "</Id", "</second", "</father");
+
+        for (final String event : events) {
+            final String name = event.replaceAll("[</]", "");
+            if (event.startsWith("</")) {
+                if (name.equalsIgnoreCase(processor.getPreviousTag())) {
+                    processor.previous();
+                }
+                matcher.end(name);
+            } else {
+                if (name.equalsIgnoreCase(processor.getCurrentTag())) {
+                    processor.next();
+                }
+                matcher.start(name);
+            }
+            Assertions.assertEquals(processor.isReadyToWrite(), matcher.readyPaths().length == 1, event);
+        }
+    }
+
+    @Test
+    void whenSameDocumentIsProcessedTwice_TheStatesAreReused() {
+        final var automaton = new XmlTagPathAutomaton(List.of(
+            new XmlTagPath(List.of("father", "Id"), "father"),
+            new XmlTagPath(List.of("mother", "Id"), "mother")
+        ));
+        final XmlTagPathMatcher matcher = automaton.matcher();
+
+        walk(matcher);
+        final int states = automaton.stateCount();
+        matcher.reset();
+        walk(matcher);
+
+        Assertions.assertEquals(states, automaton.stateCount());
+        Assertions.assertSame(automaton.initial(), matcher.state());
+    }
+
+    @Test
+    void whenElementNameIsInDifferentCase_ThePathIsMatched() {
+        final var automaton = new XmlTagPathAutomaton(List.of(new XmlTagPath("MsgId")));
+        final XmlTagPathMatcher matcher = automaton.matcher();
+
+        matcher.start("MSGID");
+
+        Assertions.assertArrayEquals(new int[]{0}, matcher.readyPaths());
+    }
+
+    @Test
+    void whenPathIsWrittenItsTimes_IsFinished_AndMatcherIsExhaustedWhenAllAreFinished() {
+        final var automaton = new XmlTagPathAutomaton(List.of(
+            new XmlTagPath(List.of("MsgId"), "once", 1),
+            new XmlTagPath(List.of("MsgId"), "twice", 2)
+        ));
+        final XmlTagPathMatcher matcher = automaton.matcher();
+
+        matcher.start("MsgId");
+        IntStream.of(matcher.readyPaths()).forEach(matcher::written);
+
+        Assertions.assertFalse(matcher.canWrite(0));
+        Assertions.assertTrue(matcher.canWrite(1));
+        Assertions.assertFalse(matcher.isExhausted());
+
+        matcher.written(1);
+
+        Assertions.assertTrue(matcher.isExhausted());
+    }
+
+    @Test
+    void whenDescendantPatternsOverlap_ThePatternStatesStayFew() {
+        final var automaton = new XmlTagPathAutomaton(List.of(
+            XmlTagPath.parse("a//a//a", "deep", -1),
+            XmlTagPath.parse("a//b", "b", -1),
+            XmlTagPath.parse("//a/*", "child", -1)
+        ));
+        final XmlTagPathMatcher matcher = automaton.matcher();
+
+        for (int depth = 0; depth < 2000; depth++) {
+            matcher.start("a");
+        }
+        final int states = automaton.patternStateCount();
+        matcher.start("b");
+
+        Assertions.assertTrue(states < 10, "states: " + states);
+        Assertions.assertArrayEquals(new int[]{0, 1, 2}, matcher.readyPaths());
+
+        for (int depth = 0; depth <= 2000; depth++) {
+            matcher.end(depth == 0 ? "b" : "a");
+        }
+
+        Assertions.assertEquals(0, matcher.readyPaths().length);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> XmlTagPath.parse("a//", "", 1));
+    }
+
+    @Test
+    void whenPatternStatesPassTheLimit_NeitherTheStatesNorTheTransitionsKeepGrowing() {
+        final int patterns = 16;
+        final var automaton = new XmlTagPathAutomaton(IntStream.range(0, patterns)
+            .mapToObj(pattern -> XmlTagPath.parse("a" + pattern + "//z", "z" + pattern, -1))
+            .toList());
+        final XmlTagPathMatcher matcher = automaton.matcher();
+
+        for (int subset = 0; subset < 1 << (patterns - 1); subset++) {
+            walk(matcher, subset, patterns);
+        }
+        final int states = automaton.patternStateCount();
+        final int transitions = automaton.patternTransitionCount();
+        for (int subset = 1 << (patterns - 1); subset < 1 << patterns; subset++) {
+            walk(matcher, subset, patterns);
+        }
+
+        Assertions.assertTrue(states < 1 << (patterns - 1), "states: " + states);
+        Assertions.assertEquals(states, automaton.patternStateCount());
+        Assertions.assertEquals(transitions, automaton.patternTransitionCount());
+        IntStream.range(0, patterns)
+            .forEach(pattern -> matcher.start("a" + pattern));
+        matcher.start("z");
+        Assertions.assertEquals(patterns, matcher.readyPaths().length);
+    }
+
+    @Test
+    void whenStatesPassTheLimit_TheyStopGrowing_AndThePathsAreStillMatched() {
+        final int paths = 16;
+        final var automaton = new XmlTagPathAutomaton(IntStream.range(0, paths)
+            .mapToObj(path -> XmlTagPath.parse("a" + path + "/z", "z" + path, -1))
+            .toList());
+        final XmlTagPathMatcher matcher = automaton.matcher();
+
+        for (int subset = 0; subset < 1 << (paths - 1); subset++) {
+            walk(matcher, subset, paths);
+        }
+        final int states = automaton.stateCount();
+        for (int subset = 1 << (paths - 1); subset < 1 << paths; subset++) {
+            walk(matcher, subset, paths);
+        }
+
+        Assertions.assertTrue(states < 1 << (paths - 1), "states: " + states);
+        Assertions.assertEquals(states, automaton.stateCount());
+        Assertions.assertSame(automaton.initial(), matcher.state());
+        IntStream.range(0, paths)
+            .forEach(path -> matcher.start("a" + path));
+        matcher.start("z");
+        Assertions.assertEquals(paths, matcher.readyPaths().length);
+    }
+
+    /**
+     * Opens the elements of the patterns in the subset one inside the other, then closes them.
+     */
+    private static void walk(
+        final XmlTagPathMatcher matcher,
+        final int subset,
+        final int patterns
+    ) {
+        for (int pattern = 0; pattern < patterns; pattern++) {
+            if ((subset & 1 << pattern) != 0) {
+                matcher.start("a" + pattern);
+            }
+        }
+        for (int pattern = patterns - 1; pattern >= 0; pattern--) {
+            if ((subset & 1 << pattern) != 0) {
+                matcher.end("a" + pattern);
+            }
+        }
+    }
+
+    private static void walk(final XmlTagPathMatcher matcher) {
+        matcher.start("father");
+        matcher.start("Id");
+        matcher.end("Id");
+        matcher.end("father");
+        matcher.start("mother");
+        matcher.start("Id");
+        matcher.end("Id");
+        matcher.end("mother");
+    }
+}
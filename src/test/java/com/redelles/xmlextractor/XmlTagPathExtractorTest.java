@@ -2,24 +2,41 @@ package com.redelles.xmlextractor;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import com.redelles.xmlextractor.tag.TagExtractor;
 import com.redelles.xmlextractor.tag.XmlTagExtractor;
 import com.redelles.xmlextractor.tag.XmlTagPath;
+import com.redelles.xmlextractor.tag.alternate.AlternateTagExtractor;
 
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class XmlTagPathExtractorTest {
 
+    protected TagExtractor extractor(
+        final List<XmlTagPath> tagPaths,
+        final List<String> stopTags,
+        final List<AlternateTagExtractor> specialExtractors
+    ) {
+        return new XmlTagExtractor(tagPaths, stopTags, specialExtractors);
+    }
+
     @Test
     void whenDocumentHasTheValue_Is_Extracted_In_A_Map_With_The_Same_Name_Of_The_Tag() {
         final List<XmlTagPath> tagsToExtract = List.of(new XmlTagPath("MsgId"));
 
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
         final String content = "<MsgId>somevalue</MsgId>";
         //Act
         final InputStream input = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
@@ -36,7 +53,7 @@ public class XmlTagPathExtractorTest {
         final List<String> tagsToClose = List.of("DrctDbtTxInf");
         final List<AlternateTagExtractor> specialExtractors = List.of(new VersionTagExtractor());
 
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, tagsToClose, specialExtractors);
+        final TagExtractor subject = extractor(tagsToExtract, tagsToClose, specialExtractors);
         final String content =
             "<Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:pain.001.001.03\">" +
                 "<DrctDbtTxInf><MsgId>somevalue</MsgId></DrctDbtTxInf>";
@@ -56,7 +73,7 @@ public class XmlTagPathExtractorTest {
     void whenValueToExtract_IsInDifferentLines_TakesValuesTrim() {
         final List<XmlTagPath> tagsToExtract = List.of(new XmlTagPath("MsgId"));
 
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
         final String content = "<Document>" +
             "<MsgId>\nsomevalue\n</MsgId></Document>";
         //Act
@@ -78,7 +95,7 @@ public class XmlTagPathExtractorTest {
             ), outKey)
         );
 
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
         final String content =
             "<Document><Id>somevalue</Id><father><Id>secondvalue</Id></Document>";
         //Act
@@ -100,7 +117,7 @@ public class XmlTagPathExtractorTest {
             ), outKey)
         );
 
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
         final String content = "<Document>" +
             "<Id>somevalue</Id><father>\n<Id>\n  secondvalue\n  </Id></father></Document>";
         //Act
@@ -123,7 +140,7 @@ public class XmlTagPathExtractorTest {
             ), outKey)
         );
 
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
         final String content = "\n<Document><Id>somevalue</Id><father>"
             + "\n      \n"
             + "\n<Id>\n  secondvalue\n  </Id>";
@@ -147,7 +164,7 @@ public class XmlTagPathExtractorTest {
                 "Id"
             ), outKey)
         );
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
         final String content = "<father><first><Id>first</Id></first><second><Id>secondvalue</Id>";
         //Act
         final InputStream input = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
@@ -171,7 +188,7 @@ public class XmlTagPathExtractorTest {
         );
         final List<String> tagsToStop = List.of("close");
 
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, tagsToStop, Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, tagsToStop, Collections.emptyList());
         final String content = "<close><father></father></close><second><Id>secondvalue</Id>";
         //Act
         final InputStream input = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
@@ -194,7 +211,7 @@ public class XmlTagPathExtractorTest {
             ), outKey, 2)
         );
         final List<String> tagsToStop = List.of("close");
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, tagsToStop, Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, tagsToStop, Collections.emptyList());
         final String content =
             "<close>" +
                 "<father><second><Id>secondvalue</Id></second></father>" +
@@ -220,7 +237,7 @@ public class XmlTagPathExtractorTest {
         );
         final List<String> tagsToStop = List.of("DrctDbtTxInf");
 
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, tagsToStop, Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, tagsToStop, Collections.emptyList());
         final String content =
             "<Document><DrctDbtTxInf>" +
                 "<MsgId>somevalue</MsgId>something<MsgId>secondValue</MsgId>any<MsgId>somevalue</MsgId>" +
@@ -242,7 +259,7 @@ public class XmlTagPathExtractorTest {
                 "Id"
             ), outKey, -1)
         );
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
         final String content =
             "<Document><MsgId><Id>somevalue</Id></MsgId><Id>something</Id><MsgId><Id>secondValue</Id>" +
                 "</MsgId>any<MsgId><Id>somevalue</Id></MsgId>";
@@ -260,7 +277,7 @@ public class XmlTagPathExtractorTest {
             new XmlTagPath(List.of("MsgId"), "msgId", 2)
         );
 
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
         final String content =
             "<Document><MsgId>somevalue</MsgId>something<MsgId>secondValue</MsgId>any<MsgId>thirdValue</MsgId>";
         //Act
@@ -283,7 +300,7 @@ public class XmlTagPathExtractorTest {
         );
         final List<String> tagsToStop = List.of("close");
 
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, tagsToStop, Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, tagsToStop, Collections.emptyList());
         final String content =
             "<father><first><Id>firstvalue</Id></first>" +
                 "<second><Id>secondvalue</Id></close>xmlns=\"urn:iso:std:iso:20022:tech:xsd:pain.001.001.03\"";
@@ -311,7 +328,7 @@ public class XmlTagPathExtractorTest {
         );
         final List<String> tagsToStop = List.of("close", "closeDebtor");
 
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, tagsToStop, Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, tagsToStop, Collections.emptyList());
         final String content =
             "<Document><father><first><Id>firstvalue</Id></first>" +
                 "<second><Id>secondvalue</Id></second></father><closeDebtor></closeDebtor><father><second><Id>no</Id>";
@@ -336,7 +353,7 @@ public class XmlTagPathExtractorTest {
             ), outKey)
         );
 
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
         final String content = "<Document>" +
             "<father><first>father</first></father>" +
             "<mother><Id>mother</Id></mother>" +
@@ -362,7 +379,7 @@ public class XmlTagPathExtractorTest {
                 "Id"
             ), outKey)
         );
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
         final String content = "<Document>" +
             "<father><first>father</first></father>" +
             "<mother><Id>mother</Id></mother>" +
@@ -383,7 +400,7 @@ public class XmlTagPathExtractorTest {
     void whenErrorDocumentAppeared_IsReturnedTheValuesCollected() {
         final List<XmlTagPath> tagsToExtract = List.of(new XmlTagPath(List.of("MsgId"), "MsgId", 2));
 
-        final XmlTagExtractor subject = new XmlTagExtractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
         final String content = "<Document>" +
             "<father><first>father</first></father>" +
             "<mother><Id>mother</Id></mother>" +
@@ -397,4 +414,350 @@ public class XmlTagPathExtractorTest {
         final var expected = Map.of("MsgId", List.of("somevalue"));
         Assertions.assertEquals(expected, result);
     }
+
+    @Test
+    void whenTextOrCommentIsMalformed_TheErrorIsRecoveredLikeAnyOther() {
+        final TagExtractor text = extractor(List.of(new XmlTagPath(List.of("A"), "k", -1)), List.of(), List.of());
+        final TagExtractor comment = extractor(List.of(new XmlTagPath(List.of("B"), "k", -1)), List.of(), List.of());
+        //Act
+        final Map<String, Collection<String>> fromText = text.extract("filename", new ByteArrayInputStream(
+            "<Doc><R><A>a &</Zz>amp; b1</A><B>x</B></R></Doc>".getBytes(StandardCharsets.UTF_8)));
+        final Map<String, Collection<String>> fromComment = comment.extract("filename", new ByteArrayInputStream(
+            "<Doc><R><B>x<!-- c --</Zz>>y0</B><B>z</B></R></Doc>".getBytes(StandardCharsets.UTF_8)));
+        //Assert
+        Assertions.assertEquals(Map.of("k", List.of()), fromText);
+        Assertions.assertEquals(Map.of("k", List.of("x")), fromComment);
+    }
+
+    @Test
+    void whenSpecialExtractorReadsMoreEvents_ThoseEventsAreNotProcessedAgain() {
+        final List<XmlTagPath> tagsToExtract = List.of(new XmlTagPath(List.of("Version"), "Version", -1));
+        final List<AlternateTagExtractor> specialExtractors = List.of(new NextTextExtractor("Version"));
+
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), specialExtractors);
+        final String content = "<Document><Version>1</Version><Version>2</Version></Document>";
+        //Act
+        final InputStream input = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+        final Map<String, Collection<String>> result = subject.extract("filename", input);
+        //Assert
+        final var expected = Map.of(
+            "Version", List.of("2"),
+            "special", List.of("1")
+        );
+        Assertions.assertEquals(expected, result);
+    }
+
+    @Test
+    void whenSpecialExtractorsDeclareTriggers_TheyExtractTheSameAsWithoutThem() {
+        final List<XmlTagPath> tagsToExtract = List.of(new XmlTagPath(List.of("Nm"), "Nm", -1));
+        final TagExtractor legacy = extractor(tagsToExtract, Collections.emptyList(), List.of(
+            new NextTextExtractor("Nm", "name", 2, false),
+            new NextTextExtractor("Id", "id", 10, false)
+        ));
+        final TagExtractor triggered = extractor(tagsToExtract, Collections.emptyList(), List.of(
+            new NextTextExtractor("Nm", "name", 2, true),
+            new NextTextExtractor("Id", "id", 10, true)
+        ));
+        final String content = "<Document><Nm>a</Nm><Id>1</Id><Other><Nm>b</Nm></Other><Nm>c</Nm><Id>2</Id></Document>";
+        //Act
+        final Map<String, Collection<String>> expected = legacy.extract("filename",
+            new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        final Map<String, Collection<String>> first = triggered.extract("filename",
+            new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        final Map<String, Collection<String>> second = triggered.extract("filename",
+            new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        //Assert
+        Assertions.assertEquals(Map.of("Nm", List.of("c"), "name", List.of("a", "b"), "id", List.of("1", "2")), expected);
+        Assertions.assertEquals(expected, first);
+        Assertions.assertEquals(expected, second);
+    }
+
+    @Test
+    void whenPathHasAnyElement_OnlyTheElementsAtThatDepthMatch() {
+        final List<XmlTagPath> tagsToExtract = List.of(
+            XmlTagPath.parse("Document/*/Nm", "party", -1),
+            XmlTagPath.parse("Cdtr/Nm", "creditor", -1)
+        );
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final var input = new ByteArrayInputStream(("<Document><Cdtr><Nm>a</Nm></Cdtr><Dbtr><Nm>b</Nm></Dbtr>"
+            + "<Cdtr><Pty><Nm>c</Nm></Pty></Cdtr></Document>")
+            .getBytes(StandardCharsets.UTF_8));
+        //Act
+        final Map<String, Collection<String>> result = subject.extract("filename", input);
+        //Assert
+        Assertions.assertEquals(List.of("a", "b"), result.get("party"));
+        Assertions.assertEquals(List.of("a", "c"), result.get("creditor"));
+    }
+
+    @Test
+    void whenPathHasAnyDepth_TheNextElementMatchesAtAnyLevelBelow() {
+        final List<XmlTagPath> tagsToExtract = List.of(
+            XmlTagPath.parse("PmtInf//Nm", "names", -1),
+            XmlTagPath.parse("PmtInf/Cdtr/*", "direct", -1),
+            XmlTagPath.parse("PmtInf//Amt/@Ccy", "currency", -1)
+        );
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final var input = new ByteArrayInputStream(("<Document><GrpHdr><Nm>x</Nm></GrpHdr><PmtInf><Cdtr><Nm>a</Nm></Cdtr>"
+            + "<Tx><Cdtr><Nm>b</Nm></Cdtr><Amt Ccy=\"EUR\">1</Amt></Tx></PmtInf><Nm>y</Nm></Document>")
+            .getBytes(StandardCharsets.UTF_8));
+        //Act
+        final Map<String, Collection<String>> result = subject.extract("filename", input);
+        //Assert
+        Assertions.assertEquals(List.of("a", "b"), result.get("names"));
+        Assertions.assertEquals(List.of("a"), result.get("direct"));
+        Assertions.assertEquals(List.of("EUR"), result.get("currency"));
+    }
+
+    @Test
+    void whenTextIsCutByCommentsOrCdataOrEntities_IsExtractedAsASingleValue() {
+        final List<XmlTagPath> tagsToExtract = List.of(
+            new XmlTagPath(List.of("Nm"), "name", -1),
+            new XmlTagPath(List.of("Cdtr", "Nm"), "creditor", -1)
+        );
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final String longName = "x".repeat(20_000);
+        final var input = new ByteArrayInputStream(("<Document><Cdtr><Nm>  Jane <!-- middle --> Doe\n</Nm></Cdtr>"
+            + "<Cdtr><Nm>A <![CDATA[&]]> B</Nm></Cdtr><Nm>" + longName + "</Nm><Nm></Nm></Document>")
+            .getBytes(StandardCharsets.UTF_8));
+        //Act
+        final Map<String, Collection<String>> result = subject.extract("filename", input);
+        //Assert
+        Assertions.assertEquals(List.of("Jane  Doe", "A & B", longName), result.get("name"));
+        Assertions.assertEquals(List.of("Jane  Doe", "A & B"), result.get("creditor"));
+    }
+
+    @Test
+    void whenPathEndsInAnAttribute_TheAttributeIsExtractedWhenTheElementStarts() {
+        final List<XmlTagPath> tagsToExtract = List.of(
+            XmlTagPath.parse("Amt/InstdAmt/@Ccy", "currency", -1),
+            XmlTagPath.parse("Amt/InstdAmt", "amount", -1),
+            XmlTagPath.parse("Amt/@Missing", "missing", -1)
+        );
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final var input = new ByteArrayInputStream(("<Document><Amt><InstdAmt Ccy=\"EUR\">1.50</InstdAmt></Amt>"
+            + "<Ccy>GBP</Ccy><Amt><InstdAmt other='x' ccy='USD'/></Amt></Document>")
+            .getBytes(StandardCharsets.UTF_8));
+        //Act
+        final Map<String, Collection<String>> result = subject.extract("filename", input);
+        //Assert
+        Assertions.assertEquals(Map.of(
+            "currency", List.of("EUR", "USD"),
+            "amount", List.of("1.50"),
+            "missing", List.of()
+        ), result);
+    }
+
+    @Test
+    void whenPathEndsInTheNamespace_TheVersionIsExtractedWithoutSpecialExtractor() {
+        final List<XmlTagPath> tagsToExtract = List.of(
+            new XmlTagPath(List.of("Document", XmlTagPath.NAMESPACE_TARGET), "version"),
+            new XmlTagPath(List.of("Document", "MsgId", XmlTagPath.PREFIX_TARGET), "prefix"),
+            new XmlTagPath("MsgId")
+        );
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final var input = new ByteArrayInputStream(("<Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:pain.001.001.03\" "
+            + "xmlns:h=\"urn:head\"><h:MsgId>somevalue</h:MsgId></Document>")
+            .getBytes(StandardCharsets.UTF_8));
+        //Act
+        final Map<String, Collection<String>> result = subject.extract("filename", input);
+        //Assert
+        Assertions.assertEquals(Map.of(
+            "version", List.of("urn:iso:std:iso:20022:tech:xsd:pain.001.001.03"),
+            "prefix", List.of("h"),
+            "MsgId", List.of("somevalue")
+        ), result);
+    }
+
+    @Test
+    void whenTargetIsNotTheLastTag_ThePathIsRejected() {
+        //Act
+        //Assert
+        Assertions.assertThrows(IllegalArgumentException.class, () -> XmlTagPath.parse("Amt/@Ccy/InstdAmt", "x", 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> XmlTagPath.parse("#namespace", "x", 1));
+    }
+
+    @Test
+    void whenElementHasTextAndChildren_TheTextBeforeEveryChildIsAValue() {
+        final List<XmlTagPath> tagsToExtract = List.of(new XmlTagPath(List.of("Ustrd"), "remittance", -1));
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final var input = new ByteArrayInputStream("<Document><Ustrd>first<Br/>second</Ustrd></Document>"
+            .getBytes(StandardCharsets.UTF_8));
+        //Act
+        final Map<String, Collection<String>> result = subject.extract("filename", input);
+        //Assert
+        Assertions.assertEquals(Map.of("remittance", List.of("first", "second")), result);
+    }
+
+    @Test
+    void whenProcessorReadsTheTextView_TheValueIsTrimmedAndTheSameForEveryPath() {
+        final List<XmlTagPath> tagsToExtract = List.of(
+            new XmlTagPath(List.of("Id"), "id", -1),
+            new XmlTagPath(List.of("Othr", "Id"), "other", -1)
+        );
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final var input = new ByteArrayInputStream("<Document><Othr><Id> 42 </Id></Othr></Document>".getBytes(StandardCharsets.UTF_8));
+        final List<String> values = new ArrayList<>();
+        //Act
+        subject.extract("filename", input, new ValueProcessor() {
+            @Override
+            public void processValue(
+                final String outKey,
+                final String value
+            ) {
+                values.add(outKey + "=" + value);
+            }
+
+            @Override
+            public void processText(
+                final String outKey,
+                final CharSequence value
+            ) {
+                values.add(outKey + ":" + value.length() + ":" + value.charAt(0));
+            }
+        });
+        //Assert
+        Assertions.assertEquals(Set.of("id:2:4", "other:2:4"), new HashSet<>(values));
+    }
+
+    @Test
+    void whenLargeBlocksHaveNothingToExtract_StopTagsAndClosingParentsInsideThemAreStillSeen() {
+        final List<XmlTagPath> tagsToExtract = List.of(
+            new XmlTagPath(List.of("PmtInf", "PmtInfId"), "id", -1),
+            new XmlTagPath(List.of("PmtInf", "Amt"), "amount", -1)
+        );
+        final TagExtractor subject = extractor(tagsToExtract, List.of("End"), Collections.emptyList());
+        final String block = "<RmtInf><Ustrd>" + "text ".repeat(100) + "</Ustrd><Strd><Nm>x</Nm></Strd></RmtInf>";
+        final var input = new ByteArrayInputStream(("<Document><PmtInf>" + block + "<PmtInfId>1</PmtInfId>"
+            + "<Cdtr><PmtInf/></Cdtr><Amt>lost</Amt></PmtInf>"
+            + "<PmtInf><PmtInfId>2</PmtInfId>" + block + "<Amt>20</Amt><Blk><End/></Blk><Amt>30</Amt></PmtInf></Document>")
+            .getBytes(StandardCharsets.UTF_8));
+        //Act
+        final Map<String, Collection<String>> result = subject.extract("filename", input);
+        //Assert
+        Assertions.assertEquals(Map.of("id", List.of("1", "2"), "amount", List.of("20")), result);
+    }
+
+    @Test
+    void whenProcessorIsGiven_EveryValueIsProcessedInDocumentOrder_BeforeTheDocumentIsRead() {
+        final List<XmlTagPath> tagsToExtract = List.of(
+            new XmlTagPath(List.of("MsgId"), "msgId", -1),
+            new XmlTagPath(List.of("Id"), "id", -1)
+        );
+        final TagExtractor subject = extractor(tagsToExtract, Collections.emptyList(), Collections.emptyList());
+        final byte[] content = ("<Document><MsgId>first</MsgId><Id>second</Id>"
+            + "<!--" + " ".repeat(1 << 20) + "-->"
+            + "<MsgId>third</MsgId></Document>").getBytes(StandardCharsets.UTF_8);
+        final var input = new CountingInputStream(content);
+        final List<String> values = new ArrayList<>();
+        final List<Integer> readWhenFirstValue = new ArrayList<>();
+        //Act
+        subject.extract("filename", input, (outKey, value) -> {
+            readWhenFirstValue.add(input.read);
+            values.add(outKey + "=" + value);
+        });
+        //Assert
+        Assertions.assertEquals(List.of("msgId=first", "id=second", "msgId=third"), values);
+        Assertions.assertTrue(readWhenFirstValue.get(0) < content.length);
+    }
+
+    private static class CountingInputStream extends ByteArrayInputStream {
+
+        private int read;
+
+        private CountingInputStream(final byte[] content) {
+            super(content);
+        }
+
+        @Override
+        public synchronized int read(
+            final byte[] bytes,
+            final int offset,
+            final int length
+        ) {
+            final int count = super.read(bytes, offset, length);
+            this.read += Math.max(count, 0);
+            return count;
+        }
+    }
+
+    /**
+     * Takes the text after the first start element with the given name, reading it from the reader.
+     */
+    static class NextTextExtractor implements AlternateTagExtractor {
+
+        private final String elementName;
+        private final String key;
+        private final int maxTimes;
+        private final boolean triggered;
+        private int times;
+
+        NextTextExtractor(final String elementName) {
+            this(elementName, "special", 1, false);
+        }
+
+        NextTextExtractor(
+            final String elementName,
+            final String key,
+            final int times,
+            final boolean triggered
+        ) {
+            this.elementName = elementName;
+            this.key = key;
+            this.maxTimes = times;
+            this.times = times;
+            this.triggered = triggered;
+        }
+
+        @Override
+        public String key() {
+            return this.key;
+        }
+
+        @Override
+        public Set<Integer> triggerEventTypes() {
+            return this.triggered ? Set.of(XMLStreamConstants.START_ELEMENT) : Set.of();
+        }
+
+        @Override
+        public Set<String> triggerElementNames() {
+            return this.triggered ? Set.of(this.elementName) : Set.of();
+        }
+
+        @Override
+        public boolean isCompatible(final XMLEvent event) {
+            return event.isStartElement() && event.asStartElement()
+                .getName()
+                .getLocalPart()
+                .equals(this.elementName);
+        }
+
+        @Override
+        public String extract(
+            final XMLEvent event,
+            final XMLEventReader reader
+        ) {
+            try {
+                return reader.nextEvent()
+                    .asCharacters()
+                    .getData();
+            } catch (final XMLStreamException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void decreaseTagCount() {
+            this.times--;
+        }
+
+        @Override
+        public boolean canContinueProcessing() {
+            return this.times > 0;
+        }
+
+        @Override
+        public AlternateTagExtractor rebuild() {
+            return new NextTextExtractor(this.elementName, this.key, this.maxTimes, this.triggered);
+        }
+    }
 }